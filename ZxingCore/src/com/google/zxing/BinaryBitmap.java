@@ -74,7 +74,8 @@ public final class BinaryBitmap {
 	 * method is expensive and do not call it repeatedly. This method is
 	 * intended for decoding 2D barcodes and may or may not apply sharpening.
 	 * Therefore, a row from this matrix may not be identical to one fetched
-	 * using getBlackRow(), so don't mix and match between them.
+	 * using getBlackRow(), so don't mix and match between them. The matrix is
+	 * shared by every reader given this bitmap, so readers must not modify it.
 	 * 
 	 * @return The 2D array of bits for the image (true means black).
 	 */
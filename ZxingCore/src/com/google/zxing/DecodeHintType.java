@@ -17,6 +17,7 @@
 package com.google.zxing;
 
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Encapsulates a type of hint that a caller may pass to a barcode reader to help it
@@ -81,6 +82,37 @@ public enum DecodeHintType {
    */
   NEED_RESULT_POINT_CALLBACK(ResultPointCallback.class),
 
+  /**
+   * Range of QR Code versions expected in the image, as an {@code int[]} of
+   * {@code {minVersion, maxVersion}}. Lets the detector scan densely enough to find high
+   * version codes, and skip candidates too large to belong to a code of the minimum version.
+   */
+  QR_VERSION_RANGE(int[].class),
+
+  /**
+   * Lets QR Code detection split large images into horizontal bands and search them for
+   * finder patterns in parallel, and lets multiple-code readers decode the codes they find in
+   * parallel. Maps to the {@link ExecutorService} that runs the tasks.
+   */
+  DETECTION_EXECUTOR(ExecutorService.class),
+
+  /**
+   * Makes 1D readers decode several rows and return a result only once enough rows agree on it,
+   * as an {@code int[]} of {@code {agreeingRows, maxDecodedRows}}, or of
+   * {@code {agreeingRows, maxDecodedRows, minRowSpread}} to also require the first and last of
+   * the agreeing rows to be at least that many pixels apart. Trades some speed for fewer
+   * misreads from a single noisy row, or a noisy patch of adjacent rows.
+   */
+  ONED_ROW_CONSENSUS(int[].class),
+
+  /**
+   * Makes 1D readers that find nothing along rows scan lines at every multiple of this many
+   * degrees up to 180, and at 90 degrees even if that isn't one, instead of trying the image
+   * rotated 90 degrees with {@link #TRY_HARDER}.
+   * Maps to an {@link Integer}, for example 15.
+   */
+  ONED_SCAN_ANGLE_STEP(Integer.class),
+
   // End of enumeration values.
   ;
 
@@ -76,4 +76,18 @@ public enum EncodeHintType {
    */
   PDF417_DIMENSIONS,
 
+  /**
+   * Specifies whether QR Codes may mix encoding modes, splitting the content into numeric,
+   * alphanumeric, byte and Kanji segments so it fits in the smallest version it can
+   * (type {@link Boolean}).
+   */
+  QR_COMPACT,
+
+  /**
+   * Specifies whether Data Matrix encoding should search for the sequence of encodation modes
+   * that takes the fewest codewords, instead of choosing modes by looking ahead as it goes
+   * (type {@link Boolean}).
+   */
+  DATA_MATRIX_COMPACT,
+
 }
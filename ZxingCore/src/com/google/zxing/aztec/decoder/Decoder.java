@@ -18,6 +18,7 @@ package com.google.zxing.aztec.decoder;
 
 import com.google.zxing.FormatException;
 import com.google.zxing.aztec.AztecDetectorResult;
+import com.google.zxing.common.BitArray;
 import com.google.zxing.common.BitMatrix;
 import com.google.zxing.common.DecoderResult;
 import com.google.zxing.common.reedsolomon.GenericGF;
@@ -32,14 +33,25 @@ import com.google.zxing.common.reedsolomon.ReedSolomonException;
  */
 public final class Decoder {
 
-  private enum Table {
-    UPPER,
-    LOWER,
-    MIXED,
-    DIGIT,
-    PUNCT,
-    BINARY
-  }
+  private static final int UPPER = 0;
+  private static final int LOWER = 1;
+  private static final int MIXED = 2;
+  private static final int DIGIT = 3;
+  private static final int PUNCT = 4;
+  private static final int BINARY = 5;
+
+  // Table entries below zero are control codes: the complement of the table to change to,
+  // with SHIFT set when the change is for the next code only. Other entries hold one character,
+  // or two with the second in the upper 16 bits.
+  private static final int SHIFT = 0x08;
+  private static final int CTRL_PS = ~(PUNCT | SHIFT);
+  private static final int CTRL_US = ~(UPPER | SHIFT);
+  private static final int CTRL_BS = ~(BINARY | SHIFT);
+  private static final int CTRL_UL = ~UPPER;
+  private static final int CTRL_LL = ~LOWER;
+  private static final int CTRL_ML = ~MIXED;
+  private static final int CTRL_DL = ~DIGIT;
+  private static final int CTRL_PL = ~PUNCT;
 
   private static final int[] NB_BITS_COMPACT = {
       0, 104, 240, 408, 608
@@ -59,47 +71,50 @@ public final class Decoder {
       940, 1020, 920, 992, 1066, 1144, 1224, 1306, 1392, 1480, 1570, 1664
   };
 
-  private static final String[] UPPER_TABLE = {
-      "CTRL_PS", " ", "A", "B", "C", "D", "E", "F", "G", "H", "I", "J", "K", "L", "M", "N", "O", "P",
-      "Q", "R", "S", "T", "U", "V", "W", "X", "Y", "Z", "CTRL_LL", "CTRL_ML", "CTRL_DL", "CTRL_BS"
+  private static final int[] UPPER_TABLE = {
+      CTRL_PS, ' ', 'A', 'B', 'C', 'D', 'E', 'F', 'G', 'H', 'I', 'J', 'K', 'L', 'M', 'N', 'O', 'P',
+      'Q', 'R', 'S', 'T', 'U', 'V', 'W', 'X', 'Y', 'Z', CTRL_LL, CTRL_ML, CTRL_DL, CTRL_BS
+  };
+
+  private static final int[] LOWER_TABLE = {
+      CTRL_PS, ' ', 'a', 'b', 'c', 'd', 'e', 'f', 'g', 'h', 'i', 'j', 'k', 'l', 'm', 'n', 'o', 'p',
+      'q', 'r', 's', 't', 'u', 'v', 'w', 'x', 'y', 'z', CTRL_US, CTRL_ML, CTRL_DL, CTRL_BS
   };
 
-  private static final String[] LOWER_TABLE = {
-      "CTRL_PS", " ", "a", "b", "c", "d", "e", "f", "g", "h", "i", "j", "k", "l", "m", "n", "o", "p",
-      "q", "r", "s", "t", "u", "v", "w", "x", "y", "z", "CTRL_US", "CTRL_ML", "CTRL_DL", "CTRL_BS"
+  private static final int[] MIXED_TABLE = {
+      CTRL_PS, ' ', '\1', '\2', '\3', '\4', '\5', '\6', '\7', '\b', '\t', '\n',
+      '\13', '\f', '\r', '\33', '\34', '\35', '\36', '\37', '@', '\\', '^', '_',
+      '`', '|', '~', '\177', CTRL_LL, CTRL_UL, CTRL_PL, CTRL_BS
   };
 
-  private static final String[] MIXED_TABLE = {
-      "CTRL_PS", " ", "\1", "\2", "\3", "\4", "\5", "\6", "\7", "\b", "\t", "\n",
-      "\13", "\f", "\r", "\33", "\34", "\35", "\36", "\37", "@", "\\", "^", "_",
-      "`", "|", "~", "\177", "CTRL_LL", "CTRL_UL", "CTRL_PL", "CTRL_BS"
+  private static final int[] PUNCT_TABLE = {
+      0, '\r', '\r' | '\n' << 16, '.' | ' ' << 16, ',' | ' ' << 16, ':' | ' ' << 16, '!', '"', '#',
+      '$', '%', '&', '\'', '(', ')', '*', '+', ',', '-', '.', '/', ':', ';', '<', '=', '>', '?',
+      '[', ']', '{', '}', CTRL_UL
   };
 
-  private static final String[] PUNCT_TABLE = {
-      "", "\r", "\r\n", ". ", ", ", ": ", "!", "\"", "#", "$", "%", "&", "'", "(", ")",
-      "*", "+", ",", "-", ".", "/", ":", ";", "<", "=", ">", "?", "[", "]", "{", "}", "CTRL_UL"
+  private static final int[] DIGIT_TABLE = {
+      CTRL_PS, ' ', '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', ',', '.', CTRL_UL, CTRL_US
   };
 
-  private static final String[] DIGIT_TABLE = {
-      "CTRL_PS", " ", "0", "1", "2", "3", "4", "5", "6", "7", "8", "9", ",", ".", "CTRL_UL", "CTRL_US"
+  // Indexed by the table constants above
+  private static final int[][] TABLES = {
+      UPPER_TABLE, LOWER_TABLE, MIXED_TABLE, DIGIT_TABLE, PUNCT_TABLE
   };
 
-  private int numCodewords;
+  // Module positions of the raw bits, per number of layers, for each kind of symbol
+  private static final int[][] COMPACT_POSITIONS = new int[NB_BITS_COMPACT.length][];
+  private static final int[][] FULL_POSITIONS = new int[NB_BITS.length][];
+
   private int codewordSize;
   private AztecDetectorResult ddata;
-  private int invertedBitCount;
 
   public DecoderResult decode(AztecDetectorResult detectorResult) throws FormatException {
     ddata = detectorResult;
-    BitMatrix matrix = detectorResult.getBits();
 
-    if (!ddata.isCompact()) {
-      matrix = removeDashedLines(ddata.getBits());
-    }
-
-    boolean[] rawbits = extractBits(matrix);
+    int[] dataWords = extractCodewords(detectorResult.getBits());
 
-    boolean[] correctedBits = correctBits(rawbits);
+    BitArray correctedBits = correctBits(dataWords);
 
     String result = getEncodedData(correctedBits);
 
@@ -110,17 +125,13 @@ public final class Decoder {
    * Gets the string encoded in the aztec code bits
    *
    * @return the decoded string
-   * @throws FormatException if the input is not valid
    */
-  private String getEncodedData(boolean[] correctedBits) throws FormatException {
+  private static String getEncodedData(BitArray correctedBits) {
 
-    int endIndex = codewordSize * ddata.getNbDatablocks() - invertedBitCount;
-    if (endIndex > correctedBits.length) {
-      throw FormatException.getFormatInstance();
-    }
+    int endIndex = correctedBits.getSize();
 
-    Table lastTable = Table.UPPER;
-    Table table = Table.UPPER;
+    int lastTable = UPPER;
+    int table = UPPER;
     int startIndex = 0;
     StringBuilder result = new StringBuilder(20);
     boolean end = false;
@@ -166,7 +177,7 @@ public final class Decoder {
         }
         binaryShift = false;
       } else {
-        if (table == Table.BINARY) {
+        if (table == BINARY) {
           if (endIndex - startIndex < 8) {
             break;
           }
@@ -176,11 +187,7 @@ public final class Decoder {
           result.append((char) code);
 
         } else {
-          int size = 5;
-
-          if (table == Table.DIGIT) {
-            size = 4;
-          }
+          int size = table == DIGIT ? 4 : 5;
 
           if (endIndex - startIndex < size) {
             break;
@@ -189,22 +196,23 @@ public final class Decoder {
           code = readCode(correctedBits, startIndex, size);
           startIndex += size;
 
-          String str = getCharacter(table, code);
-          if (str.startsWith("CTRL_")) {
+          int entry = TABLES[table][code];
+          if (entry < 0) {
             // Table changes
-            table = getTable(str.charAt(5));
-
-            if (str.charAt(6) == 'S') {
+            table = ~entry & ~SHIFT;
+            if ((~entry & SHIFT) != 0) {
               shift = true;
-              if (str.charAt(5) == 'B') {
+              if (table == BINARY) {
                 binaryShift = true;
               }
             }
-          } else {
-            result.append(str);
+          } else if (entry != 0) {
+            result.append((char) entry);
+            if (entry > 0xFFFF) {
+              result.append((char) (entry >>> 16));
+            }
           }
 
-
         }
       }
 
@@ -218,100 +226,28 @@ public final class Decoder {
     return result.toString();
   }
 
-
   /**
-   * gets the table corresponding to the char passed
-   */
-  private static Table getTable(char t) {
-    switch (t) {
-      case 'L':
-        return Table.LOWER;
-      case 'P':
-        return Table.PUNCT;
-      case 'M':
-        return Table.MIXED;
-      case 'D':
-        return Table.DIGIT;
-      case 'B':
-        return Table.BINARY;
-      case 'U':
-      default:
-        return Table.UPPER;
-    }
-  }
-
-  /**
-   * Gets the character (or string) corresponding to the passed code in the given table
+   * <p>Performs RS error correction on the codewords, and removes the stuffed bits from the
+   * data codewords.</p>
    *
-   * @param table the table used
-   * @param code the code of the character
-   */
-  private static String getCharacter(Table table, int code) {
-    switch (table) {
-      case UPPER:
-        return UPPER_TABLE[code];
-      case LOWER:
-        return LOWER_TABLE[code];
-      case MIXED:
-        return MIXED_TABLE[code];
-      case PUNCT:
-        return PUNCT_TABLE[code];
-      case DIGIT:
-        return DIGIT_TABLE[code];
-      default:
-        return "";
-    }
-  }
-
-  /**
-   * <p>Performs RS error correction on an array of bits.</p>
-   *
-   * @return the corrected array
+   * @return the corrected data bits
    * @throws FormatException if the input contains too many errors
    */
-  private boolean[] correctBits(boolean[] rawbits) throws FormatException {
+  private BitArray correctBits(int[] dataWords) throws FormatException {
     GenericGF gf;
 
     if (ddata.getNbLayers() <= 2) {
-      codewordSize = 6;
       gf = GenericGF.AZTEC_DATA_6;
     } else if (ddata.getNbLayers() <= 8) {
-      codewordSize = 8;
       gf = GenericGF.AZTEC_DATA_8;
     } else if (ddata.getNbLayers() <= 22) {
-      codewordSize = 10;
       gf = GenericGF.AZTEC_DATA_10;
     } else {
-      codewordSize = 12;
       gf = GenericGF.AZTEC_DATA_12;
     }
 
     int numDataCodewords = ddata.getNbDatablocks();
-    int numECCodewords;
-    int offset;
-
-    if (ddata.isCompact()) {
-      offset = NB_BITS_COMPACT[ddata.getNbLayers()] - numCodewords * codewordSize;
-      numECCodewords = NB_DATABLOCK_COMPACT[ddata.getNbLayers()] - numDataCodewords;
-    } else {
-      offset = NB_BITS[ddata.getNbLayers()] - numCodewords * codewordSize;
-      numECCodewords = NB_DATABLOCK[ddata.getNbLayers()] - numDataCodewords;
-    }
-
-    int[] dataWords = new int[numCodewords];
-    for (int i = 0; i < numCodewords; i++) {
-      int flag = 1;
-      for (int j = 1; j <= codewordSize; j++) {
-        if (rawbits[codewordSize * i + codewordSize - j + offset]) {
-          dataWords[i] += flag;
-        }
-        flag <<= 1;
-      }
-
-      //if (dataWords[i] >= flag) {
-      //  flag++;
-      //}
-    }
+    int numECCodewords = dataWords.length - numDataCodewords;
 
     try {
       ReedSolomonDecoder rsDecoder = new ReedSolomonDecoder(gf);
@@ -320,45 +256,20 @@ public final class Decoder {
       throw FormatException.getFormatInstance();
     }
 
-    offset = 0;
-    invertedBitCount = 0;
-
-    boolean[] correctedBits = new boolean[numDataCodewords * codewordSize];
+    // A codeword whose leading bits are all the same has one more bit, inverted, stuffed at the end
+    int allOnes = (1 << (codewordSize - 1)) - 1;
+    BitArray correctedBits = new BitArray();
     for (int i = 0; i < numDataCodewords; i++) {
-
-      boolean seriesColor = false;
-      int seriesCount = 0;
-      int flag = 1 << (codewordSize - 1);
-
-      for (int j = 0; j < codewordSize; j++) {
-
-        boolean color = (dataWords[i] & flag) == flag;
-
-        if (seriesCount == codewordSize - 1) {
-
-          if (color == seriesColor) {
-            //bit must be inverted
-            throw FormatException.getFormatInstance();
-          }
-
-          seriesColor = false;
-          seriesCount = 0;
-          offset++;
-          invertedBitCount++;
-        } else {
-
-          if (seriesColor == color) {
-            seriesCount++;
-          } else {
-            seriesCount = 1;
-            seriesColor = color;
-          }
-
-          correctedBits[i * codewordSize + j - offset] = color;
-
+      int dataWord = dataWords[i];
+      int leading = dataWord >>> 1;
+      if (leading == 0 || leading == allOnes) {
+        if ((dataWord & 1) == (leading & 1)) {
+          //bit must be inverted
+          throw FormatException.getFormatInstance();
         }
-
-        flag >>>= 1;
+        correctedBits.appendBits(leading, codewordSize - 1);
+      } else {
+        correctedBits.appendBits(dataWord, codewordSize);
       }
     }
 
@@ -366,30 +277,110 @@ public final class Decoder {
   }
 
   /**
-   * Gets the array of bits from an Aztec Code matrix
+   * Reads the codewords from an Aztec Code matrix
    *
-   * @return the array of bits
+   * @return the codewords, data then error correction
    * @throws FormatException if the matrix is not a valid aztec code
    */
-  private boolean[] extractBits(BitMatrix matrix) throws FormatException {
-
-    boolean[] rawbits;
+  private int[] extractCodewords(BitMatrix matrix) throws FormatException {
+    int nbLayers = ddata.getNbLayers();
+    int numBits;
+    int numCodewords;
     if (ddata.isCompact()) {
-      if (ddata.getNbLayers() > NB_BITS_COMPACT.length) {
+      if (nbLayers >= NB_BITS_COMPACT.length) {
         throw FormatException.getFormatInstance();
       }
-      rawbits = new boolean[NB_BITS_COMPACT[ddata.getNbLayers()]];
-      numCodewords = NB_DATABLOCK_COMPACT[ddata.getNbLayers()];
+      numBits = NB_BITS_COMPACT[nbLayers];
+      numCodewords = NB_DATABLOCK_COMPACT[nbLayers];
     } else {
-      if (ddata.getNbLayers() > NB_BITS.length) {
+      if (nbLayers >= NB_BITS.length) {
         throw FormatException.getFormatInstance();
       }
-      rawbits = new boolean[NB_BITS[ddata.getNbLayers()]];
-      numCodewords = NB_DATABLOCK[ddata.getNbLayers()];
+      numBits = NB_BITS[nbLayers];
+      numCodewords = NB_DATABLOCK[nbLayers];
+    }
+
+    if (nbLayers <= 2) {
+      codewordSize = 6;
+    } else if (nbLayers <= 8) {
+      codewordSize = 8;
+    } else if (nbLayers <= 22) {
+      codewordSize = 10;
+    } else {
+      codewordSize = 12;
+    }
+
+    int dimension = matrix.getHeight();
+    int[] positions;
+    if (dimension == getDimension(ddata.isCompact(), nbLayers)) {
+      positions = getModulePositions(ddata.isCompact(), nbLayers);
+    } else if (dimension <= 0xFF) {
+      // Not the usual size; work out where the bits are without keeping it
+      positions = buildModulePositions(ddata.isCompact(), nbLayers, dimension);
+    } else {
+      throw FormatException.getFormatInstance();
+    }
+
+    // The raw bits start with whatever does not fill a whole codeword
+    int offset = numBits - numCodewords * codewordSize;
+    int[] dataWords = new int[numCodewords];
+    for (int i = 0; i < numCodewords; i++) {
+      int dataWord = 0;
+      for (int j = 0; j < codewordSize; j++) {
+        int position = positions[offset++];
+        dataWord <<= 1;
+        if (matrix.get(position & 0xFF, position >>> 8)) {
+          dataWord |= 1;
+        }
+      }
+      dataWords[i] = dataWord;
+    }
+    return dataWords;
+  }
+
+  private static synchronized int[] getModulePositions(boolean compact, int nbLayers) {
+    int[][] cache = compact ? COMPACT_POSITIONS : FULL_POSITIONS;
+    int[] positions = cache[nbLayers];
+    if (positions == null) {
+      positions = buildModulePositions(compact, nbLayers, getDimension(compact, nbLayers));
+      cache[nbLayers] = positions;
+    }
+    return positions;
+  }
+
+  /**
+   * @return width and height of a symbol, with reference grid lines
+   */
+  private static int getDimension(boolean compact, int nbLayers) {
+    int baseMatrixSize = compact ? 11 + nbLayers * 4 : 14 + nbLayers * 4;
+    if (compact) {
+      return baseMatrixSize;
+    }
+    return baseMatrixSize + 1 + 2 * ((baseMatrixSize / 2 - 1) / 15);
+  }
+
+  /**
+   * Works out where each raw bit is in a symbol, layer by layer from the outside in, as
+   * {@code (y << 8) | x}. Full size symbols have reference grid lines every 16 modules from
+   * the center, which hold no data and are skipped.
+   */
+  private static int[] buildModulePositions(boolean compact, int nbLayers, int dimension) {
+    int[] rawbits = new int[compact ? NB_BITS_COMPACT[nbLayers] : NB_BITS[nbLayers]];
+
+    // Maps a row or column of the symbol without grid lines to one of the symbol
+    int size = dimension;
+    if (!compact) {
+      size -= 1 + 2 * ((dimension - 1) / 2 / 16);
+    }
+    int[] original = new int[size];
+    int n = 0;
+    for (int i = 0; i < dimension; i++) {
+      if (compact || (dimension / 2 - i) % 16 != 0) {
+        original[n++] = i;
+      }
     }
 
-    int layer = ddata.getNbLayers();
-    int size = matrix.getHeight();
+    int layer = nbLayers;
     int rawbitsOffset = 0;
     int matrixOffset = 0;
 
@@ -397,17 +388,19 @@ public final class Decoder {
 
       int flip = 0;
       for (int i = 0; i < 2 * size - 4; i++) {
-        rawbits[rawbitsOffset + i] = matrix.get(matrixOffset + flip, matrixOffset + i / 2);
-        rawbits[rawbitsOffset + 2 * size - 4 + i] = matrix.get(matrixOffset + i / 2, matrixOffset + size - 1 - flip);
+        rawbits[rawbitsOffset + i] =
+            position(original, matrixOffset + flip, matrixOffset + i / 2);
+        rawbits[rawbitsOffset + 2 * size - 4 + i] =
+            position(original, matrixOffset + i / 2, matrixOffset + size - 1 - flip);
         flip = (flip + 1) % 2;
       }
 
       flip = 0;
       for (int i = 2 * size + 1; i > 5; i--) {
         rawbits[rawbitsOffset + 4 * size - 8 + (2 * size - i) + 1] =
-            matrix.get(matrixOffset + size - 1 - flip, matrixOffset + i / 2 - 1);
+            position(original, matrixOffset + size - 1 - flip, matrixOffset + i / 2 - 1);
         rawbits[rawbitsOffset + 6 * size - 12 + (2 * size - i) + 1] =
-            matrix.get(matrixOffset + i / 2 - 1, matrixOffset + flip);
+            position(original, matrixOffset + i / 2 - 1, matrixOffset + flip);
         flip = (flip + 1) % 2;
       }
 
@@ -420,48 +413,19 @@ public final class Decoder {
     return rawbits;
   }
 
-  /**
-   * Transforms an Aztec code matrix by removing the control dashed lines
-   */
-  private static BitMatrix removeDashedLines(BitMatrix matrix) {
-    int nbDashed = 1 + 2 * ((matrix.getWidth() - 1) / 2 / 16);
-    BitMatrix newMatrix = new BitMatrix(matrix.getWidth() - nbDashed, matrix.getHeight() - nbDashed);
-
-    int nx = 0;
-
-    for (int x = 0; x < matrix.getWidth(); x++) {
-
-      if ((matrix.getWidth() / 2 - x) % 16 == 0) {
-        continue;
-      }
-
-      int ny = 0;
-      for (int y = 0; y < matrix.getHeight(); y++) {
-
-        if ((matrix.getWidth() / 2 - y) % 16 == 0) {
-          continue;
-        }
-
-        if (matrix.get(x, y)) {
-          newMatrix.set(nx, ny);
-        }
-        ny++;
-      }
-      nx++;
-    }
-
-    return newMatrix;
+  private static int position(int[] original, int x, int y) {
+    return (original[y] << 8) | original[x];
   }
 
   /**
    * Reads a code of given length and at given index in an array of bits
    */
-  private static int readCode(boolean[] rawbits, int startIndex, int length) {
+  private static int readCode(BitArray bits, int startIndex, int length) {
     int res = 0;
 
     for (int i = startIndex; i < startIndex + length; i++) {
       res <<= 1;
-      if (rawbits[i]) {
+      if (bits.get(i)) {
         res++;
       }
     }
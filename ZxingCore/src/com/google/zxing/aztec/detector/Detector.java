@@ -56,7 +56,25 @@ public final class Detector {
   public AztecDetectorResult detect() throws NotFoundException {
 
     // 1. Get the center of the aztec matrix
-     Point pCenter = getMatrixCenter();
+    return detect(getMatrixCenter());
+  }
+
+  /**
+   * Detects an Aztec Code whose bull's eye is centered on a given point, which need not be
+   * near the center of the image.
+   *
+   * @param center a point in the center module of the bull's eye
+   * @return {@link AztecDetectorResult} encapsulating results of detecting an Aztec Code
+   * @throws NotFoundException if no Aztec Code can be found there
+   */
+  public AztecDetectorResult detect(ResultPoint center) throws NotFoundException {
+    return detect(new Point(MathUtils.round(center.getX()), MathUtils.round(center.getY())));
+  }
+
+  private AztecDetectorResult detect(Point pCenter) throws NotFoundException {
+
+    nbLayers = 0;
+    nbDataBlocks = 0;
 
      // 2. Get the corners of the center bull's eye
      Point[] bullEyeCornerPoints = getBullEyeCornerPoints(pCenter);
@@ -0,0 +1,437 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.aztec.encoder;
+
+import com.google.zxing.common.BitArray;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * <p>Encodes a message into the fewest bits that the Aztec character tables allow.</p>
+ *
+ * <p>After each character, this keeps every way of having encoded the message so far -- the
+ * current table, and how many bytes a binary shift in progress holds -- that no other way
+ * can match at no greater cost, whatever follows. Only a handful survive at each step, so
+ * the search is linear in the length of the message.</p>
+ */
+final class HighLevelEncoder {
+
+  private static final int MODE_UPPER = 0; // 5 bits
+  private static final int MODE_LOWER = 1; // 5 bits
+  private static final int MODE_DIGIT = 2; // 4 bits
+  private static final int MODE_MIXED = 3; // 5 bits
+  private static final int MODE_PUNCT = 4; // 5 bits
+
+  // Code of the binary shift in the upper, lower and mixed tables
+  private static final int BINARY_SHIFT = 31;
+  // Longest binary shift, in bytes: 11 bits of length, plus 31
+  private static final int MAX_BINARY_SHIFT_BYTES = 2047 + 31;
+
+  // Codes that latch from one table to another, possibly through others,
+  // as (number of bits << 16) | the codes in order
+  private static final int[][] LATCH_TABLE = {
+      {
+          0,
+          (5 << 16) + 28,              // UPPER -> LOWER
+          (5 << 16) + 30,              // UPPER -> DIGIT
+          (5 << 16) + 29,              // UPPER -> MIXED
+          (10 << 16) + (29 << 5) + 30, // UPPER -> MIXED -> PUNCT
+      },
+      {
+          (9 << 16) + (30 << 4) + 14,  // LOWER -> DIGIT -> UPPER
+          0,
+          (5 << 16) + 30,              // LOWER -> DIGIT
+          (5 << 16) + 29,              // LOWER -> MIXED
+          (10 << 16) + (29 << 5) + 30, // LOWER -> MIXED -> PUNCT
+      },
+      {
+          (4 << 16) + 14,              // DIGIT -> UPPER
+          (9 << 16) + (14 << 5) + 28,  // DIGIT -> UPPER -> LOWER
+          0,
+          (9 << 16) + (14 << 5) + 29,  // DIGIT -> UPPER -> MIXED
+          (14 << 16) + (14 << 10) + (29 << 5) + 30, // DIGIT -> UPPER -> MIXED -> PUNCT
+      },
+      {
+          (5 << 16) + 29,              // MIXED -> UPPER
+          (5 << 16) + 28,              // MIXED -> LOWER
+          (10 << 16) + (29 << 5) + 30, // MIXED -> UPPER -> DIGIT
+          0,
+          (5 << 16) + 30,              // MIXED -> PUNCT
+      },
+      {
+          (5 << 16) + 31,              // PUNCT -> UPPER
+          (10 << 16) + (31 << 5) + 28, // PUNCT -> UPPER -> LOWER
+          (10 << 16) + (31 << 5) + 30, // PUNCT -> UPPER -> DIGIT
+          (10 << 16) + (31 << 5) + 29, // PUNCT -> UPPER -> MIXED
+          0,
+      },
+  };
+
+  // Codes that shift from one table to another for one character, or -1
+  private static final int[][] SHIFT_TABLE = {
+      { -1, -1, -1, -1, 0 },  // UPPER
+      { 28, -1, -1, -1, 0 },  // LOWER
+      { 15, -1, -1, -1, 0 },  // DIGIT
+      { -1, -1, -1, -1, 0 },  // MIXED
+      { -1, -1, -1, -1, -1 }, // PUNCT
+  };
+
+  // Code of each byte in each table, or 0 if it is not in the table
+  private static final int[][] CHAR_MAP = new int[5][256];
+
+  static {
+    CHAR_MAP[MODE_UPPER][' '] = 1;
+    for (int c = 'A'; c <= 'Z'; c++) {
+      CHAR_MAP[MODE_UPPER][c] = c - 'A' + 2;
+    }
+    CHAR_MAP[MODE_LOWER][' '] = 1;
+    for (int c = 'a'; c <= 'z'; c++) {
+      CHAR_MAP[MODE_LOWER][c] = c - 'a' + 2;
+    }
+    CHAR_MAP[MODE_DIGIT][' '] = 1;
+    for (int c = '0'; c <= '9'; c++) {
+      CHAR_MAP[MODE_DIGIT][c] = c - '0' + 2;
+    }
+    CHAR_MAP[MODE_DIGIT][','] = 12;
+    CHAR_MAP[MODE_DIGIT]['.'] = 13;
+    int[] mixedTable = {
+        '\0', ' ', '\1', '\2', '\3', '\4', '\5', '\6', '\7', '\b', '\t', '\n', '\13', '\f', '\r',
+        '\33', '\34', '\35', '\36', '\37', '@', '\\', '^', '_', '`', '|', '~', '\177'
+    };
+    for (int i = 1; i < mixedTable.length; i++) {
+      CHAR_MAP[MODE_MIXED][mixedTable[i]] = i;
+    }
+    int[] punctTable = {
+        '\0', '\r', '\0', '\0', '\0', '\0', '!', '"', '#', '$', '%', '&', '\'', '(', ')', '*', '+',
+        ',', '-', '.', '/', ':', ';', '<', '=', '>', '?', '[', ']', '{', '}'
+    };
+    for (int i = 0; i < punctTable.length; i++) {
+      if (punctTable[i] > 0) {
+        CHAR_MAP[MODE_PUNCT][punctTable[i]] = i;
+      }
+    }
+  }
+
+  private HighLevelEncoder() {
+  }
+
+  /**
+   * @return the message as a sequence of codes, before bit stuffing
+   */
+  static BitArray encode(byte[] text) {
+    // Ways of encoding the text up to this character, and up to the next one
+    List<State> states = new ArrayList<State>();
+    List<State> nextStates = new ArrayList<State>();
+    List<State> afterNextStates = new ArrayList<State>();
+    states.add(State.INITIAL_STATE);
+    for (int index = 0; index < text.length; index++) {
+      int c = text[index] & 0xFF;
+      int pairCode = index + 1 < text.length ? getPairCode(c, text[index + 1] & 0xFF) : 0;
+      for (State state : states) {
+        updateStateForChar(state, text, index, nextStates);
+        if (pairCode > 0) {
+          updateStateForPair(state, index, pairCode, afterNextStates);
+        }
+      }
+      List<State> temp = states;
+      states = nextStates;
+      nextStates = afterNextStates;
+      afterNextStates = temp;
+      afterNextStates.clear();
+    }
+
+    State best = null;
+    for (State state : states) {
+      State ended = state.endBinaryShift(text.length);
+      if (best == null || ended.bitCount < best.bitCount) {
+        best = ended;
+      }
+    }
+    return best.toBitArray(text);
+  }
+
+  /**
+   * @return the PUNCT code of the pair of characters, or 0 if they do not make one
+   */
+  private static int getPairCode(int c, int next) {
+    switch (c) {
+      case '\r':
+        return next == '\n' ? 2 : 0;
+      case '.':
+        return next == ' ' ? 3 : 0;
+      case ',':
+        return next == ' ' ? 4 : 0;
+      case ':':
+        return next == ' ' ? 5 : 0;
+      default:
+        return 0;
+    }
+  }
+
+  private static void updateStateForChar(State state, byte[] text, int index, List<State> result) {
+    int c = text[index] & 0xFF;
+    State stateNoBinary = state.endBinaryShift(index);
+    for (int mode = MODE_UPPER; mode <= MODE_PUNCT; mode++) {
+      int code = CHAR_MAP[mode][c];
+      if (code > 0) {
+        addState(result, stateNoBinary.latchAndAppend(mode, code));
+        if (SHIFT_TABLE[stateNoBinary.mode][mode] >= 0) {
+          addState(result, stateNoBinary.shiftAndAppend(mode, code));
+        }
+      }
+    }
+    addState(result, state.addBinaryShiftChar(index));
+  }
+
+  private static void updateStateForPair(State state, int index, int pairCode, List<State> result) {
+    State stateNoBinary = state.endBinaryShift(index);
+    addState(result, stateNoBinary.latchAndAppend(MODE_PUNCT, pairCode));
+    if (SHIFT_TABLE[stateNoBinary.mode][MODE_PUNCT] >= 0) {
+      addState(result, stateNoBinary.shiftAndAppend(MODE_PUNCT, pairCode));
+    }
+  }
+
+  /**
+   * Adds a state to the list unless one there is at least as good, and removes those
+   * it is at least as good as.
+   */
+  private static void addState(List<State> states, State newState) {
+    for (Iterator<State> it = states.iterator(); it.hasNext();) {
+      State state = it.next();
+      if (state.isBetterThanOrEqualTo(newState)) {
+        return;
+      }
+      if (newState.isBetterThanOrEqualTo(state)) {
+        it.remove();
+      }
+    }
+    states.add(newState);
+  }
+
+  private static int getBitCount(int mode) {
+    return mode == MODE_DIGIT ? 4 : 5;
+  }
+
+  /**
+   * Extra bits that a binary shift of so many bytes takes: a shift code and a short length
+   * for up to 31 bytes, two of those for up to 62, then a shift code and a long length.
+   */
+  private static int getBinaryShiftCost(int byteCount) {
+    if (byteCount > 62) {
+      return 21;
+    }
+    if (byteCount > 31) {
+      return 20;
+    }
+    if (byteCount > 0) {
+      return 10;
+    }
+    return 0;
+  }
+
+  /**
+   * One way of encoding the start of a message. Immutable.
+   */
+  private static final class State {
+
+    static final State INITIAL_STATE = new State(null, MODE_UPPER, 0, 0);
+
+    // The codes so far, newest first; a binary shift in progress is not yet among them
+    private final Token token;
+    // The current table; during a binary shift, the one it returns to
+    private final int mode;
+    // Bytes so far in the binary shift in progress, or 0
+    private final int binaryShiftByteCount;
+    private final int bitCount;
+
+    private State(Token token, int mode, int binaryShiftByteCount, int bitCount) {
+      this.token = token;
+      this.mode = mode;
+      this.binaryShiftByteCount = binaryShiftByteCount;
+      this.bitCount = bitCount;
+    }
+
+    /**
+     * @return this state, latched to the given table if it is not already there, with the
+     *  code appended
+     */
+    State latchAndAppend(int newMode, int code) {
+      Token newToken = token;
+      int newBitCount = bitCount;
+      if (newMode != mode) {
+        int latch = LATCH_TABLE[mode][newMode];
+        newToken = new SimpleToken(newToken, latch & 0xFFFF, latch >> 16);
+        newBitCount += latch >> 16;
+      }
+      int codeBitCount = getBitCount(newMode);
+      newToken = new SimpleToken(newToken, code, codeBitCount);
+      return new State(newToken, newMode, 0, newBitCount + codeBitCount);
+    }
+
+    /**
+     * @return this state with a shift to the given table, and the code, appended
+     */
+    State shiftAndAppend(int shiftMode, int code) {
+      int shiftBitCount = getBitCount(mode);
+      Token newToken = new SimpleToken(token, SHIFT_TABLE[mode][shiftMode], shiftBitCount);
+      newToken = new SimpleToken(newToken, code, 5);
+      return new State(newToken, mode, 0, bitCount + shiftBitCount + 5);
+    }
+
+    /**
+     * @return this state with the byte at the index added to a binary shift, starting one
+     *  if need be
+     */
+    State addBinaryShiftChar(int index) {
+      Token newToken = token;
+      int newMode = mode;
+      int newBitCount = bitCount;
+      if (binaryShiftByteCount == 0 && (mode == MODE_DIGIT || mode == MODE_PUNCT)) {
+        // No binary shift from these tables
+        int latch = LATCH_TABLE[mode][MODE_UPPER];
+        newToken = new SimpleToken(newToken, latch & 0xFFFF, latch >> 16);
+        newMode = MODE_UPPER;
+        newBitCount += latch >> 16;
+      }
+      int newByteCount = binaryShiftByteCount + 1;
+      newBitCount += 8 + getBinaryShiftCost(newByteCount) - getBinaryShiftCost(binaryShiftByteCount);
+      State result = new State(newToken, newMode, newByteCount, newBitCount);
+      if (newByteCount == MAX_BINARY_SHIFT_BYTES) {
+        result = result.endBinaryShift(index + 1);
+      }
+      return result;
+    }
+
+    /**
+     * @return this state with any binary shift in progress, ending before the index, closed
+     */
+    State endBinaryShift(int index) {
+      if (binaryShiftByteCount == 0) {
+        return this;
+      }
+      Token newToken = new BinaryShiftToken(token, index - binaryShiftByteCount, binaryShiftByteCount);
+      return new State(newToken, mode, 0, bitCount);
+    }
+
+    /**
+     * @return true if whatever follows, this state can encode it in no more bits in all
+     *  than the other
+     */
+    boolean isBetterThanOrEqualTo(State other) {
+      int newBitCount = bitCount;
+      if (mode != other.mode) {
+        newBitCount += LATCH_TABLE[mode][other.mode] >> 16;
+      }
+      if (binaryShiftByteCount < other.binaryShiftByteCount) {
+        // It may yet have to pay for what the other's binary shift already has
+        newBitCount += getBinaryShiftCost(other.binaryShiftByteCount) -
+            getBinaryShiftCost(binaryShiftByteCount);
+      } else if (binaryShiftByteCount > other.binaryShiftByteCount && other.binaryShiftByteCount > 0) {
+        // It may cross the 31 byte boundary of a short binary shift first
+        newBitCount += 10;
+      }
+      return newBitCount <= other.bitCount;
+    }
+
+    BitArray toBitArray(byte[] text) {
+      int count = 0;
+      for (Token t = token; t != null; t = t.previous) {
+        count++;
+      }
+      Token[] tokens = new Token[count];
+      for (Token t = token; t != null; t = t.previous) {
+        tokens[--count] = t;
+      }
+      BitArray bits = new BitArray();
+      for (Token t : tokens) {
+        t.appendTo(bits, text);
+      }
+      return bits;
+    }
+
+  }
+
+  private abstract static class Token {
+
+    final Token previous;
+
+    Token(Token previous) {
+      this.previous = previous;
+    }
+
+    abstract void appendTo(BitArray bits, byte[] text);
+
+  }
+
+  /**
+   * Codes from the character tables.
+   */
+  private static final class SimpleToken extends Token {
+
+    private final int value;
+    private final int bitCount;
+
+    SimpleToken(Token previous, int value, int bitCount) {
+      super(previous);
+      this.value = value;
+      this.bitCount = bitCount;
+    }
+
+    @Override
+    void appendTo(BitArray bits, byte[] text) {
+      bits.appendBits(value, bitCount);
+    }
+
+  }
+
+  /**
+   * A run of bytes in binary shifts.
+   */
+  private static final class BinaryShiftToken extends Token {
+
+    private final int start;
+    private final int byteCount;
+
+    BinaryShiftToken(Token previous, int start, int byteCount) {
+      super(previous);
+      this.start = start;
+      this.byteCount = byteCount;
+    }
+
+    @Override
+    void appendTo(BitArray bits, byte[] text) {
+      for (int i = 0; i < byteCount; i++) {
+        if (i == 0 || (i == 31 && byteCount <= 62)) {
+          // Up to 62 bytes go in two short binary shifts, which is a bit shorter than one long one
+          bits.appendBits(BINARY_SHIFT, 5);
+          if (byteCount > 62) {
+            bits.appendBits(byteCount - 31, 16);
+          } else if (i == 0) {
+            bits.appendBits(Math.min(byteCount, 31), 5);
+          } else {
+            bits.appendBits(byteCount - 31, 5);
+          }
+        }
+        bits.appendBits(text[start + i], 8);
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.bulk;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.datamatrix.DataMatrixWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+import com.google.zxing.qrcode.encoder.Encoder;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * <p>Encodes a long run of payloads, such as a print job of serialized labels, as QR Code or
+ * Data Matrix symbols. Payloads are encoded in parallel on an {@link ExecutorService} and
+ * handed to a {@link SymbolSink} in input order as soon as each is ready, so output starts
+ * streaming right away and nothing needs to be collected or sorted afterwards.</p>
+ *
+ * <p>At most {@code maxPending} symbols are queued or in flight at once, which bounds memory
+ * however long the input is and however slow the sink is. Symbols are the bare module grid,
+ * one bit per module with no quiet zone; sinks decide how to scale and pad them. For QR Code,
+ * the {@link BitMatrix} objects given to the sink are recycled for later symbols of the same
+ * size.</p>
+ *
+ * <p>Only those output matrices are reused. The QR Code {@link Encoder} has no way to take a
+ * workspace, so it still builds a fresh {@code QRCode}, {@link ByteMatrix} and bit and error
+ * correction buffers for every payload. These are short-lived, and {@code maxPending} bounds
+ * how many are alive at once. Data Matrix symbols come straight from {@link DataMatrixWriter}
+ * and reuse nothing.</p>
+ *
+ * <p>One instance may be used for several runs, but not for more than one at a time.</p>
+ */
+public final class BulkWriter {
+
+  private final BarcodeFormat format;
+  private final Map<EncodeHintType,?> hints;
+  private final ExecutorService executor;
+  private final int maxPending;
+  private final Queue<BitMatrix> freeMatrices;
+
+  /**
+   * @param format {@link BarcodeFormat#QR_CODE} or {@link BarcodeFormat#DATA_MATRIX}
+   * @param hints encoding hints applied to every symbol, as for the format's
+   *  {@link com.google.zxing.Writer}; may be null
+   * @param executor runs the encoding tasks
+   * @param maxPending how many symbols may be queued or in flight at once; a few times the
+   *  number of threads in {@code executor} keeps them all busy
+   */
+  public BulkWriter(BarcodeFormat format,
+                    Map<EncodeHintType,?> hints,
+                    ExecutorService executor,
+                    int maxPending) {
+    if (format != BarcodeFormat.QR_CODE && format != BarcodeFormat.DATA_MATRIX) {
+      throw new IllegalArgumentException("Can only encode QR_CODE or DATA_MATRIX, but got " + format);
+    }
+    if (maxPending < 1) {
+      throw new IllegalArgumentException("maxPending must be positive: " + maxPending);
+    }
+    this.format = format;
+    this.hints = hints;
+    this.executor = executor;
+    this.maxPending = maxPending;
+    this.freeMatrices = new ConcurrentLinkedQueue<BitMatrix>();
+  }
+
+  /**
+   * Encodes every payload and passes it to the sink, in order. If any payload can't be encoded
+   * or the sink fails, symbols not yet encoded are abandoned and the exception is rethrown.
+   *
+   * @param contents payloads to encode
+   * @param sink receives each symbol, on the calling thread
+   * @return number of symbols written
+   * @throws WriterException if a payload can't be encoded
+   * @throws IOException if the sink fails
+   * @throws InterruptedIOException if the calling thread is interrupted while waiting
+   */
+  public int encode(Iterator<String> contents, SymbolSink sink) throws WriterException, IOException {
+    Queue<Future<BitMatrix>> pending = new ArrayDeque<Future<BitMatrix>>(maxPending);
+    Queue<String> pendingContents = new ArrayDeque<String>(maxPending);
+    int written = 0;
+    boolean done = false;
+    try {
+      while (contents.hasNext()) {
+        if (pending.size() == maxPending) {
+          emit(written++, pendingContents.remove(), pending.remove(), sink);
+        }
+        final String next = contents.next();
+        pending.add(executor.submit(new Callable<BitMatrix>() {
+          @Override
+          public BitMatrix call() throws WriterException {
+            return encodeModules(next);
+          }
+        }));
+        pendingContents.add(next);
+      }
+      while (!pending.isEmpty()) {
+        emit(written++, pendingContents.remove(), pending.remove(), sink);
+      }
+      done = true;
+    } finally {
+      if (!done) {
+        for (Future<BitMatrix> future : pending) {
+          future.cancel(true);
+        }
+      }
+    }
+    return written;
+  }
+
+  private void emit(int index, String contents, Future<BitMatrix> future, SymbolSink sink)
+      throws WriterException, IOException {
+    BitMatrix modules;
+    try {
+      modules = future.get();
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      InterruptedIOException iioe = new InterruptedIOException();
+      iioe.initCause(ie);
+      throw iioe;
+    } catch (ExecutionException ee) {
+      Throwable cause = ee.getCause();
+      if (cause instanceof WriterException) {
+        throw (WriterException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new WriterException(cause);
+    }
+    sink.accept(index, contents, modules);
+    if (format == BarcodeFormat.QR_CODE && freeMatrices.size() < maxPending) {
+      freeMatrices.add(modules);
+    }
+  }
+
+  /**
+   * Called concurrently from the executor's threads.
+   */
+  private BitMatrix encodeModules(String contents) throws WriterException {
+    if (format == BarcodeFormat.DATA_MATRIX) {
+      // Already returns one bit per module, in a matrix of its own
+      return new DataMatrixWriter().encode(contents, BarcodeFormat.DATA_MATRIX, 0, 0, hints);
+    }
+    ErrorCorrectionLevel ecLevel = ErrorCorrectionLevel.L;
+    if (hints != null) {
+      ErrorCorrectionLevel requestedECLevel = (ErrorCorrectionLevel) hints.get(EncodeHintType.ERROR_CORRECTION);
+      if (requestedECLevel != null) {
+        ecLevel = requestedECLevel;
+      }
+    }
+    ByteMatrix matrix = Encoder.encode(contents, ecLevel, hints).getMatrix();
+    BitMatrix modules = takeMatrix(matrix.getWidth(), matrix.getHeight());
+    for (int y = 0; y < matrix.getHeight(); y++) {
+      for (int x = 0; x < matrix.getWidth(); x++) {
+        if (matrix.get(x, y) == 1) {
+          modules.set(x, y);
+        }
+      }
+    }
+    return modules;
+  }
+
+  private BitMatrix takeMatrix(int width, int height) {
+    // Sizes repeat within a run, so the first free matrix nearly always fits
+    BitMatrix matrix = freeMatrices.poll();
+    if (matrix != null && matrix.getWidth() == width && matrix.getHeight() == height) {
+      matrix.clear();
+      return matrix;
+    }
+    return new BitMatrix(width, height);
+  }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.bulk;
+
+import com.google.zxing.common.BitMatrix;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Writes each symbol to its own file in a directory, named after its index: {@code 0.pbm},
+ * {@code 1.pbm}, and so on. Files are binary PBM (P4) bitmaps, or binary PGM (P5) greymaps
+ * for printers and tools that only take greyscale, with one pixel per module.
+ */
+public final class NetpbmFileSink implements SymbolSink {
+
+  private static final Charset ASCII = Charset.forName("US-ASCII");
+
+  private final File directory;
+  private final boolean greyscale;
+  private final PackedStreamSink packer;
+  private byte[] greyRow;
+
+  /**
+   * @param directory existing directory to write files into
+   * @param greyscale write PGM files instead of PBM
+   */
+  public NetpbmFileSink(File directory, boolean greyscale) {
+    this.directory = directory;
+    this.greyscale = greyscale;
+    this.packer = new PackedStreamSink(null);
+  }
+
+  @Override
+  public void accept(int index, String contents, BitMatrix modules) throws IOException {
+    int width = modules.getWidth();
+    int height = modules.getHeight();
+    File file = new File(directory, index + (greyscale ? ".pgm" : ".pbm"));
+    OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+    try {
+      if (greyscale) {
+        out.write(("P5\n" + width + ' ' + height + "\n255\n").getBytes(ASCII));
+        writeGreyRows(modules, out);
+      } else {
+        out.write(("P4\n" + width + ' ' + height + '\n').getBytes(ASCII));
+        packer.writePackedRows(modules, out);
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  private void writeGreyRows(BitMatrix modules, OutputStream out) throws IOException {
+    int width = modules.getWidth();
+    if (greyRow == null || greyRow.length < width) {
+      greyRow = new byte[width];
+    }
+    for (int y = 0; y < modules.getHeight(); y++) {
+      for (int x = 0; x < width; x++) {
+        // 0 is black in a greymap
+        greyRow[x] = modules.get(x, y) ? 0 : (byte) 0xFF;
+      }
+      out.write(greyRow, 0, width);
+    }
+  }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.bulk;
+
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * <p>Writes every symbol to one stream in a compact binary format. Each symbol is its width and
+ * height as big-endian 32-bit integers, followed by its rows top to bottom, each row packed
+ * into {@code (width + 7) / 8} bytes with the leftmost module in the most significant bit and
+ * 1 meaning dark. The rows are laid out exactly like a PBM (P4) raster.</p>
+ *
+ * <p>The stream is not buffered or closed here; callers should pass a
+ * {@link java.io.BufferedOutputStream} and close it once {@link BulkWriter#encode} returns.</p>
+ */
+public final class PackedStreamSink implements SymbolSink {
+
+  private final DataOutputStream out;
+  private BitArray row;
+  private byte[] rowBytes;
+
+  public PackedStreamSink(OutputStream out) {
+    this.out = new DataOutputStream(out);
+  }
+
+  @Override
+  public void accept(int index, String contents, BitMatrix modules) throws IOException {
+    out.writeInt(modules.getWidth());
+    out.writeInt(modules.getHeight());
+    writePackedRows(modules, out);
+    out.flush();
+  }
+
+  void writePackedRows(BitMatrix modules, OutputStream out) throws IOException {
+    int width = modules.getWidth();
+    int rowLength = (width + 7) >> 3;
+    if (rowBytes == null || rowBytes.length < rowLength) {
+      rowBytes = new byte[rowLength];
+    }
+    for (int y = 0; y < modules.getHeight(); y++) {
+      row = modules.getRow(y, row);
+      row.toBytes(0, rowBytes, 0, rowLength);
+      out.write(rowBytes, 0, rowLength);
+    }
+  }
+
+}
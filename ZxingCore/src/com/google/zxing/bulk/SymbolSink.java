@@ -0,0 +1,38 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.bulk;
+
+import com.google.zxing.common.BitMatrix;
+
+import java.io.IOException;
+
+/**
+ * Receives symbols from a {@link BulkWriter}, one call per payload, in the order the payloads
+ * were supplied and always on the thread that called {@link BulkWriter#encode}.
+ */
+public interface SymbolSink {
+
+  /**
+   * @param index position of the payload in the input, starting at 0
+   * @param contents the payload that was encoded
+   * @param modules the symbol, one bit per module and no quiet zone. It is recycled for a later
+   *  symbol once this method returns, so copy it if it must be kept.
+   * @throws IOException if the symbol can't be written out; this stops the run
+   */
+  void accept(int index, String contents, BitMatrix modules) throws IOException;
+
+}
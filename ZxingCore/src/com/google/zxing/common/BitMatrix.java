@@ -87,6 +87,21 @@ public final class BitMatrix {
     bits[offset] ^= 1 << (x & 0x1f);
   }
 
+  /**
+   * Exclusive-or (XOR): flips each bit in this {@code BitMatrix} whose corresponding
+   * bit in the mask is set, a whole word at a time.
+   *
+   * @param mask matrix of bits to flip, with the same dimensions as this one
+   */
+  public void xor(BitMatrix mask) {
+    if (width != mask.width || height != mask.height) {
+      throw new IllegalArgumentException("Input matrix dimensions do not match");
+    }
+    for (int i = 0; i < bits.length; i++) {
+      bits[i] ^= mask.bits[i];
+    }
+  }
+
   /**
    * Clears all bits (sets to false).
    */
@@ -117,10 +132,21 @@ public final class BitMatrix {
     if (bottom > this.height || right > this.width) {
       throw new IllegalArgumentException("The region must fit inside the matrix");
     }
+    int firstInt = left >> 5;
+    int lastInt = (right - 1) >> 5;
+    // Masks for the words at either end, which the region may only partly cover
+    int firstMask = -1 << (left & 0x1f);
+    int lastMask = -1 >>> (31 - ((right - 1) & 0x1f));
     for (int y = top; y < bottom; y++) {
       int offset = y * rowSize;
-      for (int x = left; x < right; x++) {
-        bits[offset + (x >> 5)] |= 1 << (x & 0x1f);
+      if (firstInt == lastInt) {
+        bits[offset + firstInt] |= firstMask & lastMask;
+      } else {
+        bits[offset + firstInt] |= firstMask;
+        for (int i = firstInt + 1; i < lastInt; i++) {
+          bits[offset + i] = -1;
+        }
+        bits[offset + lastInt] |= lastMask;
       }
     }
   }
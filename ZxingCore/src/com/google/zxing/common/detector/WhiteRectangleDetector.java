@@ -42,6 +42,8 @@ public final class WhiteRectangleDetector {
   private final int rightInit;
   private final int downInit;
   private final int upInit;
+  // Where the search started; corners are nudged towards it by centerEdges()
+  private final float centerX;
 
   /**
    * @throws NotFoundException if image is too small
@@ -54,6 +56,7 @@ public final class WhiteRectangleDetector {
     rightInit = (width + INIT_SIZE) >> 1;
     upInit = (height - INIT_SIZE) >> 1;
     downInit = (height + INIT_SIZE) >> 1;
+    centerX = width / 2.0f;
     if (upInit < 0 || leftInit < 0 || downInit >= height || rightInit >= width) {
       throw NotFoundException.getNotFoundInstance();
     }
@@ -71,6 +74,7 @@ public final class WhiteRectangleDetector {
     rightInit = x + halfsize;
     upInit = y - halfsize;
     downInit = y + halfsize;
+    centerX = x;
     if (upInit < 0 || leftInit < 0 || downInit >= height || rightInit >= width) {
       throw NotFoundException.getNotFoundInstance();
     }
@@ -287,7 +291,7 @@ public final class WhiteRectangleDetector {
     float ti = t.getX();
     float tj = t.getY();
 
-    if (yi < width / 2.0f) {
+    if (yi < centerX) {
       return new ResultPoint[]{
           new ResultPoint(ti - CORR, tj + CORR),
           new ResultPoint(zi + CORR, zj + CORR),
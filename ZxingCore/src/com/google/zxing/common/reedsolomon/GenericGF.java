@@ -71,7 +71,8 @@ public final class GenericGF {
   }
 
   private void initialize() {
-    expTable = new int[size];
+    // Holds the powers twice over, so a sum of two logs can index it directly
+    expTable = new int[2 * size - 2];
     logTable = new int[size];
     int x = 1;
     for (int i = 0; i < size; i++) {
@@ -85,6 +86,7 @@ public final class GenericGF {
     for (int i = 0; i < size-1; i++) {
       logTable[expTable[i]] = i;
     }
+    System.arraycopy(expTable, 0, expTable, size - 1, size - 1);
     // logTable[0] == 0 but this should never be used
     zero = new GenericGFPoly(this, new int[]{0});
     one = new GenericGFPoly(this, new int[]{1});
@@ -177,7 +179,7 @@ public final class GenericGF {
     if (a == 0 || b == 0) {
       return 0;
     }
-    return expTable[(logTable[a] + logTable[b]) % (size - 1)];
+    return expTable[logTable[a] + logTable[b]];
   }
 
   public int getSize() {
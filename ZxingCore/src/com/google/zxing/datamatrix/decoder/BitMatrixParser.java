@@ -18,14 +18,17 @@ package com.google.zxing.datamatrix.decoder;
 
 import com.google.zxing.FormatException;
 import com.google.zxing.common.BitMatrix;
+import com.google.zxing.datamatrix.encoder.DefaultPlacement;
 
 /**
  * @author bbrown@google.com (Brian Brown)
  */
 final class BitMatrixParser {
 
-  private final BitMatrix mappingBitMatrix;
-  private final BitMatrix readMappingMatrix;
+  // Per version, the position of each codeword bit in the symbol, as (y << 8) | x
+  private static final int[][] CODEWORD_POSITIONS = new int[30][];
+
+  private final BitMatrix bitMatrix;
   private final Version version;
 
   /**
@@ -39,8 +42,7 @@ final class BitMatrixParser {
     }
     
     version = readVersion(bitMatrix);
-    this.mappingBitMatrix = extractDataRegion(bitMatrix);
-    this.readMappingMatrix = new BitMatrix(this.mappingBitMatrix.getWidth(), this.mappingBitMatrix.getHeight());
+    this.bitMatrix = bitMatrix;
   }
 
   Version getVersion() {
@@ -65,376 +67,60 @@ final class BitMatrixParser {
   }
 
   /**
-   * <p>Reads the bits in the {@link BitMatrix} representing the mapping matrix (No alignment patterns)
-   * in the correct order in order to reconstitute the codewords bytes contained within the
-   * Data Matrix Code.</p>
+   * <p>Reads the bits in the {@link BitMatrix} in the correct order in order to reconstitute
+   * the codewords bytes contained within the Data Matrix Code.</p>
    *
    * @return bytes encoded within the Data Matrix Code
    * @throws FormatException if the exact number of bytes expected is not read
    */
   byte[] readCodewords() throws FormatException {
-
-    byte[] result = new byte[version.getTotalCodewords()];
-    int resultOffset = 0;
-    
-    int row = 4;
-    int column = 0;
-
-    int numRows = mappingBitMatrix.getHeight();
-    int numColumns = mappingBitMatrix.getWidth();
-    
-    boolean corner1Read = false;
-    boolean corner2Read = false;
-    boolean corner3Read = false;
-    boolean corner4Read = false;
-    
-    // Read all of the codewords
-    do {
-      // Check the four corner cases
-      if ((row == numRows) && (column == 0) && !corner1Read) {
-        result[resultOffset++] = (byte) readCorner1(numRows, numColumns);
-        row -= 2;
-        column +=2;
-        corner1Read = true;
-      } else if ((row == numRows-2) && (column == 0) && ((numColumns & 0x03) != 0) && !corner2Read) {
-        result[resultOffset++] = (byte) readCorner2(numRows, numColumns);
-        row -= 2;
-        column +=2;
-        corner2Read = true;
-      } else if ((row == numRows+4) && (column == 2) && ((numColumns & 0x07) == 0) && !corner3Read) {
-        result[resultOffset++] = (byte) readCorner3(numRows, numColumns);
-        row -= 2;
-        column +=2;
-        corner3Read = true;
-      } else if ((row == numRows-2) && (column == 0) && ((numColumns & 0x07) == 4) && !corner4Read) {
-        result[resultOffset++] = (byte) readCorner4(numRows, numColumns);
-        row -= 2;
-        column +=2;
-        corner4Read = true;
-      } else {
-        // Sweep upward diagonally to the right
-        do {
-          if ((row < numRows) && (column >= 0) && !readMappingMatrix.get(column, row)) {
-            result[resultOffset++] = (byte) readUtah(row, column, numRows, numColumns);
-          }
-          row -= 2;
-          column +=2;
-        } while ((row >= 0) && (column < numColumns));
-        row += 1;
-        column +=3;
-        
-        // Sweep downward diagonally to the left
-        do {
-          if ((row >= 0) && (column < numColumns) && !readMappingMatrix.get(column, row)) {
-             result[resultOffset++] = (byte) readUtah(row, column, numRows, numColumns);
-          }
-          row += 2;
-          column -=2;
-        } while ((row < numRows) && (column >= 0));
-        row += 3;
-        column +=1;
-      }
-    } while ((row < numRows) || (column < numColumns));
-
-    if (resultOffset != version.getTotalCodewords()) {
+    int[] positions = getCodewordPositions(version);
+    int totalCodewords = version.getTotalCodewords();
+    if (positions.length != totalCodewords << 3) {
       throw FormatException.getFormatInstance();
     }
-    return result;
-  }
-  
-  /**
-   * <p>Reads a bit of the mapping matrix accounting for boundary wrapping.</p>
-   * 
-   * @param row Row to read in the mapping matrix
-   * @param column Column to read in the mapping matrix
-   * @param numRows Number of rows in the mapping matrix
-   * @param numColumns Number of columns in the mapping matrix
-   * @return value of the given bit in the mapping matrix
-   */
-  boolean readModule(int row, int column, int numRows, int numColumns) {
-    // Adjust the row and column indices based on boundary wrapping
-    if (row < 0) {
-      row += numRows;
-      column += 4 - ((numRows + 4) & 0x07);
-    }
-    if (column < 0) {
-      column += numColumns;
-      row += 4 - ((numColumns + 4) & 0x07);
-    }
-    readMappingMatrix.set(column, row);
-    return mappingBitMatrix.get(column, row);
-  }
-  
-  /**
-   * <p>Reads the 8 bits of the standard Utah-shaped pattern.</p>
-   * 
-   * <p>See ISO 16022:2006, 5.8.1 Figure 6</p>
-   * 
-   * @param row Current row in the mapping matrix, anchored at the 8th bit (LSB) of the pattern
-   * @param column Current column in the mapping matrix, anchored at the 8th bit (LSB) of the pattern
-   * @param numRows Number of rows in the mapping matrix
-   * @param numColumns Number of columns in the mapping matrix
-   * @return byte from the utah shape
-   */
-  int readUtah(int row, int column, int numRows, int numColumns) {
-    int currentByte = 0;
-    if (readModule(row - 2, column - 2, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    currentByte <<= 1;
-    if (readModule(row - 2, column - 1, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    currentByte <<= 1;
-    if (readModule(row - 1, column - 2, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    currentByte <<= 1;
-    if (readModule(row - 1, column - 1, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    currentByte <<= 1;
-    if (readModule(row - 1, column, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    currentByte <<= 1;
-    if (readModule(row, column - 2, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    currentByte <<= 1;
-    if (readModule(row, column - 1, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    currentByte <<= 1;
-    if (readModule(row, column, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    return currentByte;
-  }
-  
-  /**
-   * <p>Reads the 8 bits of the special corner condition 1.</p>
-   * 
-   * <p>See ISO 16022:2006, Figure F.3</p>
-   * 
-   * @param numRows Number of rows in the mapping matrix
-   * @param numColumns Number of columns in the mapping matrix
-   * @return byte from the Corner condition 1
-   */
-  int readCorner1(int numRows, int numColumns) {
-    int currentByte = 0;
-    if (readModule(numRows - 1, 0, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    currentByte <<= 1;
-    if (readModule(numRows - 1, 1, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    currentByte <<= 1;
-    if (readModule(numRows - 1, 2, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    currentByte <<= 1;
-    if (readModule(0, numColumns - 2, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    currentByte <<= 1;
-    if (readModule(0, numColumns - 1, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    currentByte <<= 1;
-    if (readModule(1, numColumns - 1, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    currentByte <<= 1;
-    if (readModule(2, numColumns - 1, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    currentByte <<= 1;
-    if (readModule(3, numColumns - 1, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    return currentByte;
-  }
-  
-  /**
-   * <p>Reads the 8 bits of the special corner condition 2.</p>
-   * 
-   * <p>See ISO 16022:2006, Figure F.4</p>
-   * 
-   * @param numRows Number of rows in the mapping matrix
-   * @param numColumns Number of columns in the mapping matrix
-   * @return byte from the Corner condition 2
-   */
-  int readCorner2(int numRows, int numColumns) {
-    int currentByte = 0;
-    if (readModule(numRows - 3, 0, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    currentByte <<= 1;
-    if (readModule(numRows - 2, 0, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    currentByte <<= 1;
-    if (readModule(numRows - 1, 0, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    currentByte <<= 1;
-    if (readModule(0, numColumns - 4, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    currentByte <<= 1;
-    if (readModule(0, numColumns - 3, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    currentByte <<= 1;
-    if (readModule(0, numColumns - 2, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    currentByte <<= 1;
-    if (readModule(0, numColumns - 1, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    currentByte <<= 1;
-    if (readModule(1, numColumns - 1, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    return currentByte;
-  }
-  
-  /**
-   * <p>Reads the 8 bits of the special corner condition 3.</p>
-   * 
-   * <p>See ISO 16022:2006, Figure F.5</p>
-   * 
-   * @param numRows Number of rows in the mapping matrix
-   * @param numColumns Number of columns in the mapping matrix
-   * @return byte from the Corner condition 3
-   */
-  int readCorner3(int numRows, int numColumns) {
-    int currentByte = 0;
-    if (readModule(numRows - 1, 0, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    currentByte <<= 1;
-    if (readModule(numRows - 1, numColumns - 1, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    currentByte <<= 1;
-    if (readModule(0, numColumns - 3, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    currentByte <<= 1;
-    if (readModule(0, numColumns - 2, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    currentByte <<= 1;
-    if (readModule(0, numColumns - 1, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    currentByte <<= 1;
-    if (readModule(1, numColumns - 3, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    currentByte <<= 1;
-    if (readModule(1, numColumns - 2, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    currentByte <<= 1;
-    if (readModule(1, numColumns - 1, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    return currentByte;
-  }
-  
-  /**
-   * <p>Reads the 8 bits of the special corner condition 4.</p>
-   * 
-   * <p>See ISO 16022:2006, Figure F.6</p>
-   * 
-   * @param numRows Number of rows in the mapping matrix
-   * @param numColumns Number of columns in the mapping matrix
-   * @return byte from the Corner condition 4
-   */
-  int readCorner4(int numRows, int numColumns) {
-    int currentByte = 0;
-    if (readModule(numRows - 3, 0, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    currentByte <<= 1;
-    if (readModule(numRows - 2, 0, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    currentByte <<= 1;
-    if (readModule(numRows - 1, 0, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    currentByte <<= 1;
-    if (readModule(0, numColumns - 2, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    currentByte <<= 1;
-    if (readModule(0, numColumns - 1, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    currentByte <<= 1;
-    if (readModule(1, numColumns - 1, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    currentByte <<= 1;
-    if (readModule(2, numColumns - 1, numRows, numColumns)) {
-      currentByte |= 1;
-    }
-    currentByte <<= 1;
-    if (readModule(3, numColumns - 1, numRows, numColumns)) {
-      currentByte |= 1;
+    byte[] result = new byte[totalCodewords];
+    int i = 0;
+    for (int codeword = 0; codeword < totalCodewords; codeword++) {
+      int currentByte = 0;
+      for (int bit = 0; bit < 8; bit++) {
+        int position = positions[i++];
+        currentByte <<= 1;
+        if (bitMatrix.get(position & 0xFF, position >>> 8)) {
+          currentByte |= 1;
+        }
+      }
+      result[codeword] = (byte) currentByte;
     }
-    return currentByte;
+    return result;
   }
-  
+
   /**
-   * <p>Extracts the data region from a {@link BitMatrix} that contains
-   * alignment patterns.</p>
-   * 
-   * @param bitMatrix Original {@link BitMatrix} with alignment patterns
-   * @return BitMatrix that has the alignment patterns removed
+   * <p>Lays out the codewords of a version with the placement algorithm of ISO 16022:2006,
+   * 5.8.1 and Annex F, then maps each position in the mapping matrix to the module it is
+   * in once the alignment patterns between data regions are added back.</p>
+   *
+   * @return the shared positions for that version, built on first use
    */
-  BitMatrix extractDataRegion(BitMatrix bitMatrix) {
-    int symbolSizeRows = version.getSymbolSizeRows();
-    int symbolSizeColumns = version.getSymbolSizeColumns();
-    
-    if (bitMatrix.getHeight() != symbolSizeRows) {
-      throw new IllegalArgumentException("Dimension of bitMarix must match the version size");
-    }
-    
-    int dataRegionSizeRows = version.getDataRegionSizeRows();
-    int dataRegionSizeColumns = version.getDataRegionSizeColumns();
-    
-    int numDataRegionsRow = symbolSizeRows / dataRegionSizeRows;
-    int numDataRegionsColumn = symbolSizeColumns / dataRegionSizeColumns;
-    
-    int sizeDataRegionRow = numDataRegionsRow * dataRegionSizeRows;
-    int sizeDataRegionColumn = numDataRegionsColumn * dataRegionSizeColumns;
-    
-    BitMatrix bitMatrixWithoutAlignment = new BitMatrix(sizeDataRegionColumn, sizeDataRegionRow);
-    for (int dataRegionRow = 0; dataRegionRow < numDataRegionsRow; ++dataRegionRow) {
-      int dataRegionRowOffset = dataRegionRow * dataRegionSizeRows;
-      for (int dataRegionColumn = 0; dataRegionColumn < numDataRegionsColumn; ++dataRegionColumn) {
-        int dataRegionColumnOffset = dataRegionColumn * dataRegionSizeColumns;
-        for (int i = 0; i < dataRegionSizeRows; ++i) {
-          int readRowOffset = dataRegionRow * (dataRegionSizeRows + 2) + 1 + i;
-          int writeRowOffset = dataRegionRowOffset + i;
-          for (int j = 0; j < dataRegionSizeColumns; ++j) {
-            int readColumnOffset = dataRegionColumn * (dataRegionSizeColumns + 2) + 1 + j;
-            if (bitMatrix.get(readColumnOffset, readRowOffset)) {
-              int writeColumnOffset = dataRegionColumnOffset + j;
-              bitMatrixWithoutAlignment.set(writeColumnOffset, writeRowOffset);
-            }
-          }
-        }
+  private static synchronized int[] getCodewordPositions(Version version) {
+    int index = version.getVersionNumber() - 1;
+    int[] positions = CODEWORD_POSITIONS[index];
+    if (positions == null) {
+      int dataRegionSizeRows = version.getDataRegionSizeRows();
+      int dataRegionSizeColumns = version.getDataRegionSizeColumns();
+      int numRows = version.getSymbolSizeRows() / dataRegionSizeRows * dataRegionSizeRows;
+      int numColumns = version.getSymbolSizeColumns() / dataRegionSizeColumns * dataRegionSizeColumns;
+      positions = DefaultPlacement.getModulePositions(numColumns, numRows);
+      for (int i = 0; i < positions.length; i++) {
+        int row = positions[i] / numColumns;
+        int column = positions[i] % numColumns;
+        int y = row / dataRegionSizeRows * (dataRegionSizeRows + 2) + 1 + row % dataRegionSizeRows;
+        int x = column / dataRegionSizeColumns * (dataRegionSizeColumns + 2) + 1 + column % dataRegionSizeColumns;
+        positions[i] = (y << 8) | x;
       }
+      CODEWORD_POSITIONS[index] = positions;
     }
-    return bitMatrixWithoutAlignment;
+    return positions;
   }
 
-}
\ No newline at end of file
+}
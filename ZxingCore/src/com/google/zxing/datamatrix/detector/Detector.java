@@ -44,8 +44,17 @@ public final class Detector {
   private final WhiteRectangleDetector rectangleDetector;
 
   public Detector(BitMatrix image) throws NotFoundException {
+    this(image, new WhiteRectangleDetector(image));
+  }
+
+  /**
+   * @param image image to search
+   * @param rectangleDetector finds the white rectangle around the code, for example one set
+   *  to start from a particular point of the image rather than its center
+   */
+  public Detector(BitMatrix image, WhiteRectangleDetector rectangleDetector) {
     this.image = image;
-    rectangleDetector = new WhiteRectangleDetector(image);
+    this.rectangleDetector = rectangleDetector;
   }
 
   /**
@@ -25,12 +25,8 @@ final class Base256Encoder implements Encoder {
 
   @Override
   public void encode(EncoderContext context) {
-    StringBuilder buffer = new StringBuilder();
-    buffer.append('\0'); //Initialize length field
+    int start = context.pos;
     while (context.hasMoreCharacters()) {
-      char c = context.getCurrentChar();
-      buffer.append(c);
-
       context.pos++;
 
       int newMode = HighLevelEncoder.lookAheadTest(context.msg, context.pos, getEncodingMode());
@@ -39,35 +35,40 @@ final class Base256Encoder implements Encoder {
         break;
       }
     }
-    int dataCount = buffer.length() - 1;
+    int dataCount = context.pos - start;
     int lengthFieldSize = 1;
     int currentSize = context.getCodewordCount() + dataCount + lengthFieldSize;
     context.updateSymbolInfo(currentSize);
     boolean mustPad = (context.symbolInfo.dataCapacity - currentSize) > 0;
     if (context.hasMoreCharacters() || mustPad) {
       if (dataCount <= 249) {
-        buffer.setCharAt(0, (char) dataCount);
+        writeRandomized(context, dataCount);
       } else if (dataCount > 249 && dataCount <= 1555) {
-        buffer.setCharAt(0, (char) ((dataCount / 250) + 249));
-        buffer.insert(1, (char) (dataCount % 250));
+        writeRandomized(context, (dataCount / 250) + 249);
+        writeRandomized(context, dataCount % 250);
       } else {
         throw new IllegalStateException(
             "Message length not in valid ranges: " + dataCount);
       }
+    } else {
+      writeRandomized(context, 0); //Length field 0: the field fills the rest of the symbol
     }
-    for (int i = 0, c = buffer.length(); i < c; i++) {
-      context.writeCodeword(randomize255State(
-          buffer.charAt(i), context.getCodewordCount() + 1));
+    for (int i = start; i < context.pos; i++) {
+      writeRandomized(context, context.msg.charAt(i));
     }
   }
+
+  private static void writeRandomized(EncoderContext context, int value) {
+    context.writeCodeword(randomize255State(value, context.getCodewordCount() + 1));
+  }
   
-  private static char randomize255State(char ch, int codewordPosition) {
+  static int randomize255State(int ch, int codewordPosition) {
     int pseudoRandom = ((149 * codewordPosition) % 255) + 1;
     int tempVariable = ch + pseudoRandom;
     if (tempVariable <= 255) {
-      return (char) tempVariable;
+      return tempVariable;
     } else {
-      return (char) (tempVariable - 256);
+      return tempVariable - 256;
     }
   }
 
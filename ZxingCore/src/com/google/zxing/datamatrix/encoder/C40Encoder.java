@@ -79,7 +79,9 @@ class C40Encoder implements Encoder {
   }
 
   static void writeNextTriplet(EncoderContext context, StringBuilder buffer) {
-    context.writeCodewords(encodeToCodewords(buffer, 0));
+    int v = (1600 * buffer.charAt(0)) + (40 * buffer.charAt(1)) + buffer.charAt(2) + 1;
+    context.writeCodeword(v / 256);
+    context.writeCodeword(v % 256);
     buffer.delete(0, 3);
   }
 
@@ -167,14 +169,4 @@ class C40Encoder implements Encoder {
     }
   }
 
-  private static String encodeToCodewords(CharSequence sb, int startPos) {
-    char c1 = sb.charAt(startPos);
-    char c2 = sb.charAt(startPos + 1);
-    char c3 = sb.charAt(startPos + 2);
-    int v = (1600 * c1) + (40 * c2) + c3 + 1;
-    char cw1 = (char) (v / 256);
-    char cw2 = (char) (v % 256);
-    return new String(new char[] {cw1, cw2});
-  }
-
 }
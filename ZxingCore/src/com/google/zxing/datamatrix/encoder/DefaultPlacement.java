@@ -27,6 +27,9 @@ public class DefaultPlacement {
   private final int numrows;
   private final int numcols;
   private final byte[] bits;
+  // Where each codeword bit goes, when laying out positions rather than placing codewords
+  private final int[] positions;
+  private int numPositions;
 
   /**
    * Main constructor
@@ -36,11 +39,31 @@ public class DefaultPlacement {
    * @param numrows   the number of rows
    */
   public DefaultPlacement(String codewords, int numcols, int numrows) {
+    this(codewords, numcols, numrows, null);
+  }
+
+  private DefaultPlacement(String codewords, int numcols, int numrows, int[] positions) {
     this.codewords = codewords;
     this.numcols = numcols;
     this.numrows = numrows;
     this.bits = new byte[numcols * numrows];
     Arrays.fill(this.bits, (byte) -1); //Initialize with "not set" value
+    this.positions = positions;
+  }
+
+  /**
+   * Runs the placement without any codewords, to find where each bit of each codeword goes.
+   * Decoders can then read codewords straight from these positions.
+   *
+   * @param numcols the number of columns
+   * @param numrows the number of rows
+   * @return for codeword {@code i}, at {@code 8 * i} to {@code 8 * i + 7}, the positions of
+   *  its bits from most to least significant, each as {@code row * numcols + col}
+   */
+  public static int[] getModulePositions(int numcols, int numrows) {
+    DefaultPlacement placement = new DefaultPlacement(null, numcols, numrows, new int[numcols * numrows]);
+    placement.place();
+    return Arrays.copyOf(placement.positions, placement.numPositions);
   }
   
   final int getNumrows() {
@@ -127,6 +150,13 @@ public class DefaultPlacement {
       col += numcols;
       row += 4 - ((numcols + 4) % 8);
     }
+    if (positions != null) {
+      int index = (pos << 3) + bit - 1;
+      positions[index] = row * numcols + col;
+      numPositions = Math.max(numPositions, index + 1);
+      setBit(col, row, false);
+      return;
+    }
     // Note the conversion:
     int v = codewords.charAt(pos);
     v &= 1 << (8 - bit);
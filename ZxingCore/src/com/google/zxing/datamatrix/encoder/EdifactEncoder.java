@@ -34,7 +34,7 @@ final class EdifactEncoder implements Encoder {
 
       int count = buffer.length();
       if (count >= 4) {
-        context.writeCodewords(encodeToCodewords(buffer, 0));
+        writeCodewords(context, buffer);
         buffer.delete(0, 4);
 
         int newMode = HighLevelEncoder.lookAheadTest(context.msg, context.pos, getEncodingMode());
@@ -74,7 +74,8 @@ final class EdifactEncoder implements Encoder {
         throw new IllegalStateException("Count must not exceed 4");
       }
       int restChars = count - 1;
-      String encoded = encodeToCodewords(buffer, 0);
+      // Up to 4 values take up to 3 codewords
+      int encodedLength = Math.min(count, 3);
       boolean endOfSymbolReached = !context.hasMoreCharacters();
       boolean restInAscii = endOfSymbolReached && restChars <= 2;
 
@@ -83,7 +84,7 @@ final class EdifactEncoder implements Encoder {
         int available = context.symbolInfo.dataCapacity - context.getCodewordCount();
         if (available >= 3) {
           restInAscii = false;
-          context.updateSymbolInfo(context.getCodewordCount() + encoded.length());
+          context.updateSymbolInfo(context.getCodewordCount() + encodedLength);
           //available = context.symbolInfo.dataCapacity - context.getCodewordCount();
         }
       }
@@ -92,7 +93,7 @@ final class EdifactEncoder implements Encoder {
         context.resetSymbolInfo();
         context.pos -= restChars;
       } else {
-        context.writeCodewords(encoded);
+        writeCodewords(context, buffer);
       }
     } finally {
       context.signalEncoderChange(HighLevelEncoder.ASCII_ENCODATION);
@@ -109,29 +110,24 @@ final class EdifactEncoder implements Encoder {
     }
   }
 
-  private static String encodeToCodewords(CharSequence sb, int startPos) {
-    int len = sb.length() - startPos;
+  private static void writeCodewords(EncoderContext context, CharSequence sb) {
+    int len = sb.length();
     if (len == 0) {
       throw new IllegalStateException("StringBuilder must not be empty");
     }
-    char c1 = sb.charAt(startPos);
-    char c2 = len >= 2 ? sb.charAt(startPos + 1) : 0;
-    char c3 = len >= 3 ? sb.charAt(startPos + 2) : 0;
-    char c4 = len >= 4 ? sb.charAt(startPos + 3) : 0;
+    char c1 = sb.charAt(0);
+    char c2 = len >= 2 ? sb.charAt(1) : 0;
+    char c3 = len >= 3 ? sb.charAt(2) : 0;
+    char c4 = len >= 4 ? sb.charAt(3) : 0;
 
     int v = (c1 << 18) + (c2 << 12) + (c3 << 6) + c4;
-    char cw1 = (char) ((v >> 16) & 255);
-    char cw2 = (char) ((v >> 8) & 255);
-    char cw3 = (char) (v & 255);
-    StringBuilder res = new StringBuilder(3);
-    res.append(cw1);
+    context.writeCodeword((v >> 16) & 255);
     if (len >= 2) {
-      res.append(cw2);
+      context.writeCodeword((v >> 8) & 255);
     }
     if (len >= 3) {
-      res.append(cw3);
+      context.writeCodeword(v & 255);
     }
-    return res.toString();
   }
 
 }
@@ -19,6 +19,7 @@ package com.google.zxing.datamatrix.encoder;
 import com.google.zxing.Dimension;
 
 import java.nio.charset.Charset;
+import java.util.Arrays;
 
 final class EncoderContext {
 
@@ -26,7 +27,8 @@ final class EncoderContext {
   private SymbolShapeHint shape;
   private Dimension minSize;
   private Dimension maxSize;
-  StringBuilder codewords;
+  int[] codewords;
+  int codewordCount;
   int pos;
   int newEncoding;
   SymbolInfo symbolInfo;
@@ -45,7 +47,7 @@ final class EncoderContext {
     }
     this.msg = sb.toString(); //Not Unicode here!
     shape = SymbolShapeHint.FORCE_NONE;
-    this.codewords = new StringBuilder(msg.length());
+    this.codewords = new int[msg.length() + 4];
     newEncoding = -1;
   }
 
@@ -74,16 +76,19 @@ final class EncoderContext {
     return msg.charAt(pos);
   }
 
-  public void writeCodewords(String codewords) {
-    this.codewords.append(codewords);
+  public void writeCodeword(int codeword) {
+    if (codewordCount == codewords.length) {
+      codewords = Arrays.copyOf(codewords, codewordCount << 1);
+    }
+    codewords[codewordCount++] = codeword;
   }
 
-  public void writeCodeword(char codeword) {
-    this.codewords.append(codeword);
+  public int getCodewordCount() {
+    return codewordCount;
   }
 
-  public int getCodewordCount() {
-    return this.codewords.length();
+  public int[] getCodewords() {
+    return Arrays.copyOf(codewords, codewordCount);
   }
 
   public void signalEncoderChange(int encoding) {
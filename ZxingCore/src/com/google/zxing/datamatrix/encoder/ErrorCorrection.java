@@ -71,21 +71,35 @@ public final class ErrorCorrection {
 
   private static final int[] LOG;
   private static final int[] ALOG;
+  /**
+   * Logarithms of FACTORS, as each of them is nonzero.
+   */
+  private static final int[][] LOG_FACTORS;
 
   static {
-    //Create log and antilog table
+    //Create log and antilog table. The antilog table repeats, so the sum of two logarithms
+    //can index it without reducing modulo 255 first.
     LOG = new int[256];
-    ALOG = new int[255];
+    ALOG = new int[255 * 2];
 
     int p = 1;
     for (int i = 0; i < 255; i++) {
       ALOG[i] = p;
+      ALOG[i + 255] = p;
       LOG[p] = i;
       p <<= 1;
       if (p >= 256) {
         p ^= MODULO_VALUE;
       }
     }
+
+    LOG_FACTORS = new int[FACTORS.length][];
+    for (int i = 0; i < FACTORS.length; i++) {
+      LOG_FACTORS[i] = new int[FACTORS[i].length];
+      for (int j = 0; j < FACTORS[i].length; j++) {
+        LOG_FACTORS[i][j] = LOG[FACTORS[i][j]];
+      }
+    }
   }
 
   private ErrorCorrection() {
@@ -103,46 +117,38 @@ public final class ErrorCorrection {
       throw new IllegalArgumentException(
           "The number of codewords does not match the selected symbol");
     }
-    StringBuilder sb = new StringBuilder(symbolInfo.dataCapacity + symbolInfo.errorCodewords);
-    sb.append(codewords);
-    int blockCount = symbolInfo.getInterleavedBlockCount();
-    if (blockCount == 1) {
-      String ecc = createECCBlock(codewords, symbolInfo.errorCodewords);
-      sb.append(ecc);
-    } else {
-      sb.setLength(sb.capacity());
-      int[] dataSizes = new int[blockCount];
-      int[] errorSizes = new int[blockCount];
-      int[] startPos = new int[blockCount];
-      for (int i = 0; i < blockCount; i++) {
-        dataSizes[i] = symbolInfo.getDataLengthForInterleavedBlock(i + 1);
-        errorSizes[i] = symbolInfo.getErrorLengthForInterleavedBlock(i + 1);
-        startPos[i] = 0;
-        if (i > 0) {
-          startPos[i] = startPos[i - 1] + dataSizes[i];
-        }
-      }
-      for (int block = 0; block < blockCount; block++) {
-        StringBuilder temp = new StringBuilder(dataSizes[block]);
-        for (int d = block; d < symbolInfo.dataCapacity; d += blockCount) {
-          temp.append(codewords.charAt(d));
-        }
-        String ecc = createECCBlock(temp.toString(), errorSizes[block]);
-        int pos = 0;
-        for (int e = block; e < errorSizes[block] * blockCount; e += blockCount) {
-          sb.setCharAt(symbolInfo.dataCapacity + e, ecc.charAt(pos++));
-        }
-      }
+    int[] result = new int[symbolInfo.dataCapacity + symbolInfo.errorCodewords];
+    for (int i = 0; i < symbolInfo.dataCapacity; i++) {
+      result[i] = codewords.charAt(i);
     }
-    return sb.toString();
-
+    encodeECC200(result, symbolInfo);
+    return HighLevelEncoder.toString(result);
   }
 
-  private static String createECCBlock(CharSequence codewords, int numECWords) {
-    return createECCBlock(codewords, 0, codewords.length(), numECWords);
+  /**
+   * Creates the ECC200 error correction for an encoded message in place, without allocating.
+   *
+   * @param codewords  the data codewords, followed by room for the error correction codewords
+   * @param symbolInfo information about the symbol to be encoded
+   */
+  public static void encodeECC200(int[] codewords, SymbolInfo symbolInfo) {
+    if (codewords.length != symbolInfo.dataCapacity + symbolInfo.errorCodewords) {
+      throw new IllegalArgumentException(
+          "The number of codewords does not match the selected symbol");
+    }
+    int blockCount = symbolInfo.getInterleavedBlockCount();
+    for (int block = 0; block < blockCount; block++) {
+      createECCBlock(codewords, symbolInfo.dataCapacity, block, blockCount,
+                     symbolInfo.getErrorLengthForInterleavedBlock(block + 1));
+    }
   }
 
-  private static String createECCBlock(CharSequence codewords, int start, int len, int numECWords) {
+  /**
+   * Computes the error correction of one interleaved block, whose data codewords are every
+   * {@code blockCount}th one from {@code block}, and writes it after the data the same way.
+   */
+  private static void createECCBlock(int[] codewords, int dataCapacity, int block, int blockCount,
+                                     int numECWords) {
     int table = -1;
     for (int i = 0; i < FACTOR_SETS.length; i++) {
       if (FACTOR_SETS[i] == numECWords) {
@@ -154,31 +160,31 @@ public final class ErrorCorrection {
       throw new IllegalArgumentException(
           "Illegal number of error correction codewords specified: " + numECWords);
     }
-    int[] poly = FACTORS[table];
-    char[] ecc = new char[numECWords];
-    for (int i = 0; i < numECWords; i++) {
-      ecc[i] = 0;
+    int[] logPoly = LOG_FACTORS[table];
+    // Term k of the remainder is kept at first - k * blockCount, so it ends up highest term first
+    int first = dataCapacity + block + (numECWords - 1) * blockCount;
+    for (int k = 0; k < numECWords; k++) {
+      codewords[first - k * blockCount] = 0;
     }
-    for (int i = start; i < start + len; i++) {
-      int m = ecc[numECWords - 1] ^ codewords.charAt(i);
-      for (int k = numECWords - 1; k > 0; k--) {
-        if (m != 0 && poly[k] != 0) {
-          ecc[k] = (char) (ecc[k - 1] ^ ALOG[(LOG[m] + LOG[poly[k]]) % 255]);
-        } else {
-          ecc[k] = ecc[k - 1];
+    for (int d = block; d < dataCapacity; d += blockCount) {
+      int m = codewords[dataCapacity + block] ^ codewords[d];
+      int e = dataCapacity + block;
+      if (m == 0) {
+        // Just shifts the remainder
+        for (int k = numECWords - 1; k > 0; k--) {
+          codewords[e] = codewords[e + blockCount];
+          e += blockCount;
         }
-      }
-      if (m != 0 && poly[0] != 0) {
-        ecc[0] = (char) ALOG[(LOG[m] + LOG[poly[0]]) % 255];
+        codewords[e] = 0;
       } else {
-        ecc[0] = 0;
+        int logM = LOG[m];
+        for (int k = numECWords - 1; k > 0; k--) {
+          codewords[e] = codewords[e + blockCount] ^ ALOG[logM + logPoly[k]];
+          e += blockCount;
+        }
+        codewords[e] = ALOG[logM + logPoly[0]];
       }
     }
-    char[] eccReversed = new char[numECWords];
-    for (int i = 0; i < numECWords; i++) {
-      eccReversed[i] = ecc[numECWords - i - 1];
-    }
-    return String.valueOf(eccReversed);
   }
 
 }
@@ -58,11 +58,11 @@ public final class HighLevelEncoder {
   /**
    * 05 Macro
    */
-  private static final char MACRO_05 = 236;
+  static final char MACRO_05 = 236;
   /**
    * 06 Macro
    */
-  private static final char MACRO_06 = 237;
+  static final char MACRO_06 = 237;
   /**
    * mode latch to ANSI X.12 encodation mode
    */
@@ -92,15 +92,15 @@ public final class HighLevelEncoder {
   /**
    * 05 Macro header
    */
-  private static final String MACRO_05_HEADER = "[)>\u001E05\u001D";
+  static final String MACRO_05_HEADER = "[)>\u001E05\u001D";
   /**
    * 06 Macro header
    */
-  private static final String MACRO_06_HEADER = "[)>\u001E06\u001D";
+  static final String MACRO_06_HEADER = "[)>\u001E06\u001D";
   /**
    * Macro trailer
    */
-  private static final String MACRO_TRAILER = "\u001E\u0004";
+  static final String MACRO_TRAILER = "\u001E\u0004";
 
   static final int ASCII_ENCODATION = 0;
   static final int C40_ENCODATION = 1;
@@ -156,6 +156,23 @@ public final class HighLevelEncoder {
                                        Dimension minSize, 
                                        Dimension maxSize) {
     //the codewords 0..255 are encoded as Unicode characters
+    return toString(encodeHighLevelToCodewords(msg, shape, minSize, maxSize));
+  }
+
+  /**
+   * Like {@link #encodeHighLevel(String, SymbolShapeHint, Dimension, Dimension)}, but returns
+   * the codewords as they are, ready for {@link ErrorCorrection#encodeECC200(int[], SymbolInfo)}.
+   *
+   * @param msg     the message
+   * @param shape   requested shape
+   * @param minSize the minimum symbol size constraint or null for no constraint
+   * @param maxSize the maximum symbol size constraint or null for no constraint
+   * @return the data codewords, padded to the capacity of the symbol they need
+   */
+  public static int[] encodeHighLevelToCodewords(String msg,
+                                                 SymbolShapeHint shape,
+                                                 Dimension minSize,
+                                                 Dimension maxSize) {
     Encoder[] encoders = {
         new ASCIIEncoder(), new C40Encoder(), new TextEncoder(), 
         new X12Encoder(), new EdifactEncoder(),  new Base256Encoder()
@@ -183,7 +200,7 @@ public final class HighLevelEncoder {
         context.resetEncoderSignal();
       }
     }
-    int len = context.codewords.length();
+    int len = context.getCodewordCount();
     context.updateSymbolInfo();
     int capacity = context.symbolInfo.dataCapacity;
     if (len < capacity) {
@@ -192,15 +209,26 @@ public final class HighLevelEncoder {
       }
     }
     //Padding
-    StringBuilder codewords = context.codewords;
-    if (codewords.length() < capacity) {
-      codewords.append(PAD);
+    appendPadding(context, capacity);
+
+    return context.getCodewords();
+  }
+
+  static void appendPadding(EncoderContext context, int capacity) {
+    if (context.getCodewordCount() < capacity) {
+      context.writeCodeword(PAD);
     }
-    while (codewords.length() < capacity) {
-      codewords.append(randomize253State(PAD, codewords.length() + 1));
+    while (context.getCodewordCount() < capacity) {
+      context.writeCodeword(randomize253State(PAD, context.getCodewordCount() + 1));
     }
+  }
 
-    return context.codewords.toString();
+  static String toString(int[] codewords) {
+    char[] chars = new char[codewords.length];
+    for (int i = 0; i < codewords.length; i++) {
+      chars[i] = (char) codewords[i];
+    }
+    return new String(chars);
   }
 
   static int lookAheadTest(CharSequence msg, int startpos, int currentMode) {
@@ -0,0 +1,517 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.datamatrix.encoder;
+
+import com.google.zxing.Dimension;
+
+import java.util.Arrays;
+
+/**
+ * <p>DataMatrix ECC 200 data encoder that finds the shortest sequence of encodation modes for a
+ * message, rather than choosing modes with the look-ahead test of annex P as
+ * {@link HighLevelEncoder} does.</p>
+ *
+ * <p>Each character moves a shortest-path search one step on, over states made of an
+ * encodation mode and, for C40, Text, X12 and EDIFACT, how many values of their current
+ * triplet or quadruplet are pending. Costs are counted in twelfths of a codeword, so that a
+ * C40 value (2/3 codeword) and an EDIFACT value (3/4 codeword) are both whole numbers; the
+ * search takes time linear in the length of the message.</p>
+ *
+ * <p>C40, Text and X12 segments always end on a full triplet and an unlatch, except that the
+ * unlatch is left out when the data fills the symbol exactly. A Base 256 field is charged for
+ * its second length byte once it passes 249 bytes.</p>
+ */
+public final class MinimalEncoder {
+
+  // States: ASCII, then C40, Text and X12 with 0-2 values pending, EDIFACT with 0-3 values
+  // pending, and Base 256
+  private static final int ASCII = 0;
+  private static final int C40 = 1;
+  private static final int TEXT = 4;
+  private static final int X12 = 7;
+  private static final int EDIFACT = 10;
+  private static final int BASE256 = 14;
+  private static final int NUM_STATES = 15;
+
+  // One codeword, and one C40/Text/X12 or EDIFACT value, in twelfths of a codeword
+  private static final int CODEWORD = 12;
+  private static final int C40_VALUE = 8;
+  private static final int EDIFACT_VALUE = 9;
+
+  private static final int MAX_BASE256_LENGTH = 1555;
+
+  private MinimalEncoder() {
+  }
+
+  /**
+   * Performs message encoding of a DataMatrix message, using as few codewords as it can.
+   *
+   * @param msg     the message
+   * @param shape   requested shape. May be {@code SymbolShapeHint.FORCE_NONE},
+   *                {@code SymbolShapeHint.FORCE_SQUARE} or {@code SymbolShapeHint.FORCE_RECTANGLE}.
+   * @param minSize the minimum symbol size constraint or null for no constraint
+   * @param maxSize the maximum symbol size constraint or null for no constraint
+   * @return the encoded message (the char values range from 0 to 255)
+   */
+  public static String encodeHighLevel(String msg,
+                                       SymbolShapeHint shape,
+                                       Dimension minSize,
+                                       Dimension maxSize) {
+    return HighLevelEncoder.toString(encodeHighLevelToCodewords(msg, shape, minSize, maxSize));
+  }
+
+  /**
+   * Like {@link #encodeHighLevel(String, SymbolShapeHint, Dimension, Dimension)}, but returns
+   * the codewords as they are, ready for {@link ErrorCorrection#encodeECC200(int[], SymbolInfo)}.
+   *
+   * @param msg     the message
+   * @param shape   requested shape
+   * @param minSize the minimum symbol size constraint or null for no constraint
+   * @param maxSize the maximum symbol size constraint or null for no constraint
+   * @return the data codewords, padded to the capacity of the symbol they need
+   */
+  public static int[] encodeHighLevelToCodewords(String msg,
+                                                 SymbolShapeHint shape,
+                                                 Dimension minSize,
+                                                 Dimension maxSize) {
+    EncoderContext context = new EncoderContext(msg);
+    String message = context.getMessage();
+    int start = 0;
+    int end = message.length();
+    if (message.startsWith(HighLevelEncoder.MACRO_05_HEADER) && message.endsWith(HighLevelEncoder.MACRO_TRAILER)) {
+      context.writeCodeword(HighLevelEncoder.MACRO_05);
+      start = HighLevelEncoder.MACRO_05_HEADER.length();
+      end -= HighLevelEncoder.MACRO_TRAILER.length();
+    } else if (message.startsWith(HighLevelEncoder.MACRO_06_HEADER) &&
+        message.endsWith(HighLevelEncoder.MACRO_TRAILER)) {
+      context.writeCodeword(HighLevelEncoder.MACRO_06);
+      start = HighLevelEncoder.MACRO_06_HEADER.length();
+      end -= HighLevelEncoder.MACRO_TRAILER.length();
+    }
+    String data = message.substring(start, Math.max(start, end));
+    int n = data.length();
+
+    // Nodes are pos * NUM_STATES + state
+    int[] costs = new int[(n + 1) * NUM_STATES];
+    int[] previous = new int[(n + 1) * NUM_STATES];
+    int[] base256Lengths = new int[n + 1];
+    Arrays.fill(costs, Integer.MAX_VALUE);
+    costs[ASCII] = context.getCodewordCount() * CODEWORD;
+
+    for (int i = 0; i <= n; i++) {
+      int here = i * NUM_STATES;
+      // Unlatch back to ASCII, then latch from it, without consuming anything
+      for (int family = C40; family < EDIFACT; family += 3) {
+        relax(costs, previous, here + family, here + ASCII, CODEWORD);
+      }
+      for (int pending = 0; pending < 4; pending++) {
+        relax(costs, previous, here + EDIFACT + pending, here + ASCII, getEdifactUnlatchCost(pending));
+      }
+      relax(costs, previous, here + BASE256, here + ASCII, 0);
+      for (int family = C40; family < EDIFACT; family += 3) {
+        relax(costs, previous, here + ASCII, here + family, CODEWORD);
+      }
+      relax(costs, previous, here + ASCII, here + EDIFACT, CODEWORD);
+      if (relax(costs, previous, here + ASCII, here + BASE256, 2 * CODEWORD)) {
+        base256Lengths[i] = 0;
+      }
+      if (i == n) {
+        break;
+      }
+
+      int next = here + NUM_STATES;
+      char c = data.charAt(i);
+      if (i + 1 < n && HighLevelEncoder.isDigit(c) && HighLevelEncoder.isDigit(data.charAt(i + 1))) {
+        relax(costs, previous, here + ASCII, next + NUM_STATES + ASCII, CODEWORD);
+      }
+      relax(costs, previous, here + ASCII, next + ASCII,
+          HighLevelEncoder.isExtendedASCII(c) ? 2 * CODEWORD : CODEWORD);
+      for (int family = C40; family < EDIFACT; family += 3) {
+        int values = getValueCount(family, c);
+        if (values > 0) {
+          for (int pending = 0; pending < 3; pending++) {
+            relax(costs, previous, here + family + pending, next + family + (pending + values) % 3,
+                values * C40_VALUE);
+          }
+        }
+      }
+      if (c >= ' ' && c <= '^') {
+        for (int pending = 0; pending < 4; pending++) {
+          relax(costs, previous, here + EDIFACT + pending, next + EDIFACT + (pending + 1) % 4, EDIFACT_VALUE);
+        }
+      }
+      int base256Length = base256Lengths[i] + 1;
+      if (base256Length <= MAX_BASE256_LENGTH &&
+          // From 250 bytes on, the length takes a second byte
+          relax(costs, previous, here + BASE256, next + BASE256, base256Length == 250 ? 2 * CODEWORD : CODEWORD)) {
+        base256Lengths[i + 1] = base256Length;
+      }
+    }
+
+    // Pick how to end, by the size of symbol it needs, then by the codewords it takes. Besides
+    // ending in any state, the last codeword or two may be left in ASCII without an unlatch
+    // when that fills the symbol, as the decoder then returns to ASCII by itself.
+    int bestPos = -1;
+    int bestState = -1;
+    SymbolInfo bestSymbol = null;
+    int bestLength = 0;
+    int minLength = Integer.MAX_VALUE;
+    for (int pos = Math.max(0, n - 4); pos <= n; pos++) {
+      int tail = getAsciiCodewordCount(data, pos);
+      for (int state = 0; state < NUM_STATES; state++) {
+        int cost = costs[pos * NUM_STATES + state];
+        if (cost == Integer.MAX_VALUE) {
+          continue;
+        }
+        int length = getEndLength(state, cost, pos < n ? tail : 0, shape, minSize, maxSize);
+        if (length < 0) {
+          continue;
+        }
+        minLength = Math.min(minLength, length);
+        SymbolInfo symbol = SymbolInfo.lookup(length, shape, minSize, maxSize, false);
+        if (symbol != null && (bestSymbol == null || symbol.dataCapacity < bestSymbol.dataCapacity ||
+            (symbol.dataCapacity == bestSymbol.dataCapacity && length < bestLength))) {
+          bestPos = pos;
+          bestState = state;
+          bestSymbol = symbol;
+          bestLength = length;
+        }
+      }
+    }
+    if (bestSymbol == null) {
+      // Fails with the usual message
+      SymbolInfo.lookup(minLength, shape, minSize, maxSize, true);
+    }
+
+    // Walk back along the best path, then write it out forwards
+    int[] path = new int[(n + 1) * NUM_STATES];
+    int pathLength = 0;
+    int node = bestPos * NUM_STATES + bestState;
+    while (node != 0) {
+      path[pathLength++] = node;
+      node = previous[node];
+    }
+    path[pathLength++] = 0;
+    int capacity = bestSymbol.dataCapacity;
+    new Writer(data, context, capacity).write(path, pathLength);
+
+    HighLevelEncoder.appendPadding(context, capacity);
+    return context.getCodewords();
+  }
+
+  /**
+   * @param tail ASCII codewords of the characters left after this state, or 0 if there are none
+   * @return codewords the message takes when it ends in the state, or -1 if it can't
+   */
+  private static int getEndLength(int state, int cost, int tail,
+                                  SymbolShapeHint shape, Dimension minSize, Dimension maxSize) {
+    if (state == ASCII || state == BASE256) {
+      return tail == 0 ? cost / CODEWORD : -1;
+    }
+    if (state < EDIFACT) {
+      int pending = (state - C40) % 3;
+      if (pending == 1 || (pending == 2 && (state >= X12 || tail > 0))) {
+        return -1;
+      }
+      // Two values are padded to a triplet with a Shift 1
+      int length = (cost + pending / 2 * C40_VALUE) / CODEWORD;
+      if (tail > 1) {
+        return -1;
+      }
+      // No unlatch if the symbol is full, whether or not one last ASCII codeword follows
+      length += tail;
+      SymbolInfo exact = SymbolInfo.lookup(length, shape, minSize, maxSize, false);
+      if (exact == null || exact.dataCapacity != length) {
+        if (tail > 0) {
+          return -1;
+        }
+        length++;
+      }
+      return length;
+    }
+    if (state == EDIFACT) {
+      int length = cost / CODEWORD;
+      if (tail > 2) {
+        return -1;
+      }
+      SymbolInfo symbol = SymbolInfo.lookup(length + tail, shape, minSize, maxSize, false);
+      if (symbol == null || symbol.dataCapacity - length > 2) {
+        if (tail > 0) {
+          return -1;
+        }
+        length++;
+      }
+      return length + tail;
+    }
+    return tail == 0 ? (cost + getEdifactUnlatchCost(state - EDIFACT)) / CODEWORD : -1;
+  }
+
+  /**
+   * @return how many ASCII codewords the rest of the message takes from {@code pos}
+   */
+  private static int getAsciiCodewordCount(String data, int pos) {
+    int count = 0;
+    int i = pos;
+    while (i < data.length()) {
+      char c = data.charAt(i);
+      if (i + 1 < data.length() && HighLevelEncoder.isDigit(c) && HighLevelEncoder.isDigit(data.charAt(i + 1))) {
+        i += 2;
+        count++;
+      } else {
+        i++;
+        count += HighLevelEncoder.isExtendedASCII(c) ? 2 : 1;
+      }
+    }
+    return count;
+  }
+
+  private static boolean relax(int[] costs, int[] previous, int from, int to, int cost) {
+    int fromCost = costs[from];
+    if (fromCost == Integer.MAX_VALUE) {
+      return false;
+    }
+    int total = fromCost + cost;
+    if (total < costs[to]) {
+      costs[to] = total;
+      previous[to] = from;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * @return what the unlatch and the pending values with it cost, beyond what the values
+   *  already cost
+   */
+  private static int getEdifactUnlatchCost(int pending) {
+    // pending values plus the unlatch take 1, 2, 3 and 3 codewords
+    return getEdifactUnlatchCodewords(pending) * CODEWORD - pending * EDIFACT_VALUE;
+  }
+
+  private static int getEdifactUnlatchCodewords(int pending) {
+    return ((pending + 1) * 6 + 7) / 8;
+  }
+
+  /**
+   * @return how many values the character takes in that mode, or 0 if it can't be encoded
+   */
+  private static int getValueCount(int family, char c) {
+    if (family == X12) {
+      return c == '\r' || c == '*' || c == '>' || c == ' ' ||
+          (c >= '0' && c <= '9') || (c >= 'A' && c <= 'Z') ? 1 : 0;
+    }
+    if (c >= 128) {
+      // Shift 2, Upper Shift
+      return 2 + getValueCount(family, (char) (c - 128));
+    }
+    if (c == ' ' || (c >= '0' && c <= '9')) {
+      return 1;
+    }
+    if (family == C40) {
+      return c >= 'A' && c <= 'Z' ? 1 : 2;
+    }
+    return c >= 'a' && c <= 'z' ? 1 : 2;
+  }
+
+  /**
+   * Writes the codewords along a path found by the search.
+   */
+  private static final class Writer {
+
+    private final String data;
+    private final EncoderContext context;
+    private final int capacity;
+    private final C40Encoder c40Encoder = new C40Encoder();
+    private final C40Encoder textEncoder = new TextEncoder();
+    private final C40Encoder x12Encoder = new X12Encoder();
+    private final StringBuilder values = new StringBuilder();
+
+    Writer(String data, EncoderContext context, int capacity) {
+      this.data = data;
+      this.context = context;
+      this.capacity = capacity;
+    }
+
+    /**
+     * @param path nodes as {@code pos * NUM_STATES + state}, from the end back to the start
+     */
+    void write(int[] path, int pathLength) {
+      for (int i = pathLength - 1; i > 0; i--) {
+        int from = path[i];
+        int to = path[i - 1];
+        int fromPos = from / NUM_STATES;
+        int fromState = from % NUM_STATES;
+        int toPos = to / NUM_STATES;
+        int toState = to % NUM_STATES;
+        if (fromPos == toPos) {
+          if (fromState == ASCII) {
+            latch(toState);
+          } else {
+            unlatch(fromState, false, 0);
+          }
+        } else if (toState == ASCII) {
+          writeAscii(fromPos, toPos);
+        } else if (toState == BASE256) {
+          values.append(data.charAt(fromPos));
+        } else if (toState >= EDIFACT) {
+          char c = data.charAt(fromPos);
+          values.append(c >= '@' ? (char) (c - 64) : c);
+          if (values.length() == 4) {
+            writeEdifact(values);
+            values.setLength(0);
+          }
+        } else {
+          getC40Encoder(toState).encodeChar(data.charAt(fromPos), values);
+          while (values.length() >= 3) {
+            writeTriplet(values);
+            values.delete(0, 3);
+          }
+        }
+      }
+      int endPos = path[0] / NUM_STATES;
+      int endState = path[0] % NUM_STATES;
+      int tail = getAsciiCodewordCount(data, endPos);
+      if (endState != ASCII) {
+        unlatch(endState, true, tail);
+      }
+      int i = endPos;
+      while (i < data.length()) {
+        int next = i + 1 < data.length() && HighLevelEncoder.isDigit(data.charAt(i)) &&
+            HighLevelEncoder.isDigit(data.charAt(i + 1)) ? i + 2 : i + 1;
+        writeAscii(i, next);
+        i = next;
+      }
+    }
+
+    private void latch(int state) {
+      values.setLength(0);
+      switch (state) {
+        case C40:
+          context.writeCodeword(HighLevelEncoder.LATCH_TO_C40);
+          break;
+        case TEXT:
+          context.writeCodeword(HighLevelEncoder.LATCH_TO_TEXT);
+          break;
+        case X12:
+          context.writeCodeword(HighLevelEncoder.LATCH_TO_ANSIX12);
+          break;
+        case EDIFACT:
+          context.writeCodeword(HighLevelEncoder.LATCH_TO_EDIFACT);
+          break;
+        case BASE256:
+          context.writeCodeword(HighLevelEncoder.LATCH_TO_BASE256);
+          break;
+        default:
+          throw new IllegalStateException("Illegal mode: " + state);
+      }
+    }
+
+    /**
+     * @param tail ASCII codewords that follow at the end of the data without an unlatch, if
+     *  the symbol has room for only those
+     */
+    private void unlatch(int state, boolean endOfData, int tail) {
+      if (state == BASE256) {
+        writeBase256();
+      } else if (state >= EDIFACT) {
+        if (capacity - context.getCodewordCount() <= 2) {
+          // The decoder returns to ASCII by itself this close to the end of the symbol
+          for (int i = 0; i < values.length(); i++) {
+            writeAscii(values.charAt(i) < ' ' ? (char) (values.charAt(i) + 64) : values.charAt(i));
+          }
+        } else {
+          values.append((char) 31); //Unlatch
+          writeEdifact(values);
+        }
+      } else {
+        if (values.length() == 2 && endOfData) {
+          values.append('\0'); //Shift 1
+          writeTriplet(values);
+        }
+        if (!endOfData || context.getCodewordCount() + tail < capacity) {
+          context.writeCodeword(HighLevelEncoder.C40_UNLATCH);
+        }
+      }
+      values.setLength(0);
+    }
+
+    private C40Encoder getC40Encoder(int state) {
+      if (state < TEXT) {
+        return c40Encoder;
+      }
+      return state < X12 ? textEncoder : x12Encoder;
+    }
+
+    private void writeAscii(int fromPos, int toPos) {
+      if (toPos - fromPos == 2) {
+        int num = (data.charAt(fromPos) - '0') * 10 + (data.charAt(fromPos + 1) - '0');
+        context.writeCodeword(num + 130);
+      } else {
+        writeAscii(data.charAt(fromPos));
+      }
+    }
+
+    private void writeAscii(char c) {
+      if (HighLevelEncoder.isExtendedASCII(c)) {
+        context.writeCodeword(HighLevelEncoder.UPPER_SHIFT);
+        context.writeCodeword(c - 128 + 1);
+      } else {
+        context.writeCodeword(c + 1);
+      }
+    }
+
+    private void writeTriplet(CharSequence triplet) {
+      int v = (1600 * triplet.charAt(0)) + (40 * triplet.charAt(1)) + triplet.charAt(2) + 1;
+      context.writeCodeword(v / 256);
+      context.writeCodeword(v % 256);
+    }
+
+    private void writeEdifact(CharSequence quadruplet) {
+      int len = quadruplet.length();
+      int v = 0;
+      for (int i = 0; i < 4; i++) {
+        v = (v << 6) + (i < len ? quadruplet.charAt(i) : 0);
+      }
+      context.writeCodeword((v >> 16) & 255);
+      if (len >= 2) {
+        context.writeCodeword((v >> 8) & 255);
+      }
+      if (len >= 3) {
+        context.writeCodeword(v & 255);
+      }
+    }
+
+    private void writeBase256() {
+      int dataCount = values.length();
+      if (dataCount <= 249) {
+        writeRandomized(dataCount);
+      } else {
+        writeRandomized((dataCount / 250) + 249);
+        writeRandomized(dataCount % 250);
+      }
+      for (int i = 0; i < dataCount; i++) {
+        writeRandomized(values.charAt(i));
+      }
+    }
+
+    private void writeRandomized(int value) {
+      context.writeCodeword(Base256Encoder.randomize255State(value, context.getCodewordCount() + 1));
+    }
+
+  }
+
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.datamatrix.encoder;
+
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * <p>Turns the data codewords of a message into a symbol of one size: adds the error
+ * correction, places the codewords, and draws the finder and timing patterns around each
+ * data region.</p>
+ *
+ * <p>Where each codeword bit goes, and the patterns around the data, are worked out once per
+ * {@link SymbolInfo} and shared. Each instance has its own codeword buffer, so writing many
+ * messages of the same size through one instance into the same {@link BitMatrix} allocates
+ * nothing. Instances are not thread-safe.</p>
+ */
+public final class SymbolWriter {
+
+  private static final Map<SymbolInfo,Layout> LAYOUTS = new WeakHashMap<SymbolInfo,Layout>();
+
+  private final SymbolInfo symbolInfo;
+  private final Layout layout;
+  // Data codewords, then error correction
+  private final int[] codewords;
+  private final BitArray row;
+
+  public SymbolWriter(SymbolInfo symbolInfo) {
+    this.symbolInfo = symbolInfo;
+    this.layout = getLayout(symbolInfo);
+    this.codewords = new int[symbolInfo.getCodewordCount()];
+    this.row = new BitArray(symbolInfo.getSymbolWidth());
+  }
+
+  public SymbolInfo getSymbolInfo() {
+    return symbolInfo;
+  }
+
+  /**
+   * @param dataCodewords data codewords, padded to the capacity of the symbol, as from
+   *  {@link HighLevelEncoder#encodeHighLevelToCodewords(String, SymbolShapeHint,
+   *  com.google.zxing.Dimension, com.google.zxing.Dimension)}
+   * @return the symbol, one bit per module
+   */
+  public BitMatrix write(int[] dataCodewords) {
+    BitMatrix matrix = new BitMatrix(symbolInfo.getSymbolWidth(), symbolInfo.getSymbolHeight());
+    write(dataCodewords, matrix);
+    return matrix;
+  }
+
+  /**
+   * @param dataCodewords data codewords, padded to the capacity of the symbol
+   * @param matrix receives the symbol, one bit per module, replacing what it held; it must be
+   *  exactly the size of the symbol
+   */
+  public void write(int[] dataCodewords, BitMatrix matrix) {
+    if (dataCodewords.length != symbolInfo.dataCapacity) {
+      throw new IllegalArgumentException(
+          "The number of codewords does not match the selected symbol");
+    }
+    int width = symbolInfo.getSymbolWidth();
+    int height = symbolInfo.getSymbolHeight();
+    if (matrix.getWidth() != width || matrix.getHeight() != height) {
+      throw new IllegalArgumentException("Matrix must be " + width + 'x' + height);
+    }
+    System.arraycopy(dataCodewords, 0, codewords, 0, dataCodewords.length);
+    ErrorCorrection.encodeECC200(codewords, symbolInfo);
+
+    for (int y = 0; y < height; y++) {
+      matrix.setRow(y, layout.patterns.getRow(y, row));
+    }
+    int[] positions = layout.positions;
+    for (int i = 0; i < codewords.length; i++) {
+      int codeword = codewords[i];
+      int offset = i << 3;
+      for (int bit = 0; codeword != 0; bit++) {
+        if ((codeword & 0x80) != 0) {
+          int position = positions[offset + bit];
+          matrix.set(position & 0xFF, position >>> 8);
+        }
+        codeword = (codeword << 1) & 0xFF;
+      }
+    }
+  }
+
+  private static synchronized Layout getLayout(SymbolInfo symbolInfo) {
+    Layout layout = LAYOUTS.get(symbolInfo);
+    if (layout == null) {
+      layout = new Layout(symbolInfo);
+      LAYOUTS.put(symbolInfo, layout);
+    }
+    return layout;
+  }
+
+  /**
+   * Where the bits of each codeword go in a symbol of one size, and its other modules.
+   */
+  private static final class Layout {
+
+    // For codeword i, at 8 * i to 8 * i + 7, its bits' modules from most to least
+    // significant, as (y << 8) | x
+    private final int[] positions;
+    // The finder and timing patterns, and the fixed pattern in the lower right corner of the
+    // data when no codeword covers it
+    private final BitMatrix patterns;
+
+    Layout(SymbolInfo symbolInfo) {
+      int symbolWidth = symbolInfo.getSymbolDataWidth();
+      int symbolHeight = symbolInfo.getSymbolDataHeight();
+      int[] placement = DefaultPlacement.getModulePositions(symbolWidth, symbolHeight);
+      int[] rows = new int[symbolHeight];
+      int[] columns = new int[symbolWidth];
+      int matrixY = 0;
+      for (int y = 0; y < symbolHeight; y++) {
+        if ((y % symbolInfo.matrixHeight) == 0) {
+          matrixY++;
+        }
+        rows[y] = matrixY++;
+        if ((y % symbolInfo.matrixHeight) == symbolInfo.matrixHeight - 1) {
+          matrixY++;
+        }
+      }
+      int matrixX = 0;
+      for (int x = 0; x < symbolWidth; x++) {
+        if ((x % symbolInfo.matrixWidth) == 0) {
+          matrixX++;
+        }
+        columns[x] = matrixX++;
+        if ((x % symbolInfo.matrixWidth) == symbolInfo.matrixWidth - 1) {
+          matrixX++;
+        }
+      }
+
+      positions = new int[placement.length];
+      boolean cornerCovered = false;
+      for (int i = 0; i < placement.length; i++) {
+        int x = placement[i] % symbolWidth;
+        int y = placement[i] / symbolWidth;
+        positions[i] = (rows[y] << 8) | columns[x];
+        if (x == symbolWidth - 1 && y == symbolHeight - 1) {
+          cornerCovered = true;
+        }
+      }
+
+      patterns = new BitMatrix(symbolInfo.getSymbolWidth(), symbolInfo.getSymbolHeight());
+      for (int y = 0; y < symbolHeight; y++) {
+        // Fill the top edge with alternate 0 / 1
+        if ((y % symbolInfo.matrixHeight) == 0) {
+          for (int x = 0; x < symbolInfo.getSymbolWidth(); x += 2) {
+            patterns.set(x, rows[y] - 1);
+          }
+        }
+        for (int x = 0; x < symbolWidth; x++) {
+          // Fill the left edge with full 1
+          if ((x % symbolInfo.matrixWidth) == 0) {
+            patterns.set(columns[x] - 1, rows[y]);
+          }
+          // Fill the right edge with alternate 0 / 1
+          if ((x % symbolInfo.matrixWidth) == symbolInfo.matrixWidth - 1 && (y % 2) == 0) {
+            patterns.set(columns[x] + 1, rows[y]);
+          }
+        }
+        // Fill the bottom edge with full 1
+        if ((y % symbolInfo.matrixHeight) == symbolInfo.matrixHeight - 1) {
+          for (int x = 0; x < symbolInfo.getSymbolWidth(); x++) {
+            patterns.set(x, rows[y] + 1);
+          }
+        }
+      }
+      if (!cornerCovered) {
+        patterns.set(columns[symbolWidth - 1], rows[symbolHeight - 1]);
+        patterns.set(columns[symbolWidth - 2], rows[symbolHeight - 2]);
+      }
+    }
+
+  }
+
+}
@@ -28,7 +28,9 @@ import com.google.zxing.ResultMetadataType;
 import com.google.zxing.ResultPoint;
 import com.google.zxing.common.BitMatrix;
 import com.google.zxing.common.DecoderResult;
+import com.google.zxing.common.DetectorResult;
 import com.google.zxing.maxicode.decoder.Decoder;
+import com.google.zxing.maxicode.detector.Detector;
 
 import java.util.Map;
 
@@ -64,14 +66,17 @@ public final class MaxiCodeReader implements Reader {
   public Result decode(BinaryBitmap image, Map<DecodeHintType,?> hints)
       throws NotFoundException, ChecksumException, FormatException {
     DecoderResult decoderResult;
+    ResultPoint[] points;
     if (hints != null && hints.containsKey(DecodeHintType.PURE_BARCODE)) {
       BitMatrix bits = extractPureBits(image.getBlackMatrix());
       decoderResult = decoder.decode(bits, hints);
+      points = NO_POINTS;
     } else {
-      throw NotFoundException.getNotFoundInstance();
+      DetectorResult detectorResult = new Detector(image.getBlackMatrix()).detect();
+      decoderResult = decoder.decode(detectorResult.getBits(), hints);
+      points = detectorResult.getPoints();
     }
 
-    ResultPoint[] points = NO_POINTS;
     Result result = new Result(decoderResult.getText(), decoderResult.getRawBytes(), points, BarcodeFormat.MAXICODE);
 
     String ecLevel = decoderResult.getECLevel();
@@ -0,0 +1,735 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.maxicode.detector;
+
+import com.google.zxing.NotFoundException;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.DetectorResult;
+import com.google.zxing.common.PerspectiveTransform;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * <p>Encapsulates logic that can detect a MaxiCode in an image, even if it is rotated, scaled or
+ * seen at an angle.</p>
+ *
+ * <p>The bull's eye in the middle of the symbol is found from the runs of its three dark rings
+ * along a row, then confirmed along a column. The edges of the rings, measured along rays from
+ * the center, give the ellipse the rings appear as, and so the scale and skew of the symbol. The
+ * modules with fixed colors around the bull's eye give its rotation. Rotation, scale and
+ * perspective are then refined to where modules look most uniform, over more and more of the
+ * symbol, then each corner on its own, and the 33 rows of 30 modules are read off.</p>
+ */
+public final class Detector {
+
+  private static final int MATRIX_WIDTH = 30;
+  private static final int MATRIX_HEIGHT = 33;
+  // Distance between rows of modules, in module widths
+  private static final float ROW_HEIGHT = (float) (Math.sqrt(3.0) / 2.0);
+  private static final float SYMBOL_HEIGHT = MATRIX_HEIGHT * ROW_HEIGHT;
+  // Center of the bull's eye, in module widths from the top left of the symbol
+  private static final float CENTER_X = 14.5f;
+  private static final float CENTER_Y = 16.5f * ROW_HEIGHT;
+  // Radii of the edges of the bull's eye, from its light center outwards, in module widths
+  private static final float[] RING_EDGES = {0.581f, 1.346f, 2.122f, 2.886f, 3.646f, 4.411f};
+  private static final float RING_WIDTH = (RING_EDGES[5] - RING_EDGES[0]) / 5.0f;
+  // Modules around the bull's eye with fixed colors, as x, y, and 1 if dark
+  private static final int[][] ORIENTATION_MODULES = {
+      {10, 9, 0}, {11, 9, 0}, {11, 10, 0},
+      {17, 9, 1}, {17, 10, 1}, {18, 10, 1},
+      {7, 15, 0}, {7, 16, 1}, {8, 16, 0},
+      {20, 16, 0}, {21, 16, 1}, {20, 17, 0},
+      {10, 22, 0}, {11, 22, 1}, {10, 23, 0},
+      {17, 22, 0}, {16, 23, 1}, {17, 23, 0},
+  };
+  private static final int MIN_ORIENTATION_MATCHES = 16;
+  // The symbol is assumed to be at least this fraction of the image's height
+  private static final int MAX_SYMBOLS_PER_HEIGHT = 8;
+  private static final int RAYS = 32;
+  // Points sampled in each module to judge how well the grid fits, in module widths from its center
+  private static final float PROBE_RADIUS = 0.3f;
+  private static final int PROBES = 7;
+  // Radii, in module widths from the bull's eye, of the parts of the symbol the grid is fit to in turn
+  private static final float[] FIT_RADII = {8.0f, 12.0f, 16.0f, Float.MAX_VALUE};
+  // Least fraction of the points sampled in the middle of the symbol that must agree with their
+  // module's center, as first placed and after the first fit, for the fit to go on
+  private static final float MIN_PLACED_AGREEMENT = 0.75f;
+  private static final float MIN_FIT_AGREEMENT = 0.8f;
+  // Most bull's eyes to look at closely, and to fit a grid to, before giving up on an image
+  private static final int MAX_CANDIDATES = 64;
+  private static final int MAX_FITS = 4;
+  // Searches refining the fit of the grid, as the index of the parameter in the fit, the step,
+  // and how many steps to try either way
+  private static final float[][] FIT_SEARCHES = {
+      {0, 0.5f, 6}, {2, 0.002f, 6}, {3, 0.002f, 6}, {1, 0.01f, 4},
+      {0, 0.25f, 2}, {2, 0.0005f, 4}, {3, 0.0005f, 4}, {1, 0.005f, 2},
+  };
+
+  // Weights giving, by least squares from the six edges found along a ray, the scale along the
+  // ray, how far dark areas have spread, and how far the true center is along the ray
+  private static final float[][] EDGE_FIT = new float[3][6];
+  private static final float[] MODULE_PROBES;
+  // Number of modules, nearest first, within each radius
+  private static final int[] MODULES_WITHIN = new int[FIT_RADII.length];
+
+  static {
+    double[][] normal = new double[3][3];
+    for (int k = 0; k < 6; k++) {
+      double[] row = {RING_EDGES[k], edgeSign(k), 1.0};
+      for (int i = 0; i < 3; i++) {
+        for (int j = 0; j < 3; j++) {
+          normal[i][j] += row[i] * row[j];
+        }
+      }
+    }
+    double[][] inverse = invert(normal);
+    for (int k = 0; k < 6; k++) {
+      double[] row = {RING_EDGES[k], edgeSign(k), 1.0};
+      for (int i = 0; i < 3; i++) {
+        double weight = 0.0;
+        for (int j = 0; j < 3; j++) {
+          weight += inverse[i][j] * row[j];
+        }
+        EDGE_FIT[i][k] = (float) weight;
+      }
+    }
+
+    List<float[]> modules = new ArrayList<float[]>();
+    for (int y = 0; y < MATRIX_HEIGHT; y++) {
+      for (int x = 0; x < MATRIX_WIDTH; x++) {
+        if ((y & 0x01) == 0 || x < MATRIX_WIDTH - 1) {
+          // Odd rows are one module shorter
+          modules.add(new float[] {moduleX(x, y), moduleY(y)});
+        }
+      }
+    }
+    // Nearest the bull's eye first, so that the grid can be fit to the middle of the symbol first
+    Collections.sort(modules, new Comparator<float[]>() {
+      @Override
+      public int compare(float[] a, float[] b) {
+        return Float.compare(distanceFromCenter(a), distanceFromCenter(b));
+      }
+    });
+    MODULE_PROBES = new float[2 * PROBES * modules.size()];
+    int probe = 0;
+    for (float[] module : modules) {
+      MODULE_PROBES[probe++] = module[0];
+      MODULE_PROBES[probe++] = module[1];
+      for (int i = 0; i < PROBES - 1; i++) {
+        double angle = i * Math.PI / 3.0;
+        MODULE_PROBES[probe++] = module[0] + PROBE_RADIUS * (float) Math.cos(angle);
+        MODULE_PROBES[probe++] = module[1] + PROBE_RADIUS * (float) Math.sin(angle);
+      }
+    }
+    for (int i = 0; i < FIT_RADII.length; i++) {
+      int count = 0;
+      while (count < modules.size() && distanceFromCenter(modules.get(count)) <= FIT_RADII[i]) {
+        count++;
+      }
+      MODULES_WITHIN[i] = count;
+    }
+  }
+
+  private final BitMatrix image;
+  // Bull's eyes looked at, and grids fit, so far in this detection
+  private int candidates;
+  private int fits;
+
+  public Detector(BitMatrix image) {
+    this.image = image;
+  }
+
+  /**
+   * Detects a MaxiCode in an image.
+   *
+   * @return {@link DetectorResult} encapsulating the 33 rows of 30 modules, and the corners of the
+   *  symbol in the image
+   * @throws NotFoundException if no MaxiCode can be found
+   */
+  public DetectorResult detect() throws NotFoundException {
+    candidates = 0;
+    fits = 0;
+    int width = image.getWidth();
+    int height = image.getHeight();
+    // Step by at most about half a module of the smallest symbol looked for
+    int rowStep = Math.max(1, height / (2 * MAX_SYMBOLS_PER_HEIGHT * MATRIX_HEIGHT));
+    BitArray row = new BitArray(width);
+    int[] edges = new int[width + 2];
+    List<ResultPoint> tried = new ArrayList<ResultPoint>();
+    for (int y = rowStep / 2; y < height; y += rowStep) {
+      row = image.getRow(y, row);
+      // Edges of the runs in the row, starting with a dark one
+      int edgeCount = 0;
+      int x = row.getNextSet(0);
+      while (x < width) {
+        edges[edgeCount++] = x;
+        x = row.getNextUnset(x);
+        edges[edgeCount++] = x;
+        x = row.getNextSet(x);
+      }
+      edges[edgeCount] = width;
+      for (int i = 0; i + 11 <= edgeCount; i += 2) {
+        if (!foundPatternCross(edges, i)) {
+          continue;
+        }
+        float total = edges[i + 11] - edges[i];
+        float centerX = (edges[i + 5] + edges[i + 6]) / 2.0f;
+        float centerY = crossCheck((int) centerX, y, 0, 1, total);
+        if (Float.isNaN(centerY)) {
+          continue;
+        }
+        centerX = crossCheck((int) centerX, (int) centerY, 1, 0, total);
+        if (Float.isNaN(centerX)) {
+          continue;
+        }
+        ResultPoint center = new ResultPoint(centerX, centerY);
+        if (alreadyTried(tried, center, total)) {
+          continue;
+        }
+        tried.add(center);
+        DetectorResult result = detectAt(centerX, centerY, total / (2.0f * RING_EDGES[5]));
+        if (result != null) {
+          return result;
+        }
+        if (++candidates == MAX_CANDIDATES || fits == MAX_FITS) {
+          // Images without a MaxiCode shouldn't cost every reader that looks at them much more
+          throw NotFoundException.getNotFoundInstance();
+        }
+      }
+    }
+    throw NotFoundException.getNotFoundInstance();
+  }
+
+  /**
+   * @param edges edges of runs, the first of each pair starting a dark run
+   * @param i index of the edge starting the outer dark ring
+   * @return true if the 11 runs from there look like a line through the bull's eye
+   */
+  private static boolean foundPatternCross(int[] edges, int i) {
+    float moduleSize = (edges[i + 11] - edges[i]) / (2.0f * RING_EDGES[5]);
+    float ring = moduleSize * RING_WIDTH;
+    float center = moduleSize * 2.0f * RING_EDGES[0];
+    for (int j = 0; j < 11; j++) {
+      int run = edges[i + j + 1] - edges[i + j];
+      if (j == 5) {
+        // The center is narrower along lines that miss it a little
+        if (run < center / 2.0f || run > center * 2.0f) {
+          return false;
+        }
+      } else if (Math.abs(run - ring) >= ring / 2.0f) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Looks for the runs of the bull's eye along a line through a point in its center.
+   *
+   * @param x starting point, which should be in the light center of the bull's eye
+   * @param y starting point
+   * @param dx direction to look in
+   * @param dy direction to look in
+   * @param total expected distance across the bull's eye
+   * @return the middle of the center along the line, as an x or y coordinate, or NaN if the
+   *  runs along it don't look like the bull's eye
+   */
+  private float crossCheck(int x, int y, int dx, int dy, float total) {
+    if (image.get(x, y)) {
+      return Float.NaN;
+    }
+    int maxRun = (int) total;
+    int[] before = runsFrom(x, y, -dx, -dy, maxRun);
+    int[] after = runsFrom(x, y, dx, dy, maxRun);
+    if (before == null || after == null) {
+      return Float.NaN;
+    }
+    int[] edges = new int[12];
+    for (int j = 0; j < 5; j++) {
+      edges[j + 1] = edges[j] + before[5 - j];
+    }
+    edges[6] = edges[5] + before[0] + after[0] - 1;
+    for (int j = 6; j < 11; j++) {
+      edges[j + 1] = edges[j] + after[j - 5];
+    }
+    if (Math.abs(edges[11] - total) > total / 2.0f || !foundPatternCross(edges, 0)) {
+      return Float.NaN;
+    }
+    // The center run ends at the starting point, less what was seen before it
+    int start = dx == 0 ? y : x;
+    return start - before[0] + 1 + (before[0] + after[0] - 1) / 2.0f;
+  }
+
+  /**
+   * @return lengths of the light run from a point and of the 5 runs after it, or null if the line
+   *  leaves the image or a run is longer than maxRun
+   */
+  private int[] runsFrom(int x, int y, int dx, int dy, int maxRun) {
+    int[] runs = new int[6];
+    int width = image.getWidth();
+    int height = image.getHeight();
+    boolean dark = false;
+    int run = 0;
+    while (run < 6) {
+      if (x < 0 || y < 0 || x >= width || y >= height || runs[run] > maxRun) {
+        return null;
+      }
+      if (image.get(x, y) == dark) {
+        runs[run]++;
+        x += dx;
+        y += dy;
+      } else {
+        dark = !dark;
+        run++;
+      }
+    }
+    return runs;
+  }
+
+  private static boolean alreadyTried(List<ResultPoint> tried, ResultPoint center, float total) {
+    for (ResultPoint point : tried) {
+      if (ResultPoint.distance(point, center) < total / 4.0f) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @param centerX approximate center of a bull's eye
+   * @param centerY approximate center of a bull's eye
+   * @param moduleSize approximate width of a module
+   * @return the symbol around the bull's eye, or null if there doesn't seem to be one
+   */
+  private DetectorResult detectAt(float centerX, float centerY, float moduleSize) {
+    float[] scales = new float[RAYS];
+    float[] shifts = new float[RAYS];
+    boolean centered = false;
+    for (int i = 0; i < 4 && !centered; i++) {
+      int found = 0;
+      // Shifts along the rays give how far off the center is, by least squares
+      float sumXX = 0.0f;
+      float sumXY = 0.0f;
+      float sumYY = 0.0f;
+      float sumX = 0.0f;
+      float sumY = 0.0f;
+      for (int ray = 0; ray < RAYS; ray++) {
+        double angle = 2.0 * Math.PI * ray / RAYS;
+        float dx = (float) Math.cos(angle);
+        float dy = (float) Math.sin(angle);
+        if (measureRay(centerX, centerY, dx, dy, moduleSize, scales, shifts, ray)) {
+          found++;
+          sumXX += dx * dx;
+          sumXY += dx * dy;
+          sumYY += dy * dy;
+          sumX += shifts[ray] * dx;
+          sumY += shifts[ray] * dy;
+        }
+      }
+      float determinant = sumXX * sumYY - sumXY * sumXY;
+      if (found < RAYS * 3 / 4 || determinant <= 0.0f) {
+        return null;
+      }
+      float shiftX = (sumYY * sumX - sumXY * sumY) / determinant;
+      float shiftY = (sumXX * sumY - sumXY * sumX) / determinant;
+      centerX += shiftX;
+      centerY += shiftY;
+      centered = shiftX * shiftX + shiftY * shiftY < 0.25f;
+    }
+    if (!centered) {
+      return null;
+    }
+
+    // The squared inverse of the scale along direction d is d' M d, for a symmetric M that's fit
+    // by least squares, then square rooted to give the transform from the symbol up to rotation
+    double[][] normal = new double[3][3];
+    double[] target = new double[3];
+    for (int ray = 0; ray < RAYS; ray++) {
+      if (Float.isNaN(scales[ray])) {
+        continue;
+      }
+      double angle = 2.0 * Math.PI * ray / RAYS;
+      double dx = Math.cos(angle);
+      double dy = Math.sin(angle);
+      double[] row = {dx * dx, 2.0 * dx * dy, dy * dy};
+      double value = 1.0 / (scales[ray] * scales[ray]);
+      for (int i = 0; i < 3; i++) {
+        for (int j = 0; j < 3; j++) {
+          normal[i][j] += row[i] * row[j];
+        }
+        target[i] += row[i] * value;
+      }
+    }
+    double[][] inverse = invert(normal);
+    if (inverse == null) {
+      return null;
+    }
+    double m11 = 0.0;
+    double m12 = 0.0;
+    double m22 = 0.0;
+    for (int j = 0; j < 3; j++) {
+      m11 += inverse[0][j] * target[j];
+      m12 += inverse[1][j] * target[j];
+      m22 += inverse[2][j] * target[j];
+    }
+    double determinant = m11 * m22 - m12 * m12;
+    if (m11 <= 0.0 || determinant <= 0.0) {
+      return null;
+    }
+    // Square root of the inverse of M
+    double p11 = m22 / determinant;
+    double p12 = -m12 / determinant;
+    double p22 = m11 / determinant;
+    double rootDeterminant = Math.sqrt(p11 * p22 - p12 * p12);
+    double trace = Math.sqrt(p11 + p22 + 2.0 * rootDeterminant);
+    float[] skew = {
+        (float) ((p11 + rootDeterminant) / trace), (float) (p12 / trace),
+        (float) (p12 / trace), (float) ((p22 + rootDeterminant) / trace),
+    };
+
+    float rotation = findRotation(centerX, centerY, skew);
+    if (Float.isNaN(rotation)) {
+      return null;
+    }
+
+    // Refine rotation, scale and perspective about the bull's eye, fitting more of the symbol
+    // each time, then each corner on its own
+    float[] fit = {rotation, 1.0f, 0.0f, 0.0f};
+    float[] corners = getCorners(centerX, centerY, skew, fit);
+    // Rings and fixed modules that happen to match are cheaply told apart from a symbol here,
+    // as the search below is by far the slowest part of detection
+    if (score(corners, MODULES_WITHIN[0]) < MIN_PLACED_AGREEMENT * (PROBES - 1) * MODULES_WITHIN[0]) {
+      return null;
+    }
+    fits++;
+    int best = 0;
+    for (int modules : MODULES_WITHIN) {
+      best = score(corners, modules);
+      for (float[] search : FIT_SEARCHES) {
+        int parameter = (int) search[0];
+        float start = fit[parameter];
+        float bestValue = start;
+        for (int i = (int) -search[2]; i <= search[2]; i++) {
+          fit[parameter] = start + i * search[1];
+          float[] candidate = getCorners(centerX, centerY, skew, fit);
+          int score = candidate == null ? -1 : score(candidate, modules);
+          if (score > best) {
+            best = score;
+            corners = candidate;
+            bestValue = fit[parameter];
+          }
+        }
+        fit[parameter] = bestValue;
+      }
+      if (modules == MODULES_WITHIN[0] && best < MIN_FIT_AGREEMENT * (PROBES - 1) * modules) {
+        return null;
+      }
+    }
+    int allModules = MODULES_WITHIN[MODULES_WITHIN.length - 1];
+    for (float delta = 0.25f * moduleSize; delta >= 0.1f * moduleSize; delta /= 2.0f) {
+      boolean improved = true;
+      for (int i = 0; i < 4 && improved; i++) {
+        improved = false;
+        for (int corner = 0; corner < 8; corner += 2) {
+          for (int direction = 0; direction < 8; direction++) {
+            double angle = direction * Math.PI / 4.0;
+            float[] candidate = corners.clone();
+            candidate[corner] += delta * (float) Math.cos(angle);
+            candidate[corner + 1] += delta * (float) Math.sin(angle);
+            int score = score(candidate, allModules);
+            if (score > best) {
+              best = score;
+              corners = candidate;
+              improved = true;
+            }
+          }
+        }
+      }
+    }
+
+    BitMatrix bits = sampleGrid(corners);
+    if (bits == null) {
+      return null;
+    }
+    ResultPoint[] points = new ResultPoint[4];
+    for (int i = 0; i < 4; i++) {
+      points[i] = new ResultPoint(corners[2 * i], corners[2 * i + 1]);
+    }
+    return new DetectorResult(bits, points);
+  }
+
+  /**
+   * Finds the six edges of the bull's eye along a ray from its center, and fits the ring radii
+   * to them.
+   *
+   * @return true if the edges fit, in which case the scale along the ray and how far the center
+   *  seems to be along it are stored at the index of the ray
+   */
+  private boolean measureRay(float centerX,
+                             float centerY,
+                             float dx,
+                             float dy,
+                             float moduleSize,
+                             float[] scales,
+                             float[] shifts,
+                             int ray) {
+    scales[ray] = Float.NaN;
+    float step = 0.5f;
+    float maxDistance = 2.5f * RING_EDGES[5] * moduleSize;
+    float[] distances = new float[6];
+    int found = 0;
+    boolean dark = false;
+    for (float distance = 0.0f; found < 6 && distance < maxDistance; distance += step) {
+      float x = centerX + distance * dx;
+      float y = centerY + distance * dy;
+      if (x < 0.0f || y < 0.0f || x >= image.getWidth() || y >= image.getHeight()) {
+        return false;
+      }
+      if (image.get((int) x, (int) y) != dark) {
+        if (distance == 0.0f) {
+          return false;
+        }
+        distances[found++] = distance - step / 2.0f;
+        dark = !dark;
+      }
+    }
+    if (found < 6) {
+      return false;
+    }
+    float scale = 0.0f;
+    float spread = 0.0f;
+    float shift = 0.0f;
+    for (int k = 0; k < 6; k++) {
+      scale += EDGE_FIT[0][k] * distances[k];
+      spread += EDGE_FIT[1][k] * distances[k];
+      shift += EDGE_FIT[2][k] * distances[k];
+    }
+    if (scale <= 0.0f) {
+      return false;
+    }
+    for (int k = 0; k < 6; k++) {
+      float expected = scale * RING_EDGES[k] + spread * edgeSign(k) + shift;
+      if (Math.abs(distances[k] - expected) > 0.3f * RING_WIDTH * scale) {
+        return false;
+      }
+    }
+    scales[ray] = scale;
+    shifts[ray] = shift;
+    return true;
+  }
+
+  /**
+   * @return rotation in degrees that matches the most modules of known color around the bull's eye,
+   *  the middle one if several do, or NaN if too few match
+   */
+  private float findRotation(float centerX, float centerY, float[] skew) {
+    int[] matches = new int[360];
+    int best = 0;
+    for (int degrees = 0; degrees < 360; degrees++) {
+      double angle = Math.toRadians(degrees);
+      float cos = (float) Math.cos(angle);
+      float sin = (float) Math.sin(angle);
+      for (int[] module : ORIENTATION_MODULES) {
+        float u = moduleX(module[0], module[1]) - CENTER_X;
+        float v = moduleY(module[1]) - CENTER_Y;
+        float rotatedU = cos * u - sin * v;
+        float rotatedV = sin * u + cos * v;
+        float x = centerX + skew[0] * rotatedU + skew[1] * rotatedV;
+        float y = centerY + skew[2] * rotatedU + skew[3] * rotatedV;
+        if (x >= 0.0f && y >= 0.0f && x < image.getWidth() && y < image.getHeight() &&
+            image.get((int) x, (int) y) == (module[2] == 1)) {
+          matches[degrees]++;
+        }
+      }
+      best = Math.max(best, matches[degrees]);
+    }
+    if (best < MIN_ORIENTATION_MATCHES) {
+      return Float.NaN;
+    }
+    // Widest range of best rotations, which may wrap around
+    int bestStart = 0;
+    int bestLength = 0;
+    for (int start = 0; start < 360; start++) {
+      if (matches[start] != best || matches[(start + 359) % 360] == best) {
+        continue;
+      }
+      int length = 1;
+      while (length < 360 && matches[(start + length) % 360] == best) {
+        length++;
+      }
+      if (length > bestLength) {
+        bestStart = start;
+        bestLength = length;
+      }
+    }
+    if (bestLength == 0) {
+      // Every rotation matches as well
+      return Float.NaN;
+    }
+    return bestStart + (bestLength - 1) / 2.0f;
+  }
+
+  /**
+   * @param fit rotation in degrees, scale, and how much the symbol shrinks per module width along
+   *  its rows and along its columns, as it recedes
+   * @return corners of the symbol in the image, clockwise from its top left, as x and y
+   *  coordinates, or null if part of it would be behind the camera
+   */
+  private static float[] getCorners(float centerX, float centerY, float[] skew, float[] fit) {
+    double angle = Math.toRadians(fit[0]);
+    float cos = fit[1] * (float) Math.cos(angle);
+    float sin = fit[1] * (float) Math.sin(angle);
+    float[] corners = {0.0f, 0.0f, MATRIX_WIDTH, 0.0f, MATRIX_WIDTH, SYMBOL_HEIGHT, 0.0f, SYMBOL_HEIGHT};
+    for (int i = 0; i < 8; i += 2) {
+      float u = corners[i] - CENTER_X;
+      float v = corners[i + 1] - CENTER_Y;
+      float depth = 1.0f + fit[2] * u + fit[3] * v;
+      if (depth <= 0.0f) {
+        return null;
+      }
+      float rotatedU = (cos * u - sin * v) / depth;
+      float rotatedV = (sin * u + cos * v) / depth;
+      corners[i] = centerX + skew[0] * rotatedU + skew[1] * rotatedV;
+      corners[i + 1] = centerY + skew[2] * rotatedU + skew[3] * rotatedV;
+    }
+    return corners;
+  }
+
+  private static PerspectiveTransform getTransform(float[] corners) {
+    return PerspectiveTransform.quadrilateralToQuadrilateral(
+        0.0f, 0.0f, MATRIX_WIDTH, 0.0f, MATRIX_WIDTH, SYMBOL_HEIGHT, 0.0f, SYMBOL_HEIGHT,
+        corners[0], corners[1], corners[2], corners[3], corners[4], corners[5], corners[6], corners[7]);
+  }
+
+  /**
+   * @param modules how many modules to look at, nearest the bull's eye first
+   * @return how many points sampled around the center of each module have the same color as the
+   *  center, which is highest when the grid lines up with the modules
+   */
+  private int score(float[] corners, int modules) {
+    float[] points = Arrays.copyOf(MODULE_PROBES, 2 * PROBES * modules);
+    getTransform(corners).transformPoints(points);
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int score = 0;
+    for (int i = 0; i < points.length; i += 2 * PROBES) {
+      int x = (int) points[i];
+      int y = (int) points[i + 1];
+      if (points[i] < 0.0f || points[i + 1] < 0.0f || x >= width || y >= height) {
+        continue;
+      }
+      boolean dark = image.get(x, y);
+      for (int j = i + 2; j < i + 2 * PROBES; j += 2) {
+        int probeX = (int) points[j];
+        int probeY = (int) points[j + 1];
+        if (points[j] >= 0.0f && points[j + 1] >= 0.0f && probeX < width && probeY < height &&
+            image.get(probeX, probeY) == dark) {
+          score++;
+        }
+      }
+    }
+    return score;
+  }
+
+  private BitMatrix sampleGrid(float[] corners) {
+    float[] points = new float[2 * MATRIX_WIDTH * MATRIX_HEIGHT];
+    for (int y = 0; y < MATRIX_HEIGHT; y++) {
+      for (int x = 0; x < MATRIX_WIDTH; x++) {
+        int i = 2 * (y * MATRIX_WIDTH + x);
+        points[i] = moduleX(x, y);
+        points[i + 1] = moduleY(y);
+      }
+    }
+    getTransform(corners).transformPoints(points);
+    BitMatrix bits = new BitMatrix(MATRIX_WIDTH, MATRIX_HEIGHT);
+    for (int y = 0; y < MATRIX_HEIGHT; y++) {
+      for (int x = 0; x < MATRIX_WIDTH; x++) {
+        int i = 2 * (y * MATRIX_WIDTH + x);
+        int imageX = (int) points[i];
+        int imageY = (int) points[i + 1];
+        if (points[i] < 0.0f || points[i + 1] < 0.0f ||
+            imageX >= image.getWidth() || imageY >= image.getHeight()) {
+          if ((y & 0x01) == 1 && x == MATRIX_WIDTH - 1) {
+            // Not part of the symbol anyway
+            continue;
+          }
+          return null;
+        }
+        if (image.get(imageX, imageY)) {
+          bits.set(x, y);
+        }
+      }
+    }
+    return bits;
+  }
+
+  private static float distanceFromCenter(float[] point) {
+    float u = point[0] - CENTER_X;
+    float v = point[1] - CENTER_Y;
+    return (float) Math.sqrt(u * u + v * v);
+  }
+
+  private static float moduleX(int x, int y) {
+    // Odd rows are offset by half a module
+    return x + 0.5f + 0.5f * (y & 0x01);
+  }
+
+  private static float moduleY(int y) {
+    return (y + 0.5f) * ROW_HEIGHT;
+  }
+
+  /**
+   * @return -1 for edges from light to dark going outwards, which move in as dark areas spread,
+   *  or 1 for edges from dark to light, which move out
+   */
+  private static int edgeSign(int edge) {
+    return (edge & 0x01) == 0 ? -1 : 1;
+  }
+
+  /**
+   * @return inverse of a 3x3 matrix, or null if it has none
+   */
+  private static double[][] invert(double[][] m) {
+    double[][] cofactors = new double[3][3];
+    for (int i = 0; i < 3; i++) {
+      for (int j = 0; j < 3; j++) {
+        int i1 = (i + 1) % 3;
+        int i2 = (i + 2) % 3;
+        int j1 = (j + 1) % 3;
+        int j2 = (j + 2) % 3;
+        cofactors[j][i] = m[i1][j1] * m[i2][j2] - m[i1][j2] * m[i2][j1];
+      }
+    }
+    double determinant = m[0][0] * cofactors[0][0] + m[0][1] * cofactors[1][0] + m[0][2] * cofactors[2][0];
+    if (Math.abs(determinant) < 1.0e-12) {
+      return null;
+    }
+    for (int i = 0; i < 3; i++) {
+      for (int j = 0; j < 3; j++) {
+        cofactors[i][j] /= determinant;
+      }
+    }
+    return cofactors;
+  }
+
+}
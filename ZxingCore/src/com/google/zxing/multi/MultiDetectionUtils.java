@@ -0,0 +1,147 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.multi;
+
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.common.DetectorResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * <p>What the readers and detectors that find several codes of one format in an image share.
+ * It is public only because they are in the format's own subpackage.</p>
+ */
+public final class MultiDetectionUtils {
+
+  private static final Result[] EMPTY_RESULT_ARRAY = new Result[0];
+
+  private MultiDetectionUtils() {
+  }
+
+  /**
+   * Decodes one code that was detected.
+   */
+  public interface CodeDecoder<T extends DetectorResult> {
+    /**
+     * @return the decoded code, or null if it could not be decoded
+     */
+    Result decode(T detectorResult);
+  }
+
+  /**
+   * Decodes the codes detected. If {@link DecodeHintType#DETECTION_EXECUTOR} is set, they are
+   * decoded on that executor in parallel; results are returned in the order detected either way.
+   *
+   * @param detectorResults codes detected
+   * @param decoder decodes each code, on several threads at once with an executor
+   * @param hints decode hints, or null
+   * @return the codes that could be decoded
+   * @throws NotFoundException if the thread is interrupted while waiting for the executor
+   */
+  public static <T extends DetectorResult> Result[] decodeAll(T[] detectorResults,
+                                                              final CodeDecoder<T> decoder,
+                                                              Map<DecodeHintType,?> hints)
+      throws NotFoundException {
+    ExecutorService executor =
+        hints == null ? null : (ExecutorService) hints.get(DecodeHintType.DETECTION_EXECUTOR);
+    List<Result> results = new ArrayList<Result>();
+    if (executor == null || detectorResults.length < 2) {
+      for (T detectorResult : detectorResults) {
+        Result result = decoder.decode(detectorResult);
+        if (result != null) {
+          results.add(result);
+        }
+      }
+    } else {
+      List<Future<Result>> futures = new ArrayList<Future<Result>>(detectorResults.length);
+      for (final T detectorResult : detectorResults) {
+        futures.add(executor.submit(new Callable<Result>() {
+          @Override
+          public Result call() {
+            return decoder.decode(detectorResult);
+          }
+        }));
+      }
+      try {
+        for (Future<Result> future : futures) {
+          Result result = future.get();
+          if (result != null) {
+            results.add(result);
+          }
+        }
+      } catch (InterruptedException ie) {
+        for (Future<Result> future : futures) {
+          future.cancel(true);
+        }
+        Thread.currentThread().interrupt();
+        throw NotFoundException.getNotFoundInstance();
+      } catch (ExecutionException ee) {
+        Throwable cause = ee.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new IllegalStateException(cause);
+      }
+    }
+    if (results.isEmpty()) {
+      return EMPTY_RESULT_ARRAY;
+    }
+    return results.toArray(new Result[results.size()]);
+  }
+
+  /**
+   * @return true if the point lies within the corners of one of the codes already found
+   */
+  public static boolean isInsideFound(List<? extends DetectorResult> found, float x, float y) {
+    for (DetectorResult detectorResult : found) {
+      ResultPoint[] points = detectorResult.getPoints();
+      // Corners go around the code, in one direction or the other
+      int sign = 0;
+      boolean inside = true;
+      for (int i = 0; i < points.length && inside; i++) {
+        ResultPoint a = points[i];
+        ResultPoint b = points[(i + 1) % points.length];
+        float cross = (b.getX() - a.getX()) * (y - a.getY()) - (b.getY() - a.getY()) * (x - a.getX());
+        int side = cross > 0.0f ? 1 : cross < 0.0f ? -1 : 0;
+        if (side != 0) {
+          if (sign == 0) {
+            sign = side;
+          } else if (side != sign) {
+            inside = false;
+          }
+        }
+      }
+      if (inside) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+}
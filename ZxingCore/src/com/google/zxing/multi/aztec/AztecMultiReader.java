@@ -0,0 +1,103 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.multi.aztec;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.ResultMetadataType;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.ResultPointCallback;
+import com.google.zxing.aztec.AztecDetectorResult;
+import com.google.zxing.aztec.decoder.Decoder;
+import com.google.zxing.common.DecoderResult;
+import com.google.zxing.multi.MultiDetectionUtils;
+import com.google.zxing.multi.MultipleBarcodeReader;
+import com.google.zxing.multi.aztec.detector.MultiDetector;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This implementation can detect and decode multiple Aztec codes in an image, such as the
+ * several codes on a boarding pass or ticket, wherever they are in the image.
+ * If {@link DecodeHintType#DETECTION_EXECUTOR} is set, the codes found are decoded on
+ * that executor in parallel; results are returned in the same order either way.
+ *
+ * <p>Each code is sampled by the same corner extrapolation as {@link com.google.zxing.aztec.AztecReader}
+ * uses, which fails on codes of three or more layers whose modules are 3 pixels wide,
+ * wherever they are in the image. Such codes are left out of the results.</p>
+ */
+public final class AztecMultiReader implements MultipleBarcodeReader {
+
+  private static final MultiDetectionUtils.CodeDecoder<AztecDetectorResult> DECODER =
+      new MultiDetectionUtils.CodeDecoder<AztecDetectorResult>() {
+        @Override
+        public Result decode(AztecDetectorResult detectorResult) {
+          return AztecMultiReader.decode(detectorResult);
+        }
+      };
+
+  @Override
+  public Result[] decodeMultiple(BinaryBitmap image) throws NotFoundException {
+    return decodeMultiple(image, null);
+  }
+
+  @Override
+  public Result[] decodeMultiple(BinaryBitmap image, Map<DecodeHintType,?> hints) throws NotFoundException {
+    AztecDetectorResult[] detectorResults = new MultiDetector(image.getBlackMatrix()).detectMulti();
+    if (hints != null) {
+      ResultPointCallback rpcb = (ResultPointCallback) hints.get(DecodeHintType.NEED_RESULT_POINT_CALLBACK);
+      if (rpcb != null) {
+        for (AztecDetectorResult detectorResult : detectorResults) {
+          for (ResultPoint point : detectorResult.getPoints()) {
+            rpcb.foundPossibleResultPoint(point);
+          }
+        }
+      }
+    }
+    return MultiDetectionUtils.decodeAll(detectorResults, DECODER, hints);
+  }
+
+  /**
+   * @return the decoded code, or null if it could not be decoded
+   */
+  private static Result decode(AztecDetectorResult detectorResult) {
+    DecoderResult decoderResult;
+    try {
+      // The decoder keeps state while it decodes, so each code gets its own
+      decoderResult = new Decoder().decode(detectorResult);
+    } catch (ReaderException re) {
+      return null;
+    }
+    Result result = new Result(decoderResult.getText(), decoderResult.getRawBytes(),
+        detectorResult.getPoints(), BarcodeFormat.AZTEC);
+    List<byte[]> byteSegments = decoderResult.getByteSegments();
+    if (byteSegments != null) {
+      result.putMetadata(ResultMetadataType.BYTE_SEGMENTS, byteSegments);
+    }
+    String ecLevel = decoderResult.getECLevel();
+    if (ecLevel != null) {
+      result.putMetadata(ResultMetadataType.ERROR_CORRECTION_LEVEL, ecLevel);
+    }
+    return result;
+  }
+
+}
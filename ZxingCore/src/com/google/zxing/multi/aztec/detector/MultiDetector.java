@@ -0,0 +1,204 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.multi.aztec.detector;
+
+import com.google.zxing.NotFoundException;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.aztec.AztecDetectorResult;
+import com.google.zxing.aztec.detector.Detector;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.multi.MultiDetectionUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Encapsulates logic that can detect one or more Aztec codes in an image, wherever they are
+ * in the image.</p>
+ *
+ * <p>Each row is scanned for the rings of a bull's eye: a black center module between rings
+ * of alternating color, all the same width, which a line through the center crosses at any
+ * rotation. Each hit is checked down its column too, and hits on the same bull's eye are
+ * merged. The usual {@link Detector} then reads the mode message around each bull's eye, which
+ * its error correction validates, and samples the code.</p>
+ */
+public final class MultiDetector {
+
+  private static final AztecDetectorResult[] EMPTY_DETECTOR_RESULTS = new AztecDetectorResult[0];
+
+  // Black, white, black, white, center, white, black, white, black: the runs across the
+  // middle of the bull's eye of a compact or full code. The outermost two may run on into
+  // black modules beyond, so only the inner seven are expected to have the same width.
+  private static final int RUNS = 9;
+
+  private final BitMatrix image;
+
+  public MultiDetector(BitMatrix image) {
+    this.image = image;
+  }
+
+  /**
+   * @return the codes found, in the order their bull's eyes appear scanning down the image;
+   *  empty if none could be sampled
+   * @throws NotFoundException if the image has nothing that looks like a bull's eye
+   */
+  public AztecDetectorResult[] detectMulti() throws NotFoundException {
+    List<float[]> centers = findBullEyeCenters();
+    if (centers.isEmpty()) {
+      throw NotFoundException.getNotFoundInstance();
+    }
+
+    List<AztecDetectorResult> result = new ArrayList<AztecDetectorResult>();
+    for (float[] center : centers) {
+      if (MultiDetectionUtils.isInsideFound(result, center[0], center[1])) {
+        continue;
+      }
+      try {
+        result.add(new Detector(image).detect(new ResultPoint(center[0], center[1])));
+      } catch (NotFoundException e) {
+        // ignore
+      }
+    }
+    if (result.isEmpty()) {
+      return EMPTY_DETECTOR_RESULTS;
+    } else {
+      return result.toArray(new AztecDetectorResult[result.size()]);
+    }
+  }
+
+  /**
+   * @return centers of possible bull's eyes, as {@code {x, y, moduleSize, hits}}
+   */
+  private List<float[]> findBullEyeCenters() {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    List<float[]> centers = new ArrayList<float[]>();
+    // Where each run starts, black first, then the end of the row
+    int[] edges = new int[64];
+    BitArray row = new BitArray(width);
+    for (int y = 0; y < height; y++) {
+      row = image.getRow(y, row);
+      int numEdges = 0;
+      int x = row.getNextSet(0);
+      boolean black = true;
+      while (true) {
+        if (numEdges == edges.length) {
+          int[] newEdges = new int[numEdges << 1];
+          System.arraycopy(edges, 0, newEdges, 0, numEdges);
+          edges = newEdges;
+        }
+        edges[numEdges++] = x;
+        if (x >= width) {
+          break;
+        }
+        x = black ? row.getNextUnset(x) : row.getNextSet(x);
+        black = !black;
+      }
+      // Runs k to k + 8 lie between edges k and k + 9; black runs have even k
+      for (int k = 0; k + RUNS < numEdges; k += 2) {
+        float moduleSize = (edges[k + RUNS - 1] - edges[k + 1]) / (RUNS - 2.0f);
+        if (!isBullEye(edges, k, moduleSize)) {
+          continue;
+        }
+        int centerX = (edges[k + 4] + edges[k + 5]) >> 1;
+        float centerY = crossCheckVertical(centerX, y, moduleSize);
+        if (!Float.isNaN(centerY)) {
+          addCenter(centers, (edges[k + 4] + edges[k + 5]) / 2.0f, centerY, moduleSize);
+        }
+      }
+    }
+    return centers;
+  }
+
+  private static boolean isBullEye(int[] edges, int k, float moduleSize) {
+    if (moduleSize < 1.0f) {
+      return false;
+    }
+    float maxVariance = moduleSize / 2.0f;
+    for (int run = 1; run < RUNS - 1; run++) {
+      if (Math.abs(edges[k + run + 1] - edges[k + run] - moduleSize) >= maxVariance) {
+        return false;
+      }
+    }
+    return edges[k + 1] - edges[k] > maxVariance && edges[k + RUNS] - edges[k + RUNS - 1] > maxVariance;
+  }
+
+  /**
+   * Checks that the column through a possible center crosses the same rings.
+   *
+   * @return the vertical center of the bull's eye, or {@link Float#NaN} if the column doesn't
+   *  cross its rings
+   */
+  private float crossCheckVertical(int x, int y, float moduleSize) {
+    int height = image.getHeight();
+    int[] edges = new int[RUNS + 1];
+    int top = y;
+    while (top > 0 && image.get(x, top - 1)) {
+      top--;
+    }
+    int bottom = y + 1;
+    while (bottom < height && image.get(x, bottom)) {
+      bottom++;
+    }
+    edges[4] = top;
+    edges[5] = bottom;
+    // Outwards from the center run, then the other way
+    int i = top;
+    for (int run = 3; run >= 0; run--) {
+      boolean black = (run & 0x01) == 0;
+      while (i > 0 && image.get(x, i - 1) == black) {
+        i--;
+      }
+      edges[run] = i;
+    }
+    i = bottom;
+    for (int run = 5; run < RUNS; run++) {
+      boolean black = (run & 0x01) == 0;
+      while (i < height && image.get(x, i) == black) {
+        i++;
+      }
+      edges[run + 1] = i;
+    }
+    float verticalModuleSize = (edges[RUNS - 1] - edges[1]) / (RUNS - 2.0f);
+    // Rings are square, so a line through the center crosses them the same way both ways
+    if (Math.abs(verticalModuleSize - moduleSize) >= moduleSize / 2.0f ||
+        !isBullEye(edges, 0, verticalModuleSize)) {
+      return Float.NaN;
+    }
+    return (top + bottom) / 2.0f;
+  }
+
+  /**
+   * Merges a hit with one on the same bull's eye found on an earlier row, if any.
+   */
+  private static void addCenter(List<float[]> centers, float x, float y, float moduleSize) {
+    for (float[] center : centers) {
+      float tolerance = 2.0f * Math.max(moduleSize, center[2]);
+      if (Math.abs(center[0] - x) <= tolerance && Math.abs(center[1] - y) <= tolerance) {
+        float hits = center[3];
+        center[0] = (center[0] * hits + x) / (hits + 1.0f);
+        center[1] = (center[1] * hits + y) / (hits + 1.0f);
+        center[2] = (center[2] * hits + moduleSize) / (hits + 1.0f);
+        center[3] = hits + 1.0f;
+        return;
+      }
+    }
+    centers.add(new float[] {x, y, moduleSize, 1.0f});
+  }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.multi.datamatrix;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.ResultMetadataType;
+import com.google.zxing.common.DecoderResult;
+import com.google.zxing.common.DetectorResult;
+import com.google.zxing.datamatrix.decoder.Decoder;
+import com.google.zxing.multi.MultiDetectionUtils;
+import com.google.zxing.multi.MultipleBarcodeReader;
+import com.google.zxing.multi.datamatrix.detector.MultiDetector;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This implementation can detect and decode multiple Data Matrix codes in an image.
+ * If {@link DecodeHintType#DETECTION_EXECUTOR} is set, the codes found are decoded on
+ * that executor in parallel; results are returned in the same order either way.
+ */
+public final class DataMatrixMultiReader implements MultipleBarcodeReader {
+
+  // Holds no state between calls, so it may decode several codes at once
+  private final Decoder decoder = new Decoder();
+
+  @Override
+  public Result[] decodeMultiple(BinaryBitmap image) throws NotFoundException {
+    return decodeMultiple(image, null);
+  }
+
+  @Override
+  public Result[] decodeMultiple(BinaryBitmap image, Map<DecodeHintType,?> hints) throws NotFoundException {
+    DetectorResult[] detectorResults = new MultiDetector(image.getBlackMatrix()).detectMulti();
+    return MultiDetectionUtils.decodeAll(detectorResults,
+        new MultiDetectionUtils.CodeDecoder<DetectorResult>() {
+          @Override
+          public Result decode(DetectorResult detectorResult) {
+            return DataMatrixMultiReader.this.decode(detectorResult);
+          }
+        }, hints);
+  }
+
+  /**
+   * @return the decoded code, or null if it could not be decoded
+   */
+  private Result decode(DetectorResult detectorResult) {
+    DecoderResult decoderResult;
+    try {
+      decoderResult = decoder.decode(detectorResult.getBits());
+    } catch (ReaderException re) {
+      return null;
+    }
+    Result result = new Result(decoderResult.getText(), decoderResult.getRawBytes(),
+        detectorResult.getPoints(), BarcodeFormat.DATA_MATRIX);
+    List<byte[]> byteSegments = decoderResult.getByteSegments();
+    if (byteSegments != null) {
+      result.putMetadata(ResultMetadataType.BYTE_SEGMENTS, byteSegments);
+    }
+    String ecLevel = decoderResult.getECLevel();
+    if (ecLevel != null) {
+      result.putMetadata(ResultMetadataType.ERROR_CORRECTION_LEVEL, ecLevel);
+    }
+    return result;
+  }
+
+}
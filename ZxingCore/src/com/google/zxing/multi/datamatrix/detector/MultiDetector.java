@@ -0,0 +1,218 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.multi.datamatrix.detector;
+
+import com.google.zxing.NotFoundException;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.DetectorResult;
+import com.google.zxing.common.detector.WhiteRectangleDetector;
+import com.google.zxing.datamatrix.detector.Detector;
+import com.google.zxing.multi.MultiDetectionUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * <p>Encapsulates logic that can detect one or more Data Matrix codes in an image, such as a
+ * sheet of labels or a tray of tubes, wherever they are in the image.</p>
+ *
+ * <p>One pass over the image labels its connected black regions. Each region large enough to
+ * be the "L" of a code seeds a {@link WhiteRectangleDetector} at its center, and the usual
+ * {@link Detector} then checks the timing edges and samples the code. Regions that fall inside
+ * a code already found are skipped, so each code is sampled once.</p>
+ */
+public final class MultiDetector {
+
+  private static final DetectorResult[] EMPTY_DETECTOR_RESULTS = new DetectorResult[0];
+
+  // Smallest code is 10x10 modules, so its "L" spans at least 10 pixels
+  private static final int MIN_SYMBOL_SIZE = 10;
+  // Rectangular codes are at most about 1:3.5; allow some slack for rotation and skew
+  private static final int MAX_ASPECT_RATIO = 4;
+
+  private final BitMatrix image;
+
+  public MultiDetector(BitMatrix image) {
+    this.image = image;
+  }
+
+  /**
+   * @return the codes found, in order of decreasing size; empty if none could be sampled
+   * @throws NotFoundException if the image has no region that could be a code
+   */
+  public DetectorResult[] detectMulti() throws NotFoundException {
+    List<int[]> candidates = findCandidates();
+    if (candidates.isEmpty()) {
+      throw NotFoundException.getNotFoundInstance();
+    }
+
+    List<DetectorResult> result = new ArrayList<DetectorResult>();
+    for (int[] box : candidates) {
+      int centerX = (box[0] + box[2]) >> 1;
+      int centerY = (box[1] + box[3]) >> 1;
+      if (MultiDetectionUtils.isInsideFound(result, centerX, centerY)) {
+        continue;
+      }
+      // Start inside the region so the rectangle's sides cross black modules as it grows
+      int initSize = Math.max(box[2] - box[0], box[3] - box[1]) >> 1;
+      try {
+        WhiteRectangleDetector rectangleDetector =
+            new WhiteRectangleDetector(image, initSize, centerX, centerY);
+        result.add(new Detector(image, rectangleDetector).detect());
+      } catch (NotFoundException e) {
+        // ignore
+      }
+    }
+    if (result.isEmpty()) {
+      return EMPTY_DETECTOR_RESULTS;
+    } else {
+      return result.toArray(new DetectorResult[result.size()]);
+    }
+  }
+
+  /**
+   * Labels the image's 8-connected black regions, one row of runs at a time, merging
+   * regions with union-find as runs join them.
+   *
+   * @return bounding boxes {@code {minX, minY, maxX, maxY}} of the regions that could be
+   *  the "L" of a code, largest first
+   */
+  private List<int[]> findCandidates() {
+    int width = image.getWidth();
+    int height = image.getHeight();
+
+    int[] parent = new int[64];
+    int[] boxes = new int[64 * 4];
+    int numLabels = 0;
+
+    int[] previousStarts = new int[16];
+    int[] previousEnds = new int[16];
+    int[] previousLabels = new int[16];
+    int previousCount = 0;
+    int[] starts = new int[16];
+    int[] ends = new int[16];
+    int[] labels = new int[16];
+
+    BitArray row = new BitArray(width);
+    for (int y = 0; y < height; y++) {
+      row = image.getRow(y, row);
+      int count = 0;
+      int p = 0;
+      int start = row.getNextSet(0);
+      while (start < width) {
+        int end = row.getNextUnset(start);
+        // Runs of the previous row touching [start, end), diagonals included
+        while (p < previousCount && previousEnds[p] < start) {
+          p++;
+        }
+        int label = -1;
+        for (int q = p; q < previousCount && previousStarts[q] <= end; q++) {
+          int root = find(parent, previousLabels[q]);
+          if (label < 0) {
+            label = root;
+          } else if (root != label) {
+            parent[root] = label;
+            int r = root << 2;
+            int l = label << 2;
+            boxes[l] = Math.min(boxes[l], boxes[r]);
+            boxes[l + 1] = Math.min(boxes[l + 1], boxes[r + 1]);
+            boxes[l + 2] = Math.max(boxes[l + 2], boxes[r + 2]);
+            boxes[l + 3] = Math.max(boxes[l + 3], boxes[r + 3]);
+          }
+        }
+        if (label < 0) {
+          if (numLabels == parent.length) {
+            parent = Arrays.copyOf(parent, numLabels << 1);
+            boxes = Arrays.copyOf(boxes, numLabels << 3);
+          }
+          label = numLabels++;
+          parent[label] = label;
+          int l = label << 2;
+          boxes[l] = start;
+          boxes[l + 1] = y;
+          boxes[l + 2] = end - 1;
+          boxes[l + 3] = y;
+        } else {
+          int l = label << 2;
+          boxes[l] = Math.min(boxes[l], start);
+          boxes[l + 2] = Math.max(boxes[l + 2], end - 1);
+          boxes[l + 3] = y;
+        }
+
+        if (count == starts.length) {
+          starts = Arrays.copyOf(starts, count << 1);
+          ends = Arrays.copyOf(ends, count << 1);
+          labels = Arrays.copyOf(labels, count << 1);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        labels[count] = label;
+        count++;
+        start = row.getNextSet(end);
+      }
+
+      int[] temp = previousStarts;
+      previousStarts = starts;
+      starts = temp;
+      temp = previousEnds;
+      previousEnds = ends;
+      ends = temp;
+      temp = previousLabels;
+      previousLabels = labels;
+      labels = temp;
+      previousCount = count;
+    }
+
+    List<int[]> candidates = new ArrayList<int[]>();
+    for (int label = 0; label < numLabels; label++) {
+      if (parent[label] != label) {
+        continue;
+      }
+      int l = label << 2;
+      int boxWidth = boxes[l + 2] - boxes[l] + 1;
+      int boxHeight = boxes[l + 3] - boxes[l + 1] + 1;
+      int longSide = Math.max(boxWidth, boxHeight);
+      int shortSide = Math.min(boxWidth, boxHeight);
+      if (longSide >= MIN_SYMBOL_SIZE && shortSide * MAX_ASPECT_RATIO >= longSide) {
+        candidates.add(Arrays.copyOfRange(boxes, l, l + 4));
+      }
+    }
+    // Larger regions first, so that a code is found from its "L" rather than from its data
+    Collections.sort(candidates, new Comparator<int[]>() {
+      @Override
+      public int compare(int[] a, int[] b) {
+        long areaA = (long) (a[2] - a[0] + 1) * (a[3] - a[1] + 1);
+        long areaB = (long) (b[2] - b[0] + 1) * (b[3] - b[1] + 1);
+        return areaA > areaB ? -1 : areaA < areaB ? 1 : 0;
+      }
+    });
+    return candidates;
+  }
+
+  private static int find(int[] parent, int label) {
+    while (parent[label] != label) {
+      parent[label] = parent[parent[label]];
+      label = parent[label];
+    }
+    return label;
+  }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.multi.qrcode.detector;
+
+import com.google.zxing.qrcode.detector.FinderPattern;
+
+import java.util.List;
+
+/**
+ * <p>Buckets finder pattern candidates into a uniform grid of square cells by position, so that
+ * the candidates near a point can be found without looking at all of them.</p>
+ */
+final class FinderPatternIndex {
+
+  private final List<FinderPattern> patterns;
+  private final float minX;
+  private final float minY;
+  private final float cellSize;
+  private final int columns;
+  private final int rows;
+  // Indices of the patterns in cell c are cellContents[cellStarts[c]] to cellContents[cellStarts[c + 1] - 1]
+  private final int[] cellStarts;
+  private final int[] cellContents;
+
+  /**
+   * @param patterns candidates to index; found candidates are reported by their index in this list
+   */
+  FinderPatternIndex(List<FinderPattern> patterns) {
+    this(patterns, 1.0f);
+  }
+
+  /**
+   * @param patterns candidates to index; found candidates are reported by their index in this list
+   * @param minCellSize smallest side cells may have, so that searches within about that distance
+   *  look at no more than the 3 by 3 cells around the point
+   */
+  FinderPatternIndex(List<FinderPattern> patterns, float minCellSize) {
+    this.patterns = patterns;
+    int size = patterns.size();
+    float minX = Float.POSITIVE_INFINITY;
+    float minY = Float.POSITIVE_INFINITY;
+    float maxX = Float.NEGATIVE_INFINITY;
+    float maxY = Float.NEGATIVE_INFINITY;
+    for (FinderPattern pattern : patterns) {
+      minX = Math.min(minX, pattern.getX());
+      minY = Math.min(minY, pattern.getY());
+      maxX = Math.max(maxX, pattern.getX());
+      maxY = Math.max(maxY, pattern.getY());
+    }
+    this.minX = minX;
+    this.minY = minY;
+    // About one candidate per cell when they are spread evenly
+    int cellsPerSide = Math.max(1, (int) Math.sqrt(size));
+    cellSize = Math.max(Math.max(1.0f, minCellSize), Math.max(maxX - minX, maxY - minY) / cellsPerSide);
+    columns = (int) ((maxX - minX) / cellSize) + 1;
+    rows = (int) ((maxY - minY) / cellSize) + 1;
+
+    // Counting sort of the candidates by cell
+    int[] cells = new int[size];
+    cellStarts = new int[columns * rows + 1];
+    for (int i = 0; i < size; i++) {
+      FinderPattern pattern = patterns.get(i);
+      cells[i] = cellRow(pattern.getY()) * columns + cellColumn(pattern.getX());
+      cellStarts[cells[i] + 1]++;
+    }
+    for (int cell = 0; cell < columns * rows; cell++) {
+      cellStarts[cell + 1] += cellStarts[cell];
+    }
+    cellContents = new int[size];
+    int[] next = new int[columns * rows];
+    System.arraycopy(cellStarts, 0, next, 0, next.length);
+    for (int i = 0; i < size; i++) {
+      cellContents[next[cells[i]]++] = i;
+    }
+  }
+
+  /**
+   * Finds the candidates within a distance of a point.
+   *
+   * @param x point's x coordinate
+   * @param y point's y coordinate
+   * @param radius greatest distance from the point, inclusive
+   * @param result receives the indices of the candidates found, in no particular order; must be
+   *  as large as the number of candidates
+   * @return number of candidates found
+   */
+  int findWithin(float x, float y, float radius, int[] result) {
+    int fromColumn = cellColumn(x - radius);
+    int toColumn = cellColumn(x + radius);
+    int fromRow = cellRow(y - radius);
+    int toRow = cellRow(y + radius);
+    float radiusSquared = radius * radius;
+    int found = 0;
+    for (int row = fromRow; row <= toRow; row++) {
+      for (int column = fromColumn; column <= toColumn; column++) {
+        int cell = row * columns + column;
+        for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++) {
+          int index = cellContents[i];
+          FinderPattern pattern = patterns.get(index);
+          float dx = pattern.getX() - x;
+          float dy = pattern.getY() - y;
+          if (dx * dx + dy * dy <= radiusSquared) {
+            result[found++] = index;
+          }
+        }
+      }
+    }
+    return found;
+  }
+
+  private int cellColumn(float x) {
+    return clamp((int) Math.floor((x - minX) / cellSize), columns);
+  }
+
+  private int cellRow(float y) {
+    return clamp((int) Math.floor((y - minY) / cellSize), rows);
+  }
+
+  private static int clamp(int cell, int cells) {
+    return cell < 0 ? 0 : cell >= cells ? cells - 1 : cell;
+  }
+
+}
@@ -27,10 +27,12 @@ import com.google.zxing.qrcode.detector.FinderPatternInfo;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 /**
  * <p>This class attempts to find finder patterns in a QR Code. Finder patterns are the square
@@ -72,6 +74,21 @@ final class MultiFinderPatternFinder extends FinderPatternFinder {
    */
   private static final float DIFF_MODSIZE_CUTOFF = 0.5f;
 
+  /**
+   * How far, relative to the top left-top right distance, the bottom left pattern may be from
+   * the top right one rotated by 90° about the top left. The tests on tuples bound it by 0.34.
+   */
+  private static final float THIRD_PATTERN_TOLERANCE = 0.4f;
+
+  /**
+   * Widens search distances a little beyond the bounds the tests imply, against rounding.
+   */
+  private static final float SEARCH_SLACK = 1.01f;
+
+  // Tuples of candidate indices are packed into a long, this many bits each
+  private static final int KEY_BITS = 21;
+  private static final int KEY_MASK = (1 << KEY_BITS) - 1;
+
 
   /**
    * A comparator that orders FinderPatterns by their estimated module size.
@@ -106,10 +123,12 @@ final class MultiFinderPatternFinder extends FinderPatternFinder {
    * @return the 3 best {@link FinderPattern}s from our list of candidates. The "best" are
    *         those that have been detected at least {@link #CENTER_QUORUM} times, and whose module
    *         size differs from the average among those patterns the least
+   * @param possibleCenters candidates found in the image, which are sorted by module size
+   * @param maxModuleCount most modules a side of a code may span
    * @throws NotFoundException if 3 such finder patterns do not exist
    */
-  private FinderPattern[][] selectMutipleBestPatterns() throws NotFoundException {
-    List<FinderPattern> possibleCenters = getPossibleCenters();
+  static FinderPattern[][] selectMutipleBestPatterns(List<FinderPattern> possibleCenters, float maxModuleCount)
+      throws NotFoundException {
     int size = possibleCenters.size();
 
     if (size < 3) {
@@ -145,85 +164,122 @@ final class MultiFinderPatternFinder extends FinderPatternFinder {
      * counterintuitive at first, but the performance penalty is not that big. At this point,
      * we cannot make a good quality decision whether the three finders actually represent
      * a QR code, or are just by chance layouted so it looks like there might be a QR code there.
-     * So, if the layout seems right, lets have the decoder try to decode.     
+     * So, if the layout seems right, lets have the decoder try to decode.
+     *
+     * Trying every tuple takes time cubic in the number of candidates, which adds up on a sheet
+     * of many codes. Instead, each candidate is taken as the top left pattern, each candidate
+     * close enough to it as the top right one, and only candidates near where the bottom left
+     * one would then have to be are tried as the third. The tests above bound how far that can
+     * be from the top right one rotated by 90° about the top left: their lengths differ by under
+     * 10%, and the angle between them is within about 12° of a right angle. The tuples found
+     * are then tested in the same order as an exhaustive search would.
+     *
+     * Top right candidates come from a grid whose cells are as wide as the longest side a code
+     * of the median module size can have, so on a sheet of like codes each top left looks only
+     * at the 3 by 3 cells around it rather than at every candidate.
      */
 
-     List<FinderPattern[]> results = new ArrayList<FinderPattern[]>(); // holder for the results
-
-    for (int i1 = 0; i1 < (size - 2); i1++) {
-      FinderPattern p1 = possibleCenters.get(i1);
-      if (p1 == null) {
-        continue;
+    FinderPatternIndex index = new FinderPatternIndex(possibleCenters);
+    FinderPatternIndex sideIndex = new FinderPatternIndex(possibleCenters,
+        maxSide(possibleCenters.get(size / 2), maxModuleCount));
+    int[] seconds = new int[size];
+    int[] thirds = new int[size];
+    long[] tuples = new long[size];
+    int numTuples = 0;
+    // Candidates of similar module size to the top left are adjacent in the sorted list, from
+    // first up to but not including last; both only move forward as the top left does
+    int first = 0;
+    int last = 0;
+    for (int topLeft = 0; topLeft < size; topLeft++) {
+      FinderPattern pTopLeft = possibleCenters.get(topLeft);
+      float x = pTopLeft.getX();
+      float y = pTopLeft.getY();
+      while (!mayShareCode(possibleCenters.get(first), pTopLeft)) {
+        first++;
       }
-
-      for (int i2 = i1 + 1; i2 < (size - 1); i2++) {
-        FinderPattern p2 = possibleCenters.get(i2);
-        if (p2 == null) {
+      last = Math.max(last, topLeft + 1);
+      while (last < size && mayShareCode(pTopLeft, possibleCenters.get(last))) {
+        last++;
+      }
+      int numSeconds = sideIndex.findWithin(x, y, maxSide(pTopLeft, maxModuleCount), seconds);
+      for (int s = 0; s < numSeconds; s++) {
+        int topRight = seconds[s];
+        if (topRight == topLeft || topRight < first || topRight >= last) {
           continue;
         }
-
-        // Compare the expected module sizes; if they are really off, skip
-        float vModSize12 = (p1.getEstimatedModuleSize() - p2.getEstimatedModuleSize()) /
-            Math.min(p1.getEstimatedModuleSize(), p2.getEstimatedModuleSize());
-        float vModSize12A = Math.abs(p1.getEstimatedModuleSize() - p2.getEstimatedModuleSize());
-        if (vModSize12A > DIFF_MODSIZE_CUTOFF && vModSize12 >= DIFF_MODSIZE_CUTOFF_PERCENT) {
-          // break, since elements are ordered by the module size deviation there cannot be
-          // any more interesting elements for the given p1.
-          break;
-        }
-
-        for (int i3 = i2 + 1; i3 < size; i3++) {
-          FinderPattern p3 = possibleCenters.get(i3);
-          if (p3 == null) {
-            continue;
+        FinderPattern pTopRight = possibleCenters.get(topRight);
+        float dx = pTopRight.getX() - x;
+        float dy = pTopRight.getY() - y;
+        float sideSquared = dx * dx + dy * dy;
+        // ResultPoint.orderBestPatterns() puts bottom left counterclockwise of top right, as
+        // seen in image coordinates, so only that side needs searching
+        float radius = (float) Math.sqrt(sideSquared) * THIRD_PATTERN_TOLERANCE + 1.0f;
+        int numThirds = index.findWithin(x - dy, y + dx, radius, thirds);
+        for (int t = 0; t < numThirds; t++) {
+          int bottomLeft = thirds[t];
+          if (bottomLeft != topLeft && bottomLeft != topRight &&
+              mayShareCode(possibleCenters.get(Math.min(topLeft, bottomLeft)),
+                           possibleCenters.get(Math.max(topLeft, bottomLeft)))) {
+            if (numTuples == tuples.length) {
+              long[] newTuples = new long[2 * numTuples];
+              System.arraycopy(tuples, 0, newTuples, 0, numTuples);
+              tuples = newTuples;
+            }
+            tuples[numTuples++] = toKey(topLeft, topRight, bottomLeft);
           }
+        }
+      }
+    }
+    // Test in the order an exhaustive search would, once each
+    Arrays.sort(tuples, 0, numTuples);
 
-          // Compare the expected module sizes; if they are really off, skip
-          float vModSize23 = (p2.getEstimatedModuleSize() - p3.getEstimatedModuleSize()) /
-              Math.min(p2.getEstimatedModuleSize(), p3.getEstimatedModuleSize());
-          float vModSize23A = Math.abs(p2.getEstimatedModuleSize() - p3.getEstimatedModuleSize());
-          if (vModSize23A > DIFF_MODSIZE_CUTOFF && vModSize23 >= DIFF_MODSIZE_CUTOFF_PERCENT) {
-            // break, since elements are ordered by the module size deviation there cannot be
-            // any more interesting elements for the given p1.
-            break;
-          }
+    List<FinderPattern[]> results = new ArrayList<FinderPattern[]>(); // holder for the results
+    for (int i = 0; i < numTuples; i++) {
+      long key = tuples[i];
+      if (i > 0 && key == tuples[i - 1]) {
+        continue;
+      }
+      FinderPattern p1 = possibleCenters.get((int) (key >>> (2 * KEY_BITS)));
+      FinderPattern p2 = possibleCenters.get((int) (key >>> KEY_BITS) & KEY_MASK);
+      FinderPattern p3 = possibleCenters.get((int) key & KEY_MASK);
+      if (!haveSimilarModuleSize(p1, p2) || !haveSimilarModuleSize(p2, p3)) {
+        continue;
+      }
 
-          FinderPattern[] test = {p1, p2, p3};
-          ResultPoint.orderBestPatterns(test);
+      FinderPattern[] test = {p1, p2, p3};
+      ResultPoint.orderBestPatterns(test);
 
-          // Calculate the distances: a = topleft-bottomleft, b=topleft-topright, c = diagonal
-          FinderPatternInfo info = new FinderPatternInfo(test);
-          float dA = ResultPoint.distance(info.getTopLeft(), info.getBottomLeft());
-          float dC = ResultPoint.distance(info.getTopRight(), info.getBottomLeft());
-          float dB = ResultPoint.distance(info.getTopLeft(), info.getTopRight());
+      // Calculate the distances: a = topleft-bottomleft, b=topleft-topright, c = diagonal
+      FinderPatternInfo info = new FinderPatternInfo(test);
+      float dA = ResultPoint.distance(info.getTopLeft(), info.getBottomLeft());
+      float dC = ResultPoint.distance(info.getTopRight(), info.getBottomLeft());
+      float dB = ResultPoint.distance(info.getTopLeft(), info.getTopRight());
 
-          // Check the sizes
-          float estimatedModuleCount = (dA + dB) / (p1.getEstimatedModuleSize() * 2.0f);
-          if (estimatedModuleCount > MAX_MODULE_COUNT_PER_EDGE ||
-              estimatedModuleCount < MIN_MODULE_COUNT_PER_EDGE) {
-            continue;
-          }
+      // Check the sizes
+      float estimatedModuleCount = (dA + dB) / (p1.getEstimatedModuleSize() * 2.0f);
+      if (estimatedModuleCount > maxModuleCount ||
+          estimatedModuleCount < MIN_MODULE_COUNT_PER_EDGE) {
+        continue;
+      }
 
-          // Calculate the difference of the edge lengths in percent
-          float vABBC = Math.abs((dA - dB) / Math.min(dA, dB));
-          if (vABBC >= 0.1f) {
-            continue;
-          }
+      // Calculate the difference of the edge lengths in percent
+      float vABBC = Math.abs((dA - dB) / Math.min(dA, dB));
+      if (vABBC >= 0.1f) {
+        continue;
+      }
 
-          // Calculate the diagonal length by assuming a 90° angle at topleft
-          float dCpy = (float) Math.sqrt(dA * dA + dB * dB);
-          // Compare to the real distance in %
-          float vPyC = Math.abs((dC - dCpy) / Math.min(dC, dCpy));
+      // Calculate the diagonal length by assuming a 90° angle at topleft
+      float dCpy = (float) Math.sqrt(dA * dA + dB * dB);
+      // Compare to the real distance in %
+      float vPyC = Math.abs((dC - dCpy) / Math.min(dC, dCpy));
 
-          if (vPyC >= 0.1f) {
-            continue;
-          }
+      if (vPyC >= 0.1f) {
+        continue;
+      }
 
-          // All tests passed!
-          results.add(test);
-        } // end iterate p3
-      } // end iterate p2
-    } // end iterate p1
+      // All tests passed!
+      results.add(test);
+    }
 
     if (!results.isEmpty()) {
       return results.toArray(new FinderPattern[results.size()][]);
@@ -233,72 +289,86 @@ final class MultiFinderPatternFinder extends FinderPatternFinder {
     throw NotFoundException.getNotFoundInstance();
   }
 
-  public FinderPatternInfo[] findMulti(Map<DecodeHintType,?> hints) throws NotFoundException {
-    boolean tryHarder = hints != null && hints.containsKey(DecodeHintType.TRY_HARDER);
-    BitMatrix image = getImage();
-    int maxI = image.getHeight();
-    int maxJ = image.getWidth();
-    // We are looking for black/white/black/white/black modules in
-    // 1:1:3:1:1 ratio; this tracks the number of such modules seen so far
-
-    // Let's assume that the maximum version QR Code we support takes up 1/4 the height of the
-    // image, and then account for the center being 3 modules in size. This gives the smallest
-    // number of pixels the center could be, so skip this often. When trying harder, look for all
-    // QR versions regardless of how dense they are.
-    int iSkip = (int) (maxI / (MAX_MODULES * 4.0f) * 3);
-    if (iSkip < MIN_SKIP || tryHarder) {
-      iSkip = MIN_SKIP;
+  /**
+   * @param p1 a pattern
+   * @param p2 a pattern after {@code p1} when sorted by {@link ModuleSizeComparator}
+   * @return true if their estimated module sizes are close enough that they might belong to
+   *  the same code
+   */
+  private static boolean haveSimilarModuleSize(FinderPattern p1, FinderPattern p2) {
+    float vModSize = (p1.getEstimatedModuleSize() - p2.getEstimatedModuleSize()) /
+        Math.min(p1.getEstimatedModuleSize(), p2.getEstimatedModuleSize());
+    float vModSizeA = Math.abs(p1.getEstimatedModuleSize() - p2.getEstimatedModuleSize());
+    return vModSizeA <= DIFF_MODSIZE_CUTOFF || vModSize < DIFF_MODSIZE_CUTOFF_PERCENT;
+  }
+
+  /**
+   * @return the longest a side may be of a code with this pattern at its top left: at most
+   *  maxModuleCount modules long, measured by the code's largest module size
+   */
+  private static float maxSide(FinderPattern topLeft, float maxModuleCount) {
+    return 2.0f * maxModuleCount * maxModuleSizeInCode(topLeft.getEstimatedModuleSize()) * SEARCH_SLACK;
+  }
+
+  /**
+   * @param moduleSize estimated module size of one pattern
+   * @return the largest estimated module size another pattern of the same code may have: one
+   *  that passes {@link #haveSimilarModuleSize(FinderPattern, FinderPattern)} with a pattern
+   *  that itself passes it with this one
+   */
+  private static float maxModuleSizeInCode(float moduleSize) {
+    float maxModuleSize = moduleSize;
+    for (int i = 0; i < 2; i++) {
+      maxModuleSize = Math.max(maxModuleSize + DIFF_MODSIZE_CUTOFF,
+                               maxModuleSize * (1.0f + DIFF_MODSIZE_CUTOFF_PERCENT));
     }
+    return maxModuleSize;
+  }
 
-    int[] stateCount = new int[5];
-    for (int i = iSkip - 1; i < maxI; i += iSkip) {
-      // Get a row of black/white values
-      stateCount[0] = 0;
-      stateCount[1] = 0;
-      stateCount[2] = 0;
-      stateCount[3] = 0;
-      stateCount[4] = 0;
-      int currentState = 0;
-      for (int j = 0; j < maxJ; j++) {
-        if (image.get(j, i)) {
-          // Black pixel
-          if ((currentState & 1) == 1) { // Counting white pixels
-            currentState++;
-          }
-          stateCount[currentState]++;
-        } else { // White pixel
-          if ((currentState & 1) == 0) { // Counting black pixels
-            if (currentState == 4) { // A winner?
-              if (foundPatternCross(stateCount) && handlePossibleCenter(stateCount, i, j)) { // Yes
-                // Clear state to start looking again
-                currentState = 0;
-                stateCount[0] = 0;
-                stateCount[1] = 0;
-                stateCount[2] = 0;
-                stateCount[3] = 0;
-                stateCount[4] = 0;
-              } else { // No, shift counts back by two
-                stateCount[0] = stateCount[2];
-                stateCount[1] = stateCount[3];
-                stateCount[2] = stateCount[4];
-                stateCount[3] = 1;
-                stateCount[4] = 0;
-                currentState = 3;
-              }
-            } else {
-              stateCount[++currentState]++;
-            }
-          } else { // Counting white pixels
-            stateCount[currentState]++;
-          }
-        }
-      } // for j=...
+  /**
+   * @param p1 a pattern
+   * @param p2 a pattern after {@code p1} when sorted by {@link ModuleSizeComparator}
+   * @return false if their module sizes are too far apart for them to be in one tuple
+   */
+  private static boolean mayShareCode(FinderPattern p1, FinderPattern p2) {
+    return p1.getEstimatedModuleSize() <= maxModuleSizeInCode(p2.getEstimatedModuleSize()) * SEARCH_SLACK;
+  }
+
+  /**
+   * @return the three indices, in ascending order, packed so keys sort like the tuples
+   */
+  private static long toKey(int i1, int i2, int i3) {
+    int low = Math.min(i1, Math.min(i2, i3));
+    int high = Math.max(i1, Math.max(i2, i3));
+    int middle = i1 + i2 + i3 - low - high;
+    return ((long) low << (2 * KEY_BITS)) | ((long) middle << KEY_BITS) | high;
+  }
 
-      if (foundPatternCross(stateCount)) {
-        handlePossibleCenter(stateCount, i, maxJ);
-      } // end if foundPatternCross
-    } // for i=iSkip-1 ...
-    FinderPattern[][] patternInfo = selectMutipleBestPatterns();
+  /**
+   * @return the most modules a code's side may span between finder pattern centers: fewer than
+   *  its largest version's dimension, if {@link DecodeHintType#QR_VERSION_RANGE} gives one
+   */
+  private static float getMaxModuleCount(Map<DecodeHintType,?> hints) {
+    int[] versionRange = hints == null ? null : (int[]) hints.get(DecodeHintType.QR_VERSION_RANGE);
+    if (versionRange != null && versionRange.length == 2 &&
+        Math.max(1, versionRange[0]) <= Math.min(40, versionRange[1])) {
+      return 17 + 4 * Math.min(40, versionRange[1]);
+    }
+    return MAX_MODULE_COUNT_PER_EDGE;
+  }
+
+  public FinderPatternInfo[] findMulti(Map<DecodeHintType,?> hints) throws NotFoundException {
+    int iSkip = getInitialRowSkip(hints);
+    setMaxPatternSize(hints);
+    ExecutorService executor =
+        hints == null ? null : (ExecutorService) hints.get(DecodeHintType.DETECTION_EXECUTOR);
+    if (executor == null) {
+      scanRows(iSkip - 1, getImage().getHeight(), iSkip);
+    } else {
+      // Keep the step, as the scan without an executor does
+      scanBands(iSkip, iSkip, executor);
+    }
+    FinderPattern[][] patternInfo = selectMutipleBestPatterns(getPossibleCenters(), getMaxModuleCount(hints));
     List<FinderPatternInfo> result = new ArrayList<FinderPatternInfo>();
     for (FinderPattern[] pattern : patternInfo) {
       ResultPoint.orderBestPatterns(pattern);
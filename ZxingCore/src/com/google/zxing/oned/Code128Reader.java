@@ -148,6 +148,7 @@ public final class Code128Reader extends OneDReader {
 
   private static final int MAX_AVG_VARIANCE = (int) (PATTERN_MATCH_RESULT_SCALE_FACTOR * 0.25f);
   private static final int MAX_INDIVIDUAL_VARIANCE = (int) (PATTERN_MATCH_RESULT_SCALE_FACTOR * 0.7f);
+  private static final PatternTable CODE_TABLE = new PatternTable(CODE_PATTERNS, 6);
 
   private static final int CODE_SHIFT = 98;
 
@@ -214,8 +215,15 @@ public final class Code128Reader extends OneDReader {
   private static int decodeCode(BitArray row, int[] counters, int rowOffset)
       throws NotFoundException {
     recordPattern(row, rowOffset, counters);
+    int bestMatch = CODE_TABLE.lookup(counters);
+    if (bestMatch >= 0) {
+      // No other pattern is as close, so it only remains to see if this one is close enough
+      if (patternMatchVariance(counters, CODE_PATTERNS[bestMatch], MAX_INDIVIDUAL_VARIANCE) < MAX_AVG_VARIANCE) {
+        return bestMatch;
+      }
+      throw NotFoundException.getNotFoundInstance();
+    }
     int bestVariance = MAX_AVG_VARIANCE; // worst variance we'll accept
-    int bestMatch = -1;
     for (int d = 0; d < CODE_PATTERNS.length; d++) {
       int[] pattern = CODE_PATTERNS[d];
       int variance = patternMatchVariance(counters, pattern, MAX_INDIVIDUAL_VARIANCE);
@@ -53,6 +53,15 @@ public final class Code93Reader extends OneDReader {
       0x126, 0x1DA, 0x1D6, 0x132, 0x15E, // Control chars? $-*
   };
   private static final int ASTERISK_ENCODING = CHARACTER_ENCODINGS[47];
+  // Index of the character with each 9-bit encoding, or -1
+  private static final int[] ENCODING_INDEXES = new int[1 << 9];
+
+  static {
+    Arrays.fill(ENCODING_INDEXES, -1);
+    for (int i = 0; i < CHARACTER_ENCODINGS.length; i++) {
+      ENCODING_INDEXES[CHARACTER_ENCODINGS[i]] = i;
+    }
+  }
 
   private final StringBuilder decodeRowResult;
   private final int[] counters;
@@ -185,12 +194,11 @@ public final class Code93Reader extends OneDReader {
   }
 
   private static char patternToChar(int pattern) throws NotFoundException {
-    for (int i = 0; i < CHARACTER_ENCODINGS.length; i++) {
-      if (CHARACTER_ENCODINGS[i] == pattern) {
-        return ALPHABET[i];
-      }
+    int index = pattern < 0 || pattern >= ENCODING_INDEXES.length ? -1 : ENCODING_INDEXES[pattern];
+    if (index < 0) {
+      throw NotFoundException.getNotFoundInstance();
     }
-    throw NotFoundException.getNotFoundInstance();
+    return ALPHABET[index];
   }
 
   private static String decodeExtended(CharSequence encoded) throws FormatException {
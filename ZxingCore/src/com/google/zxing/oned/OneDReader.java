@@ -27,9 +27,11 @@ import com.google.zxing.Result;
 import com.google.zxing.ResultMetadataType;
 import com.google.zxing.ResultPoint;
 import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
 
 import java.util.Arrays;
 import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -56,6 +58,11 @@ public abstract class OneDReader implements Reader {
     try {
       return doDecode(image, hints);
     } catch (NotFoundException nfe) {
+      Integer angleStep = hints == null ? null : (Integer) hints.get(DecodeHintType.ONED_SCAN_ANGLE_STEP);
+      if (angleStep != null && angleStep > 0 && angleStep < 180) {
+        // Scans lines at the other angles instead of rotating the image
+        return doDecodeAtAngles(image.getBlackMatrix(), angleStep, hints);
+      }
       boolean tryHarder = hints != null && hints.containsKey(DecodeHintType.TRY_HARDER);
       if (tryHarder && image.isRotateSupported()) {
         BinaryBitmap rotatedImage = image.rotateCounterClockwise();
@@ -98,6 +105,11 @@ public abstract class OneDReader implements Reader {
    * decided that moving up and down by about 1/16 of the image is pretty good; we try more of the
    * image if "trying harder".
    *
+   * <p>With {@link DecodeHintType#ONED_ROW_CONSENSUS}, rows that decode are tallied by format and
+   * text instead, and the first result seen is returned once enough rows agree on it, and those
+   * rows span enough of the image. Scanning stops early when too few decodes are left for any
+   * result to get enough rows.</p>
+   *
    * @param image The image to decode
    * @param hints Any hints that were requested
    * @return The contents of the decoded barcode
@@ -119,6 +131,8 @@ public abstract class OneDReader implements Reader {
       maxLines = 15; // 15 rows spaced 1/32 apart is roughly the middle half of the image
     }
 
+    RowTally tally = new RowTally(hints);
+
     for (int x = 0; x < maxLines; x++) {
 
       // Scanning from the middle out. Determine which row we're looking at next:
@@ -167,16 +181,117 @@ public abstract class OneDReader implements Reader {
               points[1] = new ResultPoint(width - points[1].getX() - 1, points[1].getY());
             }
           }
-          return result;
+          result = tally.add(result, rowNumber);
+          if (result != null) {
+            return result;
+          }
+          break;
         } catch (ReaderException re) {
           // continue -- just couldn't decode this row
         }
       }
+      if (tally.isHopeless()) {
+        break;
+      }
     }
 
     throw NotFoundException.getNotFoundInstance();
   }
 
+  /**
+   * Like {@link #doDecode(BinaryBitmap, Map)}, but scans lines at each multiple of an angle
+   * between 0 and 180 degrees, read straight from the black and white image with a
+   * {@link Scanline}, instead of rows.
+   *
+   * @param image The image to decode
+   * @param angleStep Degrees between the angles of the lines scanned
+   * @param hints Any hints that were requested
+   * @return The contents of the decoded barcode
+   * @throws NotFoundException if no line decodes
+   */
+  private Result doDecodeAtAngles(BitMatrix image,
+                                  int angleStep,
+                                  Map<DecodeHintType,?> hints) throws NotFoundException {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int dimension = Math.max(width, height);
+    boolean tryHarder = hints != null && hints.containsKey(DecodeHintType.TRY_HARDER);
+    // Lines at each angle are spaced as rows are
+    int lineStep = Math.max(1, dimension >> (tryHarder ? 8 : 5));
+    int maxLines = tryHarder ? dimension : 15;
+    if (hints != null && hints.containsKey(DecodeHintType.NEED_RESULT_POINT_CALLBACK)) {
+      // Points found along a line aren't in the image's coordinates
+      Map<DecodeHintType,Object> newHints = new EnumMap<DecodeHintType,Object>(DecodeHintType.class);
+      newHints.putAll(hints);
+      newHints.remove(DecodeHintType.NEED_RESULT_POINT_CALLBACK);
+      hints = newHints;
+    }
+    RowTally tally = new RowTally(hints);
+
+    BitArray row = null;
+    for (int degrees = nextAngle(0, angleStep); degrees < 180;
+         degrees = nextAngle(degrees, angleStep)) {
+      double angle = Math.toRadians(degrees);
+      float normalX = (float) -Math.sin(angle);
+      float normalY = (float) Math.cos(angle);
+      for (int x = 0; x < maxLines; x++) {
+        // From the center out, alternately to either side, as in doDecode()
+        int offset = lineStep * ((x + 1) >> 1) * ((x & 0x01) == 0 ? 1 : -1);
+        Scanline line = Scanline.across(width, height,
+                                        width / 2.0f + offset * normalX,
+                                        height / 2.0f + offset * normalY,
+                                        degrees);
+        if (line == null) {
+          break;
+        }
+        row = line.sample(image, row);
+        for (int attempt = 0; attempt < 2; attempt++) {
+          if (attempt == 1) {
+            row.reverse();
+          }
+          try {
+            Result result = decodeRow(x, row, hints);
+            // Clockwise angles are counterclockwise orientations
+            int orientation = 360 - degrees;
+            if (attempt == 1) {
+              orientation = (orientation + 180) % 360;
+            }
+            result.putMetadata(ResultMetadataType.ORIENTATION, orientation);
+            ResultPoint[] points = result.getResultPoints();
+            if (points != null) {
+              for (int i = 0; i < points.length; i++) {
+                float position = attempt == 1 ? row.getSize() - points[i].getX() - 1 : points[i].getX();
+                points[i] = line.toImage(new ResultPoint(position, points[i].getY()));
+              }
+            }
+            result = tally.add(result, offset);
+            if (result != null) {
+              return result;
+            }
+            break;
+          } catch (ReaderException re) {
+            // continue -- just couldn't decode this line
+          }
+        }
+        if (tally.isHopeless()) {
+          throw NotFoundException.getNotFoundInstance();
+        }
+      }
+    }
+
+    throw NotFoundException.getNotFoundInstance();
+  }
+
+  /**
+   * @return the next multiple of {@code angleStep} after {@code degrees}, or 90 if that comes
+   *  first: columns are always scanned, as rows of the rotated image used to be, even if the
+   *  step doesn't divide 90
+   */
+  private static int nextAngle(int degrees, int angleStep) {
+    int next = (degrees / angleStep + 1) * angleStep;
+    return degrees < 90 && next > 90 ? 90 : next;
+  }
+
   /**
    * Records the size of successive runs of white and black pixels in a row, starting at a given point.
    * The values are recorded in the given array, and the number of runs recorded is equal to the size
@@ -287,6 +402,77 @@ public abstract class OneDReader implements Reader {
     return totalVariance / total;
   }
 
+  /**
+   * Counts the rows that decode to each result, for {@link DecodeHintType#ONED_ROW_CONSENSUS}.
+   */
+  private static final class RowTally {
+
+    private final int agreeingRows;
+    private final int maxDecodedRows;
+    private final int minRowSpread;
+    // Results decoded so far, by format and text, with the number of rows that agree on each
+    // and the lowest and highest of those rows
+    private final Map<String,Result> firstResults = new HashMap<String,Result>();
+    private final Map<String,Integer> rowCounts = new HashMap<String,Integer>();
+    private final Map<String,int[]> rowRanges = new HashMap<String,int[]>();
+    private int decodedRows;
+    private int mostAgreeingRows;
+
+    RowTally(Map<DecodeHintType,?> hints) {
+      int[] consensus = hints == null ? null : (int[]) hints.get(DecodeHintType.ONED_ROW_CONSENSUS);
+      if (consensus != null && (consensus.length == 2 || consensus.length == 3 && consensus[2] >= 0) &&
+          consensus[0] > 1 && consensus[1] >= consensus[0]) {
+        agreeingRows = consensus[0];
+        maxDecodedRows = consensus[1];
+        minRowSpread = consensus.length == 3 ? consensus[2] : 0;
+      } else {
+        agreeingRows = 1;
+        maxDecodedRows = 1;
+        minRowSpread = 0;
+      }
+    }
+
+    /**
+     * @param result result decoded from one more row
+     * @param position where the row is, such as its row number
+     * @return the first result seen that agrees with it, if enough rows, spread far enough apart,
+     *  now agree, or null
+     */
+    Result add(Result result, int position) {
+      if (agreeingRows == 1) {
+        return result;
+      }
+      String key = result.getBarcodeFormat() + ":" + result.getText();
+      Integer count = rowCounts.get(key);
+      count = count == null ? 1 : count + 1;
+      int[] range = rowRanges.get(key);
+      if (count == 1) {
+        firstResults.put(key, result);
+        rowRanges.put(key, new int[] {position, position});
+      } else {
+        range[0] = Math.min(range[0], position);
+        range[1] = Math.max(range[1], position);
+        if (count >= agreeingRows && range[1] - range[0] >= minRowSpread) {
+          return firstResults.get(key);
+        }
+      }
+      rowCounts.put(key, count);
+      mostAgreeingRows = Math.max(mostAgreeingRows, count);
+      decodedRows++;
+      return null;
+    }
+
+    /**
+     * @return true if no rows may be decoded any more, or if even every row left agreeing with
+     *  the best result so far wouldn't be enough
+     */
+    boolean isHopeless() {
+      return agreeingRows > 1 &&
+          (decodedRows >= maxDecodedRows || mostAgreeingRows + maxDecodedRows - decodedRows < agreeingRows);
+    }
+
+  }
+
   /**
    * <p>Attempts to decode a one-dimensional barcode format given a single row of
    * an image.</p>
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.oned;
+
+import java.util.Arrays;
+
+/**
+ * <p>Finds which of a set of bar and space patterns, all as many modules long, a run of counters
+ * matches, by rounding the counters to whole modules and looking the widths up, instead of
+ * computing {@link OneDReader#patternMatchVariance(int[], int[], int)} against every pattern.</p>
+ *
+ * <p>Counters are scaled to modules just as they are for the variance. If each rounds to a width
+ * unambiguously, the pattern with those widths is nearer the counters than any other in every
+ * element that differs, so it has the least variance of all of them. Only whether that is little
+ * enough is left to check. Counters that fall halfway between widths, or round to widths that
+ * aren't a pattern, are left to the reader to match as before.</p>
+ */
+final class PatternTable {
+
+  private final int elements;
+  private final int patternLength;
+  private final int maxWidth;
+  // Index of the first pattern with each set of widths, as a number in base maxWidth + 1, or -1
+  private final int[] indexes;
+
+  /**
+   * @param patterns patterns to look up, of which only the first elements are compared
+   * @param elements number of counters to match against each pattern
+   */
+  PatternTable(int[][] patterns, int elements) {
+    this.elements = elements;
+    int length = 0;
+    int widest = 0;
+    for (int i = 0; i < elements; i++) {
+      length += patterns[0][i];
+    }
+    for (int[] pattern : patterns) {
+      int sum = 0;
+      for (int i = 0; i < elements; i++) {
+        sum += pattern[i];
+        widest = Math.max(widest, pattern[i]);
+      }
+      if (sum != length) {
+        throw new IllegalArgumentException("Patterns must be as long as each other");
+      }
+    }
+    patternLength = length;
+    maxWidth = widest;
+    int size = 1;
+    for (int i = 0; i < elements; i++) {
+      size *= maxWidth + 1;
+    }
+    indexes = new int[size];
+    Arrays.fill(indexes, -1);
+    // Backwards, so that the first of any patterns alike is kept, as a scan in order keeps it
+    for (int p = patterns.length - 1; p >= 0; p--) {
+      int key = 0;
+      for (int i = 0; i < elements; i++) {
+        key = key * (maxWidth + 1) + patterns[p][i];
+      }
+      indexes[key] = p;
+    }
+  }
+
+  /**
+   * @param counters observed counters
+   * @return index of the pattern whose widths the counters round to, or -1 if a counter is halfway
+   *  between widths or the widths aren't one of the patterns
+   */
+  int lookup(int[] counters) {
+    int total = 0;
+    for (int i = 0; i < elements; i++) {
+      total += counters[i];
+    }
+    if (total < patternLength) {
+      return -1;
+    }
+    // As in patternMatchVariance()
+    int unitBarWidth = (total << OneDReader.INTEGER_MATH_SHIFT) / patternLength;
+    int key = 0;
+    for (int i = 0; i < elements; i++) {
+      int counter = counters[i] << OneDReader.INTEGER_MATH_SHIFT;
+      int width = counter / unitBarWidth;
+      int twiceRemainder = 2 * (counter - width * unitBarWidth);
+      if (twiceRemainder == unitBarWidth) {
+        return -1;
+      }
+      if (twiceRemainder > unitBarWidth) {
+        width++;
+      }
+      if (width < 1 || width > maxWidth) {
+        return -1;
+      }
+      key = key * (maxWidth + 1) + width;
+    }
+    return indexes[key];
+  }
+
+}
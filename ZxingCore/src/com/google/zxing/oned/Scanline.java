@@ -0,0 +1,135 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.oned;
+
+import com.google.zxing.ResultPoint;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+
+/**
+ * <p>A straight line across a {@link BitMatrix} at any angle, whose pixels are read into a
+ * {@link BitArray} by stepping from one to the next as Bresenham's algorithm does. This lets 1D
+ * readers scan rotated barcodes without making a rotated copy of the image.</p>
+ */
+final class Scanline {
+
+  private final int fromX;
+  private final int fromY;
+  private final int toX;
+  private final int toY;
+
+  private Scanline(int fromX, int fromY, int toX, int toY) {
+    this.fromX = fromX;
+    this.fromY = fromY;
+    this.toX = toX;
+    this.toY = toY;
+  }
+
+  /**
+   * @param width width of the image
+   * @param height height of the image
+   * @param x a point the line passes through
+   * @param y a point the line passes through
+   * @param degrees angle of the line, clockwise from left to right
+   * @return the part of the line that lies in the image, or null if it misses the image
+   */
+  static Scanline across(int width, int height, float x, float y, int degrees) {
+    double angle = Math.toRadians(degrees);
+    float dx = (float) Math.cos(angle);
+    float dy = (float) Math.sin(angle);
+    // Clip to the centers of the pixels at the edges of the image
+    float[] limits = {Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY};
+    if (!clip(x, dx, width - 1, limits) || !clip(y, dy, height - 1, limits)) {
+      return null;
+    }
+    return new Scanline(Math.round(x + limits[0] * dx),
+                        Math.round(y + limits[0] * dy),
+                        Math.round(x + limits[1] * dx),
+                        Math.round(y + limits[1] * dy));
+  }
+
+  /**
+   * Narrows the range of distances along a line to those where one coordinate is from 0 to max.
+   *
+   * @return false if no distance is in range
+   */
+  private static boolean clip(float start, float step, int max, float[] limits) {
+    if (Math.abs(step) < 1.0e-6f) {
+      return start >= 0.0f && start <= max;
+    }
+    float first = -start / step;
+    float last = (max - start) / step;
+    limits[0] = Math.max(limits[0], Math.min(first, last));
+    limits[1] = Math.min(limits[1], Math.max(first, last));
+    return limits[0] <= limits[1];
+  }
+
+  /**
+   * @return number of pixels along the line
+   */
+  int getSize() {
+    return Math.max(Math.abs(toX - fromX), Math.abs(toY - fromY)) + 1;
+  }
+
+  /**
+   * @param image image to read from
+   * @param row array to reuse, if it is the right size
+   * @return pixels along the line, from its start
+   */
+  BitArray sample(BitMatrix image, BitArray row) {
+    int size = getSize();
+    if (row == null || row.getSize() != size) {
+      row = new BitArray(size);
+    } else {
+      row.clear();
+    }
+    int dx = Math.abs(toX - fromX);
+    int dy = Math.abs(toY - fromY);
+    int stepX = fromX < toX ? 1 : -1;
+    int stepY = fromY < toY ? 1 : -1;
+    int error = dx - dy;
+    int x = fromX;
+    int y = fromY;
+    for (int i = 0; i < size; i++) {
+      if (image.get(x, y)) {
+        row.set(i);
+      }
+      int doubleError = 2 * error;
+      if (doubleError > -dy) {
+        error -= dy;
+        x += stepX;
+      }
+      if (doubleError < dx) {
+        error += dx;
+        y += stepY;
+      }
+    }
+    return row;
+  }
+
+  /**
+   * @param point a point found in the pixels along the line, whose x coordinate is the offset
+   *  from the start of the line
+   * @return the point in the image
+   */
+  ResultPoint toImage(ResultPoint point) {
+    int size = getSize();
+    float fraction = size == 1 ? 0.0f : point.getX() / (size - 1);
+    return new ResultPoint(fromX + fraction * (toX - fromX), fromY + fraction * (toY - fromY));
+  }
+
+}
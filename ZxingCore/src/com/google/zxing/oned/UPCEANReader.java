@@ -91,6 +91,9 @@ public abstract class UPCEANReader extends OneDReader {
     }
   }
 
+  private static final PatternTable L_TABLE = new PatternTable(L_PATTERNS, 4);
+  private static final PatternTable L_AND_G_TABLE = new PatternTable(L_AND_G_PATTERNS, 4);
+
   private final StringBuilder decodeRowStringBuffer;
   private final UPCEANExtensionSupport extensionReader;
   private final EANManufacturerOrgSupport eanManSupport;
@@ -320,8 +323,21 @@ public abstract class UPCEANReader extends OneDReader {
   static int decodeDigit(BitArray row, int[] counters, int rowOffset, int[][] patterns)
       throws NotFoundException {
     recordPattern(row, rowOffset, counters);
+    PatternTable table = null;
+    if (patterns == L_PATTERNS) {
+      table = L_TABLE;
+    } else if (patterns == L_AND_G_PATTERNS) {
+      table = L_AND_G_TABLE;
+    }
+    int bestMatch = table == null ? -1 : table.lookup(counters);
+    if (bestMatch >= 0) {
+      // No other pattern is as close, so it only remains to see if this one is close enough
+      if (patternMatchVariance(counters, patterns[bestMatch], MAX_INDIVIDUAL_VARIANCE) < MAX_AVG_VARIANCE) {
+        return bestMatch;
+      }
+      throw NotFoundException.getNotFoundInstance();
+    }
     int bestVariance = MAX_AVG_VARIANCE; // worst variance we'll accept
-    int bestMatch = -1;
     int max = patterns.length;
     for (int i = 0; i < max; i++) {
       int[] pattern = patterns[i];
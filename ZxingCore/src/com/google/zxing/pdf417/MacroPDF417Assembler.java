@@ -0,0 +1,182 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.pdf417;
+
+import com.google.zxing.Result;
+import com.google.zxing.ResultMetadataType;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * <p>Puts together the payload of a Macro PDF417 file, whose segments are spread over several
+ * symbols, from {@link Result}s as they are decoded, in any order and with repeats, as when
+ * scanning frames from a camera or the pages of a document.</p>
+ *
+ * <p>Segments are grouped by the file ID in their {@link PDF417ResultMetadata}. Once a file has
+ * every segment up to the one marked as the last, {@link #add(Result)} returns the text of all
+ * of them in order and forgets the file. Files still missing segments are dropped when they have
+ * not been seen for longer than the maximum age, and, least recently seen first, when the text
+ * buffered for all files exceeds the maximum size.</p>
+ *
+ * <p>Instances are thread-safe.</p>
+ */
+public final class MacroPDF417Assembler {
+
+  private final int maxBufferedCharacters;
+  private final long maxAgeMillis;
+  // Files still missing segments, least recently seen first
+  private final Map<String,PendingFile> pendingFiles =
+      new LinkedHashMap<String,PendingFile>(16, 0.75f, true);
+  private int bufferedCharacters;
+
+  /**
+   * @param maxBufferedCharacters most characters of segment text to hold for all incomplete files
+   * @param maxAgeMillis how long to keep an incomplete file after it was last seen, in milliseconds
+   */
+  public MacroPDF417Assembler(int maxBufferedCharacters, long maxAgeMillis) {
+    if (maxBufferedCharacters < 0 || maxAgeMillis < 0) {
+      throw new IllegalArgumentException("Limits must be nonnegative");
+    }
+    this.maxBufferedCharacters = maxBufferedCharacters;
+    this.maxAgeMillis = maxAgeMillis;
+  }
+
+  /**
+   * @param result a decoded PDF417 symbol
+   * @return the text of the whole file, if this result completed it; the result's own text if it is
+   *  not part of a Macro PDF417 file; or null if the file still misses segments
+   */
+  public String add(Result result) {
+    return add(result, System.currentTimeMillis());
+  }
+
+  synchronized String add(Result result, long now) {
+    evictOlderThan(now - maxAgeMillis);
+    Map<ResultMetadataType,Object> metadata = result.getResultMetadata();
+    PDF417ResultMetadata macro = metadata == null ? null :
+        (PDF417ResultMetadata) metadata.get(ResultMetadataType.PDF417_EXTRA_METADATA);
+    if (macro == null || macro.getFileId() == null) {
+      return result.getText();
+    }
+
+    String fileId = macro.getFileId();
+    PendingFile file = pendingFiles.get(fileId);
+    if (file == null) {
+      file = new PendingFile();
+      pendingFiles.put(fileId, file);
+    }
+    file.lastSeen = now;
+    bufferedCharacters += file.add(macro.getSegmentIndex(), macro.isLastSegment(), result.getText());
+    if (file.isComplete()) {
+      pendingFiles.remove(fileId);
+      bufferedCharacters -= file.characters;
+      return file.getText();
+    }
+
+    // Least recently seen first, which puts the file just added last
+    Iterator<PendingFile> it = pendingFiles.values().iterator();
+    while (bufferedCharacters > maxBufferedCharacters && it.hasNext()) {
+      bufferedCharacters -= it.next().characters;
+      it.remove();
+    }
+    return null;
+  }
+
+  /**
+   * Drops incomplete files that have not been seen for longer than the maximum age. Files are also
+   * checked whenever a result is added.
+   */
+  public synchronized void evictStale() {
+    evictOlderThan(System.currentTimeMillis() - maxAgeMillis);
+  }
+
+  private void evictOlderThan(long time) {
+    Iterator<PendingFile> it = pendingFiles.values().iterator();
+    while (it.hasNext()) {
+      PendingFile file = it.next();
+      if (file.lastSeen >= time) {
+        break;
+      }
+      bufferedCharacters -= file.characters;
+      it.remove();
+    }
+  }
+
+  /**
+   * @return number of files seen that still miss segments
+   */
+  public synchronized int getPendingFileCount() {
+    return pendingFiles.size();
+  }
+
+  /**
+   * @return characters of segment text held for the files that still miss segments
+   */
+  public synchronized int getBufferedCharacters() {
+    return bufferedCharacters;
+  }
+
+  private static final class PendingFile {
+
+    private final SortedMap<Integer,String> segments = new TreeMap<Integer,String>();
+    // Index of the segment marked as the last, once seen
+    private int lastSegmentIndex = -1;
+    private int characters;
+    private long lastSeen;
+
+    /**
+     * @return change in the number of characters held
+     */
+    int add(int segmentIndex, boolean lastSegment, String text) {
+      int before = characters;
+      if (lastSegment && lastSegmentIndex < 0) {
+        lastSegmentIndex = segmentIndex;
+        // Segments numbered past the last one can't belong to the file
+        for (String dropped : segments.tailMap(segmentIndex + 1).values()) {
+          characters -= dropped.length();
+        }
+        segments.tailMap(segmentIndex + 1).clear();
+      }
+      if (segmentIndex >= 0 &&
+          (lastSegmentIndex < 0 || segmentIndex <= lastSegmentIndex) &&
+          !segments.containsKey(segmentIndex)) {
+        segments.put(segmentIndex, text);
+        characters += text.length();
+      }
+      return characters - before;
+    }
+
+    boolean isComplete() {
+      // Distinct indexes from 0 that number one more than the last must be all of 0 to last
+      return lastSegmentIndex >= 0 && segments.size() == lastSegmentIndex + 1;
+    }
+
+    String getText() {
+      StringBuilder text = new StringBuilder(characters);
+      for (String segment : segments.values()) {
+        text.append(segment);
+      }
+      return text.toString();
+    }
+
+  }
+
+}
@@ -15,6 +15,7 @@
  */
 package com.google.zxing.pdf417;
 
+import java.util.Arrays;
 import java.util.Collection;
 
 /**
@@ -65,35 +66,67 @@ public final class PDF417Common {
    * @return the codeword corresponding to the symbol.
    */
   public static int getCodeword(long symbol) {
+    int entry = lookup(symbol);
+    return entry == -1 ? -1 : entry & 0x3FF;
+  }
+
+  /**
+   * @param symbol the symbol from the barcode
+   * @return the cluster of the symbol, as the bucket number 0, 3 or 6, or -1 if it is not a valid symbol
+   */
+  public static int getCodewordBucket(long symbol) {
+    int entry = lookup(symbol);
+    return entry == -1 ? -1 : (entry >> 10) * 3;
+  }
+
+  private static int lookup(long symbol) {
     long sym = symbol & 0x3FFFF;
-    int i = findCodewordIndex(sym);
-    if (i == -1) {
+    // Every symbol starts with a bar, so has its 17th bit set
+    if ((sym >> 16) != 1) {
       return -1;
     }
-    return (CODEWORD_TABLE[i] - 1) % NUMBER_OF_CODEWORDS;
+    return SymbolLookup.ENTRIES[(int) sym & 0xFFFF];
   }
 
   /**
-   * Use a binary search to find the index of the codeword corresponding to
-   * this symbol.
-   *
-   * @param symbol the symbol from the barcode.
-   * @return the index into the codeword table.
+   * Maps the low 16 bits of every 17 module pattern directly to its codeword and cluster,
+   * as {@code (bucket / 3) << 10 | codeword}, or -1 where the pattern is not a symbol. Built
+   * on first use, since only decoding needs it.
    */
-  private static int findCodewordIndex(long symbol) {
-    int first = 0;
-    int upto = SYMBOL_TABLE.length;
-    while (first < upto) {
-      int mid = (first + upto) >>> 1; // Compute mid point.
-      if (symbol < SYMBOL_TABLE[mid]) {
-        upto = mid; // continue search in bottom half.
-      } else if (symbol > SYMBOL_TABLE[mid]) {
-        first = mid + 1; // continue search in top half.
-      } else {
-        return mid; // Found it. return position
+  private static final class SymbolLookup {
+
+    private static final short[] ENTRIES = buildEntries();
+
+    private static short[] buildEntries() {
+      short[] entries = new short[1 << 16];
+      Arrays.fill(entries, (short) -1);
+      for (int i = 0; i < SYMBOL_TABLE.length; i++) {
+        int symbol = SYMBOL_TABLE[i];
+        int codeword = (CODEWORD_TABLE[i] - 1) % NUMBER_OF_CODEWORDS;
+        entries[symbol & 0xFFFF] = (short) ((getBucket(symbol) / 3) << 10 | codeword);
+      }
+      return entries;
+    }
+
+    private static int getBucket(int symbol) {
+      // Widths of the bars and spaces, from the last one back
+      int[] widths = new int[BARS_IN_MODULE];
+      int i = BARS_IN_MODULE - 1;
+      int previousBit = 0;
+      while (true) {
+        if ((symbol & 0x1) != previousBit) {
+          previousBit = symbol & 0x1;
+          i--;
+          if (i < 0) {
+            break;
+          }
+        }
+        widths[i]++;
+        symbol >>= 1;
       }
+      return (widths[0] - widths[2] + widths[4] - widths[6] + 9) % 9;
     }
-    return -1;
+
   }
 
   /**
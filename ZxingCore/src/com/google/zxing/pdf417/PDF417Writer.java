@@ -21,6 +21,7 @@ import com.google.zxing.EncodeHintType;
 import com.google.zxing.Writer;
 import com.google.zxing.WriterException;
 import com.google.zxing.common.BitMatrix;
+import com.google.zxing.pdf417.encoder.BarcodeMatrix;
 import com.google.zxing.pdf417.encoder.Compaction;
 import com.google.zxing.pdf417.encoder.Dimensions;
 import com.google.zxing.pdf417.encoder.PDF417;
@@ -84,72 +85,29 @@ public final class PDF417Writer implements Writer {
 
     int lineThickness = 2;
     int aspectRatio = 4;
-    byte[][] originalScale = encoder.getBarcodeMatrix().getScaledMatrix(lineThickness, aspectRatio * lineThickness);
-    boolean rotated = false;
-    if ((height > width) ^ (originalScale[0].length < originalScale.length)) {
-      originalScale = rotateArray(originalScale);
-      rotated = true;
+    BarcodeMatrix barcodeMatrix = encoder.getBarcodeMatrix();
+    int barcodeWidth = barcodeMatrix.getModuleWidth() * lineThickness;
+    int barcodeHeight = barcodeMatrix.getModuleHeight() * aspectRatio * lineThickness;
+    boolean rotated = (height > width) ^ (barcodeWidth < barcodeHeight);
+    if (rotated) {
+      int temp = barcodeWidth;
+      barcodeWidth = barcodeHeight;
+      barcodeHeight = temp;
     }
 
-    int scaleX = width / originalScale[0].length;
-    int scaleY = height / originalScale.length;
+    int scale = Math.max(1, Math.min(width / barcodeWidth, height / barcodeHeight));
 
-    int scale;
-    if (scaleX < scaleY) {
-      scale = scaleX;
-    } else {
-      scale = scaleY;
-    }
-
-    if (scale > 1) {
-      byte[][] scaledMatrix =
-          encoder.getBarcodeMatrix().getScaledMatrix(scale * lineThickness, scale * aspectRatio * lineThickness);
-      if (rotated) {
-        scaledMatrix = rotateArray(scaledMatrix);
-      }
-      return bitMatrixFrombitArray(scaledMatrix);
-    }
-    return bitMatrixFrombitArray(originalScale);
-  }
-
-  /**
-   * This takes an array holding the values of the PDF 417
-   *
-   * @param input a byte array of information with 0 is black, and 1 is white
-   * @return BitMatrix of the input
-   */
-  private static BitMatrix bitMatrixFrombitArray(byte[][] input) {
     // Creates a small whitespace border around the barcode
     int whiteSpace = 30;
-
-    // Creates the bitmatrix with extra space for whitespace
-    BitMatrix output = new BitMatrix(input[0].length + 2 * whiteSpace, input.length + 2 * whiteSpace);
-    output.clear();
-    for (int y = 0, yOutput = output.getHeight() - whiteSpace; y < input.length; y++, yOutput--) {
-      for (int x = 0; x < input[0].length; x++) {
-        // Zero is white in the bytematrix
-        if (input[y][x] == 1) {
-          output.set(x + whiteSpace, yOutput);
-        }
-      }
-    }
+    BitMatrix output = new BitMatrix(barcodeWidth * scale + 2 * whiteSpace, barcodeHeight * scale + 2 * whiteSpace);
+    // The barcode has always started one row below the border
+    barcodeMatrix.render(output,
+                         whiteSpace,
+                         whiteSpace + 1,
+                         scale * lineThickness,
+                         scale * aspectRatio * lineThickness,
+                         rotated);
     return output;
   }
 
-  /**
-   * Takes and rotates the it 90 degrees
-   */
-  private static byte[][] rotateArray(byte[][] bitarray) {
-    byte[][] temp = new byte[bitarray[0].length][bitarray.length];
-    for (int ii = 0; ii < bitarray.length; ii++) {
-      // This makes the direction consistent on screen when rotating the
-      // screen;
-      int inverseii = bitarray.length - ii - 1;
-      for (int jj = 0; jj < bitarray[0].length; jj++) {
-        temp[jj][inverseii] = bitarray[ii][jj];
-      }
-    }
-    return temp;
-  }
-
 }
@@ -16,54 +16,79 @@
 
 package com.google.zxing.pdf417.decoder;
 
-import com.google.zxing.pdf417.PDF417Common;
-
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Arrays;
 
 /**
+ * Counts the votes for each value seen in one position of the barcode.
+ *
  * @author Guenther Grau
  */
 final class BarcodeValue {
-  private final Map<Integer,Integer> values = new HashMap<Integer,Integer>();
+
+  private static final int[] EMPTY_INT_ARRAY = {};
+
+  // Distinct values in the order they were first set, and how often each was set; only a few different values
+  // are ever read for one position, so these are searched linearly
+  private int[] values = EMPTY_INT_ARRAY;
+  private int[] confidences = EMPTY_INT_ARRAY;
+  private int size;
 
   /**
    * Add an occurrence of a value
    * @param value
    */
   void setValue(int value) {
-    Integer confidence = values.get(value);
-    if (confidence == null) {
-      confidence = 0;
+    for (int i = 0; i < size; i++) {
+      if (values[i] == value) {
+        confidences[i]++;
+        return;
+      }
+    }
+    if (size == values.length) {
+      int capacity = size == 0 ? 2 : size << 1;
+      values = Arrays.copyOf(values, capacity);
+      confidences = Arrays.copyOf(confidences, capacity);
     }
-    confidence++;
-    values.put(value, confidence);
+    values[size] = value;
+    confidences[size++] = 1;
   }
 
   /**
    * Determines the maximum occurrence of a set value and returns all values which were set with this occurrence. 
-   * @return an array of int, containing the values with the highest occurrence, or null, if no value was set
+   * @return an array of int, containing the values with the highest occurrence in the order they were first set,
+   *  or an empty array, if no value was set. The order decides which ambiguous codewords are tried first.
    */
   int[] getValue() {
     int maxConfidence = -1;
-    Collection<Integer> result = new ArrayList<Integer>();
-    for (Entry<Integer,Integer> entry : values.entrySet()) {
-      if (entry.getValue() > maxConfidence) {
-        maxConfidence = entry.getValue();
-        result.clear();
-        result.add(entry.getKey());
-      } else if (entry.getValue() == maxConfidence) {
-        result.add(entry.getKey());
+    int count = 0;
+    for (int i = 0; i < size; i++) {
+      if (confidences[i] > maxConfidence) {
+        maxConfidence = confidences[i];
+        count = 1;
+      } else if (confidences[i] == maxConfidence) {
+        count++;
       }
     }
-    return PDF417Common.toIntArray(result);
+    int[] result = new int[count];
+    int resultIndex = 0;
+    for (int i = 0; i < size; i++) {
+      if (confidences[i] == maxConfidence) {
+        result[resultIndex++] = values[i];
+      }
+    }
+    return result;
   }
 
-  public Integer getConfidence(int value) {
-    return values.get(value);
+  /**
+   * @return how often the value was set, or 0 if it never was
+   */
+  public int getConfidence(int value) {
+    for (int i = 0; i < size; i++) {
+      if (values[i] == value) {
+        return confidences[i];
+      }
+    }
+    return 0;
   }
 
 }
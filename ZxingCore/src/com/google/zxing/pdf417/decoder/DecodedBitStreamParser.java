@@ -20,7 +20,6 @@ import com.google.zxing.FormatException;
 import com.google.zxing.common.DecoderResult;
 import com.google.zxing.pdf417.PDF417ResultMetadata;
 
-import java.math.BigInteger;
 import java.util.Arrays;
 
 /**
@@ -59,7 +58,7 @@ final class DecodedBitStreamParser {
   private static final int PAL = 29;
 
   private static final char[] PUNCT_CHARS = {
-      ';', '<', '>', '@', '[', '\\', '}', '_', '`', '~', '!',
+      ';', '<', '>', '@', '[', '\\', ']', '_', '`', '~', '!',
       '\r', '\t', ',', ':', '\n', '-', '.', '$', '/', '"', '|', '*',
       '(', ')', '?', '{', '}', '\''};
 
@@ -68,20 +67,9 @@ final class DecodedBitStreamParser {
       '\r', '\t', ',', ':', '#', '-', '.', '$', '/', '+', '%', '*',
       '=', '^'};
 
-  /**
-   * Table containing values for the exponent of 900.
-   * This is used in the numeric compaction decode algorithm.
-   */
-  private static final BigInteger[] EXP900;
-  static {
-    EXP900 = new BigInteger[16];
-    EXP900[0] = BigInteger.ONE;
-    BigInteger nineHundred = BigInteger.valueOf(900);
-    EXP900[1] = nineHundred;
-    for (int i = 2; i < EXP900.length; i++) {
-      EXP900[i] = EXP900[i - 1].multiply(nineHundred);
-    }
-  }
+  // Numeric compaction values are worked out in limbs of 9 decimal digits
+  private static final int LIMB_DIGITS = 9;
+  private static final int LIMB_BASE = 1000000000;
 
   private static final int NUMBER_OF_SEQUENCE_CODEWORDS = 2;
 
@@ -90,11 +78,11 @@ final class DecodedBitStreamParser {
 
   static DecoderResult decode(int[] codewords, String ecLevel) throws FormatException {
     StringBuilder result = new StringBuilder(codewords.length * 2);
-    // Get compaction mode
-    int codeIndex = 1;
-    int code = codewords[codeIndex++];
+    // Symbols start in text compaction
+    int codeIndex = textCompaction(codewords, 1, result);
     PDF417ResultMetadata resultMetadata = new PDF417ResultMetadata();
     while (codeIndex < codewords[0]) {
+      int code = codewords[codeIndex++];
       switch (code) {
         case TEXT_COMPACTION_MODE_LATCH:
           codeIndex = textCompaction(codewords, codeIndex, result);
@@ -106,7 +94,12 @@ final class DecodedBitStreamParser {
           codeIndex = numericCompaction(codewords, codeIndex, result);
           break;
         case MODE_SHIFT_TO_BYTE_COMPACTION_MODE:
-          codeIndex = byteCompaction(code, codewords, codeIndex, result);
+          // Shifts out of text compaction for just the next codeword, then carries on in it
+          if (codeIndex >= codewords[0]) {
+            throw FormatException.getFormatInstance();
+          }
+          result.append((char) codewords[codeIndex++]);
+          codeIndex = textCompaction(codewords, codeIndex, result);
           break;
         case BYTE_COMPACTION_MODE_LATCH_6:
           codeIndex = byteCompaction(code, codewords, codeIndex, result);
@@ -122,11 +115,6 @@ final class DecodedBitStreamParser {
           codeIndex = textCompaction(codewords, codeIndex, result);
           break;
       }
-      if (codeIndex < codewords.length) {
-        code = codewords[codeIndex++];
-      } else {
-        throw FormatException.getFormatInstance();
-      }
     }
     if (result.length() == 0) {
       throw FormatException.getFormatInstance();
@@ -553,9 +541,11 @@ final class DecodedBitStreamParser {
           end = true;
         }
       }
-      if (count % MAX_NUMERIC_CODEWORDS == 0 ||
-          code == NUMERIC_COMPACTION_MODE_LATCH ||
-          end) {
+      // A group that filled up just before a latch has already been decoded
+      if (count > 0 &&
+          (count % MAX_NUMERIC_CODEWORDS == 0 ||
+           code == NUMERIC_COMPACTION_MODE_LATCH ||
+           end)) {
         // Re-invoking Numeric Compaction mode (by using codeword 902
         // while in Numeric Compaction mode) serves  to terminate the
         // current Numeric Compaction mode grouping as described in 5.4.4.2,
@@ -611,16 +601,33 @@ final class DecodedBitStreamParser {
 
      Remove leading 1 =>  Result is 000213298174000
    */
-  private static String decodeBase900toBase10(int[] codewords, int count) throws FormatException {
-    BigInteger result = BigInteger.ZERO;
+  static String decodeBase900toBase10(int[] codewords, int count) throws FormatException {
+    // The value, least significant limb first. Each codeword is below 1000, so adds at most 3 digits
+    int[] limbs = new int[count / 3 + 1];
     for (int i = 0; i < count; i++) {
-      result = result.add(EXP900[count - i - 1].multiply(BigInteger.valueOf(codewords[i])));
+      long carry = codewords[i];
+      for (int j = 0; j < limbs.length; j++) {
+        long value = limbs[j] * 900L + carry;
+        limbs[j] = (int) (value % LIMB_BASE);
+        carry = value / LIMB_BASE;
+      }
+    }
+    char[] digits = new char[limbs.length * LIMB_DIGITS];
+    int digitIndex = digits.length;
+    for (int limb : limbs) {
+      for (int i = 0; i < LIMB_DIGITS; i++) {
+        digits[--digitIndex] = (char) ('0' + limb % 10);
+        limb /= 10;
+      }
+    }
+    int start = 0;
+    while (start < digits.length - 1 && digits[start] == '0') {
+      start++;
     }
-    String resultString = result.toString();
-    if (resultString.charAt(0) != '1') {
+    if (digits[start] != '1') {
       throw FormatException.getFormatInstance();
     }
-    return resultString.substring(1);
+    return new String(digits, start + 1, digits.length - start - 1);
   }
 
 }
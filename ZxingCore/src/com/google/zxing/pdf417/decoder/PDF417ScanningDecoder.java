@@ -25,10 +25,8 @@ import com.google.zxing.common.DecoderResult;
 import com.google.zxing.pdf417.PDF417Common;
 import com.google.zxing.pdf417.decoder.ec.ErrorCorrection;
 
-import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.Formatter;
-import java.util.List;
 
 /**
  * @author Guenther Grau
@@ -246,30 +244,29 @@ public final class PDF417ScanningDecoder {
       ChecksumException, NotFoundException {
     BarcodeValue[][] barcodeMatrix = createBarcodeMatrix(detectionResult);
     adjustCodewordCount(detectionResult, barcodeMatrix);
-    Collection<Integer> erasures = new ArrayList<Integer>();
     int[] codewords = new int[detectionResult.getBarcodeRowCount() * detectionResult.getBarcodeColumnCount()];
-    List<int[]> ambiguousIndexValuesList = new ArrayList<int[]>();
-    List<Integer> ambiguousIndexesList = new ArrayList<Integer>();
+    int[] erasures = new int[codewords.length];
+    int erasureCount = 0;
+    int[] ambiguousIndexes = new int[codewords.length];
+    int[][] ambiguousIndexValues = new int[codewords.length][];
+    int ambiguousCount = 0;
     for (int row = 0; row < detectionResult.getBarcodeRowCount(); row++) {
       for (int column = 0; column < detectionResult.getBarcodeColumnCount(); column++) {
         int[] values = barcodeMatrix[row][column + 1].getValue();
         int codewordIndex = row * detectionResult.getBarcodeColumnCount() + column;
         if (values.length == 0) {
-          erasures.add(codewordIndex);
+          erasures[erasureCount++] = codewordIndex;
         } else if (values.length == 1) {
           codewords[codewordIndex] = values[0];
         } else {
-          ambiguousIndexesList.add(codewordIndex);
-          ambiguousIndexValuesList.add(values);
+          ambiguousIndexes[ambiguousCount] = codewordIndex;
+          ambiguousIndexValues[ambiguousCount++] = values;
         }
       }
     }
-    int[][] ambiguousIndexValues = new int[ambiguousIndexValuesList.size()][];
-    for (int i = 0; i < ambiguousIndexValues.length; i++) {
-      ambiguousIndexValues[i] = ambiguousIndexValuesList.get(i);
-    }
     return createDecoderResultFromAmbiguousValues(detectionResult.getBarcodeECLevel(), codewords,
-        PDF417Common.toIntArray(erasures), PDF417Common.toIntArray(ambiguousIndexesList), ambiguousIndexValues);
+        Arrays.copyOf(erasures, erasureCount), Arrays.copyOf(ambiguousIndexes, ambiguousCount),
+        Arrays.copyOf(ambiguousIndexValues, ambiguousCount));
   }
 
   /**
@@ -448,7 +445,7 @@ public final class PDF417ScanningDecoder {
     if (codeword == -1) {
       return null;
     }
-    return new Codeword(startColumn, endColumn, getCodewordBucketNumber(decodedValue), codeword);
+    return new Codeword(startColumn, endColumn, PDF417Common.getCodewordBucket(decodedValue), codeword);
   }
 
   private static int[] getModuleBitCount(BitMatrix image,
@@ -577,32 +574,6 @@ public final class PDF417ScanningDecoder {
     }
   }
 
-  private static int[] getBitCountForCodeword(int codeword) {
-    int[] result = new int[8];
-    int previousValue = 0;
-    int i = result.length - 1;
-    while (true) {
-      if ((codeword & 0x1) != previousValue) {
-        previousValue = codeword & 0x1;
-        i--;
-        if (i < 0) {
-          break;
-        }
-      }
-      result[i]++;
-      codeword >>= 1;
-    }
-    return result;
-  }
-
-  private static int getCodewordBucketNumber(int codeword) {
-    return getCodewordBucketNumber(getBitCountForCodeword(codeword));
-  }
-
-  private static int getCodewordBucketNumber(int[] moduleBitCount) {
-    return (moduleBitCount[0] - moduleBitCount[2] + moduleBitCount[4] - moduleBitCount[6] + 9) % 9;
-  }
-
   public static String toString(BarcodeValue[][] barcodeMatrix) {
     Formatter formatter = new Formatter();
     for (int row = 0; row < barcodeMatrix.length; row++) {
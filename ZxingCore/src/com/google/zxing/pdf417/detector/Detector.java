@@ -82,7 +82,8 @@ public final class Detector {
 
     List<ResultPoint[]> barcodeCoordinates = detect(multiple, bitMatrix);
     if (barcodeCoordinates.isEmpty()) {
-      rotate180(bitMatrix);
+      // Other readers share the image's matrix, so look for an upside down code in a rotated copy
+      bitMatrix = rotate180(bitMatrix);
       barcodeCoordinates = detect(multiple, bitMatrix);
     }
     return new PDF417DetectorResult(bitMatrix, barcodeCoordinates);
@@ -145,19 +146,20 @@ public final class Detector {
   // data structures)
   /**
    * Rotates a bit matrix by 180 degrees.
-   * @param bitMatrix bit matrix to rotate
+   * @param bitMatrix bit matrix to rotate, which is left unchanged
+   * @return a new bit matrix holding the rotated bits
    */
-  static void rotate180(BitMatrix bitMatrix) {
+  static BitMatrix rotate180(BitMatrix bitMatrix) {
     int width = bitMatrix.getWidth();
     int height = bitMatrix.getHeight();
-    BitArray firstRowBitArray = new BitArray(width);
-    BitArray secondRowBitArray = new BitArray(width);
-    BitArray tmpBitArray = new BitArray(width);
-    for (int y = 0; y < height + 1 >> 1; y++) {
-      firstRowBitArray = bitMatrix.getRow(y, firstRowBitArray);
-      bitMatrix.setRow(y, mirror(bitMatrix.getRow(height - 1 - y, secondRowBitArray), tmpBitArray));
-      bitMatrix.setRow(height - 1 - y, mirror(firstRowBitArray, tmpBitArray));
+    BitMatrix rotated = new BitMatrix(width, height);
+    BitArray rowBitArray = new BitArray(width);
+    BitArray mirroredBitArray = new BitArray(width);
+    for (int y = 0; y < height; y++) {
+      rowBitArray = bitMatrix.getRow(y, rowBitArray);
+      rotated.setRow(height - 1 - y, mirror(rowBitArray, mirroredBitArray));
     }
+    return rotated;
   }
 
   /**
@@ -16,6 +16,8 @@
 
 package com.google.zxing.pdf417.encoder;
 
+import com.google.zxing.common.BitMatrix;
+
 /**
  * Holds all of the information for a barcode in a format where it can be easily accessable
  *
@@ -68,11 +70,60 @@ public final class BarcodeMatrix {
   }
 
   public byte[][] getScaledMatrix(int xScale, int yScale) {
-    byte[][] matrixOut = new byte[height * yScale][width * xScale];
     int yMax = height * yScale;
+    byte[][] matrixOut = new byte[yMax][];
     for (int i = 0; i < yMax; i++) {
       matrixOut[yMax - i - 1] = matrix[i / yScale].getScaledRow(xScale);
     }
     return matrixOut;
   }
+
+  /**
+   * @return width of the barcode in modules, including start and stop patterns
+   */
+  public int getModuleWidth() {
+    return matrix[0].getRow().length;
+  }
+
+  /**
+   * @return height of the barcode in rows, including a blank row above and below
+   */
+  public int getModuleHeight() {
+    return height;
+  }
+
+  /**
+   * Draws the barcode into a {@link BitMatrix}, filling each run of black modules in a row at once.
+   *
+   * @param output receives the barcode
+   * @param left   leftmost pixel of the barcode in output
+   * @param top    topmost pixel of the barcode in output
+   * @param xScale width of a module in pixels
+   * @param yScale height of a row in pixels
+   * @param rotate if true, the barcode is turned 90 degrees counterclockwise, so that its first
+   *               row is at the left and its rows are read from the bottom up
+   */
+  public void render(BitMatrix output, int left, int top, int xScale, int yScale, boolean rotate) {
+    int rowWidth = getModuleWidth();
+    for (int y = 0; y < height; y++) {
+      byte[] row = matrix[y].getRow();
+      int x = 0;
+      while (x < rowWidth) {
+        if (row[x] != 1) {
+          x++;
+          continue;
+        }
+        int start = x;
+        while (x < rowWidth && row[x] == 1) {
+          x++;
+        }
+        int runWidth = (x - start) * xScale;
+        if (rotate) {
+          output.setRegion(left + y * yScale, top + (rowWidth - x) * xScale, yScale, runWidth);
+        } else {
+          output.setRegion(left + start * xScale, top + y * yScale, runWidth, yScale);
+        }
+      }
+    }
+  }
 }
@@ -21,6 +21,11 @@ public enum Compaction {
   AUTO,
   TEXT,
   BYTE,
-  NUMERIC
+  NUMERIC,
+
+  /**
+   * Mixes text, byte and numeric compaction in whatever way takes the fewest codewords
+   */
+  MINIMAL
 
 }
@@ -687,7 +687,12 @@ public final class PDF417 {
     float ratio = 0.0f;
     int[] dimension = null;
 
-    for (int cols = minCols; cols <= maxCols; cols++) {
+    // Rows are the codewords over the columns, rounded up, so fewer columns than this need too many
+    int codewords = sourceCodeWords + errorCorrectionCodeWords + 1;
+    int mostRows = Math.max(1, maxRows);
+    int fewestCols = Math.max(minCols, (codewords + mostRows - 1) / mostRows);
+
+    for (int cols = fewestCols; cols <= maxCols; cols++) {
 
       int rows = calculateNumberOfRows(sourceCodeWords, errorCorrectionCodeWords, cols);
 
@@ -702,12 +707,15 @@ public final class PDF417 {
       float newRatio = ((17 * cols + 69) * DEFAULT_MODULE_WIDTH) / (rows * HEIGHT);
 
       // ignore if previous ratio is closer to preferred ratio
-      if (dimension != null && Math.abs(newRatio - PREFERRED_RATIO) > Math.abs(ratio - PREFERRED_RATIO)) {
-        continue;
+      if (dimension == null || Math.abs(newRatio - PREFERRED_RATIO) <= Math.abs(ratio - PREFERRED_RATIO)) {
+        ratio = newRatio;
+        dimension = new int[] {cols, rows};
       }
 
-      ratio = newRatio;
-      dimension = new int[] {cols, rows};
+      // The ratio only grows with more columns, so the rest are further from the preferred one
+      if (newRatio >= PREFERRED_RATIO) {
+        break;
+      }
     }
 
      // Handle case when min values were larger than necessary
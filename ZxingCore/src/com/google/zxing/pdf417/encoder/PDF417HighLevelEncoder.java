@@ -22,7 +22,6 @@ package com.google.zxing.pdf417.encoder;
 
 import com.google.zxing.WriterException;
 
-import java.math.BigInteger;
 import java.util.Arrays;
 
 /**
@@ -105,6 +104,25 @@ final class PDF417HighLevelEncoder {
       59, 60, 62, 64, 91, 92, 93, 95, 96, 126, 33, 13, 9, 44, 58,
       10, 45, 46, 36, 47, 34, 124, 42, 40, 41, 63, 123, 125, 39, 0};
 
+  /**
+   * Text compaction values that latch from one sub-mode (first index) to another (second index)
+   */
+  private static final int[][] TEXT_LATCHES = {
+      {}, {27}, {28}, {28, 25},
+      {28, 28}, {}, {28}, {28, 25},
+      {28}, {27}, {}, {25},
+      {29}, {29, 27}, {29, 28}, {},
+  };
+
+  // States of the search in encodeMinimal(): text compaction in each sub-mode, with an even or
+  // odd number of values so far; byte compaction after some number of bytes modulo 6; and numeric
+  // compaction after 1 to 44 digits of the current group
+  private static final int TEXT_STATES = 0;
+  private static final int BYTE_STATES = 8;
+  private static final int NUMERIC_STATES = 14;
+  private static final int STATE_COUNT = 58;
+  private static final int SHIFTED_TO_BYTE = 0x40;
+
   private static final byte[] MIXED = new byte[128];
   private static final byte[] PUNCTUATION = new byte[128];
 
@@ -170,6 +188,9 @@ final class PDF417HighLevelEncoder {
       sb.append((char) LATCH_TO_NUMERIC);
       encodeNumeric(msg, p, len, sb);
 
+    } else if (compaction == Compaction.MINIMAL) {
+      encodeMinimal(msg, sb);
+
     } else {
       int encodingMode = TEXT_COMPACTION; //Default mode, see 4.4.2.1
       while (p < len) {
@@ -338,6 +359,10 @@ final class PDF417HighLevelEncoder {
     }
     if ((len % 2) != 0) {
       sb.append((char) ((h * 30) + 29)); //ps
+      if (submode == SUBMODE_PUNCTUATION) {
+        //the padding is read as al there
+        submode = SUBMODE_ALPHA;
+      }
     }
     return submode;
   }
@@ -360,12 +385,16 @@ final class PDF417HighLevelEncoder {
                                    StringBuilder sb) {
     if (count == 1 && startmode == TEXT_COMPACTION) {
       sb.append((char) SHIFT_TO_BYTE);
+    } else if (count % 6 == 0) {
+      sb.append((char) LATCH_TO_BYTE);
+    } else {
+      //901 covers the sixpacks too, the bytes after the last full one are sent as they are
+      sb.append((char) LATCH_TO_BYTE_PADDED);
     }
 
     int idx = startpos;
     // Encode sixpacks
     if (count >= 6) {
-      sb.append((char) LATCH_TO_BYTE);
       char[] chars = new char[5];
       while ((startpos + count - idx) >= 6) {
         long t = 0;
@@ -384,9 +413,6 @@ final class PDF417HighLevelEncoder {
       }
     }
     //Encode rest (remaining n<5 bytes if any)
-    if (idx < startpos + count) {
-      sb.append((char) LATCH_TO_BYTE_PADDED);
-    }
     for (int i = idx; i < startpos + count; i++) {
       int ch = bytes[i] & 0xff;
       sb.append((char) ch);
@@ -395,28 +421,261 @@ final class PDF417HighLevelEncoder {
 
   private static void encodeNumeric(String msg, int startpos, int count, StringBuilder sb) {
     int idx = 0;
-    StringBuilder tmp = new StringBuilder(count / 3 + 1);
-    BigInteger num900 = BigInteger.valueOf(900);
-    BigInteger num0 = BigInteger.valueOf(0);
-    while (idx < count - 1) {
-      tmp.setLength(0);
+    char[] tmp = new char[15];
+    //a group of up to 44 digits after a leading 1, in base 1,000,000,000, least significant first
+    int[] limbs = new int[5];
+    while (idx < count) {
       int len = Math.min(44, count - idx);
-      String part = '1' + msg.substring(startpos + idx, startpos + idx + len);
-      BigInteger bigint = new BigInteger(part);
-      do {
-        BigInteger c = bigint.mod(num900);
-        tmp.append((char) c.intValue());
-        bigint = bigint.divide(num900);
-      } while (!bigint.equals(num0));
+      int digits = len + 1;
+      int limbCount = (digits + 8) / 9;
+      int end = startpos + idx + len;
+      for (int i = 0; i < limbCount; i++) {
+        int value = 0;
+        for (int p = Math.max(end - 9 * (i + 1), end - len - 1); p < end - 9 * i; p++) {
+          value = value * 10 + (p < end - len ? 1 : msg.charAt(p) - '0');
+        }
+        limbs[i] = value;
+      }
+
+      int n = 0;
+      while (limbCount > 0) {
+        long rem = 0;
+        for (int i = limbCount - 1; i >= 0; i--) {
+          long cur = rem * 1000000000L + limbs[i];
+          limbs[i] = (int) (cur / 900);
+          rem = cur % 900;
+        }
+        tmp[n++] = (char) rem;
+        while (limbCount > 0 && limbs[limbCount - 1] == 0) {
+          limbCount--;
+        }
+      }
 
       //Reverse temporary string
-      for (int i = tmp.length() - 1; i >= 0; i--) {
-        sb.append(tmp.charAt(i));
+      for (int i = n - 1; i >= 0; i--) {
+        sb.append(tmp[i]);
       }
       idx += len;
     }
   }
 
+  /**
+   * Encodes the message with the mix of Text, Byte and Numeric Compaction that takes the fewest
+   * codewords. This finds the cheapest path through the states listed above, costing text
+   * compaction values as half codewords, then writes it out. Characters are encoded as
+   * ISO-8859-1 bytes where Byte Compaction is used, which is how the decoder reads them.
+   *
+   * @param msg the message
+   * @param sb  receives the encoded codewords
+   */
+  private static void encodeMinimal(String msg, StringBuilder sb) throws WriterException {
+    int len = msg.length();
+    int[] costs = new int[(len + 1) * STATE_COUNT];
+    byte[] from = new byte[costs.length];
+    Arrays.fill(costs, Integer.MAX_VALUE);
+    costs[TEXT_STATES + SUBMODE_ALPHA * 2] = 0;
+
+    for (int i = 0; i < len; i++) {
+      char ch = msg.charAt(i);
+      if (ch > 0xff) {
+        throw new WriterException("Non-encodable character detected: " + ch + " (Unicode: " + (int) ch + ')');
+      }
+      int offset = i * STATE_COUNT;
+      int next = offset + STATE_COUNT;
+      for (int state = 0; state < STATE_COUNT; state++) {
+        int cost = costs[offset + state];
+        if (cost == Integer.MAX_VALUE) {
+          continue;
+        }
+        if (state < BYTE_STATES) {
+          int submode = state >> 1;
+          int odd = state & 1;
+          relaxText(ch, submode, odd, cost, state, costs, from, next);
+          //a padding ps reads as al in punctuation
+          int shifted = submode == SUBMODE_PUNCTUATION && odd != 0 ? SUBMODE_ALPHA : submode;
+          relax(costs, from, next, TEXT_STATES + shifted * 2, cost + odd + 4, state | SHIFTED_TO_BYTE);
+          relax(costs, from, next, BYTE_STATES + 1, cost + odd + 4, state);
+          if (isDigit(ch)) {
+            relax(costs, from, next, NUMERIC_STATES, cost + odd + 4, state);
+          }
+        } else {
+          //latch to text compaction starts in alpha
+          relaxText(ch, SUBMODE_ALPHA, 0, cost + 2, state, costs, from, next);
+          if (state < NUMERIC_STATES) {
+            int bytes = (state - BYTE_STATES + 1) % 6;
+            relax(costs, from, next, BYTE_STATES + bytes, cost + (bytes == 0 ? 0 : 2), state);
+            if (isDigit(ch)) {
+              relax(costs, from, next, NUMERIC_STATES, cost + 4, state);
+            }
+          } else {
+            if (isDigit(ch)) {
+              //a group of n digits takes n / 3 + 1 codewords
+              int digits = state - NUMERIC_STATES + 1;
+              if (digits == 44) {
+                relax(costs, from, next, NUMERIC_STATES, cost + 2, state);
+              } else {
+                int added = (digits + 1) / 3 - digits / 3;
+                relax(costs, from, next, state + 1, cost + 2 * added, state);
+              }
+            }
+            relax(costs, from, next, BYTE_STATES + 1, cost + 4, state);
+          }
+        }
+      }
+    }
+
+    int offset = len * STATE_COUNT;
+    int best = -1;
+    int bestCost = Integer.MAX_VALUE;
+    for (int state = 0; state < STATE_COUNT; state++) {
+      int cost = costs[offset + state];
+      if (cost != Integer.MAX_VALUE) {
+        if (state < BYTE_STATES) {
+          cost += state & 1;
+        }
+        if (cost < bestCost) {
+          bestCost = cost;
+          best = state;
+        }
+      }
+    }
+
+    int[] states = new int[len + 1];
+    boolean[] shifted = new boolean[len + 1];
+    states[len] = best;
+    for (int i = len; i > 0; i--) {
+      int previous = from[i * STATE_COUNT + states[i]];
+      shifted[i] = (previous & SHIFTED_TO_BYTE) != 0;
+      states[i - 1] = previous & ~SHIFTED_TO_BYTE;
+    }
+
+    StringBuilder tmp = new StringBuilder();
+    int submode = SUBMODE_ALPHA;
+    int start = 0;
+    while (start < len) {
+      int state = states[start + 1];
+      int end = start + 1;
+      if (state < BYTE_STATES) {
+        if (states[start] >= BYTE_STATES) {
+          sb.append((char) LATCH_TO_TEXT);
+          submode = SUBMODE_ALPHA;
+        }
+        while (end < len && states[end + 1] < BYTE_STATES) {
+          end++;
+        }
+        for (int i = start; i < end; i++) {
+          char ch = msg.charAt(i);
+          int target = states[i + 1] >> 1;
+          if (shifted[i + 1]) {
+            appendTextValues(tmp, sb);
+            sb.append((char) SHIFT_TO_BYTE);
+            sb.append(ch);
+          } else if (target == submode && !isInSubmode(ch, submode)) {
+            if (submode == SUBMODE_LOWER && isAlphaUpper(ch)) {
+              tmp.append((char) 27); //as
+              tmp.append((char) getTextValue(ch, SUBMODE_ALPHA));
+            } else {
+              tmp.append((char) 29); //ps
+              tmp.append((char) getTextValue(ch, SUBMODE_PUNCTUATION));
+            }
+          } else {
+            for (int latch : TEXT_LATCHES[submode * 4 + target]) {
+              tmp.append((char) latch);
+            }
+            tmp.append((char) getTextValue(ch, target));
+          }
+          submode = target;
+        }
+        appendTextValues(tmp, sb);
+      } else if (state < NUMERIC_STATES) {
+        while (end < len && states[end + 1] >= BYTE_STATES && states[end + 1] < NUMERIC_STATES) {
+          end++;
+        }
+        byte[] bytes = new byte[end - start];
+        for (int i = start; i < end; i++) {
+          bytes[i - start] = (byte) msg.charAt(i);
+        }
+        encodeBinary(bytes, 0, bytes.length, BYTE_COMPACTION, sb);
+      } else {
+        while (end < len && states[end + 1] >= NUMERIC_STATES) {
+          end++;
+        }
+        sb.append((char) LATCH_TO_NUMERIC);
+        encodeNumeric(msg, start, end - start, sb);
+      }
+      start = end;
+    }
+  }
+
+  private static void relaxText(char ch,
+                                int submode,
+                                int odd,
+                                int cost,
+                                int previous,
+                                int[] costs,
+                                byte[] from,
+                                int next) {
+    if (!isText(ch)) {
+      return;
+    }
+    for (int target = SUBMODE_ALPHA; target <= SUBMODE_PUNCTUATION; target++) {
+      if (isInSubmode(ch, target)) {
+        int values = TEXT_LATCHES[submode * 4 + target].length + 1;
+        relax(costs, from, next, TEXT_STATES + target * 2 + ((odd + values) & 1), cost + values, previous);
+      }
+    }
+    if (!isInSubmode(ch, submode) &&
+        ((submode == SUBMODE_LOWER && ch != ' ' && isAlphaUpper(ch)) ||
+         (submode != SUBMODE_PUNCTUATION && isPunctuation(ch)))) {
+      //as or ps, then the character
+      relax(costs, from, next, TEXT_STATES + submode * 2 + odd, cost + 2, previous);
+    }
+  }
+
+  private static void relax(int[] costs, byte[] from, int offset, int state, int cost, int previous) {
+    if (cost < costs[offset + state]) {
+      costs[offset + state] = cost;
+      from[offset + state] = (byte) previous;
+    }
+  }
+
+  private static boolean isInSubmode(char ch, int submode) {
+    switch (submode) {
+      case SUBMODE_ALPHA:
+        return isAlphaUpper(ch);
+      case SUBMODE_LOWER:
+        return isAlphaLower(ch);
+      case SUBMODE_MIXED:
+        return ch < 128 && isMixed(ch);
+      default:
+        return ch < 128 && isPunctuation(ch);
+    }
+  }
+
+  private static int getTextValue(char ch, int submode) {
+    switch (submode) {
+      case SUBMODE_ALPHA:
+        return ch == ' ' ? 26 : ch - 'A';
+      case SUBMODE_LOWER:
+        return ch == ' ' ? 26 : ch - 'a';
+      case SUBMODE_MIXED:
+        return MIXED[ch];
+      default:
+        return PUNCTUATION[ch];
+    }
+  }
+
+  /**
+   * Packs text compaction values two to a codeword, padding with ps, and clears them.
+   */
+  private static void appendTextValues(StringBuilder values, StringBuilder sb) {
+    int len = values.length();
+    for (int i = 0; i < len; i += 2) {
+      int second = i + 1 < len ? values.charAt(i + 1) : 29; //ps
+      sb.append((char) (values.charAt(i) * 30 + second));
+    }
+    values.setLength(0);
+  }
 
   private static boolean isDigit(char ch) {
     return ch >= '0' && ch <= '9';
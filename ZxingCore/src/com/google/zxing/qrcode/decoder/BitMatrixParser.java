@@ -19,11 +19,21 @@ package com.google.zxing.qrcode.decoder;
 import com.google.zxing.FormatException;
 import com.google.zxing.common.BitMatrix;
 
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 /**
  * @author Sean Owen
  */
 final class BitMatrixParser {
 
+  /**
+   * For each version, the module of every whole codeword bit in reading order, packed as
+   * {@code (y << 8) | x}. Built as needed and shared without locking; threads that race to
+   * build the same table build equal ones.
+   */
+  private static final AtomicReferenceArray<int[]> CODEWORD_BIT_POSITIONS =
+      new AtomicReferenceArray<int[]>(40);
+
   private final BitMatrix bitMatrix;
   private Version parsedVersion;
   private FormatInformation parsedFormatInfo;
@@ -159,13 +169,48 @@ final class BitMatrixParser {
     int dimension = bitMatrix.getHeight();
     dataMask.unmaskBitMatrix(bitMatrix, dimension);
 
-    BitMatrix functionPattern = version.buildFunctionPattern();
-
-    boolean readingUp = true;
+    // Gather each codeword's bits from the positions the zig-zag placement puts them in
+    int[] bitPositions = getCodewordBitPositions(version);
     byte[] result = new byte[version.getTotalCodewords()];
     int resultOffset = 0;
-    int currentByte = 0;
-    int bitsRead = 0;
+    int bitsOffset = 0;
+    while (resultOffset < result.length && bitsOffset < bitPositions.length) {
+      int currentByte = 0;
+      for (int bit = 0; bit < 8; bit++) {
+        int position = bitPositions[bitsOffset++];
+        currentByte <<= 1;
+        if (bitMatrix.get(position & 0xFF, position >>> 8)) {
+          currentByte |= 1;
+        }
+      }
+      result[resultOffset++] = (byte) currentByte;
+    }
+    if (resultOffset != version.getTotalCodewords()) {
+      throw FormatException.getFormatInstance();
+    }
+    return result;
+  }
+
+  /**
+   * @param version version whose data modules to locate
+   * @return position of each codeword bit, in the order bits are read, as {@code (y << 8) | x}
+   */
+  private static int[] getCodewordBitPositions(Version version) {
+    int index = version.getVersionNumber() - 1;
+    int[] bitPositions = CODEWORD_BIT_POSITIONS.get(index);
+    if (bitPositions == null) {
+      bitPositions = buildCodewordBitPositions(version);
+      CODEWORD_BIT_POSITIONS.set(index, bitPositions);
+    }
+    return bitPositions;
+  }
+
+  private static int[] buildCodewordBitPositions(Version version) {
+    int dimension = version.getDimensionForVersion();
+    BitMatrix functionPattern = version.buildFunctionPattern();
+    int[] positions = new int[dimension * dimension];
+    int numPositions = 0;
+    boolean readingUp = true;
     // Read columns in pairs, from right to left
     for (int j = dimension - 1; j > 0; j -= 2) {
       if (j == 6) {
@@ -179,27 +224,16 @@ final class BitMatrixParser {
         for (int col = 0; col < 2; col++) {
           // Ignore bits covered by the function pattern
           if (!functionPattern.get(j - col, i)) {
-            // Read a bit
-            bitsRead++;
-            currentByte <<= 1;
-            if (bitMatrix.get(j - col, i)) {
-              currentByte |= 1;
-            }
-            // If we've made a whole byte, save it off
-            if (bitsRead == 8) {
-              result[resultOffset++] = (byte) currentByte;
-              bitsRead = 0;
-              currentByte = 0;
-            }
+            positions[numPositions++] = (i << 8) | (j - col);
           }
         }
       }
       readingUp ^= true; // readingUp = !readingUp; // switch directions
     }
-    if (resultOffset != version.getTotalCodewords()) {
-      throw FormatException.getFormatInstance();
-    }
-    return result;
+    // Remainder bits that don't make up a whole codeword are never read
+    int[] bitPositions = new int[numPositions & ~0x07];
+    System.arraycopy(positions, 0, bitPositions, 0, bitPositions.length);
+    return bitPositions;
   }
 
-}
\ No newline at end of file
+}
@@ -18,6 +18,8 @@ package com.google.zxing.qrcode.decoder;
 
 import com.google.zxing.common.BitMatrix;
 
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 /**
  * <p>Encapsulates data masks for the data bits in a QR code, per ISO 18004:2006 6.8. Implementations
  * of this class can un-mask a raw BitMatrix. For simplicity, they will unmask the entire BitMatrix,
@@ -45,7 +47,14 @@ abstract class DataMask {
       new DataMask111(),
   };
 
+  /**
+   * Mask bits for each version's dimension, built as needed and then shared without locking;
+   * matrices are never changed once built
+   */
+  private final AtomicReferenceArray<BitMatrix> maskMatrices;
+
   private DataMask() {
+    maskMatrices = new AtomicReferenceArray<BitMatrix>(40);
   }
 
   /**
@@ -56,6 +65,12 @@ abstract class DataMask {
    * @param dimension dimension of QR Code, represented by bits, being unmasked
    */
   final void unmaskBitMatrix(BitMatrix bits, int dimension) {
+    if (bits.getWidth() == dimension && bits.getHeight() == dimension &&
+        dimension >= 21 && dimension <= 177 && (dimension & 0x03) == 1) {
+      // XOR a whole word of mask bits at a time
+      bits.xor(getMaskMatrix(dimension));
+      return;
+    }
     for (int i = 0; i < dimension; i++) {
       for (int j = 0; j < dimension; j++) {
         if (isMasked(i, j)) {
@@ -65,6 +80,23 @@ abstract class DataMask {
     }
   }
 
+  private BitMatrix getMaskMatrix(int dimension) {
+    int index = (dimension - 21) >> 2;
+    BitMatrix maskMatrix = maskMatrices.get(index);
+    if (maskMatrix == null) {
+      maskMatrix = new BitMatrix(dimension);
+      for (int i = 0; i < dimension; i++) {
+        for (int j = 0; j < dimension; j++) {
+          if (isMasked(i, j)) {
+            maskMatrix.set(j, i);
+          }
+        }
+      }
+      maskMatrices.set(index, maskMatrix);
+    }
+    return maskMatrix;
+  }
+
   abstract boolean isMasked(int i, int j);
 
   /**
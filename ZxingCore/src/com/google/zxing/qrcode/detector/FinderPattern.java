@@ -77,4 +77,18 @@ public final class FinderPattern extends ResultPoint {
     return new FinderPattern(combinedX, combinedY, combinedModuleSize, combinedCount);
   }
 
+  /**
+   * Like {@link #combineEstimate(float, float, float)}, but combines with another
+   * {@code FinderPattern} that may itself have been seen several times, weighting each
+   * by its count.
+   */
+  FinderPattern combineEstimate(FinderPattern other) {
+    int combinedCount = count + other.count;
+    float combinedX = (count * getX() + other.count * other.getX()) / combinedCount;
+    float combinedY = (count * getY() + other.count * other.getY()) / combinedCount;
+    float combinedModuleSize =
+        (count * estimatedModuleSize + other.count * other.estimatedModuleSize) / combinedCount;
+    return new FinderPattern(combinedX, combinedY, combinedModuleSize, combinedCount);
+  }
+
 }
@@ -20,6 +20,7 @@ import com.google.zxing.DecodeHintType;
 import com.google.zxing.NotFoundException;
 import com.google.zxing.ResultPoint;
 import com.google.zxing.ResultPointCallback;
+import com.google.zxing.common.BitArray;
 import com.google.zxing.common.BitMatrix;
 
 import java.io.Serializable;
@@ -28,6 +29,10 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * <p>This class attempts to find finder patterns in a QR Code. Finder patterns are the square
@@ -43,10 +48,12 @@ public class FinderPatternFinder {
   protected static final int MIN_SKIP = 3; // 1 pixel/module times 3 modules/center
   protected static final int MAX_MODULES = 57; // support up to version 10 for mobile clients
   private static final int INTEGER_MATH_SHIFT = 8;
+  private static final int MIN_BAND_HEIGHT = 256;
 
   private final BitMatrix image;
   private final List<FinderPattern> possibleCenters;
   private boolean hasSkipped;
+  private int maxPatternSize;
   private final int[] crossCheckStateCount;
   private final ResultPointCallback resultPointCallback;
 
@@ -64,6 +71,7 @@ public class FinderPatternFinder {
     this.possibleCenters = new ArrayList<FinderPattern>();
     this.crossCheckStateCount = new int[5];
     this.resultPointCallback = resultPointCallback;
+    this.maxPatternSize = Integer.MAX_VALUE;
   }
 
   protected final BitMatrix getImage() {
@@ -75,95 +83,61 @@ public class FinderPatternFinder {
   }
 
   final FinderPatternInfo find(Map<DecodeHintType,?> hints) throws NotFoundException {
-    boolean tryHarder = hints != null && hints.containsKey(DecodeHintType.TRY_HARDER);
     int maxI = image.getHeight();
     int maxJ = image.getWidth();
     // We are looking for black/white/black/white/black modules in
     // 1:1:3:1:1 ratio; this tracks the number of such modules seen so far
+    int iSkip = getInitialRowSkip(hints);
+    setMaxPatternSize(hints);
 
-    // Let's assume that the maximum version QR Code we support takes up 1/4 the height of the
-    // image, and then account for the center being 3 modules in size. This gives the smallest
-    // number of pixels the center could be, so skip this often. When trying harder, look for all
-    // QR versions regardless of how dense they are.
-    int iSkip = (3 * maxI) / (4 * MAX_MODULES);
-    if (iSkip < MIN_SKIP || tryHarder) {
-      iSkip = MIN_SKIP;
+    ExecutorService executor =
+        hints == null ? null : (ExecutorService) hints.get(DecodeHintType.DETECTION_EXECUTOR);
+    if (executor != null) {
+      // Like the scan below, examine every other line once a band has found a center
+      scanBands(iSkip, 2, executor);
+      FinderPattern[] patternInfo = selectBestPatterns();
+      ResultPoint.orderBestPatterns(patternInfo);
+      return new FinderPatternInfo(patternInfo);
     }
 
     boolean done = false;
-    int[] stateCount = new int[5];
+    RowScanner scanner = new RowScanner(maxJ);
+    int[] stateCount = scanner.getStateCount();
+    BitArray row = null;
     for (int i = iSkip - 1; i < maxI && !done; i += iSkip) {
-      // Get a row of black/white values
-      stateCount[0] = 0;
-      stateCount[1] = 0;
-      stateCount[2] = 0;
-      stateCount[3] = 0;
-      stateCount[4] = 0;
-      int currentState = 0;
-      for (int j = 0; j < maxJ; j++) {
-        if (image.get(j, i)) {
-          // Black pixel
-          if ((currentState & 1) == 1) { // Counting white pixels
-            currentState++;
-          }
-          stateCount[currentState]++;
-        } else { // White pixel
-          if ((currentState & 1) == 0) { // Counting black pixels
-            if (currentState == 4) { // A winner?
-              if (foundPatternCross(stateCount)) { // Yes
-                boolean confirmed = handlePossibleCenter(stateCount, i, j);
-                if (confirmed) {
-                  // Start examining every other line. Checking each line turned out to be too
-                  // expensive and didn't improve performance.
-                  iSkip = 2;
-                  if (hasSkipped) {
-                    done = haveMultiplyConfirmedCenters();
-                  } else {
-                    int rowSkip = findRowSkip();
-                    if (rowSkip > stateCount[2]) {
-                      // Skip rows between row of lower confirmed center
-                      // and top of presumed third confirmed center
-                      // but back up a bit to get a full chance of detecting
-                      // it, entire width of center of finder pattern
-
-                      // Skip by rowSkip, but back off by stateCount[2] (size of last center
-                      // of pattern we saw) to be conservative, and also back off by iSkip which
-                      // is about to be re-added
-                      i += rowSkip - stateCount[2] - iSkip;
-                      j = maxJ - 1;
-                    }
-                  }
-                } else {
-                  stateCount[0] = stateCount[2];
-                  stateCount[1] = stateCount[3];
-                  stateCount[2] = stateCount[4];
-                  stateCount[3] = 1;
-                  stateCount[4] = 0;
-                  currentState = 3;
-                  continue;
-                }
-                // Clear state to start looking again
-                currentState = 0;
-                stateCount[0] = 0;
-                stateCount[1] = 0;
-                stateCount[2] = 0;
-                stateCount[3] = 0;
-                stateCount[4] = 0;
-              } else { // No, shift counts back by two
-                stateCount[0] = stateCount[2];
-                stateCount[1] = stateCount[3];
-                stateCount[2] = stateCount[4];
-                stateCount[3] = 1;
-                stateCount[4] = 0;
-                currentState = 3;
-              }
-            } else {
-              stateCount[++currentState]++;
-            }
-          } else { // Counting white pixels
-            stateCount[currentState]++;
+      row = image.getRow(i, row);
+      scanner.reset(row);
+      int j;
+      while ((j = scanner.nextCandidate()) >= 0) {
+        if (!handlePossibleCenter(stateCount, i, j)) {
+          scanner.reject();
+          continue;
+        }
+        // Start examining every other line. Checking each line turned out to be too
+        // expensive and didn't improve performance.
+        iSkip = 2;
+        boolean skipRow = false;
+        if (hasSkipped) {
+          done = haveMultiplyConfirmedCenters();
+        } else {
+          int rowSkip = findRowSkip();
+          if (rowSkip > stateCount[2]) {
+            // Skip rows between row of lower confirmed center
+            // and top of presumed third confirmed center
+            // but back up a bit to get a full chance of detecting
+            // it, entire width of center of finder pattern
+
+            // Skip by rowSkip, but back off by stateCount[2] (size of last center
+            // of pattern we saw) to be conservative, and also back off by iSkip which
+            // is about to be re-added
+            i += rowSkip - stateCount[2] - iSkip;
+            skipRow = true;
           }
         }
+        scanner.confirm();
+        if (skipRow) {
+          scanner.skipRest();
+        }
       }
       if (foundPatternCross(stateCount)) {
         boolean confirmed = handlePossibleCenter(stateCount, i, maxJ);
@@ -183,6 +157,187 @@ public class FinderPatternFinder {
     return new FinderPatternInfo(patternInfo);
   }
 
+  /**
+   * <p>Scans every {@code iSkip}-th row from {@code startRow} up to {@code endRow} for finder
+   * pattern candidates. Unlike {@link #find(Map)} this never stops early or skips ahead, so
+   * every candidate in those rows ends up in {@link #getPossibleCenters()}.</p>
+   *
+   * @param startRow first row to scan
+   * @param endRow row at which to stop, exclusive
+   * @param iSkip distance between scanned rows
+   */
+  protected final void scanRows(int startRow, int endRow, int iSkip) {
+    scanRows(startRow, endRow, iSkip, iSkip);
+  }
+
+  /**
+   * Like {@link #scanRows(int, int, int)}, but once a candidate is confirmed, scans rows at most
+   * {@code confirmedSkip} apart for the rest of the range.
+   */
+  private void scanRows(int startRow, int endRow, int iSkip, int confirmedSkip) {
+    int maxJ = image.getWidth();
+    RowScanner scanner = new RowScanner(maxJ);
+    int[] stateCount = scanner.getStateCount();
+    BitArray row = null;
+    for (int i = startRow; i < endRow; i += iSkip) {
+      row = image.getRow(i, row);
+      scanner.reset(row);
+      int j;
+      while ((j = scanner.nextCandidate()) >= 0) {
+        if (handlePossibleCenter(stateCount, i, j)) {
+          iSkip = Math.min(iSkip, confirmedSkip);
+          scanner.confirm();
+        } else {
+          scanner.reject();
+        }
+      }
+      if (foundPatternCross(stateCount) && handlePossibleCenter(stateCount, i, maxJ)) {
+        iSkip = Math.min(iSkip, confirmedSkip);
+      }
+    }
+  }
+
+  /**
+   * <p>Like {@link #scanRows(int, int, int)} over the whole image, but splits it into horizontal
+   * bands that are scanned in parallel by the given {@link ExecutorService}. Bands partition
+   * the same rows a single scan would visit; since cross checks read the whole image, a pattern
+   * straddling two bands is seen from both, and those candidates are merged here by
+   * {@link FinderPattern#aboutEquals(float, float, float)} into one with the combined count.</p>
+   *
+   * <p>Each band tightens its own row step to {@code confirmedSkip} once it confirms a candidate,
+   * as {@link #find(Map)} does for the whole image; other bands keep to {@code iSkip}.</p>
+   *
+   * @param iSkip distance between scanned rows
+   * @param confirmedSkip distance between scanned rows after a candidate is confirmed; pass
+   *  {@code iSkip} to keep the step
+   * @param executor runs the band scans
+   */
+  protected final void scanBands(int iSkip, int confirmedSkip, ExecutorService executor) {
+    int maxI = image.getHeight();
+    // At least two bands, since the caller asked for parallel detection, but none shorter
+    // than MIN_BAND_HEIGHT
+    int bands = Math.min(Math.max(2, Runtime.getRuntime().availableProcessors()),
+                         maxI / MIN_BAND_HEIGHT);
+    if (bands <= 1) {
+      scanRows(iSkip - 1, maxI, iSkip, confirmedSkip);
+      return;
+    }
+    // Round the band height to whole row steps so every band lines up with a single scan's rows
+    int bandHeight = ((maxI / bands + iSkip - 1) / iSkip) * iSkip;
+    List<Future<List<FinderPattern>>> futures = new ArrayList<Future<List<FinderPattern>>>(bands);
+    for (int startRow = iSkip - 1; startRow < maxI; startRow += bandHeight) {
+      final int bandStart = startRow;
+      final int bandEnd = Math.min(maxI, startRow + bandHeight);
+      final int bandSkip = iSkip;
+      final int bandConfirmedSkip = confirmedSkip;
+      final FinderPatternFinder bandFinder = new FinderPatternFinder(image);
+      bandFinder.maxPatternSize = maxPatternSize;
+      futures.add(executor.submit(new Callable<List<FinderPattern>>() {
+        @Override
+        public List<FinderPattern> call() {
+          bandFinder.scanRows(bandStart, bandEnd, bandSkip, bandConfirmedSkip);
+          return bandFinder.possibleCenters;
+        }
+      }));
+    }
+    boolean interrupted = false;
+    for (Future<List<FinderPattern>> future : futures) {
+      List<FinderPattern> bandCenters;
+      while (true) {
+        try {
+          bandCenters = future.get();
+          break;
+        } catch (InterruptedException ie) {
+          // Finish collecting the bands, but let the caller see the interrupt
+          interrupted = true;
+        } catch (ExecutionException ee) {
+          Throwable cause = ee.getCause();
+          if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          }
+          throw new IllegalStateException(cause);
+        }
+      }
+      for (FinderPattern candidate : bandCenters) {
+        mergeCandidate(candidate);
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void mergeCandidate(FinderPattern candidate) {
+    for (int index = 0; index < possibleCenters.size(); index++) {
+      FinderPattern center = possibleCenters.get(index);
+      if (center.aboutEquals(candidate.getEstimatedModuleSize(), candidate.getY(), candidate.getX())) {
+        possibleCenters.set(index, center.combineEstimate(candidate));
+        return;
+      }
+    }
+    possibleCenters.add(candidate);
+    if (resultPointCallback != null) {
+      resultPointCallback.foundPossibleResultPoint(candidate);
+    }
+  }
+
+  /**
+   * <p>Works out how many rows to advance between scans. Let's assume that the maximum version
+   * QR Code we support takes up 1/4 the height of the image, and then account for the center
+   * being 3 modules in size. This gives the smallest number of pixels the center could be, so
+   * skip this often. When trying harder, look for all QR versions regardless of how dense
+   * they are.</p>
+   *
+   * <p>The maximum version is 10 unless {@link DecodeHintType#QR_VERSION_RANGE} says otherwise.</p>
+   *
+   * @param hints decode hints, possibly null
+   * @return number of rows to skip between row scans
+   */
+  protected final int getInitialRowSkip(Map<DecodeHintType,?> hints) {
+    boolean tryHarder = hints != null && hints.containsKey(DecodeHintType.TRY_HARDER);
+    int maxI = image.getHeight();
+    int[] versionRange = getVersionRange(hints);
+    int maxModules = versionRange == null ? MAX_MODULES : 17 + 4 * versionRange[1];
+    int iSkip = (3 * maxI) / (4 * maxModules);
+    if (iSkip < MIN_SKIP || tryHarder) {
+      iSkip = MIN_SKIP;
+    }
+    return iSkip;
+  }
+
+  /**
+   * Sets how large a finder pattern may be and still belong to a code that fits in the image,
+   * given the minimum version in {@link DecodeHintType#QR_VERSION_RANGE}, or removes the limit
+   * if there is no such hint. Call before scanning.
+   *
+   * @param hints decode hints, possibly null
+   */
+  protected final void setMaxPatternSize(Map<DecodeHintType,?> hints) {
+    int[] versionRange = getVersionRange(hints);
+    if (versionRange == null) {
+      maxPatternSize = Integer.MAX_VALUE;
+    } else {
+      int minModules = 17 + 4 * versionRange[0];
+      // A finder pattern is 7 modules wide; allow for the 50% variance foundPatternCross() allows
+      int dimension = Math.min(image.getHeight(), image.getWidth());
+      maxPatternSize = (3 * 7 * dimension) / (2 * minModules);
+    }
+  }
+
+  /**
+   * @return {@code {minVersion, maxVersion}} from {@link DecodeHintType#QR_VERSION_RANGE}, clamped
+   *  to versions 1 to 40, or null if there is no such hint or it is empty
+   */
+  private static int[] getVersionRange(Map<DecodeHintType,?> hints) {
+    int[] versionRange = hints == null ? null : (int[]) hints.get(DecodeHintType.QR_VERSION_RANGE);
+    if (versionRange == null || versionRange.length != 2) {
+      return null;
+    }
+    int minVersion = Math.max(1, versionRange[0]);
+    int maxVersion = Math.min(40, versionRange[1]);
+    return minVersion <= maxVersion ? new int[] {minVersion, maxVersion} : null;
+  }
+
   /**
    * Given a count of black/white/black/white/black pixels just seen and an end position,
    * figures the location of the center of this run.
@@ -240,69 +395,9 @@ public class FinderPatternFinder {
    */
   private float crossCheckVertical(int startI, int centerJ, int maxCount,
       int originalStateCountTotal) {
-    BitMatrix image = this.image;
-
-    int maxI = image.getHeight();
-    int[] stateCount = getCrossCheckStateCount();
-
-    // Start counting up from center
-    int i = startI;
-    while (i >= 0 && image.get(centerJ, i)) {
-      stateCount[2]++;
-      i--;
-    }
-    if (i < 0) {
-      return Float.NaN;
-    }
-    while (i >= 0 && !image.get(centerJ, i) && stateCount[1] <= maxCount) {
-      stateCount[1]++;
-      i--;
-    }
-    // If already too many modules in this state or ran off the edge:
-    if (i < 0 || stateCount[1] > maxCount) {
-      return Float.NaN;
-    }
-    while (i >= 0 && image.get(centerJ, i) && stateCount[0] <= maxCount) {
-      stateCount[0]++;
-      i--;
-    }
-    if (stateCount[0] > maxCount) {
-      return Float.NaN;
-    }
-
-    // Now also count down from center
-    i = startI + 1;
-    while (i < maxI && image.get(centerJ, i)) {
-      stateCount[2]++;
-      i++;
-    }
-    if (i == maxI) {
-      return Float.NaN;
-    }
-    while (i < maxI && !image.get(centerJ, i) && stateCount[3] < maxCount) {
-      stateCount[3]++;
-      i++;
-    }
-    if (i == maxI || stateCount[3] >= maxCount) {
-      return Float.NaN;
-    }
-    while (i < maxI && image.get(centerJ, i) && stateCount[4] < maxCount) {
-      stateCount[4]++;
-      i++;
-    }
-    if (stateCount[4] >= maxCount) {
-      return Float.NaN;
-    }
-
     // If we found a finder-pattern-like section, but its size is more than 40% different than
     // the original, assume it's a false positive
-    int stateCountTotal = stateCount[0] + stateCount[1] + stateCount[2] + stateCount[3] +
-        stateCount[4];
-    if (5 * Math.abs(stateCountTotal - originalStateCountTotal) >= 2 * originalStateCountTotal) {
-      return Float.NaN;
-    }
-
-    return foundPatternCross(stateCount) ? centerFromEnd(stateCount, i) : Float.NaN;
+    return crossCheck(startI, centerJ, true, maxCount, originalStateCountTotal, 2);
   }
 
   /**
@@ -312,66 +407,92 @@ public class FinderPatternFinder {
    */
   private float crossCheckHorizontal(int startJ, int centerI, int maxCount,
       int originalStateCountTotal) {
+    // If we found a finder-pattern-like section, but its size is more than 20% different than
+    // the original, assume it's a false positive
+    return crossCheck(startJ, centerI, false, maxCount, originalStateCountTotal, 1);
+  }
+
+  /**
+   * Counts the black/white/black/white/black runs out from {@code start} along a column or a row.
+   *
+   * @param start position along the line where the scan found a pattern
+   * @param across column, if {@code vertical}, or else row to read along
+   * @param vertical whether to read down a column rather than along a row
+   * @param maxCount maximum reasonable number of modules that should be
+   * observed in any reading state, based on the results of the scan
+   * @param originalStateCountTotal width of the pattern the scan found
+   * @param fifthsTolerance how many fifths of {@code originalStateCountTotal} the width along
+   *  this line must differ from it by less than
+   * @return center of the pattern along the line, or {@link Float#NaN} if not found
+   */
+  private float crossCheck(int start, int across, boolean vertical, int maxCount,
+      int originalStateCountTotal, int fifthsTolerance) {
     BitMatrix image = this.image;
 
-    int maxJ = image.getWidth();
+    int max = vertical ? image.getHeight() : image.getWidth();
     int[] stateCount = getCrossCheckStateCount();
 
-    int j = startJ;
-    while (j >= 0 && image.get(j, centerI)) {
+    // Start counting back from center
+    int k = start;
+    while (k >= 0 && isBlack(image, k, across, vertical)) {
       stateCount[2]++;
-      j--;
+      k--;
     }
-    if (j < 0) {
+    if (k < 0) {
       return Float.NaN;
     }
-    while (j >= 0 && !image.get(j, centerI) && stateCount[1] <= maxCount) {
+    while (k >= 0 && !isBlack(image, k, across, vertical) && stateCount[1] <= maxCount) {
       stateCount[1]++;
-      j--;
+      k--;
     }
-    if (j < 0 || stateCount[1] > maxCount) {
+    // If already too many modules in this state or ran off the edge:
+    if (k < 0 || stateCount[1] > maxCount) {
       return Float.NaN;
     }
-    while (j >= 0 && image.get(j, centerI) && stateCount[0] <= maxCount) {
+    while (k >= 0 && isBlack(image, k, across, vertical) && stateCount[0] <= maxCount) {
       stateCount[0]++;
-      j--;
+      k--;
     }
     if (stateCount[0] > maxCount) {
       return Float.NaN;
     }
 
-    j = startJ + 1;
-    while (j < maxJ && image.get(j, centerI)) {
+    // Now also count on from center
+    k = start + 1;
+    while (k < max && isBlack(image, k, across, vertical)) {
       stateCount[2]++;
-      j++;
+      k++;
     }
-    if (j == maxJ) {
+    if (k == max) {
       return Float.NaN;
     }
-    while (j < maxJ && !image.get(j, centerI) && stateCount[3] < maxCount) {
+    while (k < max && !isBlack(image, k, across, vertical) && stateCount[3] < maxCount) {
       stateCount[3]++;
-      j++;
+      k++;
     }
-    if (j == maxJ || stateCount[3] >= maxCount) {
+    if (k == max || stateCount[3] >= maxCount) {
       return Float.NaN;
     }
-    while (j < maxJ && image.get(j, centerI) && stateCount[4] < maxCount) {
+    while (k < max && isBlack(image, k, across, vertical) && stateCount[4] < maxCount) {
       stateCount[4]++;
-      j++;
+      k++;
     }
     if (stateCount[4] >= maxCount) {
       return Float.NaN;
     }
 
-    // If we found a finder-pattern-like section, but its size is significantly different than
-    // the original, assume it's a false positive
     int stateCountTotal = stateCount[0] + stateCount[1] + stateCount[2] + stateCount[3] +
         stateCount[4];
-    if (5 * Math.abs(stateCountTotal - originalStateCountTotal) >= originalStateCountTotal) {
+    if (5 * Math.abs(stateCountTotal - originalStateCountTotal) >=
+        fifthsTolerance * originalStateCountTotal) {
       return Float.NaN;
     }
 
-    return foundPatternCross(stateCount) ? centerFromEnd(stateCount, j) : Float.NaN;
+    return foundPatternCross(stateCount) ? centerFromEnd(stateCount, k) : Float.NaN;
+  }
+
+  private static boolean isBlack(BitMatrix image, int along, int across, boolean vertical) {
+    return vertical ? image.get(across, along) : image.get(along, across);
   }
 
   /**
@@ -393,6 +514,10 @@ public class FinderPatternFinder {
   protected final boolean handlePossibleCenter(int[] stateCount, int i, int j) {
     int stateCountTotal = stateCount[0] + stateCount[1] + stateCount[2] + stateCount[3] +
         stateCount[4];
+    if (stateCountTotal > maxPatternSize) {
+      // Too large to be part of a code of the smallest expected version
+      return false;
+    }
     float centerJ = centerFromEnd(stateCount, j);
     float centerI = crossCheckVertical(i, (int) centerJ, stateCount[2], stateCountTotal);
     if (!Float.isNaN(centerI)) {
@@ -546,6 +671,120 @@ public class FinderPatternFinder {
     };
   }
 
+  /**
+   * <p>Walks a row run by run rather than pixel by pixel, counting black/white/black/white/black
+   * runs, and stops wherever those counts could be a finder pattern. The caller checks each one
+   * and then calls {@link #confirm()} or {@link #reject()} to carry on.</p>
+   */
+  private static final class RowScanner {
+
+    private final int maxJ;
+    private final int[] stateCount;
+    private BitArray row;
+    private int currentState;
+    private int j;
+    private int whiteRunEnd;
+
+    RowScanner(int maxJ) {
+      this.maxJ = maxJ;
+      stateCount = new int[5];
+    }
+
+    /**
+     * @return counts of the runs seen, which the scanner keeps updating
+     */
+    int[] getStateCount() {
+      return stateCount;
+    }
+
+    void reset(BitArray row) {
+      this.row = row;
+      clear();
+      j = 0;
+    }
+
+    /**
+     * @return where the white run after a possible finder pattern starts, or -1 at the end of
+     *  the row; the counts of the row's last runs are left in the state count either way
+     */
+    int nextCandidate() {
+      while (j < maxJ) {
+        if (row.get(j)) {
+          // Black run
+          int runEnd = row.getNextUnset(j);
+          if ((currentState & 1) == 1) { // Counting white pixels
+            currentState++;
+          }
+          stateCount[currentState] += runEnd - j;
+          j = runEnd;
+        } else { // White run
+          int runEnd = row.getNextSet(j);
+          if ((currentState & 1) == 0) { // Counting black pixels
+            if (currentState == 4) { // A winner?
+              if (foundPatternCross(stateCount)) { // Maybe
+                whiteRunEnd = runEnd;
+                return j;
+              }
+              shiftBack(runEnd);
+            } else {
+              stateCount[++currentState] += runEnd - j;
+            }
+          } else { // Counting white pixels
+            stateCount[currentState] += runEnd - j;
+          }
+          j = runEnd;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * The last candidate was a finder pattern: clears state to start looking again. The rest of
+     * the white run after it is examined on the next call.
+     */
+    void confirm() {
+      clear();
+      j++;
+    }
+
+    /**
+     * The last candidate was not a finder pattern.
+     */
+    void reject() {
+      shiftBack(whiteRunEnd);
+      j = whiteRunEnd;
+    }
+
+    /**
+     * Stops scanning this row.
+     */
+    void skipRest() {
+      j = maxJ;
+    }
+
+    /**
+     * Shifts counts back by two; the rest of the white run from {@code j} continues state 3.
+     */
+    private void shiftBack(int runEnd) {
+      stateCount[0] = stateCount[2];
+      stateCount[1] = stateCount[3];
+      stateCount[2] = stateCount[4];
+      stateCount[3] = runEnd - j;
+      stateCount[4] = 0;
+      currentState = 3;
+    }
+
+    private void clear() {
+      currentState = 0;
+      stateCount[0] = 0;
+      stateCount[1] = 0;
+      stateCount[2] = 0;
+      stateCount[3] = 0;
+      stateCount[4] = 0;
+    }
+
+  }
+
   /**
    * <p>Orders by furthest from average</p>
    */
@@ -52,15 +52,6 @@ public final class Encoder {
   private Encoder() {
   }
 
-  // The mask penalty calculation is complicated.  See Table 21 of JISX0510:2004 (p.45) for details.
-  // Basically it applies four rules and summate all penalties.
-  private static int calculateMaskPenalty(ByteMatrix matrix) {
-    return MaskUtil.applyMaskPenaltyRule1(matrix)
-        + MaskUtil.applyMaskPenaltyRule2(matrix)
-        + MaskUtil.applyMaskPenaltyRule3(matrix)
-        + MaskUtil.applyMaskPenaltyRule4(matrix);
-  }
-
   /**
    *  Encode "bytes" with the error correction level "ecLevel". The encoding mode will be chosen
    * internally by chooseMode(). On success, store the result in "qrCode".
@@ -86,53 +77,65 @@ public final class Encoder {
       encoding = DEFAULT_BYTE_MODE_ENCODING;
     }
 
-    // Pick an encoding mode appropriate for the content. Note that this will not attempt to use
-    // multiple modes / segments even if that were more efficient. Twould be nice.
-    Mode mode = chooseMode(content, encoding);
-
-    // This will store the header information, like mode and
-    // length, as well as "header" segments like an ECI segment.
-    BitArray headerBits = new BitArray();
-
-    // Append ECI segment if applicable
-    if (mode == Mode.BYTE && !DEFAULT_BYTE_MODE_ENCODING.equals(encoding)) {
-      CharacterSetECI eci = CharacterSetECI.getCharacterSetECIByName(encoding);
-      if (eci != null) {
-        appendECI(eci, headerBits);
+    Mode mode;
+    Version version;
+    BitArray headerAndDataBits;
+    if (hints != null && Boolean.TRUE.equals(hints.get(EncodeHintType.QR_COMPACT))) {
+      // Split the content into segments of whichever modes take the fewest bits
+      MinimalEncoder minimalEncoder = new MinimalEncoder(content, encoding);
+      minimalEncoder.encode(ecLevel);
+      mode = minimalEncoder.getFirstMode();
+      version = minimalEncoder.getVersion();
+      headerAndDataBits = minimalEncoder.getBits();
+    } else {
+      // Pick an encoding mode appropriate for the content. Note that this will not attempt to use
+      // multiple modes / segments even if that were more efficient. Twould be nice.
+      mode = chooseMode(content, encoding);
+
+      // This will store the header information, like mode and
+      // length, as well as "header" segments like an ECI segment.
+      BitArray headerBits = new BitArray();
+
+      // Append ECI segment if applicable
+      if (mode == Mode.BYTE && !DEFAULT_BYTE_MODE_ENCODING.equals(encoding)) {
+        CharacterSetECI eci = CharacterSetECI.getCharacterSetECIByName(encoding);
+        if (eci != null) {
+          appendECI(eci, headerBits);
+        }
       }
-    }
 
-    // (With ECI in place,) Write the mode marker
-    appendModeInfo(mode, headerBits);
+      // (With ECI in place,) Write the mode marker
+      appendModeInfo(mode, headerBits);
 
-    // Collect data within the main segment, separately, to count its size if needed. Don't add it to
-    // main payload yet.
-    BitArray dataBits = new BitArray();
-    appendBytes(content, mode, dataBits, encoding);
+      // Collect data within the main segment, separately, to count its size if needed. Don't add it to
+      // main payload yet.
+      BitArray dataBits = new BitArray();
+      appendBytes(content, mode, dataBits, encoding);
 
-    // Hard part: need to know version to know how many bits length takes. But need to know how many
-    // bits it takes to know version. First we take a guess at version by assuming version will be
-    // the minimum, 1:
+      // Hard part: need to know version to know how many bits length takes. But need to know how many
+      // bits it takes to know version. First we take a guess at version by assuming version will be
+      // the minimum, 1:
 
-    int provisionalBitsNeeded = headerBits.getSize()
-        + mode.getCharacterCountBits(Version.getVersionForNumber(1))
-        + dataBits.getSize();
-    Version provisionalVersion = chooseVersion(provisionalBitsNeeded, ecLevel);
+      int provisionalBitsNeeded = headerBits.getSize()
+          + mode.getCharacterCountBits(Version.getVersionForNumber(1))
+          + dataBits.getSize();
+      Version provisionalVersion = chooseVersion(provisionalBitsNeeded, ecLevel);
 
-    // Use that guess to calculate the right version. I am still not sure this works in 100% of cases.
+      // Use that guess to calculate the right version. I am still not sure this works in 100% of cases.
 
-    int bitsNeeded = headerBits.getSize()
-        + mode.getCharacterCountBits(provisionalVersion)
-        + dataBits.getSize();
-    Version version = chooseVersion(bitsNeeded, ecLevel);
+      int bitsNeeded = headerBits.getSize()
+          + mode.getCharacterCountBits(provisionalVersion)
+          + dataBits.getSize();
+      version = chooseVersion(bitsNeeded, ecLevel);
 
-    BitArray headerAndDataBits = new BitArray();
-    headerAndDataBits.appendBitArray(headerBits);
-    // Find "length" of main segment and write it
-    int numLetters = mode == Mode.BYTE ? dataBits.getSizeInBytes() : content.length();
-    appendLengthInfo(numLetters, version, mode, headerAndDataBits);
-    // Put data together into the overall payload
-    headerAndDataBits.appendBitArray(dataBits);
+      headerAndDataBits = new BitArray();
+      headerAndDataBits.appendBitArray(headerBits);
+      // Find "length" of main segment and write it
+      int numLetters = mode == Mode.BYTE ? dataBits.getSizeInBytes() : content.length();
+      appendLengthInfo(numLetters, version, mode, headerAndDataBits);
+      // Put data together into the overall payload
+      headerAndDataBits.appendBitArray(dataBits);
+    }
 
     Version.ECBlocks ecBlocks = version.getECBlocksForLevel(ecLevel);
     int numDataBytes = version.getTotalCodewords() - ecBlocks.getTotalECCodewords();
@@ -155,7 +158,7 @@ public final class Encoder {
     //  Choose the mask pattern and set to "qrCode".
     int dimension = version.getDimensionForVersion();
     ByteMatrix matrix = new ByteMatrix(dimension, dimension);
-    int maskPattern = chooseMaskPattern(finalBits, ecLevel, version, matrix);
+    int maskPattern = chooseMaskPattern(finalBits, ecLevel, version);
     qrCode.setMaskPattern(maskPattern);
 
     // Build the matrix and set it to "qrCode".
@@ -232,21 +235,10 @@ public final class Encoder {
 
   private static int chooseMaskPattern(BitArray bits,
                                        ErrorCorrectionLevel ecLevel,
-                                       Version version,
-                                       ByteMatrix matrix) throws WriterException {
-
-    int minPenalty = Integer.MAX_VALUE;  // Lower penalty is better.
-    int bestMaskPattern = -1;
-    // We try all mask patterns to choose the best one.
-    for (int maskPattern = 0; maskPattern < QRCode.NUM_MASK_PATTERNS; maskPattern++) {
-      MatrixUtil.buildMatrix(bits, ecLevel, version, maskPattern, matrix);
-      int penalty = calculateMaskPenalty(matrix);
-      if (penalty < minPenalty) {
-        minPenalty = penalty;
-        bestMaskPattern = maskPattern;
-      }
-    }
-    return bestMaskPattern;
+                                       Version version) throws WriterException {
+    // We try all mask patterns to choose the best one, as overlays on a shared layout of
+    // this version's matrix rather than building the whole matrix for each
+    return MatrixTemplate.forVersion(version).chooseMaskPattern(bits, ecLevel);
   }
 
   private static Version chooseVersion(int numInputBits, ErrorCorrectionLevel ecLevel) throws WriterException {
@@ -33,6 +33,15 @@ final class MaskUtil {
     // do nothing
   }
 
+  // The mask penalty calculation is complicated.  See Table 21 of JISX0510:2004 (p.45) for details.
+  // Basically it applies four rules and summate all penalties.
+  static int calculateMaskPenalty(ByteMatrix matrix) {
+    return applyMaskPenaltyRule1(matrix)
+        + applyMaskPenaltyRule2(matrix)
+        + applyMaskPenaltyRule3(matrix)
+        + applyMaskPenaltyRule4(matrix);
+  }
+
   /**
    * Apply mask penalty rule 1 and return the penalty. Find repetitive cells with the same color and
    * give penalty to them. Example: 00000 or 11111.
@@ -143,6 +152,116 @@ final class MaskUtil {
     return fivePercentVariances * N4;
   }
 
+  /**
+   * Computes the sum of all four penalty rules, like applying each of the rules above to a
+   * {@link ByteMatrix}, but over a square matrix packed 64 modules to a {@code long}. Bit x of
+   * word x / 64 of {@code rows[y]} is module (x, y); {@code columns} is the same matrix
+   * transposed, so vertical runs are scanned exactly like horizontal ones.
+   */
+  static int calculatePackedMaskPenalty(long[][] rows, long[][] columns, int dimension) {
+    int penalty = 0;
+    int numDarkCells = 0;
+    for (int i = 0; i < dimension; i++) {
+      penalty += applyPackedRules1And3(rows[i], dimension);
+      penalty += applyPackedRules1And3(columns[i], dimension);
+      if (i + 1 < dimension) {
+        penalty += applyPackedRule2(rows[i], rows[i + 1], dimension);
+      }
+      for (long word : rows[i]) {
+        numDarkCells += Long.bitCount(word);
+      }
+    }
+    int numTotalCells = dimension * dimension;
+    double darkRatio = (double) numDarkCells / numTotalCells;
+    int fivePercentVariances = (int) (Math.abs(darkRatio - 0.5) * 20.0); // * 100.0 / 5.0
+    return penalty + fivePercentVariances * N4;
+  }
+
+  /**
+   * Rules 1 and 3 along one packed row or column. A run of n >= 5 same-colored cells starts
+   * n - 4 windows of 5 same-colored cells, and is penalized N1 + (n - 5), which is the number
+   * of such windows plus 2 for each run.
+   */
+  private static int applyPackedRules1And3(long[] line, int length) {
+    int penalty = 0;
+    for (int word = 0; word < line.length; word++) {
+      int base = word << 6;
+      long a0 = getWord(line, base);
+      long a1 = getWord(line, base + 1);
+      long a2 = getWord(line, base + 2);
+      long a3 = getWord(line, base + 3);
+      long a4 = getWord(line, base + 4);
+      long a5 = getWord(line, base + 5);
+      long a6 = getWord(line, base + 6);
+      long before1 = getWord(line, base - 1);
+
+      // Rule 1
+      long fiveSame = ~(a0 ^ a1) & ~(a1 ^ a2) & ~(a2 ^ a3) & ~(a3 ^ a4) & below(length - 4, base);
+      long runStarts = fiveSame & ((before1 ^ a0) | below(1, base));
+      penalty += Long.bitCount(fiveSame) + (N1 - 1) * Long.bitCount(runStarts);
+
+      // Rule 3: 1011101 preceded or followed by 0000
+      long core = a0 & ~a1 & a2 & a3 & a4 & ~a5 & a6 & below(length - 6, base);
+      if (core != 0) {
+        long after = ~(getWord(line, base + 7) | getWord(line, base + 8) |
+            getWord(line, base + 9) | getWord(line, base + 10)) & below(length - 10, base);
+        long before = ~(before1 | getWord(line, base - 2) |
+            getWord(line, base - 3) | getWord(line, base - 4)) & ~below(4, base);
+        penalty += N3 * Long.bitCount(core & (after | before));
+      }
+    }
+    return penalty;
+  }
+
+  /**
+   * Rule 2 for the 2x2 blocks whose top-left cell is in row {@code top}.
+   */
+  private static int applyPackedRule2(long[] top, long[] bottom, int length) {
+    int penalty = 0;
+    for (int word = 0; word < top.length; word++) {
+      int base = word << 6;
+      long a0 = getWord(top, base);
+      long a1 = getWord(top, base + 1);
+      long b0 = getWord(bottom, base);
+      long b1 = getWord(bottom, base + 1);
+      long block = ~(a0 ^ a1) & ~(a0 ^ b0) & ~(a1 ^ b1) & below(length - 1, base);
+      penalty += Long.bitCount(block);
+    }
+    return N2 * penalty;
+  }
+
+  /**
+   * @return the 64 bits of {@code line} starting at bit {@code start}, which may be negative;
+   *  bits outside the line read as 0
+   */
+  private static long getWord(long[] line, int start) {
+    if (start < 0) {
+      return line[0] << -start;
+    }
+    int index = start >> 6;
+    if (index >= line.length) {
+      return 0L;
+    }
+    int offset = start & 0x3F;
+    if (offset == 0) {
+      return line[index];
+    }
+    long high = index + 1 < line.length ? line[index + 1] : 0L;
+    return (line[index] >>> offset) | (high << (64 - offset));
+  }
+
+  /**
+   * @return mask of the bits in the word starting at bit {@code base} whose position is less
+   *  than {@code limit}
+   */
+  private static long below(int limit, int base) {
+    int n = limit - base;
+    if (n <= 0) {
+      return 0L;
+    }
+    return n >= 64 ? -1L : (1L << n) - 1;
+  }
+
   /**
    * Return the mask bit for "getMaskPattern" at "x" and "y". See 8.8 of JISX0510:2004 for mask
    * pattern conditions.
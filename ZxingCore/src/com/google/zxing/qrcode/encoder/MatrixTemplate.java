@@ -0,0 +1,201 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.qrcode.encoder;
+
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.decoder.Version;
+
+/**
+ * <p>The layout of one {@link Version}'s matrix, packed 64 modules to a {@code long}: its
+ * function patterns and version info, which cells hold type info, and the order data bits
+ * are placed in. It is built once per version with {@link MatrixUtil} and shared.</p>
+ *
+ * <p>This lets {@link Encoder} score every mask pattern without rebuilding a {@link ByteMatrix}
+ * for each: the data bits are laid out once, and each mask is then just an XOR over the data
+ * cells plus that mask's type info, scored by
+ * {@link MaskUtil#calculatePackedMaskPenalty(long[][], long[][], int)}.</p>
+ */
+final class MatrixTemplate {
+
+  private static final MatrixTemplate[] TEMPLATES = new MatrixTemplate[40];
+
+  private final int dimension;
+  private final int words;
+  // Function patterns, with type info cells left white
+  private final long[][] functionRows;
+  private final long[][] functionColumns;
+  // For each mask pattern, the cells it flips among those holding data
+  private final long[][][] maskRows;
+  private final long[][][] maskColumns;
+  // Cells holding type info bit 14 - i / 2, as (y << 8) | x
+  private final int[] typeInfoPositions;
+  // Data cells in placement order, as (y << 8) | x
+  private final int[] dataPositions;
+
+  private MatrixTemplate(Version version) throws WriterException {
+    dimension = version.getDimensionForVersion();
+    words = (dimension + 63) >> 6;
+    ByteMatrix matrix = new ByteMatrix(dimension, dimension);
+    MatrixUtil.clearMatrix(matrix);
+    MatrixUtil.embedBasicPatterns(version, matrix);
+    MatrixUtil.maybeEmbedVersionInfo(version, matrix);
+    // Reserve the type info cells; their contents depend on the mask and are added per candidate
+    MatrixUtil.embedTypeInfo(ErrorCorrectionLevel.L, 0, matrix);
+    typeInfoPositions = new int[30];
+    for (int i = 0; i < 15; ++i) {
+      // Same placement as MatrixUtil.embedTypeInfo()
+      typeInfoPositions[2 * i] =
+          (MatrixUtil.TYPE_INFO_COORDINATES[i][1] << 8) | MatrixUtil.TYPE_INFO_COORDINATES[i][0];
+      if (i < 8) {
+        // Right top corner.
+        typeInfoPositions[2 * i + 1] = (8 << 8) | (dimension - i - 1);
+      } else {
+        // Left bottom corner.
+        typeInfoPositions[2 * i + 1] = ((dimension - 7 + (i - 8)) << 8) | 8;
+      }
+    }
+    for (int position : typeInfoPositions) {
+      matrix.set(position & 0xFF, position >>> 8, 0);
+    }
+
+    functionRows = new long[dimension][words];
+    functionColumns = new long[dimension][words];
+    maskRows = new long[QRCode.NUM_MASK_PATTERNS][dimension][words];
+    maskColumns = new long[QRCode.NUM_MASK_PATTERNS][dimension][words];
+    for (int y = 0; y < dimension; y++) {
+      for (int x = 0; x < dimension; x++) {
+        int value = matrix.get(x, y);
+        if (value == 1) {
+          setBit(functionRows, functionColumns, x, y);
+        } else if (value == -1) {
+          for (int maskPattern = 0; maskPattern < QRCode.NUM_MASK_PATTERNS; maskPattern++) {
+            if (MaskUtil.getDataMaskBit(maskPattern, x, y)) {
+              setBit(maskRows[maskPattern], maskColumns[maskPattern], x, y);
+            }
+          }
+        }
+      }
+    }
+
+    // Same walk as MatrixUtil.embedDataBits(), recording the empty cells
+    int[] positions = new int[dimension * dimension];
+    int numPositions = 0;
+    int direction = -1;
+    int x = dimension - 1;
+    int y = dimension - 1;
+    while (x > 0) {
+      // Skip the vertical timing pattern.
+      if (x == 6) {
+        x -= 1;
+      }
+      while (y >= 0 && y < dimension) {
+        for (int i = 0; i < 2; ++i) {
+          int xx = x - i;
+          if (matrix.get(xx, y) == -1) {
+            positions[numPositions++] = (y << 8) | xx;
+          }
+        }
+        y += direction;
+      }
+      direction = -direction;  // Reverse the direction.
+      y += direction;
+      x -= 2;  // Move to the left.
+    }
+    dataPositions = new int[numPositions];
+    System.arraycopy(positions, 0, dataPositions, 0, numPositions);
+  }
+
+  /**
+   * @param version version to get the layout of
+   * @return the shared layout for that version, built on first use
+   */
+  static synchronized MatrixTemplate forVersion(Version version) throws WriterException {
+    int index = version.getVersionNumber() - 1;
+    MatrixTemplate template = TEMPLATES[index];
+    if (template == null) {
+      template = new MatrixTemplate(version);
+      TEMPLATES[index] = template;
+    }
+    return template;
+  }
+
+  /**
+   * Places the data once, then scores each mask pattern in turn as an overlay of it, exactly as
+   * {@link MaskUtil}'s penalty rules would score the matrix built by
+   * {@link MatrixUtil#buildMatrix(BitArray, ErrorCorrectionLevel, Version, int, ByteMatrix)}.
+   *
+   * @return the mask pattern with the lowest penalty, the first one on ties
+   * @throws WriterException if there are more data bits than data cells
+   */
+  int chooseMaskPattern(BitArray dataBits, ErrorCorrectionLevel ecLevel) throws WriterException {
+    int numBits = dataBits.getSize();
+    if (numBits > dataPositions.length) {
+      throw new WriterException("Not all bits consumed: " + dataPositions.length + '/' + numBits);
+    }
+    long[][] dataRows = new long[dimension][words];
+    long[][] dataColumns = new long[dimension][words];
+    for (int i = 0; i < numBits; i++) {
+      if (dataBits.get(i)) {
+        int position = dataPositions[i];
+        setBit(dataRows, dataColumns, position & 0xFF, position >>> 8);
+      }
+    }
+
+    long[][] rows = new long[dimension][words];
+    long[][] columns = new long[dimension][words];
+    int minPenalty = Integer.MAX_VALUE;  // Lower penalty is better.
+    int bestMaskPattern = -1;
+    for (int maskPattern = 0; maskPattern < QRCode.NUM_MASK_PATTERNS; maskPattern++) {
+      overlay(dataRows, maskRows[maskPattern], functionRows, rows);
+      overlay(dataColumns, maskColumns[maskPattern], functionColumns, columns);
+      BitArray typeInfoBits = new BitArray();
+      MatrixUtil.makeTypeInfoBits(ecLevel, maskPattern, typeInfoBits);
+      for (int i = 0; i < typeInfoPositions.length; i++) {
+        if (typeInfoBits.get(14 - i / 2)) {
+          int position = typeInfoPositions[i];
+          setBit(rows, columns, position & 0xFF, position >>> 8);
+        }
+      }
+      int penalty = MaskUtil.calculatePackedMaskPenalty(rows, columns, dimension);
+      if (penalty < minPenalty) {
+        minPenalty = penalty;
+        bestMaskPattern = maskPattern;
+      }
+    }
+    return bestMaskPattern;
+  }
+
+  private static void overlay(long[][] data, long[][] mask, long[][] function, long[][] result) {
+    for (int i = 0; i < result.length; i++) {
+      long[] dataLine = data[i];
+      long[] maskLine = mask[i];
+      long[] functionLine = function[i];
+      long[] resultLine = result[i];
+      for (int word = 0; word < resultLine.length; word++) {
+        resultLine[word] = functionLine[word] | (dataLine[word] ^ maskLine[word]);
+      }
+    }
+  }
+
+  private static void setBit(long[][] rows, long[][] columns, int x, int y) {
+    rows[y][x >> 6] |= 1L << (x & 0x3F);
+    columns[x][y >> 6] |= 1L << (y & 0x3F);
+  }
+
+}
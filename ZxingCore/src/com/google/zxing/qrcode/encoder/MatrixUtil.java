@@ -94,7 +94,7 @@ final class MatrixUtil {
   };
 
   // Type info cells at the left top corner.
-  private static final int[][] TYPE_INFO_COORDINATES = {
+  static final int[][] TYPE_INFO_COORDINATES = {
       {8, 0},
       {8, 1},
       {8, 2},
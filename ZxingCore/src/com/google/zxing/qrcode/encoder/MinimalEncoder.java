@@ -0,0 +1,337 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.qrcode.encoder;
+
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.CharacterSetECI;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.decoder.Mode;
+import com.google.zxing.qrcode.decoder.Version;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+
+/**
+ * <p>Splits content into segments of different modes so that it takes as few bits as possible,
+ * for example encoding the digits of "ORDER-123456789012345678-DE" in numeric mode rather than
+ * the whole string in byte mode. See ISO 18004:2006, Annex J.</p>
+ *
+ * <p>The split is found by dynamic programming over the characters, tracking for each mode how
+ * far into a numeric triple or alphanumeric pair the current segment is, so that costs are
+ * exact. Since the width of each segment's length field depends on the version, it is solved
+ * separately for versions 1-9, 10-26 and 27-40, and the smallest version that fits wins.</p>
+ */
+final class MinimalEncoder {
+
+  // States of the segment being built, after some character: its mode, and for numeric and
+  // alphanumeric, how many characters it holds modulo the size of a group
+  private static final int NUMERIC_0 = 0;
+  private static final int NUMERIC_1 = 1;
+  private static final int NUMERIC_2 = 2;
+  private static final int ALPHANUMERIC_0 = 3;
+  private static final int ALPHANUMERIC_1 = 4;
+  private static final int BYTE = 5;
+  private static final int KANJI = 6;
+  private static final int NUM_STATES = 7;
+  // Flags a back pointer, or a unit's state, as beginning a new segment
+  private static final int SEGMENT_START = 0x100;
+
+  private static final Mode[] STATE_MODES = {
+      Mode.NUMERIC, Mode.NUMERIC, Mode.NUMERIC,
+      Mode.ALPHANUMERIC, Mode.ALPHANUMERIC,
+      Mode.BYTE,
+      Mode.KANJI,
+  };
+
+  // First version of each range sharing the same character count widths
+  private static final int[] RANGE_START_VERSIONS = { 1, 10, 27, 41 };
+
+  private final String content;
+  private final String encoding;
+  private final CharacterSetECI eci;
+  // Characters are grouped in units that can't be split between segments: code points
+  private final int[] unitStarts;
+  private final int[] unitByteBits;
+  private final boolean[] unitAlphanumeric;
+  private final boolean[] unitNumeric;
+  private final boolean[] unitKanji;
+
+  private Version version;
+  private BitArray bits;
+  private Mode firstMode;
+
+  MinimalEncoder(String content, String encoding) throws WriterException {
+    this.content = content;
+    this.encoding = encoding;
+    this.eci = Encoder.DEFAULT_BYTE_MODE_ENCODING.equals(encoding) ?
+        null : CharacterSetECI.getCharacterSetECIByName(encoding);
+    boolean kanjiAllowed = "Shift_JIS".equals(encoding);
+
+    int numUnits = content.codePointCount(0, content.length());
+    unitStarts = new int[numUnits + 1];
+    unitByteBits = new int[numUnits];
+    unitAlphanumeric = new boolean[numUnits];
+    unitNumeric = new boolean[numUnits];
+    unitKanji = new boolean[numUnits];
+    int offset = 0;
+    for (int unit = 0; unit < numUnits; unit++) {
+      unitStarts[unit] = offset;
+      int codePoint = content.codePointAt(offset);
+      int next = offset + Character.charCount(codePoint);
+      unitNumeric[unit] = codePoint >= '0' && codePoint <= '9';
+      unitAlphanumeric[unit] = codePoint < 0x80 && Encoder.getAlphanumericCode(codePoint) != -1;
+      byte[] unitBytes = getBytes(content.substring(offset, next), encoding);
+      unitByteBits[unit] = unitBytes.length << 3;
+      unitKanji[unit] = kanjiAllowed && isDoubleByteKanji(unitBytes);
+      offset = next;
+    }
+    unitStarts[numUnits] = offset;
+  }
+
+  /**
+   * Finds the smallest version the content fits in at this error correction level, and the
+   * segments that make it fit.
+   *
+   * @throws WriterException if it does not fit in any version
+   */
+  void encode(ErrorCorrectionLevel ecLevel) throws WriterException {
+    for (int range = 0; range < RANGE_START_VERSIONS.length - 1; range++) {
+      Version countVersion = Version.getVersionForNumber(RANGE_START_VERSIONS[range]);
+      int[] unitStates = segment(countVersion);
+      BitArray rangeBits = new BitArray();
+      Mode rangeFirstMode = appendSegments(unitStates, countVersion, rangeBits);
+      if (rangeFirstMode == null) {
+        // A segment is too long for this range's length fields, and so for its versions
+        continue;
+      }
+      int numInputBytes = rangeBits.getSizeInBytes();
+      for (int versionNum = RANGE_START_VERSIONS[range];
+           versionNum < RANGE_START_VERSIONS[range + 1];
+           versionNum++) {
+        Version candidate = Version.getVersionForNumber(versionNum);
+        int numDataBytes =
+            candidate.getTotalCodewords() - candidate.getECBlocksForLevel(ecLevel).getTotalECCodewords();
+        if (numDataBytes >= numInputBytes) {
+          version = candidate;
+          bits = rangeBits;
+          firstMode = rangeFirstMode;
+          return;
+        }
+      }
+    }
+    throw new WriterException("Data too big");
+  }
+
+  Version getVersion() {
+    return version;
+  }
+
+  /**
+   * @return ECI, mode, length and data bits of all segments, not yet terminated
+   */
+  BitArray getBits() {
+    return bits;
+  }
+
+  /**
+   * @return mode of the first segment
+   */
+  Mode getFirstMode() {
+    return firstMode;
+  }
+
+  /**
+   * @return for each unit, the state of the segment after it in a cheapest encoding, with
+   *  {@link #SEGMENT_START} set on units that begin a segment
+   */
+  private int[] segment(Version countVersion) throws WriterException {
+    int[] cheapest = segment(countVersion, false);
+    if (eci != null) {
+      // Byte segments cost an ECI designator up front; see if it pays to avoid them altogether
+      int[] withoutBytes = segment(countVersion, true);
+      if (withoutBytes != null && cost(withoutBytes, countVersion) <= cost(cheapest, countVersion)) {
+        return withoutBytes;
+      }
+    }
+    return cheapest;
+  }
+
+  /**
+   * @return states as for {@link #segment(Version)}, or null if some unit can't be encoded
+   */
+  private int[] segment(Version countVersion, boolean avoidByte) {
+    int numUnits = unitByteBits.length;
+    int[] segmentHeaderBits = new int[NUM_STATES];
+    for (int state = 0; state < NUM_STATES; state++) {
+      segmentHeaderBits[state] = 4 + STATE_MODES[state].getCharacterCountBits(countVersion);
+    }
+    // costs[unit][state] is the fewest bits encoding the units before "unit", ending in "state"
+    int[][] costs = new int[numUnits + 1][NUM_STATES];
+    int[][] previous = new int[numUnits + 1][NUM_STATES];
+    Arrays.fill(costs[0], Integer.MAX_VALUE);
+    for (int unit = 0; unit < numUnits; unit++) {
+      int[] from = costs[unit];
+      int[] to = costs[unit + 1];
+      int[] back = previous[unit + 1];
+      Arrays.fill(to, Integer.MAX_VALUE);
+
+      // A new segment may follow whichever state is cheapest so far
+      int bestFrom = 0;
+      int startCost = 0;
+      if (unit > 0) {
+        bestFrom = cheapestState(from);
+        if (bestFrom < 0) {
+          return null;
+        }
+        startCost = from[bestFrom];
+      }
+
+      if (unitNumeric[unit]) {
+        // Three digits take 10 bits: 4 for the first, 3 for each of the other two
+        relax(to, back, NUMERIC_1, from, NUMERIC_0, 4);
+        relax(to, back, NUMERIC_2, from, NUMERIC_1, 3);
+        relax(to, back, NUMERIC_0, from, NUMERIC_2, 3);
+        startSegment(to, back, NUMERIC_1, startCost + segmentHeaderBits[NUMERIC_1] + 4, bestFrom);
+      }
+      if (unitAlphanumeric[unit]) {
+        // Two characters take 11 bits: 6 for the first, 5 for the second
+        relax(to, back, ALPHANUMERIC_1, from, ALPHANUMERIC_0, 6);
+        relax(to, back, ALPHANUMERIC_0, from, ALPHANUMERIC_1, 5);
+        startSegment(to, back, ALPHANUMERIC_1, startCost + segmentHeaderBits[ALPHANUMERIC_1] + 6, bestFrom);
+      }
+      if (unitKanji[unit]) {
+        relax(to, back, KANJI, from, KANJI, 13);
+        startSegment(to, back, KANJI, startCost + segmentHeaderBits[KANJI] + 13, bestFrom);
+      }
+      if (!avoidByte) {
+        relax(to, back, BYTE, from, BYTE, unitByteBits[unit]);
+        startSegment(to, back, BYTE, startCost + segmentHeaderBits[BYTE] + unitByteBits[unit], bestFrom);
+      }
+    }
+
+    int state = cheapestState(costs[numUnits]);
+    if (numUnits > 0 && state < 0) {
+      return null;
+    }
+    int[] unitStates = new int[numUnits];
+    for (int unit = numUnits; unit > 0; unit--) {
+      int back = previous[unit][state];
+      unitStates[unit - 1] = state | (back & SEGMENT_START);
+      state = back & ~SEGMENT_START;
+    }
+    return unitStates;
+  }
+
+  private static int cheapestState(int[] costs) {
+    int best = -1;
+    for (int state = 0; state < NUM_STATES; state++) {
+      if (costs[state] != Integer.MAX_VALUE && (best < 0 || costs[state] < costs[best])) {
+        best = state;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Continues the segment in "fromState" with one more unit costing "bits", if that's cheaper.
+   */
+  private static void relax(int[] to, int[] back, int toState, int[] from, int fromState, int bits) {
+    if (from[fromState] != Integer.MAX_VALUE && from[fromState] + bits < to[toState]) {
+      to[toState] = from[fromState] + bits;
+      back[toState] = fromState;
+    }
+  }
+
+  /**
+   * Starts a new segment after "fromState", costing "cost" in all, if that's cheaper.
+   */
+  private static void startSegment(int[] to, int[] back, int toState, int cost, int fromState) {
+    if (cost < to[toState]) {
+      to[toState] = cost;
+      back[toState] = fromState | SEGMENT_START;
+    }
+  }
+
+  private int cost(int[] unitStates, Version countVersion) throws WriterException {
+    BitArray scratch = new BitArray();
+    if (appendSegments(unitStates, countVersion, scratch) == null) {
+      return Integer.MAX_VALUE;
+    }
+    return scratch.getSize();
+  }
+
+  /**
+   * Appends the segments as chosen, with an ECI designator first if any of them is in byte mode.
+   *
+   * @return mode of the first segment, or null if a segment holds more characters than its length
+   *  field can count at this version
+   */
+  private Mode appendSegments(int[] unitStates, Version countVersion, BitArray result) throws WriterException {
+    int numUnits = unitStates.length;
+    if (eci != null) {
+      for (int unitState : unitStates) {
+        if ((unitState & ~SEGMENT_START) == BYTE) {
+          result.appendBits(Mode.ECI.getBits(), 4);
+          result.appendBits(eci.getValue(), 8);
+          break;
+        }
+      }
+    }
+    Mode first = null;
+    int start = 0;
+    while (start < numUnits) {
+      Mode mode = STATE_MODES[unitStates[start] & ~SEGMENT_START];
+      int end = start + 1;
+      while (end < numUnits && (unitStates[end] & SEGMENT_START) == 0) {
+        end++;
+      }
+      String segment = content.substring(unitStarts[start], unitStarts[end]);
+      BitArray dataBits = new BitArray();
+      Encoder.appendBytes(segment, mode, dataBits, encoding);
+      Encoder.appendModeInfo(mode, result);
+      int numLetters = mode == Mode.BYTE ? dataBits.getSizeInBytes() : segment.length();
+      if (numLetters >= 1 << mode.getCharacterCountBits(countVersion)) {
+        return null;
+      }
+      Encoder.appendLengthInfo(numLetters, countVersion, mode, result);
+      result.appendBitArray(dataBits);
+      if (first == null) {
+        first = mode;
+      }
+      start = end;
+    }
+    return first == null ? Mode.BYTE : first;
+  }
+
+  private static byte[] getBytes(String s, String encoding) throws WriterException {
+    try {
+      return s.getBytes(encoding);
+    } catch (UnsupportedEncodingException uee) {
+      throw new WriterException(uee);
+    }
+  }
+
+  private static boolean isDoubleByteKanji(byte[] bytes) {
+    if (bytes.length != 2) {
+      return false;
+    }
+    int code = ((bytes[0] & 0xFF) << 8) | (bytes[1] & 0xFF);
+    return (code >= 0x8140 && code <= 0x9FFC) || (code >= 0xE040 && code <= 0xEBBF);
+  }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.aztec.decoder;
+
+import com.google.zxing.FormatException;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.aztec.AztecDetectorResult;
+import com.google.zxing.aztec.encoder.AztecCode;
+import com.google.zxing.aztec.encoder.Encoder;
+import com.google.zxing.common.BitMatrix;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.Random;
+
+/**
+ * Tests {@link Decoder} on symbols from {@link Encoder}.
+ */
+public final class DecoderTest extends Assert {
+
+  private static final Charset LATIN_1 = Charset.forName("ISO-8859-1");
+  private static final ResultPoint[] NO_POINTS = new ResultPoint[0];
+
+  @Test
+  public void testAllTables() throws Exception {
+    // Upper, lower, mixed, punctuation (including two character codes), digits and binary
+    testDecode("ABC def\r\n@\\^_ Hello, World. Time: 12:30, 0.5 {x} éÿ\u0000 Z");
+    testDecode("a1A\u0001b;B2c`C\u007f.");
+  }
+
+  @Test
+  public void testAllSizes() throws Exception {
+    Random random = new Random(0xA27EC);
+    for (int length = 1; length < 3000; length += 1 + length / 8) {
+      StringBuilder data = new StringBuilder(length);
+      for (int i = 0; i < length; i++) {
+        data.append((char) ('A' + random.nextInt(26)));
+      }
+      testDecode(data.toString());
+    }
+  }
+
+  @Test
+  public void testErrors() throws Exception {
+    StringBuilder data = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      data.append("Aztec ").append(i).append(' ');
+    }
+    AztecCode aztec = Encoder.encode(data.toString().getBytes(LATIN_1), 30);
+    BitMatrix matrix = aztec.getMatrix();
+    // Flip a few modules of the outer layer, away from the reference grid lines
+    for (int x = 1; x < 12; x += 2) {
+      matrix.flip(x, 0);
+    }
+    assertEquals(data.toString(), decode(aztec, matrix));
+
+    // Inverting the top half is beyond correction
+    for (int y = 0; y < matrix.getHeight() / 2; y++) {
+      for (int x = 0; x < matrix.getWidth(); x++) {
+        matrix.flip(x, y);
+      }
+    }
+    try {
+      decode(aztec, matrix);
+      fail("Should not decode");
+    } catch (FormatException fe) {
+      // good
+    }
+  }
+
+  private static void testDecode(String data) throws FormatException {
+    AztecCode aztec = Encoder.encode(data.getBytes(LATIN_1), Encoder.DEFAULT_EC_PERCENT);
+    assertEquals(data, decode(aztec, aztec.getMatrix()));
+  }
+
+  private static String decode(AztecCode aztec, BitMatrix matrix) throws FormatException {
+    AztecDetectorResult r = new AztecDetectorResult(
+        matrix, NO_POINTS, aztec.isCompact(), aztec.getCodeWords(), aztec.getLayers());
+    return new Decoder().decode(r).getText();
+  }
+
+}
@@ -90,34 +90,34 @@ public final class EncoderTest extends Assert {
         "X   X   X   X   X   X   X   X   X   X   X   X   X   X   X   X   X   X   X   X   X \n" +
         "    X X   X   X   X X X               X       X       X X     X X   X X       X   \n" +
         "X X     X       X       X X X X   X   X X       X   X X   X       X X   X X   X   \n" +
-        "  X       X   X         X     X   X         X X       X         X     X   X   X X \n" +
-        "X X   X X   X   X   X X       X X     X X     X X X   X X   X X   X X   X X X     \n" +
-        "  X       X   X   X X     X X   X X         X X X   X     X     X X   X     X X X \n" +
-        "  X   X X X   X X X   X   X X   X   X   X X   X X   X X X X X   X X X   X X     X \n" +
-        "    X     X   X X   X   X X X X       X       X       X X X         X X     X   X \n" +
-        "X X X   X           X X X X     X X X X X X X X   X       X X X     X   X   X   X \n" +
-        "          X       X   X X X X     X   X           X   X X       X                 \n" +
-        "  X     X X   X   X X   X X X X X X X X X X X X X X X X   X X       X   X X X     \n" +
-        "    X X           X X       X                       X X X X X X             X X X \n" +
-        "        X   X X   X X X   X X   X X X X X X X X X   X   X               X X X X   \n" +
-        "          X X X       X     X   X               X   X X   X       X X X           \n" +
-        "X X     X     X   X     X X X   X   X X X X X   X   X X       X         X   X X X \n" +
-        "X X X X       X     X   X X X   X   X       X   X   X       X X X   X X       X X \n" +
+        "  X       X   X     X X   X   X X   X X   X X X X X X   X X           X   X   X X \n" +
+        "X X   X X   X   X X X X   X X X X X X X X   X   X       X X   X X X X   X X X     \n" +
+        "  X       X   X     X       X X     X X   X   X   X     X X   X X X   X     X X X \n" +
+        "  X   X X X   X X       X X X         X X           X   X   X   X X X   X X     X \n" +
+        "    X     X   X X     X X X X     X   X     X X X X   X X   X X   X X X     X   X \n" +
+        "X X X   X             X         X X X X X   X   X X   X   X   X X   X   X   X   X \n" +
+        "          X       X X X   X X     X   X           X   X X X X   X X               \n" +
+        "  X     X X   X   X       X X X X X X X X X X X X X X X   X   X X   X   X X X     \n" +
+        "    X X                 X   X                       X X   X       X         X X X \n" +
+        "        X   X X   X X X X X X   X X X X X X X X X   X     X X           X X X X   \n" +
+        "          X X X   X     X   X   X               X   X X     X X X   X X           \n" +
+        "X X     X     X   X   X   X X   X   X X X X X   X   X X X X X X X       X   X X X \n" +
+        "X X X X       X       X   X X   X   X       X   X   X     X X X     X X       X X \n" +
         "X   X   X   X   X   X   X   X   X   X   X   X   X   X   X   X   X   X   X   X   X \n" +
-        "    X     X       X     X   X   X   X       X   X   X       X                     \n" +
-        "        X X     X X X X X   X   X   X X X X X   X   X X X     X     X   X         \n" +
-        "X     X   X   X   X X X X   X   X               X   X X X   X X     X     X   X   \n" +
-        "  X   X X X   X     X X X X X   X X X X X X X X X   X X X X X           X X X X   \n" +
-        "    X X   X   X     X X     X                       X X X X       X   X     X     \n" +
-        "    X X X X   X       X     X X X X X X X X X X X X X X       X     X   X X   X X \n" +
-        "            X   X X     X     X X X X X     X X X       X X X X X   X         X   \n" +
-        "X       X         X           X X   X X X X   X X   X X X     X X   X   X       X \n" +
-        "X     X       X X     X     X X     X             X X   X       X     X   X X     \n" +
-        "  X X X X X       X   X     X           X     X   X X X X   X X X X     X X   X X \n" +
-        "X             X   X X X     X X       X       X X   X   X X     X X X         X X \n" +
-        "    X   X X       X     X       X   X X X X X X   X X   X X X X X X X X X   X X   \n" +
-        "    X         X X   X       X     X   X   X       X     X X X     X       X X     \n" +
-        "X     X X     X X X X X X             X X X   X               X   X     X       X \n" +
+        "    X     X       X         X   X   X       X   X   X     X   X X                 \n" +
+        "        X X     X X X X X   X   X   X X X X X   X   X X X     X X X X   X         \n" +
+        "X     X   X   X         X   X   X               X   X X   X X   X X X     X   X   \n" +
+        "  X   X X X   X   X X   X X X   X X X X X X X X X   X X         X X     X X X X   \n" +
+        "    X X   X   X   X X X     X                       X X X   X X   X   X     X     \n" +
+        "    X X X X   X         X   X X X X X X X X X X X X X X   X       X X   X X   X X \n" +
+        "            X   X   X X       X X X X X     X X X       X       X X X         X   \n" +
+        "X       X         X   X X X X   X     X X     X X     X X           X   X       X \n" +
+        "X     X       X X X X X     X   X X X X   X X X     X       X X X X   X   X X   X \n" +
+        "  X X X X X               X     X X X   X       X X   X X   X X X X     X X       \n" +
+        "X             X         X   X X   X X     X     X     X   X   X X X X             \n" +
+        "    X   X X       X     X       X   X X X X X X   X X   X X X X X X X X X   X   X \n" +
+        "    X         X X   X       X     X   X   X       X     X X X     X       X X X X \n" +
+        "X     X X     X X X X X X             X X X   X               X   X     X     X X \n" +
         "X   X X     X               X X X X X     X X     X X X X X X X X     X   X   X X \n" +
         "X   X   X   X   X   X   X   X   X   X   X   X   X   X   X   X   X   X   X   X   X \n" +
         "X           X     X X X X     X     X         X         X   X       X X   X X X   \n" +
@@ -167,7 +167,7 @@ public final class EncoderTest extends Assert {
   
   @Test
   public void testEncodeDecode5() throws Exception {
-    testEncodeDecode("http://test/~!@#*^%&)__ ;:'\"[]{}\\|-+-=`1029384756<>/?abc", false, 5);
+    testEncodeDecode("http://test/~!@#*^%&)__ ;:'\"[]{}\\|-+-=`1029384756<>/?abc", true, 4);
   }
   
   @Test
@@ -247,6 +247,24 @@ public final class EncoderTest extends Assert {
   		" hendrerit felis turpis nec lorem.", false, 31);
   }
 
+  @Test
+  public void testEncodeDecodeRandom() throws Exception {
+    // Mixed case, punctuation, digits and binary, down to no error correction at all
+    String alphabet = "AbC dEf, gH. iJ: kl\r\nMN 12.5, 3:4 @\\^_`|~!\"#$%&'()*+-/;<=>?[]{}\u0000\u0080\u00FF";
+    Random random = new Random(0xA27EC);
+    for (int i = 0; i < 200; i++) {
+      StringBuilder data = new StringBuilder();
+      int length = 1 + random.nextInt(i % 10 == 0 ? 600 : 60);
+      for (int j = 0; j < length; j++) {
+        data.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      }
+      AztecCode aztec = Encoder.encode(data.toString().getBytes(LATIN_1), random.nextInt(40));
+      AztecDetectorResult r =
+          new AztecDetectorResult(aztec.getMatrix(), NO_POINTS, aztec.isCompact(), aztec.getCodeWords(), aztec.getLayers());
+      assertEquals(data.toString(), new Decoder().decode(r).getText());
+    }
+  }
+
   @Test
   public void testGenerateModeMessage() {
     testModeMessage(true, 2, 29, ".X .XXX.. ...X XX.. ..X .XX. .XX.X");
@@ -281,7 +299,7 @@ public final class EncoderTest extends Assert {
     testHighLevelEncodeString("Lorem ipsum.",
         ".XX.X XXX.. X.... X..XX ..XX. .XXX. ....X .X.X. X...X X.X.. X.XX. .XXX. XXXX. XX.X");
     testHighLevelEncodeString("Lo. Test 123.",
-        ".XX.X XXX.. X.... ..... ...XX XXX.. X.X.X ..XX. X.X.. X.X.X ....X XXXX. ..XX .X.. .X.X XX.X");
+        ".XX.X XXX.. X.... ..... ...XX XXX.. X.X.X ..XX. X.X.. X.X.X XXXX. ...X ..XX .X.. .X.X XX.X");
     testHighLevelEncodeString("Lo...x",
         ".XX.X XXX.. X.... XXXX. XX.X XX.X XX.X XXX. XXX.. XX..X");
     testHighLevelEncodeString(". x://abc/.",
@@ -292,30 +310,40 @@ public final class EncoderTest extends Assert {
   public void testHighLevelEncodeBinary() throws Exception {
     // binary short form single byte
     testHighLevelEncodeString("N\0N",
-        ".XXXX XXXXX ...X. ........ .X..XXX.");
+        ".XXXX XXXXX ....X ........ .XXXX");
     // binary short form consecutive bytes
     testHighLevelEncodeString("N\0\u0080 A",
         ".XXXX XXXXX ...X. ........ X....... ....X ...X.");
     // binary skipping over single character
     testHighLevelEncodeString("\0a\u00FF\u0080 A",
         "XXXXX ..X.. ........ .XX....X XXXXXXXX X....... ....X ...X.");
-    // binary long form optimization into 2 short forms (saves 1 bit)
+    // binary short forms around a space
     testHighLevelEncodeString(
         "\0\0\0\0 \0\0\0\0 \0\0\0\0 \0\0\0\0 \0\0\0\0 \0\0\0\0 \u0082\u0084\u0088\0 \0\0\0\0 \0\0\0\0 ",
-        "XXXXX XXXXX ........ ........ ........ ........ ..X....." +
-        " ........ ........ ........ ........ ..X....." +
+        "XXXXX XXX.X ........ ........ ........ ........ ..X....." +
         " ........ ........ ........ ........ ..X....." +
         " ........ ........ ........ ........ ..X....." +
         " ........ ........ ........ ........ ..X....." +
         " ........ ........ ........ ........ ..X....." +
-        " X.....X. XXXXX .XXX. X....X.. X...X... ........ ..X....." +
+        " ........ ........ ........ ........ ....X" +
+        " XXXXX .XXX. X.....X. X....X.. X...X... ........ ..X....." +
         " ........ ........ ........ ........ ..X....." +
-        " ........ ........ ........ ........ ..X.....");
+        " ........ ........ ........ ........ ....X");
+    // binary long form optimization into 2 short forms (saves 1 bit)
+    testHighLevelEncodeString(
+        "\u0080\u0081\u0082\u0083\u0084\u0085\u0086\u0087\u0088\u0089\u008A\u008B\u008C\u008D\u008E" +
+            "\u008F\u0090\u0091\u0092\u0093\u0094\u0095\u0096\u0097\u0098\u0099\u009A\u009B\u009C\u009D" +
+            "\u009E\u009F\u00A0A",
+        "XXXXX XXXXX X....... X......X X.....X. X.....XX X....X.. X....X.X X....XX. X....XXX" +
+        " X...X... X...X..X X...X.X. X...X.XX X...XX.. X...XX.X X...XXX. X...XXXX" +
+        " X..X.... X..X...X X..X..X. X..X..XX X..X.X.. X..X.X.X X..X.XX. X..X.XXX" +
+        " X..XX... X..XX..X X..XX.X. X..XX.XX X..XXX.. X..XXX.X X..XXXX." +
+        " XXXXX ...X. X..XXXXX X.X..... ...X.");
     // binary long form
     testHighLevelEncodeString(
         "\0\0\0\0 \0\0\1\0 \0\0\2\0 \0\0\3\0 \0\0\4\0 \0\0\5\0 \0\0\6\0 \0\0\7\0 \0\0\u0008" +
             "\0 \0\0\u0009\0 \0\0\u00F0\0 \0\0\u00F1\0 \0\0\u00F2\0A",
-        "XXXXX ..... .....X...X. ........ ........ ........ ........ ..X....." +
+        "XXXXX ..... .....X....X ........ ........ ........ ........ ..X....." +
         " ........ ........ .......X ........ ..X....." +
         " ........ ........ ......X. ........ ..X....." +
         " ........ ........ ......XX ........ ..X....." +
@@ -327,7 +355,7 @@ public final class EncoderTest extends Assert {
         " ........ ........ ....X..X ........ ..X....." +
         " ........ ........ XXXX.... ........ ..X....." +
         " ........ ........ XXXX...X ........ ..X....." +
-        " ........ ........ XXXX..X. ........ .X.....X");
+        " ........ ........ XXXX..X. ........ ...X.");
   }
   
   // Helper routines
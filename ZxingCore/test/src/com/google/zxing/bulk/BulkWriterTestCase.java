@@ -0,0 +1,225 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.bulk;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.datamatrix.DataMatrixWriter;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Tests {@link BulkWriter} and its sinks.
+ */
+public final class BulkWriterTestCase extends Assert {
+
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testQRCodeInOrder() throws Exception {
+    Map<EncodeHintType,Object> hints = new EnumMap<EncodeHintType,Object>(EncodeHintType.class);
+    hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.M);
+    hints.put(EncodeHintType.MARGIN, 0);
+    List<String> contents = makeContents(100);
+    CollectingSink sink = new CollectingSink();
+    int written = new BulkWriter(BarcodeFormat.QR_CODE, hints, executor, 8).encode(contents.iterator(), sink);
+    assertEquals(contents.size(), written);
+    assertEquals(contents, sink.contents);
+    QRCodeWriter writer = new QRCodeWriter();
+    for (int i = 0; i < contents.size(); i++) {
+      assertEquals(writer.encode(contents.get(i), BarcodeFormat.QR_CODE, 0, 0, hints), sink.symbols.get(i));
+    }
+  }
+
+  @Test
+  public void testDataMatrixInOrder() throws Exception {
+    List<String> contents = makeContents(50);
+    CollectingSink sink = new CollectingSink();
+    new BulkWriter(BarcodeFormat.DATA_MATRIX, null, executor, 3).encode(contents.iterator(), sink);
+    assertEquals(contents, sink.contents);
+    DataMatrixWriter writer = new DataMatrixWriter();
+    for (int i = 0; i < contents.size(); i++) {
+      assertEquals(writer.encode(contents.get(i), BarcodeFormat.DATA_MATRIX, 0, 0), sink.symbols.get(i));
+    }
+  }
+
+  @Test(expected = WriterException.class)
+  public void testPayloadTooLong() throws Exception {
+    List<String> contents = makeContents(10);
+    StringBuilder tooLong = new StringBuilder();
+    for (int i = 0; i < 8000; i++) {
+      tooLong.append(i % 10);
+    }
+    contents.set(5, tooLong.toString());
+    new BulkWriter(BarcodeFormat.QR_CODE, null, executor, 4).encode(contents.iterator(), new CollectingSink());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnsupportedFormat() {
+    new BulkWriter(BarcodeFormat.AZTEC, null, executor, 4);
+  }
+
+  @Test
+  public void testPackedStream() throws Exception {
+    List<String> contents = makeContents(20);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    CollectingSink expected = new CollectingSink();
+    new BulkWriter(BarcodeFormat.QR_CODE, null, executor, 4).encode(contents.iterator(), expected);
+    new BulkWriter(BarcodeFormat.QR_CODE, null, executor, 4).encode(contents.iterator(), new PackedStreamSink(bytes));
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    for (BitMatrix symbol : expected.symbols) {
+      int width = in.readInt();
+      int height = in.readInt();
+      assertEquals(symbol, readPackedRows(in, width, height));
+    }
+    assertEquals(-1, in.read());
+  }
+
+  @Test
+  public void testNetpbmFiles() throws Exception {
+    File directory = File.createTempFile("bulk", "");
+    assertTrue(directory.delete());
+    assertTrue(directory.mkdir());
+    try {
+      List<String> contents = makeContents(3);
+      CollectingSink expected = new CollectingSink();
+      new BulkWriter(BarcodeFormat.DATA_MATRIX, null, executor, 2).encode(contents.iterator(), expected);
+      new BulkWriter(BarcodeFormat.DATA_MATRIX, null, executor, 2).encode(contents.iterator(),
+          new NetpbmFileSink(directory, false));
+      new BulkWriter(BarcodeFormat.DATA_MATRIX, null, executor, 2).encode(contents.iterator(),
+          new NetpbmFileSink(directory, true));
+      for (int i = 0; i < contents.size(); i++) {
+        BitMatrix symbol = expected.symbols.get(i);
+        String size = symbol.getWidth() + " " + symbol.getHeight() + '\n';
+
+        InputStream in = new FileInputStream(new File(directory, i + ".pbm"));
+        try {
+          assertEquals("P4\n" + size, readAscii(in, 3 + size.length()));
+          assertEquals(symbol, readPackedRows(in, symbol.getWidth(), symbol.getHeight()));
+          assertEquals(-1, in.read());
+        } finally {
+          in.close();
+        }
+
+        in = new FileInputStream(new File(directory, i + ".pgm"));
+        try {
+          assertEquals("P5\n" + size + "255\n", readAscii(in, 7 + size.length()));
+          for (int y = 0; y < symbol.getHeight(); y++) {
+            for (int x = 0; x < symbol.getWidth(); x++) {
+              assertEquals(symbol.get(x, y) ? 0 : 255, in.read());
+            }
+          }
+          assertEquals(-1, in.read());
+        } finally {
+          in.close();
+        }
+      }
+    } finally {
+      for (File file : directory.listFiles()) {
+        assertTrue(file.delete());
+      }
+      assertTrue(directory.delete());
+    }
+  }
+
+  private static List<String> makeContents(int count) {
+    List<String> contents = new ArrayList<String>(count);
+    for (int i = 0; i < count; i++) {
+      StringBuilder payload = new StringBuilder("LOT-").append(i);
+      // Vary the length so symbols come in several sizes
+      for (int j = 0; j < (i * 7) % 120; j++) {
+        payload.append((char) ('0' + j % 10));
+      }
+      contents.add(payload.toString());
+    }
+    return contents;
+  }
+
+  private static BitMatrix readPackedRows(InputStream in, int width, int height) throws IOException {
+    BitMatrix matrix = new BitMatrix(width, height);
+    for (int y = 0; y < height; y++) {
+      int bits = 0;
+      for (int x = 0; x < width; x++) {
+        if ((x & 0x07) == 0) {
+          bits = in.read();
+          assertTrue(bits >= 0);
+        }
+        if ((bits & (0x80 >> (x & 0x07))) != 0) {
+          matrix.set(x, y);
+        }
+      }
+    }
+    return matrix;
+  }
+
+  private static String readAscii(InputStream in, int length) throws IOException {
+    byte[] bytes = new byte[length];
+    assertEquals(length, in.read(bytes));
+    return new String(bytes, "US-ASCII");
+  }
+
+  private static final class CollectingSink implements SymbolSink {
+    private final List<String> contents = new ArrayList<String>();
+    private final List<BitMatrix> symbols = new ArrayList<BitMatrix>();
+    @Override
+    public void accept(int index, String contents, BitMatrix modules) {
+      assertEquals(this.contents.size(), index);
+      this.contents.add(contents);
+      // Copied, since the writer recycles it
+      BitMatrix copy = new BitMatrix(modules.getWidth(), modules.getHeight());
+      for (int y = 0; y < modules.getHeight(); y++) {
+        for (int x = 0; x < modules.getWidth(); x++) {
+          if (modules.get(x, y)) {
+            copy.set(x, y);
+          }
+        }
+      }
+      symbols.add(copy);
+    }
+  }
+
+}
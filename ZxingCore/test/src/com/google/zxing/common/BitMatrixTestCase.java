@@ -54,6 +54,25 @@ public final class BitMatrixTestCase extends Assert {
     }
   }
 
+  @Test
+  public void testSetRegionWordBoundaries() {
+    int[] edges = {0, 1, 31, 32, 33, 63, 64, 65, 99};
+    for (int left : edges) {
+      for (int right : edges) {
+        if (right <= left) {
+          continue;
+        }
+        BitMatrix matrix = new BitMatrix(100, 3);
+        matrix.setRegion(left, 1, right - left, 1);
+        for (int y = 0; y < 3; y++) {
+          for (int x = 0; x < 100; x++) {
+            assertEquals(y == 1 && x >= left && x < right, matrix.get(x, y));
+          }
+        }
+      }
+    }
+  }
+
   @Test
   public void testRectangularMatrix() {
     BitMatrix matrix = new BitMatrix(75, 20);
@@ -127,4 +146,31 @@ public final class BitMatrixTestCase extends Assert {
     }
   }
 
+  @Test
+  public void testXor() {
+    BitMatrix matrix = new BitMatrix(45, 3);
+    BitMatrix mask = new BitMatrix(45, 3);
+    for (int y = 0; y < 3; y++) {
+      for (int x = 0; x < 45; x++) {
+        if ((x + y) % 2 == 0) {
+          matrix.set(x, y);
+        }
+        if (x % 3 == 0) {
+          mask.set(x, y);
+        }
+      }
+    }
+    matrix.xor(mask);
+    for (int y = 0; y < 3; y++) {
+      for (int x = 0; x < 45; x++) {
+        assertEquals(((x + y) % 2 == 0) != (x % 3 == 0), matrix.get(x, y));
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testXorDimensionMismatch() {
+    new BitMatrix(45, 3).xor(new BitMatrix(44, 3));
+  }
+
 }
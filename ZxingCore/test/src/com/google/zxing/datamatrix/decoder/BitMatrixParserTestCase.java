@@ -0,0 +1,255 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.datamatrix.decoder;
+
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.datamatrix.encoder.DefaultPlacement;
+import com.google.zxing.datamatrix.encoder.SymbolInfo;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the placement tables codewords are read through against the module by module walk
+ * of ISO 16022:2006, 5.8.1 and Annex F, which the parser used to make for every symbol.
+ */
+public final class BitMatrixParserTestCase extends Assert {
+
+  @Test
+  public void testModulePositions() {
+    boolean[] cornersRead = new boolean[4];
+    for (SymbolInfo symbol : SymbolInfo.PROD_SYMBOLS) {
+      int numColumns = symbol.getSymbolDataWidth();
+      int numRows = symbol.getSymbolDataHeight();
+      int[] expected = new MappingWalk(numRows, numColumns, cornersRead).readPositions();
+      assertEquals(symbol.toString(), symbol.getCodewordCount() * 8, expected.length);
+      assertArrayEquals(symbol.toString(), expected, DefaultPlacement.getModulePositions(numColumns, numRows));
+    }
+    // Every special corner case comes up in some size
+    for (int corner = 0; corner < 4; corner++) {
+      assertTrue("Corner " + (corner + 1), cornersRead[corner]);
+    }
+  }
+
+  @Test
+  public void testReadCodewords() throws Exception {
+    for (SymbolInfo symbol : SymbolInfo.PROD_SYMBOLS) {
+      int width = symbol.getSymbolWidth();
+      int height = symbol.getSymbolHeight();
+      int numColumns = symbol.getSymbolDataWidth();
+      int numRows = symbol.getSymbolDataHeight();
+      int[] positions = new MappingWalk(numRows, numColumns, new boolean[4]).readPositions();
+      // Each bit of a module's index in its own matrix, so that every module read is told apart
+      for (int bit = 0; 1 << bit < width * height; bit++) {
+        BitMatrix matrix = new BitMatrix(width, height);
+        for (int y = 0; y < height; y++) {
+          for (int x = 0; x < width; x++) {
+            if (((y * width + x) >> bit & 1) != 0) {
+              matrix.set(x, y);
+            }
+          }
+        }
+        BitMatrixParser parser = new BitMatrixParser(matrix);
+        BitMatrix mapping = extractDataRegion(matrix, parser.getVersion());
+        byte[] expected = new byte[positions.length >> 3];
+        for (int i = 0; i < positions.length; i++) {
+          if (mapping.get(positions[i] % numColumns, positions[i] / numColumns)) {
+            expected[i >> 3] |= 0x80 >> (i & 0x07);
+          }
+        }
+        assertArrayEquals(symbol.toString(), expected, parser.readCodewords());
+      }
+    }
+  }
+
+  /**
+   * The old parser's removal of the alignment patterns between data regions.
+   */
+  private static BitMatrix extractDataRegion(BitMatrix bitMatrix, Version version) {
+    int dataRegionSizeRows = version.getDataRegionSizeRows();
+    int dataRegionSizeColumns = version.getDataRegionSizeColumns();
+    int numDataRegionsRow = version.getSymbolSizeRows() / dataRegionSizeRows;
+    int numDataRegionsColumn = version.getSymbolSizeColumns() / dataRegionSizeColumns;
+    BitMatrix result = new BitMatrix(numDataRegionsColumn * dataRegionSizeColumns,
+                                     numDataRegionsRow * dataRegionSizeRows);
+    for (int dataRegionRow = 0; dataRegionRow < numDataRegionsRow; dataRegionRow++) {
+      for (int dataRegionColumn = 0; dataRegionColumn < numDataRegionsColumn; dataRegionColumn++) {
+        for (int i = 0; i < dataRegionSizeRows; i++) {
+          int readRow = dataRegionRow * (dataRegionSizeRows + 2) + 1 + i;
+          for (int j = 0; j < dataRegionSizeColumns; j++) {
+            int readColumn = dataRegionColumn * (dataRegionSizeColumns + 2) + 1 + j;
+            if (bitMatrix.get(readColumn, readRow)) {
+              result.set(dataRegionColumn * dataRegionSizeColumns + j, dataRegionRow * dataRegionSizeRows + i);
+            }
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * The old parser's walk over the mapping matrix, recording the position of each module it
+   * reads as {@code row * numColumns + column} instead of reading it.
+   */
+  private static final class MappingWalk {
+
+    private final int numRows;
+    private final int numColumns;
+    private final boolean[] cornersRead;
+    private final boolean[] read;
+    private final int[] positions;
+    private int numPositions;
+
+    MappingWalk(int numRows, int numColumns, boolean[] cornersRead) {
+      this.numRows = numRows;
+      this.numColumns = numColumns;
+      this.cornersRead = cornersRead;
+      read = new boolean[numRows * numColumns];
+      positions = new int[numRows * numColumns];
+    }
+
+    int[] readPositions() {
+      int row = 4;
+      int column = 0;
+      boolean corner1Read = false;
+      boolean corner2Read = false;
+      boolean corner3Read = false;
+      boolean corner4Read = false;
+      do {
+        if ((row == numRows) && (column == 0) && !corner1Read) {
+          readCorner1();
+          row -= 2;
+          column += 2;
+          corner1Read = true;
+          cornersRead[0] = true;
+        } else if ((row == numRows - 2) && (column == 0) && ((numColumns & 0x03) != 0) && !corner2Read) {
+          readCorner2();
+          row -= 2;
+          column += 2;
+          corner2Read = true;
+          cornersRead[1] = true;
+        } else if ((row == numRows + 4) && (column == 2) && ((numColumns & 0x07) == 0) && !corner3Read) {
+          readCorner3();
+          row -= 2;
+          column += 2;
+          corner3Read = true;
+          cornersRead[2] = true;
+        } else if ((row == numRows - 2) && (column == 0) && ((numColumns & 0x07) == 4) && !corner4Read) {
+          readCorner4();
+          row -= 2;
+          column += 2;
+          corner4Read = true;
+          cornersRead[3] = true;
+        } else {
+          // Sweep upward diagonally to the right
+          do {
+            if ((row < numRows) && (column >= 0) && !read[row * numColumns + column]) {
+              readUtah(row, column);
+            }
+            row -= 2;
+            column += 2;
+          } while ((row >= 0) && (column < numColumns));
+          row += 1;
+          column += 3;
+          // Sweep downward diagonally to the left
+          do {
+            if ((row >= 0) && (column < numColumns) && !read[row * numColumns + column]) {
+              readUtah(row, column);
+            }
+            row += 2;
+            column -= 2;
+          } while ((row < numRows) && (column >= 0));
+          row += 3;
+          column += 1;
+        }
+      } while ((row < numRows) || (column < numColumns));
+      int[] result = new int[numPositions];
+      System.arraycopy(positions, 0, result, 0, numPositions);
+      return result;
+    }
+
+    private void readModule(int row, int column) {
+      if (row < 0) {
+        row += numRows;
+        column += 4 - ((numRows + 4) & 0x07);
+      }
+      if (column < 0) {
+        column += numColumns;
+        row += 4 - ((numColumns + 4) & 0x07);
+      }
+      read[row * numColumns + column] = true;
+      positions[numPositions++] = row * numColumns + column;
+    }
+
+    private void readUtah(int row, int column) {
+      readModule(row - 2, column - 2);
+      readModule(row - 2, column - 1);
+      readModule(row - 1, column - 2);
+      readModule(row - 1, column - 1);
+      readModule(row - 1, column);
+      readModule(row, column - 2);
+      readModule(row, column - 1);
+      readModule(row, column);
+    }
+
+    private void readCorner1() {
+      readModule(numRows - 1, 0);
+      readModule(numRows - 1, 1);
+      readModule(numRows - 1, 2);
+      readModule(0, numColumns - 2);
+      readModule(0, numColumns - 1);
+      readModule(1, numColumns - 1);
+      readModule(2, numColumns - 1);
+      readModule(3, numColumns - 1);
+    }
+
+    private void readCorner2() {
+      readModule(numRows - 3, 0);
+      readModule(numRows - 2, 0);
+      readModule(numRows - 1, 0);
+      readModule(0, numColumns - 4);
+      readModule(0, numColumns - 3);
+      readModule(0, numColumns - 2);
+      readModule(0, numColumns - 1);
+      readModule(1, numColumns - 1);
+    }
+
+    private void readCorner3() {
+      readModule(numRows - 1, 0);
+      readModule(numRows - 1, numColumns - 1);
+      readModule(0, numColumns - 3);
+      readModule(0, numColumns - 2);
+      readModule(0, numColumns - 1);
+      readModule(1, numColumns - 3);
+      readModule(1, numColumns - 2);
+      readModule(1, numColumns - 1);
+    }
+
+    private void readCorner4() {
+      readModule(numRows - 3, 0);
+      readModule(numRows - 2, 0);
+      readModule(numRows - 1, 0);
+      readModule(0, numColumns - 2);
+      readModule(0, numColumns - 1);
+      readModule(1, numColumns - 1);
+      readModule(2, numColumns - 1);
+      readModule(3, numColumns - 1);
+    }
+
+  }
+
+}
@@ -38,4 +38,11 @@ public final class ErrorCorrectionTestCase extends Assert {
     assertEquals("66 129 70 138 234 82 82 95", HighLevelEncodeTestCase.visualize(s));
   }
 
+  @Test
+  public void testInPlace() {
+    int[] codewords = {142, 164, 186, 0, 0, 0, 0, 0};
+    ErrorCorrection.encodeECC200(codewords, SymbolInfo.lookup(3));
+    assertArrayEquals(new int[] {142, 164, 186, 114, 25, 5, 88, 102}, codewords);
+  }
+
 }
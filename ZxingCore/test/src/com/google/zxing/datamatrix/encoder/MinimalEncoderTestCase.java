@@ -0,0 +1,108 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.datamatrix.encoder;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.datamatrix.DataMatrixWriter;
+import com.google.zxing.datamatrix.decoder.Decoder;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests for {@link MinimalEncoder}.
+ */
+public final class MinimalEncoderTestCase extends Assert {
+
+  private static final String[] ALPHABETS = {
+    "0123456789",
+    "ABCDEFGHIJKLMNOPQRSTUVWXYZ ",
+    "abcdefghijklmnopqrstuvwxyz ",
+    "!\"#$%&'()*+,-./:;<=>?@[\\]^_`{|}~",
+    "\r*> 0123ABC",
+    "éüÄ£ÿ\u0080",
+    "\u0001\u001d\t",
+  };
+
+  @Test
+  public void testSmallerThanLookahead() throws Exception {
+    // Both fit a smaller symbol than HighLevelEncoder chooses
+    assertSmaller("cn vuxyymwmz32460");
+    assertSmaller(">B>B0323A0B*B");
+  }
+
+  @Test
+  public void testMacro() throws Exception {
+    String macro05 = HighLevelEncoder.MACRO_05_HEADER + "ABCDEF123456" + HighLevelEncoder.MACRO_TRAILER;
+    String encoded = MinimalEncoder.encodeHighLevel(macro05, SymbolShapeHint.FORCE_NONE, null, null);
+    assertEquals(HighLevelEncoder.MACRO_05, encoded.charAt(0));
+    assertRoundTrip(macro05);
+  }
+
+  @Test
+  public void testTextShift3() throws Exception {
+    assertRoundTrip("abc`def`ghi`jkl`mno");
+  }
+
+  @Test
+  public void testRandom() throws Exception {
+    Random random = new Random(0xDA7A);
+    for (int i = 0; i < 300; i++) {
+      StringBuilder content = new StringBuilder();
+      String alphabet = ALPHABETS[random.nextInt(ALPHABETS.length)];
+      int length = 1 + random.nextInt(80);
+      for (int j = 0; j < length; j++) {
+        if (random.nextInt(8) == 0) {
+          alphabet = ALPHABETS[random.nextInt(ALPHABETS.length)];
+        }
+        content.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      }
+      String minimal = assertRoundTrip(content.toString());
+      // HighLevelEncoder fails on some of these; compare only where its output decodes
+      if (decodes(content.toString(), null)) {
+        assertTrue(minimal.length() <= HighLevelEncoder.encodeHighLevel(content.toString()).length());
+      }
+    }
+  }
+
+  private static void assertSmaller(String content) throws Exception {
+    String minimal = assertRoundTrip(content);
+    assertTrue(minimal.length() < HighLevelEncoder.encodeHighLevel(content).length());
+  }
+
+  private static String assertRoundTrip(String content) throws Exception {
+    Map<EncodeHintType,Object> hints = new EnumMap<EncodeHintType,Object>(EncodeHintType.class);
+    hints.put(EncodeHintType.DATA_MATRIX_COMPACT, Boolean.TRUE);
+    assertTrue(decodes(content, hints));
+    return MinimalEncoder.encodeHighLevel(content, SymbolShapeHint.FORCE_NONE, null, null);
+  }
+
+  private static boolean decodes(String content, Map<EncodeHintType,?> hints) {
+    try {
+      BitMatrix matrix = new DataMatrixWriter().encode(content, BarcodeFormat.DATA_MATRIX, 0, 0, hints);
+      return content.equals(new Decoder().decode(matrix).getText());
+    } catch (Exception e) {
+      return false;
+    }
+  }
+
+}
@@ -52,6 +52,19 @@ public final class PlacementTestCase extends Assert {
     }
   }
 
+  @Test
+  public void testModulePositions() {
+    String codewords = unvisualize("66 74 78 66 74 78 129 56 35 102 192 96 226 100 156 1 107 221");
+    DebugPlacement placement = new DebugPlacement(codewords, 12, 12);
+    placement.place();
+    int[] positions = DefaultPlacement.getModulePositions(12, 12);
+    assertEquals(codewords.length() * 8, positions.length);
+    for (int i = 0; i < positions.length; i++) {
+      boolean expected = (codewords.charAt(i >> 3) & (0x80 >> (i & 0x07))) != 0;
+      assertEquals("Bit " + i, expected, placement.getBit(positions[i] % 12, positions[i] / 12));
+    }
+  }
+
   private static String unvisualize(CharSequence visualized) {
     StringBuilder sb = new StringBuilder();
     for (String token : SPACE.split(visualized)) {
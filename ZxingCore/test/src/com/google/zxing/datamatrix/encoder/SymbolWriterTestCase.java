@@ -0,0 +1,62 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.datamatrix.encoder;
+
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.datamatrix.decoder.Decoder;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SymbolWriter}.
+ */
+public final class SymbolWriterTestCase extends Assert {
+
+  @Test
+  public void testAllSymbols() throws Exception {
+    Decoder decoder = new Decoder();
+    for (SymbolInfo symbolInfo : SymbolInfo.PROD_SYMBOLS) {
+      SymbolWriter writer = new SymbolWriter(symbolInfo);
+      BitMatrix matrix = new BitMatrix(symbolInfo.getSymbolWidth(), symbolInfo.getSymbolHeight());
+      // Two messages through the same writer and matrix; the second must replace the first
+      for (int seed = 1; seed <= 2; seed++) {
+        // Pairs of digits take a codeword each, so this just fills the symbol
+        StringBuilder message = new StringBuilder();
+        for (int i = 0; i < symbolInfo.dataCapacity; i++) {
+          message.append((i * 7 + seed * 13) % 100 / 10).append((i + seed) % 10);
+        }
+        int[] codewords = HighLevelEncoder.encodeHighLevelToCodewords(message.toString(),
+            SymbolShapeHint.FORCE_NONE, null, null);
+        assertEquals(symbolInfo.dataCapacity, codewords.length);
+        writer.write(codewords, matrix);
+        assertEquals(message.toString(), decoder.decode(matrix).getText());
+      }
+    }
+  }
+
+  @Test
+  public void testWrongSize() {
+    SymbolWriter writer = new SymbolWriter(SymbolInfo.lookup(3));
+    try {
+      writer.write(new int[] {129, 129, 129}, new BitMatrix(12));
+      fail("Should reject a matrix of the wrong size");
+    } catch (IllegalArgumentException iae) {
+      // good
+    }
+  }
+
+}
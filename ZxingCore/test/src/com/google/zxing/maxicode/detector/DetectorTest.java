@@ -0,0 +1,329 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.maxicode.detector;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.RGBLuminanceSource;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.common.PerspectiveTransform;
+import com.google.zxing.maxicode.MaxiCodeReader;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests {@link Detector} on a symbol drawn rotated, scaled and in perspective, off center and
+ * among clutter.
+ */
+public final class DetectorTest extends Assert {
+
+  private static final String TEXT = "PARCEL 1Z999AA10123456784, DOCK 7";
+  // Modules of a mode 4 symbol encoding TEXT, odd rows offset half a module to the right
+  private static final String[] SYMBOL = {
+      "XXXXXX    XXXXXXXXXXXXXXXXXX  ",
+      " X X X              X X X X   ",
+      "X X X X X X   X  XXX  X  XXX X",
+      " X X X XXX X         X XXXXX  ",
+      "        X    X  XXX   XXX  XXX",
+      "X X X X XX  XXXXXX          X ",
+      " X X X X X X X X X X X X X X X",
+      "                              ",
+      "X X X X X X X X X X X X X X   ",
+      " X X X X X       X  X  X X X  ",
+      "         X    XXXXX         XX",
+      "X X X X XX          XXX X X   ",
+      " X X X  X          X   X X XX ",
+      "       X X        X  X        ",
+      "X X X    X          XXX X X X ",
+      " X X XX             X  X X X  ",
+      "      XX             X      XX",
+      "X X X                XX X X   ",
+      " X X XXXX           X  X X X X",
+      "       XX         X XX        ",
+      "X X X X   X        X  X X X X ",
+      " X X X XX         X X  X X XX ",
+      "        XX XX X   XXX       XX",
+      "X X X X XX X    X   XXX X X X ",
+      " X X X X X X X X X XXXX X XX X",
+      "                        XXX X ",
+      "X X X X X X X X X X X  X    X ",
+      "XXXX XXXXXX  XX X   X XXX   X ",
+      "X  XXXXXXX  X    X X X X   XXX",
+      "XX X XXX XX XXX  X X X X X  X ",
+      "  XXX X   X XXX X       X XX X",
+      " X    XXXXXXX XX X XXX X  X   ",
+      "X  XX X X X  XX  XXX     XXX X",
+  };
+  private static final float ROW_HEIGHT = (float) (Math.sqrt(3.0) / 2.0);
+  private static final float SYMBOL_HEIGHT = SYMBOL.length * ROW_HEIGHT;
+  private static final float[] RING_EDGES = {0.581f, 1.346f, 2.122f, 2.886f, 3.646f, 4.411f};
+
+  @Test
+  public void testUpright() throws Exception {
+    assertEquals(TEXT, decode(render(240, 0.0, 6.0, 0.0)));
+  }
+
+  @Test
+  public void testRotated() throws Exception {
+    for (int degrees = 15; degrees < 360; degrees += 40) {
+      assertEquals(Integer.toString(degrees), TEXT, decode(render(300, degrees, 7.0, 0.0)));
+    }
+  }
+
+  @Test
+  public void testSmallAndSkewed() throws Exception {
+    assertEquals(TEXT, decode(render(200, 30.0, 4.0, 0.0)));
+    assertEquals(TEXT, decode(render(320, 200.0, 8.0, 0.15)));
+    assertEquals(TEXT, decode(render(320, 100.0, 8.0, -0.15)));
+  }
+
+  @Test
+  public void testNoSymbol() throws Exception {
+    int[] pixels = new int[200 * 200];
+    Arrays.fill(pixels, 0xFFFFFFFF);
+    for (int i = 0; i < pixels.length; i += 7) {
+      pixels[i] = 0xFF000000;
+    }
+    try {
+      new MaxiCodeReader().decode(
+          new BinaryBitmap(new HybridBinarizer(new RGBLuminanceSource(200, 200, pixels))));
+      fail();
+    } catch (NotFoundException nfe) {
+      // good
+    }
+  }
+
+  @Test
+  public void testOffCenter() throws Exception {
+    int[] pixels = new int[400 * 300];
+    Arrays.fill(pixels, 0xFFFFFFFF);
+    draw(pixels, 400, 300, 100.0, 200.0, 20.0, 4.5, 0.0);
+    assertEquals(TEXT, decode(toBitmap(pixels, 400, 300)));
+    Arrays.fill(pixels, 0xFFFFFFFF);
+    draw(pixels, 400, 300, 310.0, 110.0, 250.0, 4.0, 0.1);
+    assertEquals(TEXT, decode(toBitmap(pixels, 400, 300)));
+  }
+
+  @Test
+  public void testCluttered() throws Exception {
+    int[] pixels = clutter(640, 480, new Random(0x47));
+    draw(pixels, 640, 480, 420.0, 250.0, 50.0, 5.0, 0.0);
+    assertEquals(TEXT, decode(toBitmap(pixels, 640, 480)));
+  }
+
+  @Test
+  public void testLargeImageWithoutSymbol() throws Exception {
+    int[] pixels = clutter(1600, 1200, new Random(0x48));
+    try {
+      decode(toBitmap(pixels, 1600, 1200));
+      fail();
+    } catch (NotFoundException nfe) {
+      // good
+    }
+  }
+
+  @Test
+  public void testPureBarcodeStillWorks() throws Exception {
+    // Upright, with the module rows evenly spread over the symbol's height
+    int moduleSize = 6;
+    int margin = 10;
+    int width = 30 * moduleSize + 2 * margin;
+    int height = 33 * moduleSize + 2 * margin;
+    int[] pixels = new int[width * height];
+    Arrays.fill(pixels, 0xFFFFFFFF);
+    for (int y = 0; y < height - 2 * margin; y++) {
+      int row = y / moduleSize;
+      for (int x = 0; x < width - 2 * margin; x++) {
+        int column = (2 * x - (row & 0x01) * moduleSize) / (2 * moduleSize);
+        if (column >= 0 && column < 30 && SYMBOL[row].charAt(column) == 'X') {
+          pixels[(margin + y) * width + margin + x] = 0xFF000000;
+        }
+      }
+    }
+    Map<DecodeHintType,Object> hints = new EnumMap<DecodeHintType,Object>(DecodeHintType.class);
+    hints.put(DecodeHintType.PURE_BARCODE, Boolean.TRUE);
+    BinaryBitmap image =
+        new BinaryBitmap(new HybridBinarizer(new RGBLuminanceSource(width, height, pixels)));
+    assertEquals(TEXT, new MaxiCodeReader().decode(image, hints).getText());
+  }
+
+  private static String decode(BinaryBitmap image) throws Exception {
+    return new MaxiCodeReader().decode(image).getText();
+  }
+
+  /**
+   * Draws the symbol as hexagonal modules around its bull's eye in the middle of a square image.
+   *
+   * @param size width and height of the image
+   * @param degrees rotation of the symbol
+   * @param moduleSize width of a module
+   * @param tilt how much wider the bottom of the symbol is than its top, as a fraction
+   */
+  private static BinaryBitmap render(int size, double degrees, double moduleSize, double tilt) {
+    int[] pixels = new int[size * size];
+    draw(pixels, size, size, size / 2.0, size / 2.0, degrees, moduleSize, tilt);
+    return toBitmap(pixels, size, size);
+  }
+
+  private static BinaryBitmap toBitmap(int[] pixels, int width, int height) {
+    return new BinaryBitmap(new HybridBinarizer(new RGBLuminanceSource(width, height, pixels)));
+  }
+
+  /**
+   * Draws the symbol, and a quiet zone of two modules around it, over part of an image.
+   *
+   * @param centerX where the middle of the symbol goes
+   * @param centerY where the middle of the symbol goes
+   */
+  private static void draw(int[] pixels,
+                           int width,
+                           int height,
+                           double centerX,
+                           double centerY,
+                           double degrees,
+                           double moduleSize,
+                           double tilt) {
+    double angle = Math.toRadians(degrees);
+    double cos = Math.cos(angle);
+    double sin = Math.sin(angle);
+    float[] corners = {0.0f, 0.0f, 30.0f, 0.0f, 30.0f, SYMBOL_HEIGHT, 0.0f, SYMBOL_HEIGHT};
+    float[] imageCorners = new float[8];
+    for (int i = 0; i < 8; i += 2) {
+      double spread = 1.0 + (corners[i + 1] / SYMBOL_HEIGHT - 0.5) * tilt;
+      double u = (corners[i] - 15.0) * moduleSize * spread;
+      double v = (corners[i + 1] - SYMBOL_HEIGHT / 2.0f) * moduleSize;
+      imageCorners[i] = (float) (centerX + cos * u - sin * v);
+      imageCorners[i + 1] = (float) (centerY + sin * u + cos * v);
+    }
+    PerspectiveTransform toSymbol = PerspectiveTransform.quadrilateralToQuadrilateral(
+        imageCorners[0], imageCorners[1], imageCorners[2], imageCorners[3],
+        imageCorners[4], imageCorners[5], imageCorners[6], imageCorners[7],
+        corners[0], corners[1], corners[2], corners[3], corners[4], corners[5], corners[6], corners[7]);
+    float[] points = new float[2 * width * height];
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        points[2 * (y * width + x)] = x + 0.5f;
+        points[2 * (y * width + x) + 1] = y + 0.5f;
+      }
+    }
+    toSymbol.transformPoints(points);
+    for (int i = 0; i < pixels.length; i++) {
+      float u = points[2 * i];
+      float v = points[2 * i + 1];
+      if (u >= -2.0f && u < 32.0f && v >= -2.0f && v < SYMBOL_HEIGHT + 2.0f) {
+        pixels[i] = isDark(u, v) ? 0xFF000000 : 0xFFFFFFFF;
+      }
+    }
+  }
+
+  /**
+   * @return a gray image covered in stripes, checks and speckles, and bull's eyes with no symbol
+   *  around them, or with specks of a module's size
+   */
+  private static int[] clutter(int width, int height, Random random) {
+    int[] pixels = new int[width * height];
+    Arrays.fill(pixels, 0xFFC0C0C0);
+    for (int patch = 0; patch < width * height / 1000; patch++) {
+      int left = random.nextInt(width);
+      int top = random.nextInt(height);
+      int right = Math.min(width, left + 5 + random.nextInt(120));
+      int bottom = Math.min(height, top + 5 + random.nextInt(80));
+      int kind = random.nextInt(3);
+      int period = 2 + random.nextInt(10);
+      for (int y = top; y < bottom; y++) {
+        for (int x = left; x < right; x++) {
+          boolean dark;
+          switch (kind) {
+            case 0:
+              dark = (x + y) / period % 2 == 0;
+              break;
+            case 1:
+              dark = (x / period + y / period) % 2 == 0;
+              break;
+            default:
+              dark = random.nextInt(3) == 0;
+              break;
+          }
+          if (dark) {
+            pixels[y * width + x] = 0xFF303030;
+          }
+        }
+      }
+    }
+    for (int target = 0; target < width * height / 20000; target++) {
+      float centerX = random.nextFloat() * width;
+      float centerY = random.nextFloat() * height;
+      float moduleSize = 3.0f + 6.0f * random.nextFloat();
+      int reach = (int) (8.0f * moduleSize);
+      for (int y = Math.max(0, (int) centerY - reach); y < Math.min(height, (int) centerY + reach); y++) {
+        for (int x = Math.max(0, (int) centerX - reach); x < Math.min(width, (int) centerX + reach); x++) {
+          float radius = (float) Math.hypot(x - centerX, y - centerY) / moduleSize;
+          if (radius < RING_EDGES[5]) {
+            boolean dark = radius >= RING_EDGES[0] && radius < RING_EDGES[1] ||
+                radius >= RING_EDGES[2] && radius < RING_EDGES[3] ||
+                radius >= RING_EDGES[4];
+            pixels[y * width + x] = dark ? 0xFF303030 : 0xFFE0E0E0;
+          } else if (radius < 7.0f && random.nextBoolean() &&
+                     ((x / (int) moduleSize + y / (int) moduleSize) & 0x01) == 0) {
+            pixels[y * width + x] = 0xFF303030;
+          }
+        }
+      }
+    }
+    return pixels;
+  }
+
+  private static boolean isDark(float u, float v) {
+    float centerU = u - 14.5f;
+    float centerV = v - 16.5f * ROW_HEIGHT;
+    float radius = (float) Math.sqrt(centerU * centerU + centerV * centerV);
+    if (radius < RING_EDGES[5]) {
+      for (int i = 0; i < RING_EDGES.length; i += 2) {
+        if (radius >= RING_EDGES[i] && radius < RING_EDGES[i + 1]) {
+          return true;
+        }
+      }
+      return false;
+    }
+    int row = (int) Math.floor(v / ROW_HEIGHT);
+    for (int y = row - 1; y <= row + 1; y++) {
+      if (y < 0 || y >= SYMBOL.length) {
+        continue;
+      }
+      float moduleV = (y + 0.5f) * ROW_HEIGHT;
+      int x = (int) Math.floor(u - 0.5f * (y & 0x01));
+      for (int column = x - 1; column <= x + 1; column++) {
+        if (column < 0 || column >= 30 || SYMBOL[y].charAt(column) != 'X') {
+          continue;
+        }
+        float du = u - (column + 0.5f + 0.5f * (y & 0x01));
+        float dv = v - moduleV;
+        if (du * du + dv * dv < 0.25f) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.multi;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.RGBLuminanceSource;
+import com.google.zxing.Result;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+import org.junit.Assert;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A white sheet divided into a grid of equal cells, with a code drawn in each, for testing
+ * {@link MultipleBarcodeReader}s.
+ */
+public final class CodeSheet {
+
+  private final int cellSize;
+  private final int width;
+  private final int height;
+  private final int[] pixels;
+  private final List<String> contents = new ArrayList<String>();
+
+  public CodeSheet(int columns, int rows, int cellSize) {
+    this.cellSize = cellSize;
+    width = columns * cellSize;
+    height = rows * cellSize;
+    pixels = new int[width * height];
+    Arrays.fill(pixels, 0xFFFFFFFF);
+  }
+
+  /**
+   * Draws the dark modules of a code in a cell.
+   *
+   * @param content what the code encodes
+   * @param code modules of the code
+   * @param moduleSize width of a module in pixels
+   * @param column cell to draw in
+   * @param row cell to draw in
+   * @param left offset of the code's top left corner from the cell's
+   * @param top offset of the code's top left corner from the cell's
+   */
+  public void draw(String content, BitMatrix code, int moduleSize, int column, int row, int left, int top) {
+    contents.add(content);
+    int originX = column * cellSize + left;
+    int originY = row * cellSize + top;
+    for (int y = 0; y < code.getHeight() * moduleSize; y++) {
+      for (int x = 0; x < code.getWidth() * moduleSize; x++) {
+        if (code.get(x / moduleSize, y / moduleSize)) {
+          pixels[(originY + y) * width + originX + x] = 0xFF000000;
+        }
+      }
+    }
+  }
+
+  /**
+   * @return contents of the codes drawn, in the order they were drawn
+   */
+  public List<String> getContents() {
+    return contents;
+  }
+
+  public BinaryBitmap getImage() {
+    return new BinaryBitmap(new HybridBinarizer(new RGBLuminanceSource(width, height, pixels)));
+  }
+
+  /**
+   * @return results the reader finds on the sheet, in the order it returns them, having checked
+   *  they are all of the format expected
+   */
+  public Result[] decodeAll(MultipleBarcodeReader reader, BarcodeFormat format, Map<DecodeHintType,?> hints)
+      throws Exception {
+    Result[] results = reader.decodeMultiple(getImage(), hints);
+    for (Result result : results) {
+      Assert.assertEquals(format, result.getBarcodeFormat());
+    }
+    return results;
+  }
+
+  /**
+   * @return texts of the results, in order
+   */
+  public static List<String> getTexts(Result[] results) {
+    List<String> texts = new ArrayList<String>(results.length);
+    for (Result result : results) {
+      texts.add(result.getText());
+    }
+    return texts;
+  }
+
+}
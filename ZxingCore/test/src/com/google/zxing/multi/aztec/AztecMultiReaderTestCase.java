@@ -0,0 +1,147 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.multi.aztec;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.RGBLuminanceSource;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.aztec.encoder.Encoder;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.multi.CodeSheet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Tests {@link AztecMultiReader} on a sheet of codes, none of them at its center.
+ */
+public final class AztecMultiReaderTestCase extends Assert {
+
+  private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+  private static final int COLUMNS = 3;
+  private static final int ROWS = 2;
+  private static final int MODULE_SIZE = 4;
+  private static final int CELL_SIZE = 48 * MODULE_SIZE;
+
+  @Test
+  public void testSheet() throws Exception {
+    CodeSheet sheet = makeSheet();
+    Result[] results = decodeAll(sheet, null);
+    assertEquals(sorted(sheet.getContents()), sorted(CodeSheet.getTexts(results)));
+    assertTopToBottom(results);
+  }
+
+  @Test
+  public void testSheetWithExecutor() throws Exception {
+    CodeSheet sheet = makeSheet();
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      Map<DecodeHintType,Object> hints = new EnumMap<DecodeHintType,Object>(DecodeHintType.class);
+      hints.put(DecodeHintType.DETECTION_EXECUTOR, executor);
+      List<String> found = CodeSheet.getTexts(decodeAll(sheet, hints));
+      assertEquals(sorted(sheet.getContents()), sorted(found));
+      // Same results in the same order as without the executor
+      assertEquals(CodeSheet.getTexts(decodeAll(sheet, null)), found);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testEmpty() throws Exception {
+    int[] pixels = new int[100 * 100];
+    Arrays.fill(pixels, 0xFFFFFFFF);
+    LuminanceSource source = new RGBLuminanceSource(100, 100, pixels);
+    try {
+      new AztecMultiReader().decodeMultiple(new BinaryBitmap(new HybridBinarizer(source)));
+      fail("Should not find anything");
+    } catch (NotFoundException nfe) {
+      // good
+    }
+  }
+
+  private static Result[] decodeAll(CodeSheet sheet, Map<DecodeHintType,?> hints) throws Exception {
+    return sheet.decodeAll(new AztecMultiReader(), BarcodeFormat.AZTEC, hints);
+  }
+
+  /**
+   * Codes come in the order their centers are met scanning the image row by row from the top.
+   */
+  private static void assertTopToBottom(Result[] results) {
+    for (int i = 1; i < results.length; i++) {
+      float[] previous = center(results[i - 1]);
+      float[] current = center(results[i]);
+      String message = results[i - 1].getText() + " before " + results[i].getText();
+      assertTrue(message, previous[1] <= current[1]);
+      if (previous[1] == current[1]) {
+        assertTrue(message, previous[0] < current[0]);
+      }
+    }
+  }
+
+  private static float[] center(Result result) {
+    float x = 0.0f;
+    float y = 0.0f;
+    ResultPoint[] points = result.getResultPoints();
+    for (ResultPoint point : points) {
+      x += point.getX();
+      y += point.getY();
+    }
+    return new float[] {x / points.length, y / points.length};
+  }
+
+  private static List<String> sorted(List<String> texts) {
+    List<String> result = new ArrayList<String>(texts);
+    Collections.sort(result);
+    return result;
+  }
+
+  /**
+   * Lays out compact and full codes, each at a different offset within its cell.
+   */
+  private static CodeSheet makeSheet() {
+    CodeSheet sheet = new CodeSheet(COLUMNS, ROWS, CELL_SIZE);
+    for (int row = 0; row < ROWS; row++) {
+      for (int column = 0; column < COLUMNS; column++) {
+        StringBuilder content = new StringBuilder("GATE " + row + '-' + column);
+        for (int i = 0; i < (row * COLUMNS + column) * 12; i++) {
+          content.append((char) ('A' + i % 26));
+        }
+        BitMatrix code = Encoder.encode(content.toString().getBytes(ISO_8859_1)).getMatrix();
+        sheet.draw(content.toString(), code, MODULE_SIZE, column, row,
+                   (2 + column * 3) * MODULE_SIZE, (6 - column * 2) * MODULE_SIZE);
+      }
+    }
+    return sheet;
+  }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.multi.datamatrix;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.RGBLuminanceSource;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.datamatrix.DataMatrixWriter;
+import com.google.zxing.multi.CodeSheet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Tests {@link DataMatrixMultiReader} on a tray of codes.
+ */
+public final class DataMatrixMultiReaderTestCase extends Assert {
+
+  private static final int COLUMNS = 4;
+  private static final int ROWS = 3;
+  private static final int MODULE_SIZE = 4;
+  private static final int CELL_SIZE = 32 * MODULE_SIZE;
+
+  @Test
+  public void testTray() throws Exception {
+    CodeSheet tray = makeTray();
+    assertEquals(sorted(tray.getContents()), sorted(decodeAllInOrder(tray, null)));
+  }
+
+  @Test
+  public void testTrayWithExecutor() throws Exception {
+    CodeSheet tray = makeTray();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      Map<DecodeHintType,Object> hints = new EnumMap<DecodeHintType,Object>(DecodeHintType.class);
+      hints.put(DecodeHintType.DETECTION_EXECUTOR, executor);
+      List<String> found = decodeAllInOrder(tray, hints);
+      assertEquals(sorted(tray.getContents()), sorted(found));
+      // Same results in the same order as without the executor
+      assertEquals(decodeAllInOrder(tray, null), found);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testEmpty() throws Exception {
+    int[] pixels = new int[100 * 100];
+    Arrays.fill(pixels, 0xFFFFFFFF);
+    LuminanceSource source = new RGBLuminanceSource(100, 100, pixels);
+    try {
+      new DataMatrixMultiReader().decodeMultiple(new BinaryBitmap(new HybridBinarizer(source)));
+      fail("Should not find anything");
+    } catch (NotFoundException nfe) {
+      // good
+    }
+  }
+
+  private static List<String> decodeAllInOrder(CodeSheet tray, Map<DecodeHintType,?> hints) throws Exception {
+    return CodeSheet.getTexts(tray.decodeAll(new DataMatrixMultiReader(), BarcodeFormat.DATA_MATRIX, hints));
+  }
+
+  private static List<String> sorted(List<String> texts) {
+    List<String> result = new ArrayList<String>(texts);
+    Collections.sort(result);
+    return result;
+  }
+
+  /**
+   * Lays out codes of a few sizes, each at a different offset within its cell.
+   */
+  private static CodeSheet makeTray() {
+    CodeSheet tray = new CodeSheet(COLUMNS, ROWS, CELL_SIZE);
+    DataMatrixWriter writer = new DataMatrixWriter();
+    for (int row = 0; row < ROWS; row++) {
+      for (int column = 0; column < COLUMNS; column++) {
+        StringBuilder content = new StringBuilder("TUBE " + row + '-' + column);
+        for (int i = 0; i < row * 6; i++) {
+          content.append((char) ('A' + i));
+        }
+        BitMatrix code = writer.encode(content.toString(), BarcodeFormat.DATA_MATRIX, 0, 0);
+        tray.draw(content.toString(), code, MODULE_SIZE, column, row,
+                  (2 + column) * MODULE_SIZE, (4 - column) * MODULE_SIZE);
+      }
+    }
+    return tray;
+  }
+
+}
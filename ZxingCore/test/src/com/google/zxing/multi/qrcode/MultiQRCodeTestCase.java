@@ -0,0 +1,80 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.multi.qrcode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.multi.CodeSheet;
+import com.google.zxing.qrcode.QRCodeWriter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests {@link QRCodeMultiReader} on a sheet of many codes.
+ */
+public final class MultiQRCodeTestCase extends Assert {
+
+  private static final int COLUMNS = 6;
+  private static final int ROWS = 5;
+  private static final int MODULE_SIZE = 3;
+  // A version 1 code plus a 4 module quiet zone on each side
+  private static final int CELL_SIZE = (21 + 8) * MODULE_SIZE;
+
+  @Test
+  public void testSheet() throws Exception {
+    CodeSheet sheet = makeSheet();
+    assertEquals(new HashSet<String>(sheet.getContents()), decodeAll(sheet, null));
+  }
+
+  @Test
+  public void testSheetWithVersionRange() throws Exception {
+    CodeSheet sheet = makeSheet();
+    Map<DecodeHintType,Object> hints = new EnumMap<DecodeHintType,Object>(DecodeHintType.class);
+    // Without TRY_HARDER rows are skipped as if one code filled the image
+    hints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+    hints.put(DecodeHintType.QR_VERSION_RANGE, new int[] {1, 1});
+    assertEquals(new HashSet<String>(sheet.getContents()), decodeAll(sheet, hints));
+  }
+
+  private static Set<String> decodeAll(CodeSheet sheet, Map<DecodeHintType,?> hints) throws Exception {
+    return new HashSet<String>(CodeSheet.getTexts(
+        sheet.decodeAll(new QRCodeMultiReader(), BarcodeFormat.QR_CODE, hints)));
+  }
+
+  private static CodeSheet makeSheet() throws Exception {
+    CodeSheet sheet = new CodeSheet(COLUMNS, ROWS, CELL_SIZE);
+    Map<EncodeHintType,Object> hints = new EnumMap<EncodeHintType,Object>(EncodeHintType.class);
+    hints.put(EncodeHintType.MARGIN, 0);
+    QRCodeWriter writer = new QRCodeWriter();
+    for (int row = 0; row < ROWS; row++) {
+      for (int column = 0; column < COLUMNS; column++) {
+        String content = "LABEL " + row + '-' + column;
+        BitMatrix code = writer.encode(content, BarcodeFormat.QR_CODE, 0, 0, hints);
+        sheet.draw(content, code, MODULE_SIZE, column, row, 4 * MODULE_SIZE, 4 * MODULE_SIZE);
+      }
+    }
+    return sheet;
+  }
+
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.multi.qrcode.detector;
+
+import com.google.zxing.NotFoundException;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.qrcode.detector.FinderPattern;
+import com.google.zxing.qrcode.detector.FinderPatternFactory;
+import com.google.zxing.qrcode.detector.FinderPatternInfo;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that pairing candidates through {@link FinderPatternIndex} finds just the tuples that
+ * trying every triple of candidates does.
+ */
+public final class MultiFinderPatternFinderTestCase extends Assert {
+
+  private static final float SIDE = 600.0f;
+  // Module sizes of the codes, some just either side of the similarity cutoffs from others
+  private static final float[] MODULE_SIZES = {2.0f, 2.45f, 2.55f, 3.0f, 4.0f, 4.19f, 4.21f, 6.0f, 8.5f};
+
+  @Test
+  public void testFindWithin() {
+    Random random = new Random(0x3A);
+    for (int trial = 0; trial < 200; trial++) {
+      List<FinderPattern> patterns = randomCandidates(random, 3 + random.nextInt(60));
+      // Cells sized by the number of candidates, or wider, as for pairing
+      FinderPatternIndex index = random.nextBoolean() ? new FinderPatternIndex(patterns) :
+          new FinderPatternIndex(patterns, random.nextFloat() * SIDE);
+      int[] found = new int[patterns.size()];
+      for (int query = 0; query < 20; query++) {
+        float x = onBoundary(random, patterns.size());
+        float y = onBoundary(random, patterns.size());
+        float radius = random.nextBoolean() ? random.nextFloat() * SIDE : (int) onBoundary(random, patterns.size());
+        int numFound = index.findWithin(x, y, radius, found);
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int i = 0; i < patterns.size(); i++) {
+          float dx = patterns.get(i).getX() - x;
+          float dy = patterns.get(i).getY() - y;
+          if (dx * dx + dy * dy <= radius * radius) {
+            expected.add(i);
+          }
+        }
+        List<Integer> actual = new ArrayList<Integer>();
+        for (int i = 0; i < numFound; i++) {
+          actual.add(found[i]);
+        }
+        Collections.sort(actual);
+        assertEquals(expected, actual);
+      }
+    }
+  }
+
+  @Test
+  public void testPairingMatchesExhaustiveSearch() throws Exception {
+    Random random = new Random(0x3B);
+    int totalFound = 0;
+    for (int trial = 0; trial < 300; trial++) {
+      List<FinderPattern> patterns = randomCandidates(random, 4 + random.nextInt(40));
+      float maxModuleCount = random.nextBoolean() ? 180.0f : 17 + 4 * (1 + random.nextInt(40));
+      FinderPattern[][] expected = exhaustiveSearch(new ArrayList<FinderPattern>(patterns), maxModuleCount);
+      FinderPattern[][] actual;
+      try {
+        actual = MultiFinderPatternFinder.selectMutipleBestPatterns(
+            new ArrayList<FinderPattern>(patterns), maxModuleCount);
+      } catch (NotFoundException nfe) {
+        actual = new FinderPattern[0][];
+      }
+      assertEquals(expected.length, actual.length);
+      for (int i = 0; i < expected.length; i++) {
+        assertArrayEquals(expected[i], actual[i]);
+      }
+      totalFound += expected.length;
+    }
+    // Enough codes turn up for the comparison to mean something
+    assertTrue(totalFound > 300);
+  }
+
+  /**
+   * Finder patterns of a few codes at random places, angles and module sizes, with their
+   * positions jittered, plus unrelated candidates, some of them on the edges of the index's cells.
+   */
+  private static List<FinderPattern> randomCandidates(Random random, int count) {
+    List<FinderPattern> patterns = new ArrayList<FinderPattern>(count);
+    // Corners of the area, so that cell edges fall on multiples of the cell size
+    patterns.add(FinderPatternFactory.newFinderPattern(0.0f, 0.0f, MODULE_SIZES[0]));
+    patterns.add(FinderPatternFactory.newFinderPattern(SIDE, SIDE, MODULE_SIZES[0]));
+    while (patterns.size() < count) {
+      float moduleSize = MODULE_SIZES[random.nextInt(MODULE_SIZES.length)];
+      if (random.nextInt(3) == 0 || count - patterns.size() < 3) {
+        patterns.add(FinderPatternFactory.newFinderPattern(
+            onBoundary(random, count), onBoundary(random, count), moduleSize));
+        continue;
+      }
+      float side = moduleSize * (8 + random.nextInt(180));
+      double angle = 2.0 * Math.PI * random.nextDouble();
+      float dx = side * (float) Math.cos(angle);
+      float dy = side * (float) Math.sin(angle);
+      float x = random.nextFloat() * SIDE;
+      float y = random.nextFloat() * SIDE;
+      float[][] corners = {{x, y}, {x + dx, y + dy}, {x - dy, y + dx}};
+      for (float[] corner : corners) {
+        float jitter = side * 0.08f;
+        patterns.add(FinderPatternFactory.newFinderPattern(
+            corner[0] + (2.0f * random.nextFloat() - 1.0f) * jitter,
+            corner[1] + (2.0f * random.nextFloat() - 1.0f) * jitter,
+            moduleSize * (0.97f + 0.06f * random.nextFloat())));
+      }
+    }
+    return patterns;
+  }
+
+  /**
+   * @return a coordinate in the area, half the time on an edge between cells of an index of
+   *  that many candidates spread over the area
+   */
+  private static float onBoundary(Random random, int count) {
+    if (random.nextBoolean()) {
+      return random.nextFloat() * SIDE;
+    }
+    int cellsPerSide = Math.max(1, (int) Math.sqrt(count));
+    return random.nextInt(cellsPerSide + 1) * (SIDE / cellsPerSide);
+  }
+
+  /**
+   * How candidates were paired before they were indexed: every triple of candidates whose
+   * module sizes are similar is tested.
+   */
+  private static FinderPattern[][] exhaustiveSearch(List<FinderPattern> possibleCenters, float maxModuleCount) {
+    int size = possibleCenters.size();
+    if (size < 3) {
+      return new FinderPattern[0][];
+    }
+    if (size == 3) {
+      return new FinderPattern[][] {{possibleCenters.get(0), possibleCenters.get(1), possibleCenters.get(2)}};
+    }
+    Collections.sort(possibleCenters, new Comparator<FinderPattern>() {
+      @Override
+      public int compare(FinderPattern center1, FinderPattern center2) {
+        float value = center2.getEstimatedModuleSize() - center1.getEstimatedModuleSize();
+        return value < 0.0 ? -1 : value > 0.0 ? 1 : 0;
+      }
+    });
+    List<FinderPattern[]> results = new ArrayList<FinderPattern[]>();
+    for (int i1 = 0; i1 < size - 2; i1++) {
+      FinderPattern p1 = possibleCenters.get(i1);
+      for (int i2 = i1 + 1; i2 < size - 1; i2++) {
+        FinderPattern p2 = possibleCenters.get(i2);
+        if (!haveSimilarModuleSize(p1, p2)) {
+          break;
+        }
+        for (int i3 = i2 + 1; i3 < size; i3++) {
+          FinderPattern p3 = possibleCenters.get(i3);
+          if (!haveSimilarModuleSize(p2, p3)) {
+            break;
+          }
+          FinderPattern[] test = {p1, p2, p3};
+          ResultPoint.orderBestPatterns(test);
+          FinderPatternInfo info = new FinderPatternInfo(test);
+          float dA = ResultPoint.distance(info.getTopLeft(), info.getBottomLeft());
+          float dC = ResultPoint.distance(info.getTopRight(), info.getBottomLeft());
+          float dB = ResultPoint.distance(info.getTopLeft(), info.getTopRight());
+          float estimatedModuleCount = (dA + dB) / (p1.getEstimatedModuleSize() * 2.0f);
+          if (estimatedModuleCount > maxModuleCount || estimatedModuleCount < 9.0f) {
+            continue;
+          }
+          if (Math.abs((dA - dB) / Math.min(dA, dB)) >= 0.1f) {
+            continue;
+          }
+          float dCpy = (float) Math.sqrt(dA * dA + dB * dB);
+          if (Math.abs((dC - dCpy) / Math.min(dC, dCpy)) >= 0.1f) {
+            continue;
+          }
+          results.add(test);
+        }
+      }
+    }
+    return results.toArray(new FinderPattern[results.size()][]);
+  }
+
+  private static boolean haveSimilarModuleSize(FinderPattern p1, FinderPattern p2) {
+    float vModSize = (p1.getEstimatedModuleSize() - p2.getEstimatedModuleSize()) /
+        Math.min(p1.getEstimatedModuleSize(), p2.getEstimatedModuleSize());
+    float vModSizeA = Math.abs(p1.getEstimatedModuleSize() - p2.getEstimatedModuleSize());
+    return vModSizeA <= 0.5f || vModSize < 0.05f;
+  }
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.oned;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.RGBLuminanceSource;
+import com.google.zxing.Result;
+import com.google.zxing.ResultMetadataType;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+public final class OneDReaderTestCase extends Assert {
+
+  private static final int WIDTH = 300;
+  private static final int HEIGHT = 320;
+  private static final int CODE_WIDTH = 200;
+
+  @Test
+  public void testRowConsensus() throws Exception {
+    // A thin band of another code across the middle row, which is scanned first
+    BinaryBitmap image = render("5901234123457", "9780201379624", 156, 165);
+    assertEquals("9780201379624", new EAN13Reader().decode(image).getText());
+    assertEquals("5901234123457", new EAN13Reader().decode(image, consensus(3, 15)).getText());
+    try {
+      // Only 3 decodes allowed, and the middle row disagrees with the next two
+      new EAN13Reader().decode(image, consensus(3, 3));
+      fail();
+    } catch (NotFoundException nfe) {
+      // good
+    }
+    // Hints that ask for no more than one row change nothing
+    assertEquals("9780201379624", new EAN13Reader().decode(image, consensus(1, 15)).getText());
+  }
+
+  @Test
+  public void testRowConsensusSpread() throws Exception {
+    BinaryBitmap image = render("5901234123457", "9780201379624", 156, 165);
+    // Rows 150, 170 and 140 agree, but span only 30 pixels; row 180 makes it 40
+    assertEquals("5901234123457", new EAN13Reader().decode(image, consensus(3, 5, 40)).getText());
+    try {
+      new EAN13Reader().decode(image, consensus(3, 5, 50));
+      fail();
+    } catch (NotFoundException nfe) {
+      // good
+    }
+    assertEquals("5901234123457", new EAN13Reader().decode(image, consensus(3, 15, 50)).getText());
+  }
+
+  @Test
+  public void testScanAngles() throws Exception {
+    Map<DecodeHintType,Object> hints = new EnumMap<DecodeHintType,Object>(DecodeHintType.class);
+    hints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+    for (int degrees : new int[] {30, 60, 135, 210, 300}) {
+      // Too short for rows, or columns, to cross every bar
+      BinaryBitmap image = renderRotated("5901234123457", degrees, 50);
+      try {
+        new EAN13Reader().decode(image, hints);
+        fail();
+      } catch (NotFoundException nfe) {
+        // good
+      }
+      hints.put(DecodeHintType.ONED_SCAN_ANGLE_STEP, 15);
+      Result result = new EAN13Reader().decode(image, hints);
+      hints.remove(DecodeHintType.ONED_SCAN_ANGLE_STEP);
+      assertEquals("5901234123457", result.getText());
+      assertEquals((360 - degrees) % 360, result.getResultMetadata().get(ResultMetadataType.ORIENTATION));
+      // The ends of the code, which is centered in the image
+      ResultPoint[] points = result.getResultPoints();
+      float middleX = (points[0].getX() + points[1].getX()) / 2.0f;
+      float middleY = (points[0].getY() + points[1].getY()) / 2.0f;
+      assertEquals(WIDTH / 2.0f, middleX, 10.0f);
+      assertEquals(HEIGHT / 2.0f, middleY, 10.0f);
+    }
+  }
+
+  @Test
+  public void testScanAngleStepsMissing90() throws Exception {
+    Map<DecodeHintType,Object> hints = new EnumMap<DecodeHintType,Object>(DecodeHintType.class);
+    hints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+    for (int degrees : new int[] {90, 270}) {
+      // Vertical, and too short for lines 10 degrees off vertical to cross every bar
+      BinaryBitmap image = renderRotated("5901234123457", degrees, 20);
+      for (int angleStep : new int[] {20, 25}) {
+        hints.put(DecodeHintType.ONED_SCAN_ANGLE_STEP, angleStep);
+        Result result = new EAN13Reader().decode(image, hints);
+        assertEquals("5901234123457", result.getText());
+        assertEquals(360 - degrees, result.getResultMetadata().get(ResultMetadataType.ORIENTATION));
+      }
+    }
+  }
+
+  private static Map<DecodeHintType,Object> consensus(int... consensus) {
+    Map<DecodeHintType,Object> hints = new EnumMap<DecodeHintType,Object>(DecodeHintType.class);
+    hints.put(DecodeHintType.ONED_ROW_CONSENSUS, consensus);
+    return hints;
+  }
+
+  /**
+   * Draws one EAN-13 code over the whole image, except between two rows, where another is drawn.
+   */
+  private static BinaryBitmap render(String contents, String bandContents, int bandTop, int bandBottom)
+      throws Exception {
+    BitMatrix code = new EAN13Writer().encode(contents, BarcodeFormat.EAN_13, CODE_WIDTH, 1);
+    BitMatrix bandCode = new EAN13Writer().encode(bandContents, BarcodeFormat.EAN_13, CODE_WIDTH, 1);
+    int margin = (WIDTH - CODE_WIDTH) / 2;
+    int[] pixels = new int[WIDTH * HEIGHT];
+    Arrays.fill(pixels, 0xFFFFFFFF);
+    for (int y = 0; y < HEIGHT; y++) {
+      BitMatrix row = y >= bandTop && y < bandBottom ? bandCode : code;
+      for (int x = 0; x < CODE_WIDTH; x++) {
+        if (row.get(x, 0)) {
+          pixels[y * WIDTH + margin + x] = 0xFF000000;
+        }
+      }
+    }
+    return new BinaryBitmap(new HybridBinarizer(new RGBLuminanceSource(WIDTH, HEIGHT, pixels)));
+  }
+
+  /**
+   * Draws an EAN-13 code of some height in the middle of the image, rotated clockwise.
+   */
+  private static BinaryBitmap renderRotated(String contents, int degrees, int codeHeight) throws Exception {
+    BitMatrix code = new EAN13Writer().encode(contents, BarcodeFormat.EAN_13, CODE_WIDTH, 1);
+    double angle = Math.toRadians(degrees);
+    double cos = Math.cos(angle);
+    double sin = Math.sin(angle);
+    int[] pixels = new int[WIDTH * HEIGHT];
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        double dx = x + 0.5 - WIDTH / 2.0;
+        double dy = y + 0.5 - HEIGHT / 2.0;
+        int u = (int) Math.floor(cos * dx + sin * dy + CODE_WIDTH / 2.0);
+        double v = cos * dy - sin * dx;
+        boolean dark = u >= 0 && u < CODE_WIDTH && Math.abs(v) < codeHeight / 2.0 && code.get(u, 0);
+        pixels[y * WIDTH + x] = dark ? 0xFF000000 : 0xFFFFFFFF;
+      }
+    }
+    return new BinaryBitmap(new HybridBinarizer(new RGBLuminanceSource(WIDTH, HEIGHT, pixels)));
+  }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.oned;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public final class PatternTableTestCase extends Assert {
+
+  @Test
+  public void testLookup() {
+    PatternTable table = new PatternTable(UPCEANReader.L_AND_G_PATTERNS, 4);
+    assertEquals(0, table.lookup(new int[] {6, 4, 2, 2}));
+    assertEquals(10, table.lookup(new int[] {2, 2, 4, 6}));
+    assertEquals(3, table.lookup(new int[] {3, 11, 3, 4}));
+    // Halfway between widths
+    assertEquals(-1, table.lookup(new int[] {5, 4, 3, 2}));
+    // Not a pattern
+    assertEquals(-1, table.lookup(new int[] {2, 2, 2, 2}));
+    // Too small to measure
+    assertEquals(-1, table.lookup(new int[] {1, 1, 1, 1}));
+  }
+
+  @Test
+  public void testMatchesVarianceScan() {
+    testMatchesVarianceScan(Code128Reader.CODE_PATTERNS, 6, 0.25f);
+    testMatchesVarianceScan(UPCEANReader.L_PATTERNS, 4, 0.48f);
+    testMatchesVarianceScan(UPCEANReader.L_AND_G_PATTERNS, 4, 0.48f);
+  }
+
+  private static void testMatchesVarianceScan(int[][] patterns, int elements, float maxAverage) {
+    int maxAvgVariance = (int) (OneDReader.PATTERN_MATCH_RESULT_SCALE_FACTOR * maxAverage);
+    int maxIndividualVariance = (int) (OneDReader.PATTERN_MATCH_RESULT_SCALE_FACTOR * 0.7f);
+    PatternTable table = new PatternTable(patterns, elements);
+    Random random = new Random(0x128);
+    int[] counters = new int[elements];
+    for (int i = 0; i < 20000; i++) {
+      int[] pattern = patterns[random.nextInt(patterns.length)];
+      float unit = 1.0f + 6.0f * random.nextFloat();
+      float noise = 0.75f * unit * random.nextFloat();
+      for (int j = 0; j < elements; j++) {
+        counters[j] = Math.max(1, Math.round(pattern[j] * unit + (2.0f * random.nextFloat() - 1.0f) * noise));
+      }
+      int found = table.lookup(counters);
+      if (found < 0) {
+        continue;
+      }
+      // Whatever the table finds, every pattern has at least as much variance
+      int variance = OneDReader.patternMatchVariance(counters, patterns[found], maxIndividualVariance);
+      int bestVariance = maxAvgVariance;
+      int bestMatch = -1;
+      for (int p = 0; p < patterns.length; p++) {
+        int otherVariance = OneDReader.patternMatchVariance(counters, patterns[p], maxIndividualVariance);
+        if (otherVariance < bestVariance) {
+          bestVariance = otherVariance;
+          bestMatch = p;
+        }
+      }
+      assertEquals(bestMatch, variance < maxAvgVariance ? found : -1);
+    }
+  }
+
+}
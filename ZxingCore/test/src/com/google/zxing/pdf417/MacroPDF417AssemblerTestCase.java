@@ -0,0 +1,110 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.pdf417;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Result;
+import com.google.zxing.ResultMetadataType;
+import com.google.zxing.ResultPoint;
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class MacroPDF417AssemblerTestCase extends Assert {
+
+  @Test
+  public void testOutOfOrderWithRepeats() {
+    MacroPDF417Assembler assembler = new MacroPDF417Assembler(1000, 10000L);
+    assertNull(assembler.add(segment("F1", 2, true, "C"), 0L));
+    assertNull(assembler.add(segment("F1", 0, false, "A"), 1L));
+    assertNull(assembler.add(segment("F1", 2, true, "C"), 2L));
+    assertNull(assembler.add(segment("F1", 0, false, "A"), 3L));
+    assertEquals(1, assembler.getPendingFileCount());
+    assertEquals(2, assembler.getBufferedCharacters());
+    assertEquals("ABC", assembler.add(segment("F1", 1, false, "B"), 4L));
+    assertEquals(0, assembler.getPendingFileCount());
+    assertEquals(0, assembler.getBufferedCharacters());
+  }
+
+  @Test
+  public void testInterleavedFiles() {
+    MacroPDF417Assembler assembler = new MacroPDF417Assembler(1000, 10000L);
+    assertNull(assembler.add(segment("F1", 0, false, "one "), 0L));
+    assertNull(assembler.add(segment("F2", 1, true, "four"), 1L));
+    assertEquals("one two", assembler.add(segment("F1", 1, true, "two"), 2L));
+    assertEquals("three four", assembler.add(segment("F2", 0, false, "three "), 3L));
+  }
+
+  @Test
+  public void testSingleSymbols() {
+    MacroPDF417Assembler assembler = new MacroPDF417Assembler(1000, 10000L);
+    assertEquals("plain", assembler.add(new Result("plain", null, null, BarcodeFormat.PDF_417), 0L));
+    assertEquals("whole", assembler.add(segment("F1", 0, true, "whole"), 1L));
+    assertEquals(0, assembler.getPendingFileCount());
+  }
+
+  @Test
+  public void testSegmentsPastLast() {
+    MacroPDF417Assembler assembler = new MacroPDF417Assembler(1000, 10000L);
+    assertNull(assembler.add(segment("F1", 5, false, "bogus"), 0L));
+    assertNull(assembler.add(segment("F1", 1, true, "B"), 1L));
+    assertEquals(1, assembler.getBufferedCharacters());
+    assertNull(assembler.add(segment("F1", 3, false, "bogus"), 2L));
+    assertEquals("AB", assembler.add(segment("F1", 0, false, "A"), 3L));
+  }
+
+  @Test
+  public void testEvictByAge() {
+    MacroPDF417Assembler assembler = new MacroPDF417Assembler(1000, 100L);
+    assertNull(assembler.add(segment("F1", 0, false, "A"), 0L));
+    assertNull(assembler.add(segment("F2", 0, false, "X"), 50L));
+    // F1 has now been missing for too long, and starts over
+    assertNull(assembler.add(segment("F1", 1, true, "B"), 120L));
+    assertEquals(2, assembler.getPendingFileCount());
+    assertEquals("XY", assembler.add(segment("F2", 1, true, "Y"), 140L));
+    assertNull(assembler.add(segment("F1", 1, true, "B"), 200L));
+    assertEquals("AB", assembler.add(segment("F1", 0, false, "A"), 210L));
+  }
+
+  @Test
+  public void testEvictBySize() {
+    MacroPDF417Assembler assembler = new MacroPDF417Assembler(10, 10000L);
+    assertNull(assembler.add(segment("F1", 0, false, "aaaa"), 0L));
+    assertNull(assembler.add(segment("F2", 0, false, "bbbb"), 1L));
+    // Seeing F1 again makes F2 the least recently seen
+    assertNull(assembler.add(segment("F1", 0, false, "aaaa"), 2L));
+    assertNull(assembler.add(segment("F3", 0, false, "cccc"), 3L));
+    assertEquals(2, assembler.getPendingFileCount());
+    assertEquals(8, assembler.getBufferedCharacters());
+    assertNull(assembler.add(segment("F2", 1, true, "BB"), 4L));
+    assertEquals("aaaaAA", assembler.add(segment("F1", 1, true, "AA"), 5L));
+    // Too big to hold at all
+    assertNull(assembler.add(segment("F4", 0, false, "dddddddddddd"), 6L));
+    assertEquals(0, assembler.getPendingFileCount());
+    assertEquals(0, assembler.getBufferedCharacters());
+  }
+
+  private static Result segment(String fileId, int segmentIndex, boolean lastSegment, String text) {
+    PDF417ResultMetadata metadata = new PDF417ResultMetadata();
+    metadata.setFileId(fileId);
+    metadata.setSegmentIndex(segmentIndex);
+    metadata.setLastSegment(lastSegment);
+    Result result = new Result(text, null, new ResultPoint[0], BarcodeFormat.PDF_417);
+    result.putMetadata(ResultMetadataType.PDF417_EXTRA_METADATA, metadata);
+    return result;
+  }
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.pdf417;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class PDF417CommonTestCase extends Assert {
+
+  @Test
+  public void testSymbols() {
+    // Each cluster holds every codeword exactly once
+    boolean[][] seen = new boolean[3][PDF417Common.NUMBER_OF_CODEWORDS];
+    for (int symbol : PDF417Common.SYMBOL_TABLE) {
+      int codeword = PDF417Common.getCodeword(symbol);
+      int bucket = PDF417Common.getCodewordBucket(symbol);
+      assertTrue(codeword >= 0 && codeword < PDF417Common.NUMBER_OF_CODEWORDS);
+      assertTrue(bucket == 0 || bucket == 3 || bucket == 6);
+      assertFalse(seen[bucket / 3][codeword]);
+      seen[bucket / 3][codeword] = true;
+    }
+    assertEquals(3 * PDF417Common.NUMBER_OF_CODEWORDS, PDF417Common.SYMBOL_TABLE.length);
+  }
+
+  @Test
+  public void testNonSymbols() {
+    int symbols = 0;
+    for (int pattern = 0; pattern < 0x40000; pattern++) {
+      int codeword = PDF417Common.getCodeword(pattern);
+      assertEquals(codeword == -1, PDF417Common.getCodewordBucket(pattern) == -1);
+      if (codeword != -1) {
+        symbols++;
+      }
+    }
+    assertEquals(PDF417Common.SYMBOL_TABLE.length, symbols);
+    // Only the low 18 bits count
+    assertEquals(PDF417Common.getCodeword(0x1025e), PDF417Common.getCodeword(0x1025e | 0x40000L));
+  }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.pdf417;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.RGBLuminanceSource;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tests that {@link PDF417Reader} finds upside down codes without changing the image's matrix.
+ */
+public final class PDF417ReaderTestCase extends Assert {
+
+  private static final String CONTENTS = "Upside down PDF417 code, 0123456789";
+  private static final int MODULE_SIZE = 3;
+  private static final int MARGIN = 10 * MODULE_SIZE;
+
+  @Test
+  public void testUpsideDown() throws Exception {
+    LuminanceSource source = makeUpsideDownSource();
+    BinaryBitmap image = new BinaryBitmap(new HybridBinarizer(source));
+    assertEquals(CONTENTS, new PDF417Reader().decode(image).getText());
+    BitMatrix unchanged = new BinaryBitmap(new HybridBinarizer(source)).getBlackMatrix();
+    assertEquals(unchanged, image.getBlackMatrix());
+    // And again on the same image
+    assertEquals(CONTENTS, new PDF417Reader().decode(image).getText());
+  }
+
+  @Test
+  public void testSharedImage() throws Exception {
+    final BinaryBitmap image = new BinaryBitmap(new HybridBinarizer(makeUpsideDownSource()));
+    image.getBlackMatrix();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<String>> results = new ArrayList<Future<String>>();
+      for (int i = 0; i < 16; i++) {
+        results.add(executor.submit(new Callable<String>() {
+          @Override
+          public String call() throws Exception {
+            return new PDF417Reader().decode(image).getText();
+          }
+        }));
+      }
+      for (Future<String> result : results) {
+        assertEquals(CONTENTS, result.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static LuminanceSource makeUpsideDownSource() throws Exception {
+    BitMatrix code = new PDF417Writer().encode(CONTENTS, BarcodeFormat.PDF_417, 0, 0);
+    int width = code.getWidth() * MODULE_SIZE + 2 * MARGIN;
+    int height = code.getHeight() * MODULE_SIZE + 2 * MARGIN;
+    int[] pixels = new int[width * height];
+    Arrays.fill(pixels, 0xFFFFFFFF);
+    for (int y = 0; y < code.getHeight() * MODULE_SIZE; y++) {
+      for (int x = 0; x < code.getWidth() * MODULE_SIZE; x++) {
+        if (code.get(x / MODULE_SIZE, y / MODULE_SIZE)) {
+          pixels[(height - 1 - MARGIN - y) * width + width - 1 - MARGIN - x] = 0xFF000000;
+        }
+      }
+    }
+    return new RGBLuminanceSource(width, height, pixels);
+  }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.pdf417.decoder;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+public final class BarcodeValueTestCase extends Assert {
+
+  @Test
+  public void testVotes() {
+    BarcodeValue value = new BarcodeValue();
+    assertArrayEquals(new int[0], value.getValue());
+    value.setValue(42);
+    value.setValue(7);
+    value.setValue(42);
+    assertArrayEquals(new int[] {42}, value.getValue());
+    assertEquals(2, value.getConfidence(42));
+    assertEquals(1, value.getConfidence(7));
+    assertEquals(0, value.getConfidence(8));
+  }
+
+  @Test
+  public void testTieOrder() {
+    BarcodeValue value = new BarcodeValue();
+    value.setValue(500);
+    value.setValue(3);
+    value.setValue(17);
+    value.setValue(3);
+    value.setValue(500);
+    value.setValue(17);
+    value.setValue(2);
+    // Ties come back in the order the values were first set
+    assertArrayEquals(new int[] {500, 3, 17}, value.getValue());
+  }
+
+  @Test
+  public void testRandomVotes() {
+    Random random = new Random(0xBA4C0DE);
+    for (int i = 0; i < 1000; i++) {
+      BarcodeValue value = new BarcodeValue();
+      Map<Integer,Integer> votes = new LinkedHashMap<Integer,Integer>();
+      int range = 1 + random.nextInt(i % 2 == 0 ? 30 : 929);
+      // Up to well over the few values one position ever sees
+      int count = random.nextInt(200);
+      for (int j = 0; j < count; j++) {
+        int v = random.nextInt(range);
+        value.setValue(v);
+        Integer confidence = votes.get(v);
+        votes.put(v, confidence == null ? 1 : confidence + 1);
+      }
+      assertArrayEquals(getMostVoted(votes), value.getValue());
+      for (Map.Entry<Integer,Integer> entry : votes.entrySet()) {
+        assertEquals(entry.getValue().intValue(), value.getConfidence(entry.getKey()));
+      }
+    }
+  }
+
+  /**
+   * @return the values with the most votes, in the order the map iterates them
+   */
+  private static int[] getMostVoted(Map<Integer,Integer> votes) {
+    int maxConfidence = -1;
+    Collection<Integer> result = new ArrayList<Integer>();
+    for (Map.Entry<Integer,Integer> entry : votes.entrySet()) {
+      if (entry.getValue() > maxConfidence) {
+        maxConfidence = entry.getValue();
+        result.clear();
+        result.add(entry.getKey());
+      } else if (entry.getValue() == maxConfidence) {
+        result.add(entry.getKey());
+      }
+    }
+    int[] array = new int[result.size()];
+    int i = 0;
+    for (int v : result) {
+      array[i++] = v;
+    }
+    return array;
+  }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.pdf417.decoder;
+
+import com.google.zxing.FormatException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+public final class DecodedBitStreamParserTestCase extends Assert {
+
+  private static final BigInteger NINE_HUNDRED = BigInteger.valueOf(900);
+
+  @Test
+  public void testNumericExample() throws FormatException {
+    // From the comment on decodeBase900toBase10
+    assertEquals("000213298174000",
+        DecodedBitStreamParser.decodeBase900toBase10(new int[] {1, 624, 434, 632, 282, 200}, 6));
+  }
+
+  @Test
+  public void testNumericRandom() {
+    Random random = new Random(0x900);
+    int[] codewords = new int[15];
+    for (int i = 0; i < 100000; i++) {
+      int count = 1 + random.nextInt(codewords.length);
+      int range = random.nextBoolean() ? 900 : 929;
+      for (int j = 0; j < count; j++) {
+        codewords[j] = random.nextInt(range);
+      }
+      // Often encode a real digit string, whose value starts with 1
+      if (random.nextInt(4) != 0) {
+        BigInteger value = BigInteger.ONE.shiftLeft(random.nextInt(145)).add(BigInteger.valueOf(random.nextLong()).abs());
+        count = 0;
+        while (count < codewords.length && value.signum() > 0) {
+          codewords[count++] = value.mod(NINE_HUNDRED).intValue();
+          value = value.divide(NINE_HUNDRED);
+        }
+        reverse(codewords, count);
+      }
+      String expected = decodeWithBigInteger(codewords, count);
+      String actual;
+      try {
+        actual = DecodedBitStreamParser.decodeBase900toBase10(codewords, count);
+      } catch (FormatException fe) {
+        actual = null;
+      }
+      assertEquals(expected, actual);
+    }
+  }
+
+  private static void reverse(int[] array, int count) {
+    for (int i = 0; i < count / 2; i++) {
+      int temp = array[i];
+      array[i] = array[count - 1 - i];
+      array[count - 1 - i] = temp;
+    }
+  }
+
+  private static String decodeWithBigInteger(int[] codewords, int count) {
+    BigInteger result = BigInteger.ZERO;
+    for (int i = 0; i < count; i++) {
+      result = result.multiply(NINE_HUNDRED).add(BigInteger.valueOf(codewords[i]));
+    }
+    String resultString = result.toString();
+    return resultString.charAt(0) == '1' ? resultString.substring(1) : null;
+  }
+
+}
@@ -49,14 +49,16 @@ public final class DetectorTest extends Assert {
 
   private static void testRotate180(int width, int height) {
     BitMatrix input = getInput(width, height);
-    Detector.rotate180(input);
+    BitMatrix result = Detector.rotate180(input);
     BitMatrix expected = getExpected(width, height);
 
     for (int y = 0; y < height; y++) {
       for (int x = 0; x < width; x++) {
-        assertEquals("(" + x + ',' + y + ')', expected.get(x, y), input.get(x, y));
+        assertEquals("(" + x + ',' + y + ')', expected.get(x, y), result.get(x, y));
       }
     }
+    // The input is left as it was
+    assertEquals(getInput(width, height), input);
   }
 
   private static BitMatrix getExpected(int width, int height) {
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.pdf417.encoder;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.RGBLuminanceSource;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.pdf417.PDF417Reader;
+import com.google.zxing.pdf417.PDF417Writer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+public final class PDF417HighLevelEncoderTestCase extends Assert {
+
+  private static final int MODULE_SIZE = 2;
+  private static final int MARGIN = 10 * MODULE_SIZE;
+
+  @Test
+  public void testMinimal() throws WriterException {
+    // A B, C ps
+    assertEquals("\u0001Y", PDF417HighLevelEncoder.encodeHighLevel("ABC", Compaction.MINIMAL));
+    // A full group of 44 digits and a group of one
+    StringBuilder digits = new StringBuilder();
+    for (int i = 0; i < 45; i++) {
+      digits.append((char) ('0' + i % 10));
+    }
+    assertEquals(17, PDF417HighLevelEncoder.encodeHighLevel(digits.toString(), Compaction.MINIMAL).length());
+    // Shifting to byte compaction for a single byte beats latching to it
+    assertEquals(6, PDF417HighLevelEncoder.encodeHighLevel("abcédef", Compaction.MINIMAL).length());
+  }
+
+  @Test
+  public void testNeverLongerThanAuto() throws WriterException {
+    // Only ASCII, as automatic compaction encodes bytes in the platform's charset
+    Random random = new Random(0x417);
+    String[] alphabets = {"0123456789", "ABCDEF GHI", "abcdef ghi", "0123456789.,-/:", "!\"#$()<>?@[]{}",
+                          "\u0000\u0001\u007f", "Aa1 .\n\r\t;"};
+    for (int i = 0; i < 500; i++) {
+      String message = randomMessage(random, alphabets, 1 + random.nextInt(200));
+      String minimal = PDF417HighLevelEncoder.encodeHighLevel(message, Compaction.MINIMAL);
+      String auto = PDF417HighLevelEncoder.encodeHighLevel(message, Compaction.AUTO);
+      assertTrue(message, minimal.length() <= auto.length());
+    }
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    StringBuilder digits = new StringBuilder();
+    for (int i = 0; i < 45; i++) {
+      digits.append((char) ('9' - i % 10));
+    }
+    testRoundTrip("Shipping label 0123456789012345 for ACME, Inc.");
+    testRoundTrip(digits.toString());
+    testRoundTrip("é leading byte");
+    testRoundTrip("{}[]<>\u0001 byte after punctuation");
+    testRoundTrip("abc\u0000\u0001\u0002\u0003\u0004\u0005\u0006\u0007 seven bytes, 1234567890123 and more text");
+    // A single data codeword
+    testRoundTrip("G");
+    testRoundTrip("GG");
+    testRoundTrip("_");
+    testRoundTrip("1");
+    // A shifted byte, then text in the last codeword
+    testRoundTrip("\u00013");
+    testRoundTrip("\u0001A");
+    testRoundTrip("\u00011");
+    Random random = new Random(0x417);
+    String[] alphabets = {"0123456789", "ABCDEF GHI", "abcdef ghi", "!\"#$()<>?@[]{}", "\u0000éÿ"};
+    for (int i = 0; i < 20; i++) {
+      testRoundTrip(randomMessage(random, alphabets, 1 + random.nextInt(100)));
+    }
+    for (int i = 0; i < 50; i++) {
+      testRoundTrip(randomMessage(random, alphabets, 1 + random.nextInt(4)));
+    }
+  }
+
+  private static void testRoundTrip(String message) throws Exception {
+    Map<EncodeHintType,Object> hints = new EnumMap<EncodeHintType,Object>(EncodeHintType.class);
+    hints.put(EncodeHintType.PDF417_COMPACTION, Compaction.MINIMAL);
+    BitMatrix code = new PDF417Writer().encode(message, BarcodeFormat.PDF_417, 0, 0, hints);
+    int width = code.getWidth() * MODULE_SIZE + 2 * MARGIN;
+    int height = code.getHeight() * MODULE_SIZE + 2 * MARGIN;
+    int[] pixels = new int[width * height];
+    Arrays.fill(pixels, 0xFFFFFFFF);
+    for (int y = 0; y < code.getHeight() * MODULE_SIZE; y++) {
+      for (int x = 0; x < code.getWidth() * MODULE_SIZE; x++) {
+        if (code.get(x / MODULE_SIZE, y / MODULE_SIZE)) {
+          pixels[(MARGIN + y) * width + MARGIN + x] = 0xFF000000;
+        }
+      }
+    }
+    BinaryBitmap image = new BinaryBitmap(new HybridBinarizer(new RGBLuminanceSource(width, height, pixels)));
+    assertEquals(message, new PDF417Reader().decode(image).getText());
+  }
+
+  private static String randomMessage(Random random, String[] alphabets, int length) {
+    StringBuilder message = new StringBuilder(length);
+    while (message.length() < length) {
+      String alphabet = alphabets[random.nextInt(alphabets.length)];
+      int run = 1 + random.nextInt(random.nextBoolean() ? 3 : 30);
+      for (int i = 0; i < run && message.length() < length; i++) {
+        message.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      }
+    }
+    return message.toString();
+  }
+
+}
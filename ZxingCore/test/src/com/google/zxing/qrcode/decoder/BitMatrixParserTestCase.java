@@ -0,0 +1,184 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.qrcode.decoder;
+
+import com.google.zxing.common.BitMatrix;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Checks that unmasking a whole matrix at once and reading codewords through the per version
+ * tables read what the old module by module unmasking and zig-zag walk did.
+ */
+public final class BitMatrixParserTestCase extends Assert {
+
+  private static final int FORMAT_INFO_MASK_QR = 0x5412;
+  private static final int FORMAT_INFO_POLY = 0x537;
+  private static final int VERSION_INFO_POLY = 0x1f25;
+
+  @Test
+  public void testReadCodewords() throws Exception {
+    Random random = new Random(0x28);
+    for (int versionNumber = 1; versionNumber <= 40; versionNumber++) {
+      Version version = Version.getVersionForNumber(versionNumber);
+      for (int mask = 0; mask < 8; mask++) {
+        BitMatrix bits = randomSymbol(version, mask, random);
+        byte[] expected = readByModule(copy(bits), version, mask);
+        byte[] actual = new BitMatrixParser(bits).readCodewords();
+        assertArrayEquals("Version " + versionNumber + " mask " + mask, expected, actual);
+      }
+    }
+  }
+
+  /**
+   * Random modules, but for format information naming the mask and, from version 7, version
+   * information that the parser can read.
+   */
+  private static BitMatrix randomSymbol(Version version, int mask, Random random) {
+    int dimension = version.getDimensionForVersion();
+    BitMatrix bits = new BitMatrix(dimension);
+    for (int y = 0; y < dimension; y++) {
+      for (int x = 0; x < dimension; x++) {
+        if (random.nextBoolean()) {
+          bits.set(x, y);
+        }
+      }
+    }
+    int typeInfo = (random.nextInt(4) << 3) | mask;
+    int formatInfo = ((typeInfo << 10) | bchCode(typeInfo, FORMAT_INFO_POLY)) ^ FORMAT_INFO_MASK_QR;
+    // The two copies in the order BitMatrixParser.readFormatInformation() reads them
+    int[][] copy1 = new int[15][];
+    int n = 0;
+    for (int i = 0; i < 6; i++) {
+      copy1[n++] = new int[] {i, 8};
+    }
+    copy1[n++] = new int[] {7, 8};
+    copy1[n++] = new int[] {8, 8};
+    copy1[n++] = new int[] {8, 7};
+    for (int j = 5; j >= 0; j--) {
+      copy1[n++] = new int[] {8, j};
+    }
+    int[][] copy2 = new int[15][];
+    n = 0;
+    for (int j = dimension - 1; j >= dimension - 7; j--) {
+      copy2[n++] = new int[] {8, j};
+    }
+    for (int i = dimension - 8; i < dimension; i++) {
+      copy2[n++] = new int[] {i, 8};
+    }
+    writeBits(bits, formatInfo, copy1);
+    writeBits(bits, formatInfo, copy2);
+    if (version.getVersionNumber() >= 7) {
+      int versionNumber = version.getVersionNumber();
+      int versionInfo = (versionNumber << 12) | bchCode(versionNumber, VERSION_INFO_POLY);
+      int[][] topRight = new int[18][];
+      n = 0;
+      for (int j = 5; j >= 0; j--) {
+        for (int i = dimension - 9; i >= dimension - 11; i--) {
+          topRight[n++] = new int[] {i, j};
+        }
+      }
+      writeBits(bits, versionInfo, topRight);
+    }
+    return bits;
+  }
+
+  /**
+   * Writes the bits of a value, most significant first, to the modules at (x, y) given.
+   */
+  private static void writeBits(BitMatrix bits, int value, int[][] positions) {
+    for (int i = 0; i < positions.length; i++) {
+      int x = positions[i][0];
+      int y = positions[i][1];
+      boolean set = ((value >> (positions.length - 1 - i)) & 1) != 0;
+      if (set != bits.get(x, y)) {
+        bits.flip(x, y);
+      }
+    }
+  }
+
+  private static int bchCode(int value, int poly) {
+    int msbSetInPoly = 32 - Integer.numberOfLeadingZeros(poly);
+    value <<= msbSetInPoly - 1;
+    while (32 - Integer.numberOfLeadingZeros(value) >= msbSetInPoly) {
+      value ^= poly << (32 - Integer.numberOfLeadingZeros(value) - msbSetInPoly);
+    }
+    return value;
+  }
+
+  private static BitMatrix copy(BitMatrix bits) {
+    BitMatrix result = new BitMatrix(bits.getWidth(), bits.getHeight());
+    for (int y = 0; y < bits.getHeight(); y++) {
+      for (int x = 0; x < bits.getWidth(); x++) {
+        if (bits.get(x, y)) {
+          result.set(x, y);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * The old parser: flips each masked module, then walks the columns in pairs reading every
+   * module outside the function patterns.
+   */
+  private static byte[] readByModule(BitMatrix bits, Version version, int mask) {
+    DataMask dataMask = DataMask.forReference(mask);
+    int dimension = bits.getHeight();
+    for (int i = 0; i < dimension; i++) {
+      for (int j = 0; j < dimension; j++) {
+        if (dataMask.isMasked(i, j)) {
+          bits.flip(j, i);
+        }
+      }
+    }
+    BitMatrix functionPattern = version.buildFunctionPattern();
+    boolean readingUp = true;
+    byte[] result = new byte[version.getTotalCodewords()];
+    int resultOffset = 0;
+    int currentByte = 0;
+    int bitsRead = 0;
+    for (int j = dimension - 1; j > 0; j -= 2) {
+      if (j == 6) {
+        j--;
+      }
+      for (int count = 0; count < dimension; count++) {
+        int i = readingUp ? dimension - 1 - count : count;
+        for (int col = 0; col < 2; col++) {
+          if (!functionPattern.get(j - col, i)) {
+            bitsRead++;
+            currentByte <<= 1;
+            if (bits.get(j - col, i)) {
+              currentByte |= 1;
+            }
+            if (bitsRead == 8) {
+              result[resultOffset++] = (byte) currentByte;
+              bitsRead = 0;
+              currentByte = 0;
+            }
+          }
+        }
+      }
+      readingUp ^= true;
+    }
+    assertEquals(version.getTotalCodewords(), resultOffset);
+    return result;
+  }
+
+}
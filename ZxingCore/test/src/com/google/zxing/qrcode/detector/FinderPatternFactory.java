@@ -0,0 +1,31 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.qrcode.detector;
+
+/**
+ * Makes finder patterns for tests outside this package, which detectors otherwise only find in images.
+ */
+public final class FinderPatternFactory {
+
+  private FinderPatternFactory() {
+  }
+
+  public static FinderPattern newFinderPattern(float x, float y, float estimatedModuleSize) {
+    return new FinderPattern(x, y, estimatedModuleSize);
+  }
+
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.qrcode.detector;
+
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+import com.google.zxing.qrcode.encoder.Encoder;
+import com.google.zxing.qrcode.encoder.QRCode;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Tests {@link FinderPatternFinder}, in particular {@link DecodeHintType#QR_VERSION_RANGE} and
+ * that scanning rows run by run finds what scanning them pixel by pixel did.
+ */
+public final class FinderPatternFinderTestCase extends Assert {
+
+  private static final int SCALE = 2;
+  private static final int LEFT = 50;
+
+  @Test
+  public void testFindHighVersionWithHint() throws Exception {
+    BitMatrix image = createImage(600, 1400, 30);
+    Map<DecodeHintType,Object> hints = new EnumMap<DecodeHintType,Object>(DecodeHintType.class);
+    hints.put(DecodeHintType.QR_VERSION_RANGE, new int[] {20, 40});
+    FinderPatternInfo info = new FinderPatternFinder(image).find(hints);
+    int dimension = 17 + 4 * 30;
+    assertCenter(3.5f, 3.5f, 700, info.getTopLeft());
+    assertCenter(dimension - 3.5f, 3.5f, 700, info.getTopRight());
+    assertCenter(3.5f, dimension - 3.5f, 700, info.getBottomLeft());
+    assertEquals(SCALE, info.getTopLeft().getEstimatedModuleSize(), 0.5f);
+  }
+
+  @Test
+  public void testFindInParallelBands() throws Exception {
+    BitMatrix image = createImage(600, 1400, 30);
+    Map<DecodeHintType,Object> hints = new EnumMap<DecodeHintType,Object>(DecodeHintType.class);
+    hints.put(DecodeHintType.QR_VERSION_RANGE, new int[] {20, 30});
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      hints.put(DecodeHintType.DETECTION_EXECUTOR, executor);
+      FinderPatternFinder finder = new FinderPatternFinder(image);
+      FinderPatternInfo info = finder.find(hints);
+      int dimension = 17 + 4 * 30;
+      assertCenter(3.5f, 3.5f, 700, info.getTopLeft());
+      assertCenter(dimension - 3.5f, 3.5f, 700, info.getTopRight());
+      assertCenter(3.5f, dimension - 3.5f, 700, info.getBottomLeft());
+      // Rows are 7 apart, so each 6 pixel tall center would be crossed once, but bands scan
+      // every other row once they find a center, so each is confirmed more than once
+      for (FinderPattern center : finder.getPossibleCenters()) {
+        assertTrue(center.getCount() >= 2);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testSameResultWithDefaultRange() throws Exception {
+    BitMatrix image = createImage(300, 300, 5);
+    Map<DecodeHintType,Object> hints = new EnumMap<DecodeHintType,Object>(DecodeHintType.class);
+    FinderPatternInfo unhinted = new FinderPatternFinder(image).find(hints);
+    hints.put(DecodeHintType.QR_VERSION_RANGE, new int[] {1, 10});
+    FinderPatternInfo hinted = new FinderPatternFinder(image).find(hints);
+    assertEquals(unhinted.getTopLeft(), hinted.getTopLeft());
+    assertEquals(unhinted.getTopRight(), hinted.getTopRight());
+    assertEquals(unhinted.getBottomLeft(), hinted.getBottomLeft());
+  }
+
+  @Test(expected = NotFoundException.class)
+  public void testMinimumVersionRejectsLargePatterns() throws Exception {
+    // Finder patterns this coarse can't belong to a version 30+ code that fits in this image
+    BitMatrix image = createImage(120, 120, 1);
+    Map<DecodeHintType,Object> hints = new EnumMap<DecodeHintType,Object>(DecodeHintType.class);
+    hints.put(DecodeHintType.QR_VERSION_RANGE, new int[] {30, 40});
+    new FinderPatternFinder(image).find(hints);
+  }
+
+  @Test
+  public void testRunScanMatchesPixelWalk() throws Exception {
+    Random random = new Random(0x26);
+    int totalFound = 0;
+    for (int trial = 0; trial < 40; trial++) {
+      BitMatrix image = createImage(300, 300, 1 + random.nextInt(6));
+      // Specks break up runs and make near misses of the 1:1:3:1:1 ratio
+      for (int speck = 0; speck < 300; speck++) {
+        image.flip(random.nextInt(300), random.nextInt(300));
+      }
+      int iSkip = 1 + random.nextInt(3);
+      FinderPatternFinder byRun = new FinderPatternFinder(image);
+      byRun.scanRows(iSkip - 1, image.getHeight(), iSkip);
+      FinderPatternFinder byPixel = new FinderPatternFinder(image);
+      scanRowsByPixel(byPixel, image, iSkip - 1, image.getHeight(), iSkip);
+      List<FinderPattern> expected = byPixel.getPossibleCenters();
+      List<FinderPattern> actual = byRun.getPossibleCenters();
+      assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++) {
+        assertEquals(expected.get(i).getX(), actual.get(i).getX(), 0.0f);
+        assertEquals(expected.get(i).getY(), actual.get(i).getY(), 0.0f);
+        assertEquals(expected.get(i).getEstimatedModuleSize(), actual.get(i).getEstimatedModuleSize(), 0.0f);
+        assertEquals(expected.get(i).getCount(), actual.get(i).getCount());
+      }
+      totalFound += actual.size();
+    }
+    // Most patterns survive the specks, so there is plenty to compare
+    assertTrue(totalFound > 2 * 40);
+  }
+
+  private static void assertCenter(float moduleX, float moduleY, int top, FinderPattern pattern) {
+    assertEquals(LEFT + moduleX * SCALE, pattern.getX(), SCALE);
+    assertEquals(top + moduleY * SCALE, pattern.getY(), SCALE);
+  }
+
+  /**
+   * How rows were scanned before they were walked by runs: every pixel moves the
+   * black/white/black/white/black state machine on by one.
+   */
+  private static void scanRowsByPixel(FinderPatternFinder finder, BitMatrix image,
+                                      int startRow, int endRow, int iSkip) {
+    int maxJ = image.getWidth();
+    int[] stateCount = new int[5];
+    for (int i = startRow; i < endRow; i += iSkip) {
+      for (int k = 0; k < 5; k++) {
+        stateCount[k] = 0;
+      }
+      int currentState = 0;
+      for (int j = 0; j < maxJ; j++) {
+        if (image.get(j, i)) {
+          if ((currentState & 1) == 1) {
+            currentState++;
+          }
+          stateCount[currentState]++;
+        } else if ((currentState & 1) == 0) {
+          if (currentState == 4) {
+            if (FinderPatternFinder.foundPatternCross(stateCount) &&
+                finder.handlePossibleCenter(stateCount, i, j)) {
+              currentState = 0;
+              for (int k = 0; k < 5; k++) {
+                stateCount[k] = 0;
+              }
+            } else {
+              stateCount[0] = stateCount[2];
+              stateCount[1] = stateCount[3];
+              stateCount[2] = stateCount[4];
+              stateCount[3] = 1;
+              stateCount[4] = 0;
+              currentState = 3;
+            }
+          } else {
+            stateCount[++currentState]++;
+          }
+        } else {
+          stateCount[currentState]++;
+        }
+      }
+      if (FinderPatternFinder.foundPatternCross(stateCount)) {
+        finder.handlePossibleCenter(stateCount, i, maxJ);
+      }
+    }
+  }
+
+  private static BitMatrix createImage(int width, int height, int version) throws WriterException {
+    StringBuilder content = new StringBuilder();
+    QRCode code;
+    do {
+      for (int i = 0; i < 10; i++) {
+        content.append("0123456789");
+      }
+      code = Encoder.encode(content.toString(), ErrorCorrectionLevel.L);
+    } while (code.getVersion().getVersionNumber() < version);
+    ByteMatrix matrix = code.getMatrix();
+    BitMatrix image = new BitMatrix(width, height);
+    // The code sits in the lower half of the image
+    int top = height / 2;
+    for (int y = 0; y < matrix.getHeight(); y++) {
+      for (int x = 0; x < matrix.getWidth(); x++) {
+        if (matrix.get(x, y) == 1) {
+          image.setRegion(LEFT + x * SCALE, top + y * SCALE, SCALE, SCALE);
+        }
+      }
+    }
+    return image;
+  }
+
+}
@@ -19,6 +19,8 @@ package com.google.zxing.qrcode.encoder;
 import com.google.zxing.EncodeHintType;
 import com.google.zxing.WriterException;
 import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.decoder.Decoder;
 import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
 import com.google.zxing.qrcode.decoder.Mode;
 import com.google.zxing.qrcode.decoder.Version;
@@ -28,6 +30,7 @@ import org.junit.Test;
 import java.io.UnsupportedEncodingException;
 import java.util.EnumMap;
 import java.util.Map;
+import java.util.Random;
 
 /**
  * @author satorux@google.com (Satoru Takabayashi) - creator
@@ -503,6 +506,153 @@ public final class EncoderTestCase extends Assert {
     Encoder.encode(builder.toString(), ErrorCorrectionLevel.L);
   }
 
+  @Test
+  public void testMinimalEncoderSplitsModes() throws WriterException {
+    MinimalEncoder minimalEncoder =
+        new MinimalEncoder("ORDER-123456789012345678-DE", Encoder.DEFAULT_BYTE_MODE_ENCODING);
+    minimalEncoder.encode(ErrorCorrectionLevel.L);
+    Version version = Version.getVersionForNumber(1);
+    BitArray expected = new BitArray();
+    appendSegment("ORDER-", Mode.ALPHANUMERIC, version, expected);
+    appendSegment("123456789012345678", Mode.NUMERIC, version, expected);
+    appendSegment("-DE", Mode.ALPHANUMERIC, version, expected);
+    assertEquals(150, expected.getSize());
+    assertEquals(expected.toString(), minimalEncoder.getBits().toString());
+    assertEquals(Mode.ALPHANUMERIC, minimalEncoder.getFirstMode());
+    assertSame(version, minimalEncoder.getVersion());
+  }
+
+  @Test
+  public void testMinimalEncoderIsMinimal() throws WriterException {
+    // Compare against every way of assigning a mode to each character
+    String alphabet = "0123456789ABC-a";
+    Mode[] modes = { Mode.NUMERIC, Mode.ALPHANUMERIC, Mode.BYTE };
+    Version version = Version.getVersionForNumber(1);
+    Random random = new Random(0xC0DE);
+    for (int trial = 0; trial < 200; trial++) {
+      int length = 1 + random.nextInt(7);
+      StringBuilder content = new StringBuilder(length);
+      for (int i = 0; i < length; i++) {
+        content.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      }
+      int bruteForceBits = Integer.MAX_VALUE;
+      int[] choice = new int[length];
+      int combinations = (int) Math.pow(modes.length, length);
+      for (int combination = 0; combination < combinations; combination++) {
+        for (int i = 0, rest = combination; i < length; i++, rest /= modes.length) {
+          choice[i] = rest % modes.length;
+        }
+        BitArray bits = new BitArray();
+        try {
+          int start = 0;
+          while (start < length) {
+            int end = start + 1;
+            while (end < length && choice[end] == choice[start]) {
+              end++;
+            }
+            appendSegment(content.substring(start, end), modes[choice[start]], version, bits);
+            start = end;
+          }
+        } catch (WriterException we) {
+          // A character that mode can't encode
+          continue;
+        }
+        bruteForceBits = Math.min(bruteForceBits, bits.getSize());
+      }
+      MinimalEncoder minimalEncoder =
+          new MinimalEncoder(content.toString(), Encoder.DEFAULT_BYTE_MODE_ENCODING);
+      minimalEncoder.encode(ErrorCorrectionLevel.L);
+      assertEquals(content.toString(), bruteForceBits, minimalEncoder.getBits().getSize());
+    }
+  }
+
+  @Test
+  public void testCompactRoundTrip() throws Exception {
+    Map<EncodeHintType,Object> hints = new EnumMap<EncodeHintType,Object>(EncodeHintType.class);
+    hints.put(EncodeHintType.QR_COMPACT, Boolean.TRUE);
+    String[] contents = {
+        "order-123456789012345678-de",
+        "ORDER-123456789012345678-DE",
+        "0",
+        "http://example.com/LOT/00012345678901234567?item=FOO-0042",
+    };
+    for (String content : contents) {
+      assertRoundTrip(content, hints);
+      assertTrue(Encoder.encode(content, ErrorCorrectionLevel.M, hints).getVersion().getVersionNumber() <=
+                 Encoder.encode(content, ErrorCorrectionLevel.M).getVersion().getVersionNumber());
+    }
+
+    StringBuilder labels = new StringBuilder();
+    for (int i = 0; i < 40; i++) {
+      labels.append("order-").append(1000000000L + i * 7919L).append(' ');
+    }
+    String content = labels.toString();
+    assertRoundTrip(content, hints);
+    assertTrue(Encoder.encode(content, ErrorCorrectionLevel.M, hints).getVersion().getVersionNumber() <
+               Encoder.encode(content, ErrorCorrectionLevel.M).getVersion().getVersionNumber());
+
+    // Segments too long for the length fields of versions 1-9, and of 10-26
+    StringBuilder letters = new StringBuilder();
+    for (int i = 0; i < 300; i++) {
+      letters.append((char) ('a' + i % 26));
+    }
+    assertCompactVersion(letters.toString(), hints, 11);
+    StringBuilder digits = new StringBuilder();
+    for (int i = 0; i < 1200; i++) {
+      digits.append((char) ('0' + i % 10));
+    }
+    assertCompactVersion(digits.toString(), hints, 15);
+    StringBuilder moreDigits = new StringBuilder();
+    for (int i = 0; i < 4100; i++) {
+      moreDigits.append((char) ('0' + i % 7));
+    }
+    assertCompactVersion(moreDigits.toString(), hints, 27);
+
+    // Byte segments need an ECI designator
+    hints.put(EncodeHintType.CHARACTER_SET, "UTF-8");
+    assertRoundTrip("Gr\u00FC\u00DFe 1234567890123 AUS K\u00D6LN", hints);
+    assertRoundTrip("1234567890", hints);
+
+    hints.put(EncodeHintType.CHARACTER_SET, "Shift_JIS");
+    assertRoundTrip(shiftJISString(new byte[] {(byte) 0x93, 0x5f, (byte) 0xe4, (byte) 0xaa}) +
+                    "1234567890123" + shiftJISString(new byte[] {(byte) 0x8a, (byte) 0xbf}), hints);
+  }
+
+  private static void assertCompactVersion(String content, Map<EncodeHintType,?> hints, int minVersion)
+      throws Exception {
+    int version = Encoder.encode(content, ErrorCorrectionLevel.M, hints).getVersion().getVersionNumber();
+    assertTrue(version >= minVersion);
+    assertEquals(Encoder.encode(content, ErrorCorrectionLevel.M).getVersion().getVersionNumber(), version);
+    assertRoundTrip(content, hints);
+  }
+
+  private static void assertRoundTrip(String content, Map<EncodeHintType,?> hints) throws Exception {
+    ByteMatrix matrix = Encoder.encode(content, ErrorCorrectionLevel.M, hints).getMatrix();
+    BitMatrix bits = new BitMatrix(matrix.getWidth(), matrix.getHeight());
+    for (int y = 0; y < matrix.getHeight(); y++) {
+      for (int x = 0; x < matrix.getWidth(); x++) {
+        if (matrix.get(x, y) == 1) {
+          bits.set(x, y);
+        }
+      }
+    }
+    assertEquals(content, new Decoder().decode(bits).getText());
+  }
+
+  private static void appendSegment(String segment, Mode mode, Version version, BitArray bits)
+      throws WriterException {
+    // appendNumericBytes() doesn't check its input
+    if (mode == Mode.NUMERIC && !segment.matches("[0-9]+")) {
+      throw new WriterException();
+    }
+    BitArray dataBits = new BitArray();
+    Encoder.appendBytes(segment, mode, dataBits, Encoder.DEFAULT_BYTE_MODE_ENCODING);
+    Encoder.appendModeInfo(mode, bits);
+    Encoder.appendLengthInfo(mode == Mode.BYTE ? dataBits.getSizeInBytes() : segment.length(),
+                             version, mode, bits);
+    bits.appendBitArray(dataBits);
+  }
+
   private static String shiftJISString(byte[] bytes) throws WriterException {
     try {
       return new String(bytes, "Shift_JIS");
@@ -19,6 +19,8 @@ package com.google.zxing.qrcode.encoder;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Random;
+
 /**
  * @author satorux@google.com (Satoru Takabayashi) - creator
  * @author mysen@google.com (Chris Mysen) - ported from C++
@@ -257,4 +259,31 @@ public final class MaskUtilTestCase extends Assert {
     };
     assertTrue(TestGetDataMaskBitInternal(7, mask7));
   }
+
+  @Test
+  public void testPackedMaskPenalty() {
+    Random random = new Random(0xDEADBEEFL);
+    for (int dimension = 21; dimension <= 177; dimension += 4) {
+      ByteMatrix matrix = new ByteMatrix(dimension, dimension);
+      long[][] rows = new long[dimension][(dimension + 63) >> 6];
+      long[][] columns = new long[dimension][(dimension + 63) >> 6];
+      // Mostly long runs, to exercise all the rules
+      boolean bit = false;
+      for (int y = 0; y < dimension; y++) {
+        for (int x = 0; x < dimension; x++) {
+          if (random.nextInt(4) == 0) {
+            bit = !bit;
+          }
+          matrix.set(x, y, bit);
+          if (bit) {
+            rows[y][x >> 6] |= 1L << (x & 0x3F);
+            columns[x][y >> 6] |= 1L << (y & 0x3F);
+          }
+        }
+      }
+      assertEquals(MaskUtil.calculateMaskPenalty(matrix),
+                   MaskUtil.calculatePackedMaskPenalty(rows, columns, dimension));
+    }
+  }
+
 }
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2013 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.zxing.qrcode.encoder;
+
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.decoder.Version;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Tests {@link MatrixTemplate} against building and scoring each masked matrix in full.
+ */
+public final class MatrixTemplateTestCase extends Assert {
+
+  @Test
+  public void testChooseMaskPattern() throws WriterException {
+    Random random = new Random(0xCAFEL);
+    for (int versionNumber = 1; versionNumber <= 40; versionNumber += 3) {
+      Version version = Version.getVersionForNumber(versionNumber);
+      for (ErrorCorrectionLevel ecLevel : ErrorCorrectionLevel.values()) {
+        BitArray bits = new BitArray();
+        // Random codewords, leaving any remainder bits to be padded
+        for (int i = 0; i < version.getTotalCodewords(); i++) {
+          bits.appendBits(random.nextInt(256), 8);
+        }
+        int dimension = version.getDimensionForVersion();
+        ByteMatrix matrix = new ByteMatrix(dimension, dimension);
+        int minPenalty = Integer.MAX_VALUE;
+        int expected = -1;
+        for (int maskPattern = 0; maskPattern < QRCode.NUM_MASK_PATTERNS; maskPattern++) {
+          MatrixUtil.buildMatrix(bits, ecLevel, version, maskPattern, matrix);
+          int penalty = MaskUtil.calculateMaskPenalty(matrix);
+          if (penalty < minPenalty) {
+            minPenalty = penalty;
+            expected = maskPattern;
+          }
+        }
+        assertEquals(expected, MatrixTemplate.forVersion(version).chooseMaskPattern(bits, ecLevel));
+      }
+    }
+  }
+
+  @Test(expected = WriterException.class)
+  public void testTooManyBits() throws WriterException {
+    Version version = Version.getVersionForNumber(1);
+    BitArray bits = new BitArray();
+    for (int i = 0; i <= version.getTotalCodewords(); i++) {
+      bits.appendBits(0xA5, 8);
+    }
+    MatrixTemplate.forVersion(version).chooseMaskPattern(bits, ErrorCorrectionLevel.L);
+  }
+
+}